@@ -0,0 +1,61 @@
+package hu.ponte.hr.controller;
+
+import hu.ponte.hr.config.PreviewConfig;
+import hu.ponte.hr.config.StreamingConfig;
+import hu.ponte.hr.services.BufferPool;
+import hu.ponte.hr.services.ImageStore;
+import hu.ponte.hr.services.StoredImage;
+import hu.ponte.hr.services.VerificationService;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+
+/**
+ * Benchmark of the preview path of {@link ImagesController}, writing an in-memory image into the response.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImagesControllerBenchmark {
+
+    @Param({"16384", "262144", "2097152"})
+    private int size;
+
+    private ImagesController imagesController;
+
+    @Setup
+    public void setUp() throws IOException {
+        byte[] image = new byte[size];
+        new Random(42).nextBytes(image);
+        ImageStore imageStore = Mockito.mock(ImageStore.class);
+        Mockito.when(imageStore.find(anyString())).thenReturn(new StoredImage("1", "image", "image/jpeg", size, null, null));
+        Mockito.doAnswer(invocation -> {
+            invocation.<OutputStream>getArgument(1).write(image);
+            return null;
+        }).when(imageStore).download(any(StoredImage.class), any(OutputStream.class));
+        imagesController = new ImagesController(imageStore, Mockito.mock(VerificationService.class), new PreviewConfig(),
+                new BufferPool(new StreamingConfig()));
+    }
+
+    @Benchmark
+    public MockHttpServletResponse getImage() throws IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        imagesController.getImage("1", null, null, new ServletWebRequest(new MockHttpServletRequest("GET", "/"), response), response)
+                .getBody().writeTo(response.getOutputStream());
+        return response;
+    }
+
+}
@@ -0,0 +1,49 @@
+package hu.ponte.hr.mapper;
+
+import hu.ponte.hr.controller.ImageMeta;
+import hu.ponte.hr.domain.Image;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of {@link ImageMapper#mapImagesToImageMetaData} on large lists.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImageMapperBenchmark {
+
+    @Param({"1000", "100000"})
+    private int listSize;
+
+    private ImageMapper imageMapper;
+    private List<Image> images;
+
+    @Setup
+    public void setUp() {
+        imageMapper = new ImageMapperImpl();
+        images = new ArrayList<>(listSize);
+        for (int i = 0; i < listSize; i++) {
+            Image image = new Image();
+            image.setId((long) i);
+            image.setPublicId(String.valueOf(i));
+            image.setName("image-" + i + ".jpg");
+            image.setMimeType("image/jpeg");
+            image.setSize(1024L * i);
+            image.setDigitalSign("signature-" + i);
+            images.add(image);
+        }
+    }
+
+    @Benchmark
+    public List<ImageMeta> mapImages() {
+        return imageMapper.mapImagesToImageMetaData(images);
+    }
+
+}
@@ -0,0 +1,72 @@
+package hu.ponte.hr.services;
+
+import hu.ponte.hr.config.SignConfig;
+import hu.ponte.hr.domain.SignatureScheme;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPairGenerator;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of {@link SignService#createSignature} across content sizes and signature schemes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SignServiceBenchmark {
+
+    @Param({"16384", "262144", "2097152"})
+    private int size;
+
+    @Param({"RSA", "ECDSA_P256"})
+    private SignatureScheme scheme;
+
+    private SignService signService;
+    private byte[] data;
+
+    @Setup
+    public void setUp() throws Exception {
+        SignConfig signConfig = new SignConfig();
+        signConfig.setScheme(scheme);
+        if (scheme == SignatureScheme.RSA) {
+            signConfig.setPrivateKeyPathInResources("config/keys/key.private");
+        } else {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance(scheme.getKeyAlgorithm());
+            if (scheme == SignatureScheme.ECDSA_P256) {
+                generator.initialize(new ECGenParameterSpec("secp256r1"));
+            }
+            Path privateKey = Files.createTempFile("benchmark", ".private");
+            privateKey.toFile().deleteOnExit();
+            Files.write(privateKey, generator.generateKeyPair().getPrivate().getEncoded());
+            signConfig.setPrivateKeyPathInResources(privateKey.toUri().toString());
+        }
+        signService = new SignService();
+        signService.setSignConfig(signConfig);
+        data = new byte[size];
+        new Random(42).nextBytes(data);
+    }
+
+    @TearDown
+    public void tearDown() {
+        signService.shutDown();
+    }
+
+    @Benchmark
+    public String signBytes() {
+        return signService.createSignature(data, "benchmark.jpg");
+    }
+
+    @Benchmark
+    public String signStream() {
+        return signService.createSignature(new ByteArrayInputStream(data), "benchmark.jpg");
+    }
+
+}
@@ -0,0 +1,64 @@
+package hu.ponte.hr.services;
+
+import hu.ponte.hr.config.SignConfig;
+import hu.ponte.hr.domain.SignatureScheme;
+import hu.ponte.hr.util.TestImageReader;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPairGenerator;
+import java.security.spec.ECGenParameterSpec;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of {@link SignService#createSignature} on the test images across all signature schemes, with freshly generated keys.
+ * {@link SignatureScheme#ED25519} requires a Java 15 or newer runtime, exclude it on older ones by {@code -p scheme=RSA,ECDSA_P256}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SignatureSchemeBenchmark {
+
+    @Param({"RSA", "ECDSA_P256", "ED25519"})
+    private SignatureScheme scheme;
+
+    @Param({"cat.jpg", "enhanced-buzz.jpg", "rnd.jpg"})
+    private String image;
+
+    private SignService signService;
+    private byte[] content;
+
+    @Setup
+    public void setUp() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance(scheme.getKeyAlgorithm());
+        if (scheme == SignatureScheme.RSA) {
+            generator.initialize(2048);
+        } else if (scheme == SignatureScheme.ECDSA_P256) {
+            generator.initialize(new ECGenParameterSpec("secp256r1"));
+        }
+        Path privateKey = Files.createTempFile("benchmark", ".private");
+        privateKey.toFile().deleteOnExit();
+        Files.write(privateKey, generator.generateKeyPair().getPrivate().getEncoded());
+        SignConfig signConfig = new SignConfig();
+        signConfig.setScheme(scheme);
+        signConfig.setPrivateKeyPathInResources(privateKey.toUri().toString());
+        signService = new SignService();
+        signService.setSignConfig(signConfig);
+        content = TestImageReader.readTestImagesFromResources("images").get(image);
+    }
+
+    @TearDown
+    public void tearDown() {
+        signService.shutDown();
+    }
+
+    @Benchmark
+    public String sign() {
+        return signService.createSignature(content, image);
+    }
+
+}
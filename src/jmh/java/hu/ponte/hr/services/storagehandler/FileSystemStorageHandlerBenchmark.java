@@ -0,0 +1,66 @@
+package hu.ponte.hr.services.storagehandler;
+
+import hu.ponte.hr.config.FileSystemStorageConfig;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.output.NullOutputStream;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of serving a stored file by {@link FileSystemStorageHandler#writeTo}, compared with copying its InputStream.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FileSystemStorageHandlerBenchmark {
+
+    @Param({"16384", "262144", "2097152"})
+    private int size;
+
+    @Param({"262144", "0"})
+    private long mmapThreshold;
+
+    private Path rootDirectory;
+    private FileSystemStorageHandler fileSystemStorageHandler;
+
+    @Setup
+    public void setUp() throws IOException {
+        rootDirectory = Files.createTempDirectory("benchmark");
+        FileSystemStorageConfig fileSystemStorageConfig = new FileSystemStorageConfig();
+        fileSystemStorageConfig.setRootDirectory(rootDirectory.toString());
+        fileSystemStorageConfig.setMmapThreshold(mmapThreshold);
+        fileSystemStorageHandler = new FileSystemStorageHandler();
+        fileSystemStorageHandler.setFileSystemStorageConfig(fileSystemStorageConfig);
+        fileSystemStorageHandler.init();
+        byte[] data = new byte[size];
+        new Random(42).nextBytes(data);
+        fileSystemStorageHandler.uploadAFile(data, "image");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(rootDirectory.toFile());
+    }
+
+    @Benchmark
+    public long writeTo() throws IOException {
+        return fileSystemStorageHandler.writeTo("image", NullOutputStream.NULL_OUTPUT_STREAM);
+    }
+
+    @Benchmark
+    public long copyStream() throws IOException {
+        try (InputStream inputStream = fileSystemStorageHandler.downloadAFile("image").join()) {
+            return inputStream.transferTo(NullOutputStream.NULL_OUTPUT_STREAM);
+        }
+    }
+
+}
@@ -0,0 +1,51 @@
+package hu.ponte.hr.validation;
+
+import hu.ponte.hr.repository.ImageRepository;
+import hu.ponte.hr.util.TestImageReader;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.anyString;
+
+/**
+ * Benchmark of {@link ImageValidator#validate}, header-only MIME type and dimension detection and name lookup on an in-memory repository stub.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImageValidatorBenchmark {
+
+    @Param({"cat.jpg", "enhanced-buzz.jpg", "rnd.jpg"})
+    private String image;
+
+    private ImageValidator imageValidator;
+    private MockMultipartFile file;
+
+    @Setup
+    public void setUp() {
+        ImageRepository imageRepository = Mockito.mock(ImageRepository.class);
+        Mockito.when(imageRepository.existsByName(anyString())).thenReturn(false);
+        ImageNameFilter imageNameFilter = Mockito.mock(ImageNameFilter.class);
+        Mockito.when(imageNameFilter.mightContain(anyString())).thenReturn(true);
+        imageValidator = new ImageValidator(imageRepository, imageNameFilter);
+        imageValidator.setMaxSize(Long.MAX_VALUE);
+        imageValidator.setMaxPixels(Long.MAX_VALUE);
+        imageValidator.setMaxDimension(Integer.MAX_VALUE);
+        imageValidator.setAllowedTypes(new String[]{"image/png", "image/jpg", "image/jpeg", "image/gif"});
+        byte[] content = TestImageReader.readTestImagesFromResources("images").get(image);
+        file = new MockMultipartFile("file", image, MediaType.IMAGE_JPEG_VALUE, content);
+    }
+
+    @Benchmark
+    public void validate() {
+        imageValidator.validate(file);
+    }
+
+}
@@ -5,6 +5,9 @@ import lombok.Setter;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Configuration bean for AWS S3 properties.
  */
@@ -34,4 +37,30 @@ public class AmazonS3Config {
      */
     private String bucket;
 
+    /**
+     * Size in bytes from which objects are uploaded by multipart upload.
+     */
+    private long multipartThreshold = 16 * 1024 * 1024L;
+
+    /**
+     * Size of a part in bytes in multipart uploads, S3 requires at least 5 MB except for the last part.
+     */
+    private long multipartPartSize = 8 * 1024 * 1024L;
+
+    /**
+     * Max number of parts of an upload uploaded concurrently, the parts of all uploads share the part upload lane.
+     */
+    private int multipartParallelism = 4;
+
+    /**
+     * Locations objects are spread across, each is a bucket name optionally followed by a key prefix, like "images-1/a".
+     * If it is empty, all objects are stored in {@link #bucket}.
+     */
+    private List<String> shards = new ArrayList<>();
+
+    /**
+     * Number of object placements processed at once by rebalancing.
+     */
+    private int rebalanceBatchSize = 500;
+
 }
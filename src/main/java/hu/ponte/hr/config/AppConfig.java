@@ -1,6 +1,5 @@
 package hu.ponte.hr.config;
 
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
@@ -9,7 +8,6 @@ import org.springframework.web.servlet.LocaleResolver;
 import org.springframework.web.servlet.i18n.FixedLocaleResolver;
 
 import java.util.Locale;
-import java.util.concurrent.Executor;
 
 /**
  * Configuration file for configuration beans.
@@ -18,34 +16,103 @@ import java.util.concurrent.Executor;
 public class AppConfig {
 
     /**
-     * Max allowed size of files to be uploaded.
+     * Name of the executor of the upload lane.
      */
-    @Value("${max-size}")
-    private Long maxSize;
+    public static final String UPLOAD_EXECUTOR = "uploadExecutor";
+
+    /**
+     * Name of the executor of the download lane.
+     */
+    public static final String DOWNLOAD_EXECUTOR = "downloadExecutor";
+
+    /**
+     * Name of the executor of the stream lane.
+     */
+    public static final String STREAM_EXECUTOR = "streamExecutor";
+
+    /**
+     * Name of the executor of the part upload lane.
+     */
+    public static final String PART_UPLOAD_EXECUTOR = "partUploadExecutor";
+
+    /**
+     * Name of the executor of the background lane.
+     */
+    public static final String BACKGROUND_EXECUTOR = "backgroundExecutor";
 
     @Bean
     public LocaleResolver localeResolver() {
         return new FixedLocaleResolver(Locale.ENGLISH);
     }
 
+    /**
+     * {@link CommonsMultipartResolver} bean. Requests are resolved lazily, so handlers which do not access the parts,
+     * like streaming uploads, can read the raw request body.
+     * The size of a request is limited by the size of a batch, the size of each file is checked by the image validator,
+     * so a single file which is too large fails alone.
+     */
     @Bean(name = "multipartResolver")
-    public CommonsMultipartResolver multipartResolver() {
+    public CommonsMultipartResolver multipartResolver(BatchUploadConfig batchUploadConfig) {
         CommonsMultipartResolver multipartResolver = new CommonsMultipartResolver();
-        multipartResolver.setMaxUploadSize(maxSize);
+        multipartResolver.setMaxUploadSize(batchUploadConfig.getMaxRequestSize());
+        multipartResolver.setResolveLazily(true);
         return multipartResolver;
     }
 
     /**
-     * {@link ThreadPoolTaskExecutor} bean for async execution of method invocations.
+     * {@link ThreadPoolTaskExecutor} bean of the upload lane, for signing and storing uploaded images.
      */
-    @Bean
-    public Executor getAsyncExecutor() {
+    @Bean(UPLOAD_EXECUTOR)
+    public ThreadPoolTaskExecutor uploadExecutor(ExecutorConfig executorConfig) {
+        return createExecutor("Upload-", executorConfig.getUpload());
+    }
+
+    /**
+     * {@link ThreadPoolTaskExecutor} bean of the download lane, for downloads from the storage.
+     */
+    @Bean(DOWNLOAD_EXECUTOR)
+    public ThreadPoolTaskExecutor downloadExecutor(ExecutorConfig executorConfig) {
+        return createExecutor("Download-", executorConfig.getDownload());
+    }
+
+    /**
+     * {@link ThreadPoolTaskExecutor} bean of the stream lane, for writing streaming response bodies.
+     */
+    @Bean(STREAM_EXECUTOR)
+    public ThreadPoolTaskExecutor streamExecutor(ExecutorConfig executorConfig) {
+        return createExecutor("Stream-", executorConfig.getStream());
+    }
+
+    /**
+     * {@link ThreadPoolTaskExecutor} bean of the part upload lane, for uploading the parts of multipart uploads to S3.
+     */
+    @Bean(PART_UPLOAD_EXECUTOR)
+    public ThreadPoolTaskExecutor partUploadExecutor(ExecutorConfig executorConfig) {
+        return createExecutor("S3Part-", executorConfig.getPartUpload());
+    }
+
+    /**
+     * {@link ThreadPoolTaskExecutor} bean of the background lane. It is also the default executor of {@code @Async} methods
+     * which do not name their lane.
+     */
+    @Bean({BACKGROUND_EXECUTOR, "taskExecutor"})
+    public ThreadPoolTaskExecutor backgroundExecutor(ExecutorConfig executorConfig) {
+        return createExecutor("Background-", executorConfig.getBackground());
+    }
+
+    /**
+     * Create the bounded executor of a lane.
+     *
+     * @param threadNamePrefix the prefix of the names of its threads
+     * @param lane             the sizing of the lane
+     * @return the executor
+     */
+    private static ThreadPoolTaskExecutor createExecutor(String threadNamePrefix, ExecutorConfig.Lane lane) {
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        executor.setThreadNamePrefix("Async-");
-        executor.setCorePoolSize(10);
-        executor.setMaxPoolSize(10);
-        executor.setQueueCapacity(100);
-        executor.initialize();
+        executor.setThreadNamePrefix(threadNamePrefix);
+        executor.setCorePoolSize(lane.getPoolSize());
+        executor.setMaxPoolSize(lane.getPoolSize());
+        executor.setQueueCapacity(lane.getQueueCapacity());
         return executor;
     }
 
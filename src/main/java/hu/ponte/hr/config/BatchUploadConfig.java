@@ -0,0 +1,32 @@
+package hu.ponte.hr.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Configuration bean for uploading many images in a single request.
+ */
+@Component
+@ConfigurationProperties("batch-upload")
+@Getter
+@Setter
+public class BatchUploadConfig {
+
+    /**
+     * Max number of files of a batch.
+     */
+    private int maxFiles = 1000;
+
+    /**
+     * Max size of a multipart request, the size of each file is limited by {@code max-size} separately.
+     */
+    private long maxRequestSize = 268435456;
+
+    /**
+     * Number of files of a batch which are processed at the same time.
+     */
+    private int parallelism = 8;
+
+}
@@ -0,0 +1,32 @@
+package hu.ponte.hr.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Configuration bean for the local disk cache of remotely stored files.
+ */
+@Component
+@ConfigurationProperties("disk-cache")
+@Getter
+@Setter
+public class DiskCacheConfig {
+
+    /**
+     * Whether downloads from S3 are cached on the local disk.
+     */
+    private boolean enabled;
+
+    /**
+     * Directory of the cached files.
+     */
+    private String directory;
+
+    /**
+     * Max total size of the cached files in bytes.
+     */
+    private long maxSize = 1024 * 1024 * 1024L;
+
+}
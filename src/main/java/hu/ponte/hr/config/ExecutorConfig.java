@@ -0,0 +1,83 @@
+package hu.ponte.hr.config;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Configuration bean for the executor lanes. Each kind of work has its own bounded executor,
+ * so a burst of one kind can not starve the others.
+ */
+@Component
+@ConfigurationProperties("executors")
+@Getter
+@Setter
+public class ExecutorConfig {
+
+    /**
+     * Lane of signing and storing uploaded images.
+     */
+    private Lane upload = new Lane(8, 50);
+
+    /**
+     * Lane of downloads from the storage.
+     */
+    private Lane download = new Lane(32, 200);
+
+    /**
+     * Lane of writing streaming response bodies, like previews and exports. Its tasks may wait for tasks of the download lane,
+     * but never for tasks of their own lane, so a full lane can not deadlock.
+     */
+    private Lane stream = new Lane(32, 200);
+
+    /**
+     * Lane of uploading the parts of multipart uploads to S3. Its tasks are waited for by tasks of the upload lane,
+     * each upload keeps at most {@link AmazonS3Config#getMultipartParallelism()} of its parts in the lane.
+     */
+    private Lane partUpload = new Lane(8, 64);
+
+    /**
+     * Lane of background work which no request waits for, like creating renditions.
+     */
+    private Lane background = new Lane(2, 50);
+
+    /**
+     * Sizing and admission limits of an executor lane.
+     */
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class Lane {
+
+        /**
+         * Number of threads of the lane.
+         */
+        private int poolSize;
+
+        /**
+         * Max number of tasks waiting for a thread, further tasks are rejected.
+         */
+        private int queueCapacity;
+
+        /**
+         * Ratio of the queue which may be filled before new requests of the lane are refused with 429 Too Many Requests.
+         */
+        private double admissionThreshold = 0.8;
+
+        /**
+         * Time after which refused clients are asked to retry.
+         */
+        private Duration retryAfter = Duration.ofSeconds(1);
+
+        public Lane(int poolSize, int queueCapacity) {
+            this.poolSize = poolSize;
+            this.queueCapacity = queueCapacity;
+        }
+
+    }
+
+}
@@ -0,0 +1,40 @@
+package hu.ponte.hr.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.zip.Deflater;
+
+/**
+ * Configuration bean for the ZIP export of images.
+ */
+@Component
+@ConfigurationProperties("export")
+@Getter
+@Setter
+public class ExportConfig {
+
+    /**
+     * Number of images whose metadata is read from database at once.
+     */
+    private int pageSize = 500;
+
+    /**
+     * Number of images of an export which are fetched from the storage ahead of the one being written.
+     */
+    private int prefetch = 4;
+
+    /**
+     * Deflate level of the ZIP entries, images are compressed already so the fastest level is the default.
+     */
+    private int compressionLevel = Deflater.BEST_SPEED;
+
+    /**
+     * How long an export may take before the request times out.
+     */
+    private Duration timeout = Duration.ofHours(1);
+
+}
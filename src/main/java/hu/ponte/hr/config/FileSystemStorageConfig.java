@@ -0,0 +1,32 @@
+package hu.ponte.hr.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Configuration bean for local file system storage properties.
+ */
+@Component
+@ConfigurationProperties("fs")
+@Getter
+@Setter
+public class FileSystemStorageConfig {
+
+    /**
+     * Root directory of the stored files.
+     */
+    private String rootDirectory;
+
+    /**
+     * Number of directory levels under the root directory, files are spread among them by the hash of their name.
+     */
+    private int shardDepth = 2;
+
+    /**
+     * Files up to this size in bytes are served from a memory-mapped buffer, larger ones by channel transfer.
+     */
+    private long mmapThreshold = 256 * 1024L;
+
+}
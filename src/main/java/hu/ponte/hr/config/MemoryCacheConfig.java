@@ -0,0 +1,32 @@
+package hu.ponte.hr.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Configuration bean for the in-memory cache of image contents.
+ */
+@Component
+@ConfigurationProperties("memory-cache")
+@Getter
+@Setter
+public class MemoryCacheConfig {
+
+    /**
+     * Max total size of the cached contents in bytes, 0 disables the cache.
+     */
+    private long maxSize = 64 * 1024 * 1024L;
+
+    /**
+     * Max size of a single cached content in bytes, larger images are always served from storage.
+     */
+    private long maxEntrySize = 2 * 1024 * 1024L;
+
+    /**
+     * Whether contents are held in direct buffers outside the Java heap.
+     */
+    private boolean direct;
+
+}
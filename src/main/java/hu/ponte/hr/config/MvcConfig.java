@@ -1,19 +1,69 @@
 package hu.ponte.hr.config;
 
+import hu.ponte.hr.controller.AdmissionInterceptor;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
 @Configuration
 public class MvcConfig implements WebMvcConfigurer {
 
+    /**
+     * {@link ExecutorConfig} instance.
+     */
+    private final ExecutorConfig executorConfig;
+
+    /**
+     * Executor of the upload lane.
+     */
+    private final ThreadPoolTaskExecutor uploadExecutor;
+
+    /**
+     * Executor of the download lane, which fetches the images of exports.
+     */
+    private final ThreadPoolTaskExecutor downloadExecutor;
+
+    /**
+     * Executor of the stream lane, which writes streaming response bodies.
+     */
+    private final ThreadPoolTaskExecutor streamExecutor;
+
+    public MvcConfig(ExecutorConfig executorConfig,
+                     @Qualifier(AppConfig.UPLOAD_EXECUTOR) ThreadPoolTaskExecutor uploadExecutor,
+                     @Qualifier(AppConfig.DOWNLOAD_EXECUTOR) ThreadPoolTaskExecutor downloadExecutor,
+                     @Qualifier(AppConfig.STREAM_EXECUTOR) ThreadPoolTaskExecutor streamExecutor) {
+        this.executorConfig = executorConfig;
+        this.uploadExecutor = uploadExecutor;
+        this.downloadExecutor = downloadExecutor;
+        this.streamExecutor = streamExecutor;
+    }
+
     @Override
     public void addCorsMappings(CorsRegistry registry) {
         registry.addMapping("/**")
                 .allowedOriginPatterns("*")
-                .allowedMethods(HttpMethod.GET.name(), HttpMethod.POST.name())
+                .allowedMethods(HttpMethod.GET.name(), HttpMethod.POST.name(), HttpMethod.PUT.name(), HttpMethod.DELETE.name())
                 .allowCredentials(true);
     }
 
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(streamExecutor);
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new AdmissionInterceptor("upload", uploadExecutor, executorConfig.getUpload()))
+                .addPathPatterns("/api/file/**");
+        registry.addInterceptor(new AdmissionInterceptor("stream", streamExecutor, executorConfig.getStream()))
+                .addPathPatterns("/api/images/preview/**", "/api/images/export");
+        registry.addInterceptor(new AdmissionInterceptor("download", downloadExecutor, executorConfig.getDownload()))
+                .addPathPatterns("/api/images/export");
+    }
+
 }
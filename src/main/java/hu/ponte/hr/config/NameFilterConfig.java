@@ -0,0 +1,32 @@
+package hu.ponte.hr.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Configuration bean for the in-memory filter of the names of the stored images.
+ */
+@Component
+@ConfigurationProperties("name-filter")
+@Getter
+@Setter
+public class NameFilterConfig {
+
+    /**
+     * Number of names the filter is sized for. Beyond it the filter answers "maybe used" more often, which costs a query.
+     */
+    private int expectedNames = 1000000;
+
+    /**
+     * Rate of names reported as maybe used although they are new, at {@link #expectedNames} names.
+     */
+    private double falsePositiveRate = 0.01;
+
+    /**
+     * Number of names read from database at once while the filter is loaded.
+     */
+    private int loadPageSize = 1000;
+
+}
@@ -0,0 +1,24 @@
+package hu.ponte.hr.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Configuration bean for serving image previews.
+ */
+@Component
+@ConfigurationProperties("preview")
+@Getter
+@Setter
+public class PreviewConfig {
+
+    /**
+     * How long clients and shared caches may use a preview without revalidating it.
+     */
+    private Duration cacheMaxAge = Duration.ofHours(1);
+
+}
@@ -0,0 +1,25 @@
+package hu.ponte.hr.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Configuration bean for the downscaled renditions of images.
+ */
+@Component
+@ConfigurationProperties("rendition")
+@Getter
+@Setter
+public class RenditionConfig {
+
+    /**
+     * Max width and height in pixels of the renditions created for each image.
+     */
+    private List<Integer> sizes = new ArrayList<>(List.of(128, 512, 1024));
+
+}
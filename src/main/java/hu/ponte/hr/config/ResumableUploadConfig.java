@@ -0,0 +1,39 @@
+package hu.ponte.hr.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Configuration bean for resumable uploads, sent in chunks through upload sessions.
+ */
+@Component
+@ConfigurationProperties("resumable-upload")
+@Getter
+@Setter
+public class ResumableUploadConfig {
+
+    /**
+     * Directory the chunks of the open sessions are staged in.
+     */
+    private String directory;
+
+    /**
+     * Size of the chunks, only the last chunk of a file may be smaller.
+     */
+    private int chunkSize = 1048576;
+
+    /**
+     * How long a session is kept without receiving a chunk.
+     */
+    private Duration ttl = Duration.ofHours(24);
+
+    /**
+     * How often expired sessions are looked for.
+     */
+    private Duration cleanupInterval = Duration.ofMinutes(10);
+
+}
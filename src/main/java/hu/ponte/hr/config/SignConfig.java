@@ -1,10 +1,15 @@
 package hu.ponte.hr.config;
 
+import hu.ponte.hr.domain.SignatureScheme;
 import lombok.Getter;
 import lombok.Setter;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * Configuration bean for digital signing properties.
  */
@@ -14,19 +19,59 @@ import org.springframework.stereotype.Component;
 @Setter
 public class SignConfig {
 
+    /**
+     * Scheme of new signatures.
+     */
+    private SignatureScheme scheme = SignatureScheme.RSA;
+
     /**
      * Default path of private key in resources folder.
      */
     private String privateKeyPathInResources;
 
     /**
-     * Default key algorithm.
+     * Default path of public key in resources folder.
+     */
+    private String publicKeyPathInResources;
+
+    /**
+     * Max number of cached signature verification results.
+     */
+    private int verificationCacheSize = 10000;
+
+    /**
+     * Locations of the public keys of other schemes, for verifying signatures created before a scheme change.
+     */
+    private Map<SignatureScheme, String> verificationKeys = new HashMap<>();
+
+    /**
+     * Key algorithm, overrides the key algorithm of {@link #scheme} if set.
      */
     private String keyAlgorithm;
 
     /**
-     * Default signature algorithm.
+     * Signature algorithm, overrides the signature algorithm of {@link #scheme} if set.
      */
     private String signatureAlgorithm;
 
+    /**
+     * Minimum time between two checks of the private key file for modification.
+     */
+    private Duration keyReloadCheckInterval = Duration.ofSeconds(30);
+
+    /**
+     * Max number of idle, initialized signature instances kept for reuse.
+     */
+    private int signaturePoolSize = 16;
+
+    /**
+     * Parallelism of batch signing, non-positive value means the number of available processors.
+     */
+    private int batchParallelism;
+
+    /**
+     * Number of images processed and written back to the database together during re-signing.
+     */
+    private int batchSize = 100;
+
 }
@@ -0,0 +1,28 @@
+package hu.ponte.hr.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Configuration bean for streaming response bodies, like previews and exports.
+ * They are written on the stream lane of {@link ExecutorConfig}.
+ */
+@Component
+@ConfigurationProperties("streaming")
+@Getter
+@Setter
+public class StreamingConfig {
+
+    /**
+     * Size of the buffers response bodies are written through, in bytes.
+     */
+    private int bufferSize = 65536;
+
+    /**
+     * Max number of idle buffers kept for reuse.
+     */
+    private int maxPooledBuffers = 32;
+
+}
@@ -0,0 +1,74 @@
+package hu.ponte.hr.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Configuration bean for write-behind uploads through a local journal.
+ */
+@Component
+@ConfigurationProperties("write-behind")
+@Getter
+@Setter
+public class WriteBehindConfig {
+
+    /**
+     * Whether uploads are acknowledged once they are written into the local journal, and stored in the background.
+     */
+    private boolean enabled;
+
+    /**
+     * Directory of the journal segments.
+     */
+    private String directory;
+
+    /**
+     * Size in bytes after which a new journal segment is started.
+     */
+    private long segmentSize = 64 * 1024 * 1024L;
+
+    /**
+     * Whether each journal write is forced to the disk before it is acknowledged.
+     */
+    private boolean fsync = true;
+
+    /**
+     * Number of threads uploading journaled files.
+     */
+    private int drainThreads = 2;
+
+    /**
+     * Delay of the first retry of a failed upload, doubled for each further retry.
+     */
+    private Duration retryDelay = Duration.ofSeconds(1);
+
+    /**
+     * Max delay between retries of a failed upload.
+     */
+    private Duration maxRetryDelay = Duration.ofMinutes(5);
+
+    /**
+     * Number of attempts to mark an uploaded content as stored, its metadata may be saved after it is uploaded.
+     */
+    private int markAttempts = 5;
+
+    /**
+     * Number of attempts to upload a journaled file, after which it is set aside from the journal.
+     */
+    private int uploadAttempts = 20;
+
+    /**
+     * Interval of reconciling the contents left pending with the journal and the storage.
+     */
+    private Duration reconcileInterval = Duration.ofMinutes(10);
+
+    /**
+     * Number of pending contents reconciled in one batch.
+     */
+    private int reconcileBatchSize = 500;
+
+}
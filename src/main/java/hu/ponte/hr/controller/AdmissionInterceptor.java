@@ -0,0 +1,59 @@
+package hu.ponte.hr.controller;
+
+import hu.ponte.hr.config.ExecutorConfig;
+import hu.ponte.hr.exception.exceptions.LaneSaturatedException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Admission control of the requests served by an executor lane. A request is refused with {@link LaneSaturatedException}
+ * before any work is done if all threads of the lane are busy and its queue is filled above
+ * {@link ExecutorConfig.Lane#getAdmissionThreshold()}, so a saturated lane sheds load instead of rejecting tasks midway.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class AdmissionInterceptor implements HandlerInterceptor {
+
+    /**
+     * Name of the lane, used in messages.
+     */
+    private final String name;
+
+    /**
+     * The executor of the lane.
+     */
+    private final ThreadPoolTaskExecutor executor;
+
+    /**
+     * The limits of the lane.
+     */
+    private final ExecutorConfig.Lane lane;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (isSaturated()) {
+            log.debug("Request (uri: {}) is refused, {} lane is saturated.", request.getRequestURI(), name);
+            throw new LaneSaturatedException(String.format("The %s lane is saturated, retry later.", name), lane.getRetryAfter());
+        }
+        return true;
+    }
+
+    /**
+     * Check whether the lane should refuse new requests.
+     *
+     * @return true if all threads are busy and the queue is filled above the admission threshold
+     */
+    public boolean isSaturated() {
+        ThreadPoolExecutor threadPoolExecutor = executor.getThreadPoolExecutor();
+        int queued = threadPoolExecutor.getQueue().size();
+        return threadPoolExecutor.getActiveCount() >= lane.getPoolSize()
+                && queued >= Math.ceil(lane.getQueueCapacity() * lane.getAdmissionThreshold());
+    }
+
+}
@@ -0,0 +1,65 @@
+package hu.ponte.hr.controller;
+
+import hu.ponte.hr.config.ExportConfig;
+import hu.ponte.hr.services.ExportService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Dedicated controller layer for exporting images.
+ */
+@RestController
+@RequestMapping("api/images")
+@RequiredArgsConstructor
+public class ExportController {
+
+    /**
+     * Mimetype of the exported archives.
+     */
+    private static final MediaType APPLICATION_ZIP = MediaType.parseMediaType("application/zip");
+
+    /**
+     * {@link ExportService} instance for building the archives.
+     */
+    private final ExportService exportService;
+
+    /**
+     * {@link ExportConfig} instance.
+     */
+    private final ExportConfig exportConfig;
+
+    /**
+     * Endpoint for downloading the selected images in one ZIP archive. The archive is streamed while it is built,
+     * so the response starts before all images are fetched. If an image could not be fetched, the archive ends early.
+     *
+     * @param exportRequest the selection of the images, all images are exported if it is missing
+     * @param request       the HttpServletRequest object, its async timeout is raised to {@link ExportConfig#getTimeout()}
+     * @return OK with the archive
+     */
+    @PostMapping("export")
+    public ResponseEntity<StreamingResponseBody> export(@RequestBody(required = false) ExportRequest exportRequest,
+                                                        HttpServletRequest request) {
+        ExportRequest selection = exportRequest == null ? new ExportRequest() : exportRequest;
+        StreamingResponseBody body = outputStream -> {
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().setTimeout(exportConfig.getTimeout().toMillis());
+            }
+            exportService.export(selection.getPublicIds(), selection.getMimeType(), outputStream);
+        };
+        return ResponseEntity.ok()
+                .contentType(APPLICATION_ZIP)
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename("images.zip").build().toString())
+                .body(body);
+    }
+
+}
@@ -0,0 +1,28 @@
+package hu.ponte.hr.controller;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * Class for data transfer of the images selected for an export.
+ * Images are selected by {@link #publicIds} if it is given, otherwise by {@link #mimeType}, or all images are selected.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+public class ExportRequest {
+
+    /**
+     * Public ids of the images.
+     */
+    private List<String> publicIds;
+
+    /**
+     * Mimetype of the images.
+     */
+    private String mimeType;
+
+}
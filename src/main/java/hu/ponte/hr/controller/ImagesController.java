@@ -1,21 +1,33 @@
 package hu.ponte.hr.controller;
 
+import hu.ponte.hr.config.PreviewConfig;
+import hu.ponte.hr.services.BufferPool;
 import hu.ponte.hr.services.ImageStore;
+import hu.ponte.hr.services.StoredImage;
+import hu.ponte.hr.services.VerificationService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.servlet.http.HttpServletResponse;
 import javax.validation.constraints.Digits;
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
-import java.io.IOException;
-import java.io.InputStream;
+import javax.validation.constraints.Min;
+import java.io.OutputStream;
 import java.time.Duration;
 import java.util.List;
 
@@ -34,6 +46,21 @@ public class ImagesController {
      */
     private final ImageStore imageStore;
 
+    /**
+     * {@link VerificationService} instance for verifying digital signatures.
+     */
+    private final VerificationService verificationService;
+
+    /**
+     * {@link PreviewConfig} instance.
+     */
+    private final PreviewConfig previewConfig;
+
+    /**
+     * {@link BufferPool} instance for buffering previews.
+     */
+    private final BufferPool bufferPool;
+
     /**
      * Endpoint for listing the metadata for all stored images.
      *
@@ -46,27 +73,151 @@ public class ImagesController {
 
     /**
      * Endpoint for getting a preview for an image by public id.
+     * Conditional requests are checked against the stored content hash (ETag) and upload time (Last-Modified)
+     * before the storage is accessed.
+     * A single byte range requested by the Range header is answered with Partial Content,
+     * other range requests are answered with the whole image.
+     * If a size is requested, the smallest rendition of the image which is at least of that size is served, if any.
+     * The image is written by the streaming executor through a pooled buffer, so the request thread is released
+     * as soon as the headers are decided.
      *
-     * @param id       the public id of the image
-     * @param response the HttpServletResponse object in which the preview will be written
+     * @param id         the public id of the image
+     * @param size       the requested max width and height in pixels, the original image is served if it is missing
+     * @param range      the Range header of the request
+     * @param webRequest the request for checking its conditional headers
+     * @param response   the HttpServletResponse object for setting the caching headers
+     * @return OK or Partial Content with the image, Requested Range Not Satisfiable if the range starts beyond the image,
+     * null if the image is not modified, with the Not Modified status already set
      */
     @GetMapping("preview/{id}")
-    public ResponseEntity<Void> getImage(@PathVariable("id") @Digits(integer = Integer.MAX_VALUE, fraction = 0) String id, HttpServletResponse response) {
+    public ResponseEntity<StreamingResponseBody> getImage(@PathVariable("id") @Digits(integer = Integer.MAX_VALUE, fraction = 0) String id,
+                                                          @RequestParam(value = "size", required = false) @Min(1) Integer size,
+                                                          @RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
+                                                          WebRequest webRequest, HttpServletResponse response) {
         if (id == null) {
             throw new IllegalArgumentException();
         }
-        try (InputStream is = imageStore.download(id);
-             BufferedInputStream bis = new BufferedInputStream(is);
-             BufferedOutputStream bos = new BufferedOutputStream(response.getOutputStream())) {
-            byte[] buffer = new byte[4096];
-            int lengthRead;
-            while ((lengthRead = bis.read(buffer)) > 0) {
-                bos.write(buffer, 0, lengthRead);
+        StoredImage image = size == null ? imageStore.find(id) : imageStore.find(id, size);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.maxAge(previewConfig.getCacheMaxAge()).cachePublic().getHeaderValue());
+        if (isNotModified(image, webRequest)) {
+            return null;
+        }
+        long length = image.getSize();
+        HttpRange httpRange = parseRange(range);
+        if (httpRange == null) {
+            return preview(HttpStatus.OK, image, length)
+                    .body(buffered(outputStream -> imageStore.download(image, outputStream)));
+        }
+        long start = httpRange.getRangeStart(length);
+        if (start >= length) {
+            return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                    .header(HttpHeaders.CONTENT_RANGE, "bytes */" + length)
+                    .build();
+        }
+        long end = httpRange.getRangeEnd(length);
+        return preview(HttpStatus.PARTIAL_CONTENT, image, end - start + 1)
+                .header(HttpHeaders.CONTENT_RANGE, String.format("bytes %d-%d/%d", start, end, length))
+                .body(buffered(outputStream -> imageStore.download(image, start, end - start + 1, outputStream)));
+    }
+
+    /**
+     * Start a preview response with the headers describing its content.
+     * Browsers are told not to sniff the type, so the content is never rendered as anything but the stored type.
+     *
+     * @param status        the status of the response
+     * @param image         the image to be written
+     * @param contentLength the number of bytes to be written
+     * @return the builder of the response
+     */
+    private ResponseEntity.BodyBuilder preview(HttpStatus status, StoredImage image, long contentLength) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.status(status)
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                .header("X-Content-Type-Options", "nosniff")
+                .contentLength(contentLength);
+        if (image.getMimeType() != null) {
+            builder.contentType(mediaType(image.getMimeType()));
+        }
+        return builder;
+    }
+
+    /**
+     * Parse the stored type of an image. Types which are malformed or not image types, like the ones declared by clients
+     * of earlier uploads, are served as {@link MediaType#APPLICATION_OCTET_STREAM}.
+     *
+     * @param mimeType the stored type
+     * @return the type of the response
+     */
+    private static MediaType mediaType(String mimeType) {
+        try {
+            MediaType mediaType = MediaType.parseMediaType(mimeType);
+            if ("image".equals(mediaType.getType())) {
+                return mediaType;
             }
-        } catch (IOException e) {
-            log.error(e.getMessage());
+        } catch (InvalidMediaTypeException ex) {
+            log.debug("Stored type ({}) is malformed.", mimeType);
         }
-        return ResponseEntity.ok().build();
+        return MediaType.APPLICATION_OCTET_STREAM;
+    }
+
+    /**
+     * Write a response body through a pooled buffer.
+     *
+     * @param body the response body
+     * @return the buffered response body
+     */
+    private StreamingResponseBody buffered(StreamingResponseBody body) {
+        return outputStream -> {
+            try (OutputStream bufferedStream = bufferPool.buffer(outputStream)) {
+                body.writeTo(bufferedStream);
+            }
+        };
+    }
+
+    /**
+     * Check the conditional headers of a request against the stored metadata of an image.
+     * The ETag and Last-Modified headers of the response are set as well.
+     *
+     * @param image      the requested image
+     * @param webRequest the request
+     * @return true, if the client has the current version of the image
+     */
+    private boolean isNotModified(StoredImage image, WebRequest webRequest) {
+        long lastModified = image.getCreatedAt() == null ? -1 : image.getCreatedAt().toEpochMilli();
+        if (image.getContentHash() != null) {
+            return webRequest.checkNotModified("\"" + image.getContentHash() + "\"", lastModified);
+        }
+        return lastModified >= 0 && webRequest.checkNotModified(lastModified);
+    }
+
+    /**
+     * Parse the Range header of a request. Malformed headers and multiple ranges are ignored,
+     * as the whole image is a valid answer for them.
+     *
+     * @param range the Range header, may be null
+     * @return the single requested range, or null
+     */
+    private HttpRange parseRange(String range) {
+        if (range == null) {
+            return null;
+        }
+        try {
+            List<HttpRange> ranges = HttpRange.parseRanges(range);
+            return ranges.size() == 1 ? ranges.get(0) : null;
+        } catch (IllegalArgumentException ex) {
+            log.debug("Ignoring malformed Range header: {}", range);
+            return null;
+        }
+    }
+
+    /**
+     * Endpoint for verifying the stored digital signature of an image by public id.
+     *
+     * @param id the public id of the image
+     * @return the result of the verification
+     */
+    @GetMapping("verify/{id}")
+    public ResponseEntity<SignatureVerification> verifyImage(@PathVariable("id") @Digits(integer = Integer.MAX_VALUE, fraction = 0) String id) {
+        return ResponseEntity.ok(new SignatureVerification(id, verificationService.verify(id)));
     }
 
 }
@@ -0,0 +1,34 @@
+package hu.ponte.hr.controller;
+
+import hu.ponte.hr.services.ResignReport;
+import hu.ponte.hr.services.ResignService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+/**
+ * Management endpoint for re-signing all stored images after a key rotation.
+ * It is not exposed over the web unless it is added to {@code management.endpoints.web.exposure.include}.
+ */
+@Component
+@Endpoint(id = "resign")
+@RequiredArgsConstructor
+public class ResignEndpoint {
+
+    /**
+     * {@link ResignService} instance.
+     */
+    private final ResignService resignService;
+
+    /**
+     * Re-sign all stored images.
+     *
+     * @return the summary of the run
+     */
+    @WriteOperation
+    public ResignReport resign() {
+        return resignService.resignAll();
+    }
+
+}
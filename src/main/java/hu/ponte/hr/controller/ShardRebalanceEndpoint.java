@@ -0,0 +1,34 @@
+package hu.ponte.hr.controller;
+
+import hu.ponte.hr.services.storagehandler.RebalanceReport;
+import hu.ponte.hr.services.storagehandler.ShardRouter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+/**
+ * Management endpoint for moving stored objects to their shards after the S3 shards are changed.
+ * It is not exposed over the web unless it is added to {@code management.endpoints.web.exposure.include}.
+ */
+@Component
+@Endpoint(id = "rebalance")
+@RequiredArgsConstructor
+public class ShardRebalanceEndpoint {
+
+    /**
+     * {@link ShardRouter} instance.
+     */
+    private final ShardRouter shardRouter;
+
+    /**
+     * Move every object whose shard has changed.
+     *
+     * @return the summary of the run
+     */
+    @WriteOperation
+    public RebalanceReport rebalance() {
+        return shardRouter.rebalance();
+    }
+
+}
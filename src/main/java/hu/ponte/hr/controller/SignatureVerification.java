@@ -0,0 +1,29 @@
+package hu.ponte.hr.controller;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Metadata class for data transfer of signature verification results.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class SignatureVerification {
+
+    /**
+     * Public id of image.
+     */
+    @JsonProperty("id")
+    private String publicId;
+
+    /**
+     * Whether the stored digital signature belongs to the stored content.
+     */
+    private boolean valid;
+
+}
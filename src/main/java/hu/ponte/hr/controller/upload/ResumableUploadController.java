@@ -0,0 +1,96 @@
+package hu.ponte.hr.controller.upload;
+
+import hu.ponte.hr.services.ResumableUploadService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Dedicated controller layer for uploading an image in chunks through a resumable upload session.
+ */
+@RestController
+@RequestMapping("api/file/sessions")
+@RequiredArgsConstructor
+public class ResumableUploadController {
+
+    /**
+     * {@link ResumableUploadService} instance.
+     */
+    private final ResumableUploadService resumableUploadService;
+
+    /**
+     * Endpoint for opening an upload session.
+     *
+     * @param name the name of the image
+     * @param size the size of the image
+     * @return CREATED with the state of the session, which tells the size and the number of the chunks to be sent
+     */
+    @PostMapping
+    public ResponseEntity<UploadSessionStatus> createSession(@RequestParam("name") String name, @RequestParam("size") long size) {
+        return ResponseEntity.status(HttpStatus.CREATED).body(resumableUploadService.create(name, size));
+    }
+
+    /**
+     * Endpoint for querying the received chunks of an upload session, to resume it.
+     *
+     * @param id the id of the session
+     * @return OK with the state of the session
+     */
+    @GetMapping("/{id}")
+    public ResponseEntity<UploadSessionStatus> getSession(@PathVariable("id") String id) {
+        return ResponseEntity.ok(resumableUploadService.status(id));
+    }
+
+    /**
+     * Endpoint for sending a chunk of an upload session as the raw request body.
+     * Chunks may be sent in any order and in parallel.
+     *
+     * @param id      the id of the session
+     * @param index   the index of the chunk, starting from zero
+     * @param request the request with the content of the chunk
+     * @return OK with the state of the session
+     * @throws IOException if the request body could not be opened
+     */
+    @PutMapping("/{id}/chunks/{index}")
+    public ResponseEntity<UploadSessionStatus> uploadChunk(@PathVariable("id") String id, @PathVariable("index") int index,
+                                                           HttpServletRequest request) throws IOException {
+        return ResponseEntity.ok(resumableUploadService.writeChunk(id, index, request.getInputStream()));
+    }
+
+    /**
+     * Endpoint for completing an upload session, once all of its chunks are sent.
+     * The request thread is released while the image is uploaded.
+     *
+     * @param id the id of the session
+     * @return OK, if the uploading process (remote storage, digital signing and database backed metadata binding) was successful
+     */
+    @PostMapping("/{id}/complete")
+    public CompletableFuture<ResponseEntity<Void>> completeSession(@PathVariable("id") String id) {
+        return resumableUploadService.complete(id).thenApply(saved -> ResponseEntity.ok().build());
+    }
+
+    /**
+     * Endpoint for discarding an upload session with its chunks.
+     *
+     * @param id the id of the session
+     * @return NO_CONTENT
+     */
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> abortSession(@PathVariable("id") String id) {
+        resumableUploadService.abort(id);
+        return ResponseEntity.noContent().build();
+    }
+
+}
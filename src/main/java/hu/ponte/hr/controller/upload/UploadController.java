@@ -1,8 +1,16 @@
 package hu.ponte.hr.controller.upload;
 
+import hu.ponte.hr.exception.exceptions.MultipartFileException;
+import hu.ponte.hr.services.BatchUploadService;
 import hu.ponte.hr.services.ImageStore;
 import hu.ponte.hr.validation.ImageValidator;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.fileupload.FileItemIterator;
+import org.apache.commons.fileupload.FileItemStream;
+import org.apache.commons.fileupload.FileUploadException;
+import org.apache.commons.fileupload.servlet.ServletFileUpload;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -10,14 +18,33 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.servlet.http.HttpServletRequest;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Dedicated controller layer for uploading an image.
  */
+@Slf4j
 @RestController
 @RequestMapping("api/file")
 @RequiredArgsConstructor
 public class UploadController {
 
+    /**
+     * Name of the part holding the image.
+     */
+    private static final String FILE_PART = "file";
+
+    /**
+     * Max allowed size of files to be uploaded.
+     */
+    @Value("${max-size}")
+    private Long maxSize;
+
     /**
      * {@link ImageStore} instance.
      */
@@ -28,17 +55,75 @@ public class UploadController {
      */
     private final ImageValidator imageValidator;
 
+    /**
+     * {@link BatchUploadService} instance.
+     */
+    private final BatchUploadService batchUploadService;
+
     /**
      * Endpoint for uploading an image.
+     * The request thread is released while the image is signed and uploaded.
      *
      * @param file the MultipartFile object which represents the image
      * @return OK, if the uploading process (remote storage, digital signing and database backed metadata binding) was successful
      */
     @PostMapping("/post")
-    public ResponseEntity<Void> handleFormUpload(@RequestParam("file") MultipartFile file) {
-        imageValidator.validate(file);
-        imageStore.upload(file);
-        return ResponseEntity.ok().build();
+    public CompletableFuture<ResponseEntity<Void>> handleFormUpload(@RequestParam("file") MultipartFile file) {
+        String mimeType = imageValidator.validate(file);
+        return imageStore.upload(file, mimeType).thenApply(saved -> ResponseEntity.ok().build());
+    }
+
+    /**
+     * Endpoint for uploading an image by streaming the multipart request body, without buffering the whole file.
+     * The type of the image is detected from its first bytes, then it is signed and hashed while it is read, in a single pass.
+     * The bytes up to the dimensions of the image are buffered for validation, at most {@link ImageValidator#STREAM_HEADER_SIZE} per upload.
+     * The request thread is released while the image is uploaded.
+     *
+     * @param request the multipart request with a {@code file} part
+     * @return OK, if the uploading process (remote storage, digital signing and database backed metadata binding) was successful
+     */
+    @PostMapping("/stream")
+    public CompletableFuture<ResponseEntity<Void>> handleStreamingUpload(HttpServletRequest request) {
+        if (!ServletFileUpload.isMultipartContent(request)) {
+            String msg = "Request is not a multipart request.";
+            log.error(msg);
+            throw new MultipartFileException(msg);
+        }
+        ServletFileUpload upload = new ServletFileUpload();
+        upload.setFileSizeMax(maxSize);
+        try {
+            FileItemIterator items = upload.getItemIterator(request);
+            while (items.hasNext()) {
+                FileItemStream item = items.next();
+                if (item.isFormField() || !FILE_PART.equals(item.getFieldName())) {
+                    continue;
+                }
+                try (InputStream content = new BufferedInputStream(item.openStream(), ImageValidator.HEADER_SIZE)) {
+                    String mimeType = imageValidator.validate(item.getName(), content);
+                    return imageStore.upload(item.getName(), mimeType, content).thenApply(saved -> ResponseEntity.ok().build());
+                }
+            }
+        } catch (FileUploadException | IOException ex) {
+            String msg = String.format("Failed to read multipart request: %s", ex.getMessage());
+            log.error(msg, ex);
+            throw new MultipartFileException(msg);
+        }
+        String msg = String.format("Request has no %s part.", FILE_PART);
+        log.error(msg);
+        throw new MultipartFileException(msg);
+    }
+
+    /**
+     * Endpoint for uploading many images in a single request.
+     * The images are validated, signed and uploaded concurrently, and their metadata is saved at once.
+     * The request thread is released while the images are uploaded.
+     *
+     * @param files the MultipartFile objects which represent the images
+     * @return OK with the result of each image in the order of {@code files}, an image which failed does not fail the others
+     */
+    @PostMapping("/batch")
+    public CompletableFuture<List<UploadResult>> handleBatchUpload(@RequestParam("files") List<MultipartFile> files) {
+        return batchUploadService.upload(files);
     }
 
 }
@@ -0,0 +1,41 @@
+package hu.ponte.hr.controller.upload;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Outcome of uploading a single file of a batch.
+ */
+@Getter
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public class UploadResult {
+
+    /**
+     * The name of the file.
+     */
+    private final String name;
+
+    /**
+     * The public id of the saved image, null if the upload failed.
+     */
+    private final String id;
+
+    /**
+     * The reason of the failure, null if the upload succeeded.
+     */
+    private final String error;
+
+    public static UploadResult success(String name, String id) {
+        return new UploadResult(name, id, null);
+    }
+
+    public static UploadResult failure(String name, String error) {
+        return new UploadResult(name, null, error);
+    }
+
+    public boolean isSuccessful() {
+        return error == null;
+    }
+
+}
@@ -0,0 +1,51 @@
+package hu.ponte.hr.controller.upload;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * State of a resumable upload session, returned to the client to tell which chunks are still to be sent.
+ */
+@Getter
+@RequiredArgsConstructor
+public class UploadSessionStatus {
+
+    /**
+     * Id of the session.
+     */
+    private final String id;
+
+    /**
+     * The name of the file.
+     */
+    private final String name;
+
+    /**
+     * The size of the file.
+     */
+    private final long size;
+
+    /**
+     * Size of the chunks, only the last chunk may be smaller.
+     */
+    private final int chunkSize;
+
+    /**
+     * Number of chunks of the file, numbered from zero.
+     */
+    private final int chunkCount;
+
+    /**
+     * Offsets of the received chunks in ascending order.
+     */
+    private final List<Long> receivedOffsets;
+
+    /**
+     * Time the session expires at, unless it receives a chunk before.
+     */
+    private final Instant expiresAt;
+
+}
@@ -5,22 +5,41 @@ import lombok.NoArgsConstructor;
 import lombok.Setter;
 
 import javax.persistence.*;
+import java.time.Instant;
 
 /**
  * Domain class for mapping database backed image metadata.
  */
 @Entity
-@Table(name = "image")
+@Table(name = "image", indexes = @Index(name = "idx_image_content_hash", columnList = "content_hash"),
+        uniqueConstraints = @UniqueConstraint(name = Image.NAME_CONSTRAINT, columnNames = "name"))
 @NoArgsConstructor
 @Getter
 @Setter
 public class Image {
 
     /**
-     * Unique id of image.
+     * Name of the unique constraint of the name of images.
+     */
+    public static final String NAME_CONSTRAINT = "uk_image_name";
+
+    /**
+     * Name of the sequence of image ids.
+     */
+    public static final String ID_SEQUENCE = "image_seq";
+
+    /**
+     * Number of image ids allocated from {@link #ID_SEQUENCE} at once.
+     */
+    public static final int ID_ALLOCATION_SIZE = 50;
+
+    /**
+     * Unique id of image. It is taken from a pooled sequence, so the ids of many images are known before they are inserted,
+     * which lets their inserts be batched.
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = ID_SEQUENCE)
+    @SequenceGenerator(name = ID_SEQUENCE, sequenceName = ID_SEQUENCE, allocationSize = ID_ALLOCATION_SIZE)
     @Column(name = "id")
     private Long id;
 
@@ -54,4 +73,34 @@ public class Image {
     @Column(columnDefinition = "TEXT", name = "digital_sign")
     private String digitalSign;
 
+    /**
+     * Scheme of the digital signature, null for signatures created before schemes were introduced (RSA).
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(name = "signature_scheme")
+    private SignatureScheme signatureScheme;
+
+    /**
+     * Hex encoded SHA-256 hash of the content, null for images uploaded before hashes were introduced.
+     * The content is stored by this key, see {@link StoredObject}.
+     */
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
+    /**
+     * Time of upload, null for images uploaded before it was recorded.
+     */
+    @Column(name = "created_at")
+    private Instant createdAt;
+
+    /**
+     * Get the key by which the content is stored: the content hash, or the name for images uploaded
+     * before contents were stored by their hash.
+     *
+     * @return the storage key
+     */
+    public String getStorageKey() {
+        return contentHash != null ? contentHash : name;
+    }
+
 }
@@ -0,0 +1,57 @@
+package hu.ponte.hr.domain;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import javax.persistence.*;
+
+/**
+ * Domain class for mapping a downscaled rendition of a stored content.
+ */
+@Entity
+@Table(name = "image_rendition", uniqueConstraints = @UniqueConstraint(columnNames = {"source_key", "max_size"}))
+@NoArgsConstructor
+@Getter
+@Setter
+public class ImageRendition {
+
+    /**
+     * Unique id of rendition.
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id")
+    private Long id;
+
+    /**
+     * Storage key of the original content.
+     */
+    @Column(name = "source_key")
+    private String sourceKey;
+
+    /**
+     * Max width and height of rendition in pixels.
+     */
+    @Column(name = "max_size")
+    private Integer maxSize;
+
+    /**
+     * Storage key of rendition.
+     */
+    @Column(name = "storage_key")
+    private String storageKey;
+
+    /**
+     * Mimetype of rendition.
+     */
+    @Column(name = "myme_type")
+    private String mimeType;
+
+    /**
+     * Size of rendition in bytes.
+     */
+    @Column(name = "size")
+    private Long size;
+
+}
@@ -0,0 +1,45 @@
+package hu.ponte.hr.domain;
+
+import java.time.Instant;
+
+/**
+ * Read-only projection of the {@link Image} columns needed to fetch its content.
+ * Projections are not managed by the persistence context, so reading many of them does not grow it.
+ */
+public interface ImageSummary {
+
+    /**
+     * @return the unique id of image
+     */
+    Long getId();
+
+    /**
+     * @return the public id of image
+     */
+    String getPublicId();
+
+    /**
+     * @return the name of image
+     */
+    String getName();
+
+    /**
+     * @return the hex encoded SHA-256 hash of the content, null for images stored before content addressing
+     */
+    String getContentHash();
+
+    /**
+     * @return the time of the upload
+     */
+    Instant getCreatedAt();
+
+    /**
+     * Get the key under which the content of the image is stored, see {@link Image#getStorageKey()}.
+     *
+     * @return the storage key
+     */
+    default String getStorageKey() {
+        return getContentHash() != null ? getContentHash() : getName();
+    }
+
+}
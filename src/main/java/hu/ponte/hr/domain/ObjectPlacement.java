@@ -0,0 +1,37 @@
+package hu.ponte.hr.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * Domain class for mapping the shard a stored object is placed in, so its location stays stable when shards change.
+ */
+@Entity
+@Table(name = "object_placement")
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class ObjectPlacement {
+
+    /**
+     * Storage key of the object.
+     */
+    @Id
+    @Column(name = "storage_key")
+    private String storageKey;
+
+    /**
+     * The shard of the object, a bucket name optionally followed by a key prefix.
+     */
+    @Column(name = "shard")
+    private String shard;
+
+}
@@ -0,0 +1,49 @@
+package hu.ponte.hr.domain;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Supported digital signature schemes.
+ * {@link #ED25519} requires a Java 15 or newer runtime.
+ */
+@Getter
+@RequiredArgsConstructor
+public enum SignatureScheme {
+
+    /**
+     * RSA with SHA-256, the scheme of signatures stored without a scheme tag.
+     */
+    RSA("RSA", "SHA256withRSA"),
+
+    /**
+     * ECDSA on the NIST P-256 curve with SHA-256.
+     */
+    ECDSA_P256("EC", "SHA256withECDSA"),
+
+    /**
+     * EdDSA on Curve25519.
+     */
+    ED25519("Ed25519", "Ed25519");
+
+    /**
+     * Algorithm name of the keys for {@link java.security.KeyFactory}.
+     */
+    private final String keyAlgorithm;
+
+    /**
+     * Algorithm name for {@link java.security.Signature}.
+     */
+    private final String signatureAlgorithm;
+
+    /**
+     * Get the scheme of a stored signature.
+     *
+     * @param scheme the stored scheme tag, may be null
+     * @return the scheme, {@link #RSA} for untagged signatures
+     */
+    public static SignatureScheme orDefault(SignatureScheme scheme) {
+        return scheme == null ? RSA : scheme;
+    }
+
+}
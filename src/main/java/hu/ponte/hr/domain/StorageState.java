@@ -0,0 +1,18 @@
+package hu.ponte.hr.domain;
+
+/**
+ * Storage states of a stored content.
+ */
+public enum StorageState {
+
+    /**
+     * The content is accepted into the local upload journal and waits for being stored.
+     */
+    PENDING,
+
+    /**
+     * The content is stored in the storage.
+     */
+    STORED
+
+}
@@ -0,0 +1,87 @@
+package hu.ponte.hr.domain;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.domain.Persistable;
+
+import javax.persistence.*;
+import java.time.Instant;
+
+/**
+ * Domain class for mapping a stored content, shared by the images with the same content hash.
+ */
+@Entity
+@Table(name = "stored_object")
+@NoArgsConstructor
+@Getter
+@Setter
+public class StoredObject implements Persistable<String> {
+
+    /**
+     * Hex encoded SHA-256 hash of the content, the content is stored by this key.
+     */
+    @Id
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
+    /**
+     * Size of the content in bytes.
+     */
+    @Column(name = "size")
+    private Long size;
+
+    /**
+     * Number of saved images referring to the content. A content with no reference is not used by any image,
+     * because saving the image it was uploaded for has failed.
+     */
+    @Column(name = "reference_count")
+    private Long referenceCount;
+
+    /**
+     * Storage state of the content, null for contents stored before write-behind uploads.
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(name = "state", length = 16)
+    private StorageState state;
+
+    /**
+     * Time of the first upload of the content.
+     */
+    @Column(name = "created_at")
+    private Instant createdAt;
+
+    /**
+     * Whether the instance has not been persisted yet, so saving it inserts instead of merging.
+     */
+    @Transient
+    private boolean newObject = true;
+
+    public StoredObject(String contentHash, long size, StorageState state) {
+        this.contentHash = contentHash;
+        this.size = size;
+        this.state = state;
+        this.referenceCount = 0L;
+        this.createdAt = Instant.now();
+    }
+
+    @Override
+    public String getId() {
+        return contentHash;
+    }
+
+    @Override
+    public boolean isNew() {
+        return newObject;
+    }
+
+    /**
+     * Mark the instance as persisted.
+     */
+    @PostLoad
+    @PostPersist
+    void markPersisted() {
+        newObject = false;
+    }
+
+}
@@ -1,9 +1,12 @@
 package hu.ponte.hr.exception;
 
 import hu.ponte.hr.exception.exceptions.CustomSignatureException;
+import hu.ponte.hr.exception.exceptions.LaneSaturatedException;
 import hu.ponte.hr.exception.exceptions.MultipartFileException;
 import hu.ponte.hr.exception.exceptions.StorageException;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -13,6 +16,7 @@ import org.springframework.web.multipart.MaxUploadSizeExceededException;
 
 import javax.persistence.EntityNotFoundException;
 import javax.validation.ConstraintViolationException;
+import java.time.Duration;
 
 /**
  * Global exception handler class.
@@ -21,6 +25,11 @@ import javax.validation.ConstraintViolationException;
 @Slf4j
 public class GlobalExceptionHandler {
 
+    /**
+     * Time after which clients are asked to retry if a task of their request was rejected by a full executor.
+     */
+    private static final Duration DEFAULT_RETRY_AFTER = Duration.ofSeconds(1);
+
     @ExceptionHandler(javax.validation.ConstraintViolationException.class)
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     ResponseEntity<ApiError> handleConstraintViolationException(ConstraintViolationException ex) {
@@ -59,6 +68,17 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>(body, status);
     }
 
+    @ExceptionHandler(LaneSaturatedException.class)
+    public ResponseEntity<ApiError> handleLaneSaturatedException(LaneSaturatedException ex) {
+        return tooManyRequests(ex.getMessage(), ex.getRetryAfter());
+    }
+
+    @ExceptionHandler(TaskRejectedException.class)
+    public ResponseEntity<ApiError> handleTaskRejectedException(TaskRejectedException ex) {
+        log.warn(ex.getMessage());
+        return tooManyRequests("The server is busy, retry later.", DEFAULT_RETRY_AFTER);
+    }
+
     @ExceptionHandler(EntityNotFoundException.class)
     public ResponseEntity<ApiError> handleEntityNotFoundException(EntityNotFoundException ex) {
         HttpStatus status = HttpStatus.NOT_FOUND;
@@ -73,5 +93,17 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>(body, status);
     }
 
-}
+    /**
+     * Create a 429 Too Many Requests response.
+     *
+     * @param details    the details of the error
+     * @param retryAfter the time after which the client should retry
+     * @return the response with Retry-After header
+     */
+    private static ResponseEntity<ApiError> tooManyRequests(String details, Duration retryAfter) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, retryAfter.toSeconds())))
+                .body(new ApiError("TOO_MANY_REQUESTS", details));
+    }
 
+}
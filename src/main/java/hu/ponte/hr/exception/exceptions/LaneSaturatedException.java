@@ -0,0 +1,23 @@
+package hu.ponte.hr.exception.exceptions;
+
+import lombok.Getter;
+
+import java.time.Duration;
+
+/**
+ * Exception for requests refused because the executor lane serving them is saturated.
+ */
+@Getter
+public class LaneSaturatedException extends RuntimeException {
+
+    /**
+     * Time after which the client should retry.
+     */
+    private final Duration retryAfter;
+
+    public LaneSaturatedException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+}
@@ -0,0 +1,56 @@
+package hu.ponte.hr.repository;
+
+import hu.ponte.hr.domain.Image;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+
+/**
+ * Keeps the sequence of image ids ahead of the existing ids on startup. Images inserted before ids were taken from
+ * the sequence got their ids from an identity column, so a newly created sequence would hand out the same ids again.
+ * It runs after the schema is updated, before any image is inserted.
+ */
+@Slf4j
+@Component
+@DependsOn("entityManagerFactory")
+@RequiredArgsConstructor
+public class ImageIdSequence {
+
+    /**
+     * {@link JdbcTemplate} instance.
+     */
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Move the sequence past the highest existing image id. Databases with native sequences restart the sequence,
+     * others emulate it by a table, whose value is raised.
+     */
+    @PostConstruct
+    public void init() {
+        Long maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM image", Long.class);
+        if (maxId == null) {
+            return;
+        }
+        long next = maxId + 1 + Image.ID_ALLOCATION_SIZE;
+        String database = jdbcTemplate.execute((ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+        if ("H2".equals(database)) {
+            jdbcTemplate.execute(String.format("ALTER SEQUENCE %s RESTART WITH %d", Image.ID_SEQUENCE, next));
+        } else if ("MySQL".equals(database)) {
+            String table = Image.ID_SEQUENCE;
+            if (jdbcTemplate.update(String.format("UPDATE %s SET next_val = ? WHERE next_val < ?", table), next, next) == 0
+                    && jdbcTemplate.queryForObject(String.format("SELECT COUNT(*) FROM %s", table), Integer.class) == 0) {
+                jdbcTemplate.update(String.format("INSERT INTO %s (next_val) VALUES (?)", table), next);
+            }
+        } else {
+            log.warn("Image id sequence is not checked on {}, it has to be ahead of the existing ids ({}).", database, maxId);
+            return;
+        }
+        log.info("Image id sequence is moved past the existing ids (max: {}).", maxId);
+    }
+
+}
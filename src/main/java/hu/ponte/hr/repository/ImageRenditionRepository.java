@@ -0,0 +1,24 @@
+package hu.ponte.hr.repository;
+
+import hu.ponte.hr.domain.ImageRendition;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+/**
+ * Repository layer for database backed rendition metadata retrieving.
+ */
+public interface ImageRenditionRepository extends JpaRepository<ImageRendition, Long> {
+
+    /**
+     * Retrieve the renditions of a stored content, smallest first.
+     *
+     * @param sourceKey the storage key of the content
+     * @return the list of found ImageRendition objects
+     */
+    @Query("SELECT r FROM ImageRendition r WHERE r.sourceKey = :sourceKey ORDER BY r.maxSize")
+    List<ImageRendition> findBySourceKey(@Param("sourceKey") String sourceKey);
+
+}
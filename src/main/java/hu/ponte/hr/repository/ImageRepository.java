@@ -1,10 +1,14 @@
 package hu.ponte.hr.repository;
 
 import hu.ponte.hr.domain.Image;
+import hu.ponte.hr.domain.ImageSummary;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -30,4 +34,45 @@ public interface ImageRepository extends JpaRepository<Image, Long> {
     @Query("SELECT i FROM Image i WHERE i.name = :name")
     Optional<Image> findByName(@Param("name") String name);
 
+    /**
+     * Check whether an image with a given name is stored, using the unique index of the name without loading the image.
+     *
+     * @param name the name
+     * @return true if the name is used
+     */
+    @Query("SELECT COUNT(i) > 0 FROM Image i WHERE i.name = :name")
+    boolean existsByName(@Param("name") String name);
+
+    /**
+     * Retrieve the Image objects which follow a given id in id order.
+     *
+     * @param id       the last id of the previous page
+     * @param pageable the size of the page
+     * @return the list of found Image objects
+     */
+    @Query("SELECT i FROM Image i WHERE i.id > :id ORDER BY i.id")
+    List<Image> findNextPage(@Param("id") Long id, Pageable pageable);
+
+    /**
+     * Retrieve the summaries of the images which follow a given id in id order, optionally having a given mimetype.
+     *
+     * @param id       the last id of the previous page
+     * @param mimeType the mimetype, or null for all images
+     * @param pageable the size of the page
+     * @return the list of found ImageSummary objects
+     */
+    @Query("SELECT i.id AS id, i.publicId AS publicId, i.name AS name, i.contentHash AS contentHash, i.createdAt AS createdAt "
+            + "FROM Image i WHERE i.id > :id AND (:mimeType IS NULL OR i.mimeType = :mimeType) ORDER BY i.id")
+    List<ImageSummary> findNextSummaryPage(@Param("id") Long id, @Param("mimeType") String mimeType, Pageable pageable);
+
+    /**
+     * Retrieve the summaries of the images with the given public ids in id order.
+     *
+     * @param publicIds the public ids
+     * @return the list of found ImageSummary objects
+     */
+    @Query("SELECT i.id AS id, i.publicId AS publicId, i.name AS name, i.contentHash AS contentHash, i.createdAt AS createdAt "
+            + "FROM Image i WHERE i.publicId IN :publicIds ORDER BY i.id")
+    List<ImageSummary> findSummariesByPublicIds(@Param("publicIds") Collection<String> publicIds);
+
 }
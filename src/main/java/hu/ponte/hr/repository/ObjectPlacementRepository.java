@@ -0,0 +1,26 @@
+package hu.ponte.hr.repository;
+
+import hu.ponte.hr.domain.ObjectPlacement;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+/**
+ * Repository layer for the shard placement of stored objects.
+ */
+public interface ObjectPlacementRepository extends JpaRepository<ObjectPlacement, String> {
+
+    /**
+     * Retrieve the ObjectPlacement objects which follow a given storage key in key order.
+     *
+     * @param storageKey the last storage key of the previous page
+     * @param pageable   the size of the page
+     * @return the list of found ObjectPlacement objects
+     */
+    @Query("SELECT p FROM ObjectPlacement p WHERE p.storageKey > :storageKey ORDER BY p.storageKey")
+    List<ObjectPlacement> findNextPage(@Param("storageKey") String storageKey, Pageable pageable);
+
+}
@@ -0,0 +1,62 @@
+package hu.ponte.hr.repository;
+
+import hu.ponte.hr.domain.StoredObject;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * Repository layer for reference counting of stored contents.
+ */
+public interface StoredObjectRepository extends JpaRepository<StoredObject, String> {
+
+    /**
+     * Add a reference to a stored content in a single update, so concurrent uploads do not lose references.
+     *
+     * @param contentHash the hash of the content
+     * @return 1 if the content is stored, 0 otherwise
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE StoredObject o SET o.referenceCount = o.referenceCount + 1 WHERE o.contentHash = :contentHash")
+    int addReference(@Param("contentHash") String contentHash);
+
+    /**
+     * Release a reference to a stored content in a single update, after the image referring to it could not be saved.
+     *
+     * @param contentHash the hash of the content
+     * @return 1 if the content is stored and referenced, 0 otherwise
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE StoredObject o SET o.referenceCount = o.referenceCount - 1 WHERE o.contentHash = :contentHash AND o.referenceCount > 0")
+    int releaseReference(@Param("contentHash") String contentHash);
+
+    /**
+     * Mark a content as stored in the storage, after it was uploaded from the local upload journal.
+     *
+     * @param contentHash the hash of the content
+     * @return 1 if the content is known, 0 otherwise
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE StoredObject o SET o.state = hu.ponte.hr.domain.StorageState.STORED WHERE o.contentHash = :contentHash")
+    int markStored(@Param("contentHash") String contentHash);
+
+    /**
+     * Retrieve the hashes of the pending contents which follow a given hash in hash order.
+     *
+     * @param contentHash the last hash of the previous page
+     * @param pageable    the size of the page
+     * @return the list of found hashes
+     */
+    @Query("SELECT o.contentHash FROM StoredObject o WHERE o.state = hu.ponte.hr.domain.StorageState.PENDING"
+            + " AND o.contentHash > :contentHash ORDER BY o.contentHash")
+    List<String> findNextPendingPage(@Param("contentHash") String contentHash, Pageable pageable);
+
+}
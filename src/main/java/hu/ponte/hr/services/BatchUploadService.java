@@ -0,0 +1,252 @@
+package hu.ponte.hr.services;
+
+import hu.ponte.hr.config.AppConfig;
+import hu.ponte.hr.config.BatchUploadConfig;
+import hu.ponte.hr.controller.upload.UploadResult;
+import hu.ponte.hr.domain.Image;
+import hu.ponte.hr.exception.exceptions.MultipartFileException;
+import hu.ponte.hr.validation.ImageValidator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Service class for uploading many images in a single request.
+ */
+@Service
+@Slf4j
+public class BatchUploadService {
+
+    /**
+     * {@link ImageStore} instance.
+     */
+    private final ImageStore imageStore;
+
+    /**
+     * {@link ImageValidator} instance.
+     */
+    private final ImageValidator imageValidator;
+
+    /**
+     * {@link BatchUploadConfig} instance.
+     */
+    private final BatchUploadConfig batchUploadConfig;
+
+    /**
+     * Executor of the validation of the files, the upload lane.
+     */
+    private final Executor executor;
+
+    public BatchUploadService(ImageStore imageStore, ImageValidator imageValidator, BatchUploadConfig batchUploadConfig,
+                              @Qualifier(AppConfig.UPLOAD_EXECUTOR) Executor executor) {
+        this.imageStore = imageStore;
+        this.imageValidator = imageValidator;
+        this.batchUploadConfig = batchUploadConfig;
+        this.executor = executor;
+    }
+
+    /**
+     * Validate, sign and upload the files of a batch, then save their metadata at once.
+     * At most {@link BatchUploadConfig#getParallelism()} files are processed at the same time, each of them is followed
+     * by the next unprocessed file, so a large batch does not flood the upload lane.
+     * A file which fails does not fail the batch, its failure is returned in its result. Files whose name is used by
+     * an earlier file of the batch fail as well. The metadata of the uploaded files is saved in a single transaction.
+     * If a name has been used since the validation, the files are saved one by one, so only the files with used names fail.
+     * If saving fails otherwise, every uploaded file of the batch fails.
+     * Throws {@link IllegalArgumentException} if any of the parameters is null.
+     * Throws {@link MultipartFileException} if the batch has too many files.
+     *
+     * @param files the files to be uploaded
+     * @return a CompletableFuture instance with the results in the order of {@code files}, which completes when the metadata is saved
+     */
+    public CompletableFuture<List<UploadResult>> upload(List<MultipartFile> files) {
+        if (files == null) {
+            String methodName = new Object() {
+            }.getClass().getEnclosingMethod().getName();
+            log.error("{} method was called with null parameter(s).", methodName);
+            throw new IllegalArgumentException();
+        }
+        if (files.size() > batchUploadConfig.getMaxFiles()) {
+            String msg = String.format("Batch has too many files (%s, max: %s).", files.size(), batchUploadConfig.getMaxFiles());
+            log.error(msg);
+            throw new MultipartFileException(msg);
+        }
+        Batch batch = new Batch(files);
+        CompletableFuture<?>[] workers = new CompletableFuture<?>[Math.min(batchUploadConfig.getParallelism(), files.size())];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = processNext(batch);
+        }
+        return CompletableFuture.allOf(workers).thenApply(processed -> save(batch));
+    }
+
+    /**
+     * Process the next unprocessed file of a batch, then the one after it, until every file is processed.
+     *
+     * @param batch the batch
+     * @return a CompletableFuture instance which completes when there are no more files to be processed
+     */
+    private CompletableFuture<Void> processNext(Batch batch) {
+        int index = batch.next.getAndIncrement();
+        if (index >= batch.files.size()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return process(batch, index).thenCompose(processed -> processNext(batch));
+    }
+
+    /**
+     * Validate, sign and upload a file of a batch. Its failure is recorded in its result.
+     *
+     * @param batch the batch
+     * @param index the index of the file
+     * @return a CompletableFuture instance which completes when the file is uploaded or has failed
+     */
+    private CompletableFuture<Void> process(Batch batch, int index) {
+        MultipartFile file = batch.files.get(index);
+        String name = file.getOriginalFilename();
+        if (batch.duplicates.contains(index)) {
+            fail(batch, index, String.format("Image name (%s) is used by another file of the batch.", name));
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<Image> prepared;
+        try {
+            prepared = CompletableFuture.supplyAsync(() -> imageValidator.validate(file), executor)
+                    .thenCompose(mimeType -> imageStore.prepare(file, mimeType));
+        } catch (RuntimeException ex) {
+            prepared = CompletableFuture.failedFuture(ex);
+        }
+        return prepared.handle((image, ex) -> {
+            if (ex == null) {
+                batch.images[index] = image;
+            } else {
+                Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                log.error("Image (name: {}) of batch could not be uploaded.", name, cause);
+                fail(batch, index, cause.getMessage());
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Save the metadata of the uploaded files of a batch and create the results of the uploaded files.
+     *
+     * @param batch the processed batch
+     * @return the results of every file of the batch
+     */
+    private List<UploadResult> save(Batch batch) {
+        List<Integer> indexes = new ArrayList<>();
+        List<Image> images = new ArrayList<>();
+        for (int i = 0; i < batch.images.length; i++) {
+            if (batch.images[i] != null) {
+                indexes.add(i);
+                images.add(batch.images[i]);
+            }
+        }
+        if (!images.isEmpty()) {
+            try {
+                List<Image> saved = imageStore.saveAll(images);
+                for (int i = 0; i < indexes.size(); i++) {
+                    int index = indexes.get(i);
+                    batch.results[index] = UploadResult.success(batch.files.get(index).getOriginalFilename(), saved.get(i).getPublicId());
+                }
+            } catch (MultipartFileException ex) {
+                log.warn("Batch has names used since its validation, its images are saved one by one.");
+                for (int i = 0; i < indexes.size(); i++) {
+                    saveOne(batch, indexes.get(i), images.get(i));
+                }
+            } catch (RuntimeException ex) {
+                log.error("Metadata of batch could not be saved.", ex);
+                indexes.forEach(index -> fail(batch, index, "Image metadata could not be saved."));
+            }
+        }
+        List<UploadResult> results = Arrays.asList(batch.results);
+        log.info("Batch of {} files is uploaded, {} failed.", results.size(), results.stream().filter(result -> !result.isSuccessful()).count());
+        return results;
+    }
+
+    /**
+     * Save the metadata of a single uploaded file of a batch, after saving the batch at once has failed.
+     *
+     * @param batch the batch
+     * @param index the index of the file
+     * @param image the image of the file
+     */
+    private void saveOne(Batch batch, int index, Image image) {
+        String name = batch.files.get(index).getOriginalFilename();
+        image.setId(null);
+        try {
+            batch.results[index] = UploadResult.success(name, imageStore.saveAll(List.of(image)).get(0).getPublicId());
+        } catch (MultipartFileException ex) {
+            fail(batch, index, String.format("Image name (%s) is already used.", name));
+        } catch (RuntimeException ex) {
+            log.error("Metadata of image (name: {}) of batch could not be saved.", name, ex);
+            fail(batch, index, "Image metadata could not be saved.");
+        }
+    }
+
+    /**
+     * Record the failure of a file of a batch.
+     *
+     * @param batch the batch
+     * @param index the index of the file
+     * @param error the reason of the failure
+     */
+    private static void fail(Batch batch, int index, String error) {
+        batch.results[index] = UploadResult.failure(batch.files.get(index).getOriginalFilename(), error);
+    }
+
+    /**
+     * The state of a batch being uploaded. Every file is processed by a single worker, which writes only its own slots.
+     */
+    private static class Batch {
+
+        /**
+         * The files of the batch.
+         */
+        private final List<MultipartFile> files;
+
+        /**
+         * Indexes of the files whose name is used by an earlier file of the batch.
+         */
+        private final Set<Integer> duplicates = new HashSet<>();
+
+        /**
+         * Index of the next file to be processed.
+         */
+        private final AtomicInteger next = new AtomicInteger();
+
+        /**
+         * The uploaded, not yet saved images by the index of their file.
+         */
+        private final Image[] images;
+
+        /**
+         * The results by the index of their file.
+         */
+        private final UploadResult[] results;
+
+        private Batch(List<MultipartFile> files) {
+            this.files = files;
+            this.images = new Image[files.size()];
+            this.results = new UploadResult[files.size()];
+            Set<String> names = new HashSet<>();
+            for (int i = 0; i < files.size(); i++) {
+                if (!names.add(files.get(i).getOriginalFilename())) {
+                    duplicates.add(i);
+                }
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,130 @@
+package hu.ponte.hr.services;
+
+import hu.ponte.hr.config.StreamingConfig;
+import org.springframework.stereotype.Component;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Pool of byte arrays for buffering response bodies, so a large buffer is not allocated for every response.
+ * Buffers are allocated when the pool is empty and at most {@link StreamingConfig#getMaxPooledBuffers()} are kept when they are released.
+ */
+@Component
+public class BufferPool {
+
+    /**
+     * The idle buffers.
+     */
+    private final BlockingQueue<byte[]> buffers;
+
+    /**
+     * The size of the buffers in bytes.
+     */
+    private final int bufferSize;
+
+    public BufferPool(StreamingConfig streamingConfig) {
+        this.buffers = new ArrayBlockingQueue<>(streamingConfig.getMaxPooledBuffers());
+        this.bufferSize = streamingConfig.getBufferSize();
+    }
+
+    /**
+     * Wrap an OutputStream instance into a buffered one, using a pooled buffer until it is closed.
+     * Closing the returned stream flushes it and releases its buffer, but does not close {@code outputStream}.
+     *
+     * @param outputStream the stream to be buffered
+     * @return the buffered stream
+     */
+    public OutputStream buffer(OutputStream outputStream) {
+        byte[] buffer = buffers.poll();
+        return new PooledOutputStream(outputStream, buffer != null ? buffer : new byte[bufferSize]);
+    }
+
+    /**
+     * Get the number of idle buffers.
+     *
+     * @return the number of idle buffers
+     */
+    public int getIdleBuffers() {
+        return buffers.size();
+    }
+
+    /**
+     * Buffered OutputStream on a pooled buffer. Writes which are not smaller than the buffer bypass it.
+     */
+    private class PooledOutputStream extends FilterOutputStream {
+
+        /**
+         * The buffer, null after the stream is closed.
+         */
+        private byte[] buffer;
+
+        /**
+         * The number of buffered bytes.
+         */
+        private int count;
+
+        PooledOutputStream(OutputStream outputStream, byte[] buffer) {
+            super(outputStream);
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (count == buffer.length) {
+                flushBuffer();
+            }
+            buffer[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len >= buffer.length) {
+                flushBuffer();
+                out.write(b, off, len);
+                return;
+            }
+            if (len > buffer.length - count) {
+                flushBuffer();
+            }
+            System.arraycopy(b, off, buffer, count, len);
+            count += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            flushBuffer();
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (buffer == null) {
+                return;
+            }
+            try {
+                flush();
+            } finally {
+                buffers.offer(buffer);
+                buffer = null;
+            }
+        }
+
+        /**
+         * Write the buffered bytes into the underlying stream.
+         *
+         * @throws IOException if writing fails
+         */
+        private void flushBuffer() throws IOException {
+            if (count > 0) {
+                out.write(buffer, 0, count);
+                count = 0;
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,225 @@
+package hu.ponte.hr.services;
+
+import hu.ponte.hr.config.AppConfig;
+import hu.ponte.hr.config.ExportConfig;
+import hu.ponte.hr.domain.ImageSummary;
+import hu.ponte.hr.exception.exceptions.StorageException;
+import hu.ponte.hr.repository.ImageRepository;
+import hu.ponte.hr.services.storagehandler.StorageHandler;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FilenameUtils;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Service class for exporting many images in one ZIP archive.
+ * The archive is written while it is built: the metadata is read page by page, and a few images ahead of the one
+ * being written are fetched from the storage into temporary files on the download lane, so storage latency overlaps with
+ * compression and writing while neither the metadata nor the contents of all images are held in memory.
+ * Images are fetched past the caches of the storage, so an export does not evict the images which are previewed often.
+ */
+@Service
+@Slf4j
+public class ExportService {
+
+    /**
+     * {@link ImageRepository} instance.
+     */
+    private final ImageRepository imageRepository;
+
+    /**
+     * {@link StorageHandler} instance.
+     */
+    private final StorageHandler storageHandler;
+
+    /**
+     * {@link ExportConfig} instance.
+     */
+    private final ExportConfig exportConfig;
+
+    /**
+     * Executor of the fetches, the download lane. The number of queued fetches is bounded by {@link ExportConfig#getPrefetch()} per export.
+     */
+    private final Executor executor;
+
+    public ExportService(ImageRepository imageRepository, StorageHandler storageHandler, ExportConfig exportConfig,
+                         @Qualifier(AppConfig.DOWNLOAD_EXECUTOR) Executor executor) {
+        this.imageRepository = imageRepository;
+        this.storageHandler = storageHandler;
+        this.exportConfig = exportConfig;
+        this.executor = executor;
+    }
+
+    /**
+     * Write a ZIP archive of the selected images into an OutputStream instance. Images are selected by public ids if they are given,
+     * otherwise by mimetype, or all images are selected. Unknown public ids are ignored.
+     * Each image is stored in an entry named by its public id and name.
+     * Throws {@link StorageException} if an image could not be fetched, the archive is incomplete in this case.
+     *
+     * @param publicIds    the public ids of the images, may be null
+     * @param mimeType     the mimetype of the images, may be null
+     * @param outputStream the stream to write the archive into, it is not closed
+     * @return the number of exported images
+     * @throws IOException if writing into {@code outputStream} fails
+     */
+    public int export(List<String> publicIds, String mimeType, OutputStream outputStream) throws IOException {
+        Iterator<ImageSummary> images = select(publicIds, mimeType);
+        Deque<Prefetch> window = new ArrayDeque<>();
+        int exported = 0;
+        ZipOutputStream zip = new ZipOutputStream(outputStream);
+        zip.setLevel(exportConfig.getCompressionLevel());
+        try {
+            while (images.hasNext() || !window.isEmpty()) {
+                while (window.size() < exportConfig.getPrefetch() && images.hasNext()) {
+                    window.add(prefetch(images.next()));
+                }
+                write(zip, window.poll());
+                exported++;
+            }
+            zip.finish();
+        } finally {
+            window.forEach(Prefetch::discard);
+        }
+        log.info("{} images are exported.", exported);
+        return exported;
+    }
+
+    /**
+     * Select the images of an export, reading their metadata from database page by page.
+     * Repeated public ids are selected once, as each image is an entry of the archive by its public id.
+     *
+     * @param publicIds the public ids of the images, may be null
+     * @param mimeType  the mimetype of the images, may be null
+     * @return the iterator of the selected images
+     */
+    private Iterator<ImageSummary> select(List<String> publicIds, String mimeType) {
+        int pageSize = exportConfig.getPageSize();
+        if (publicIds != null) {
+            List<String> distinctIds = new ArrayList<>(new LinkedHashSet<>(publicIds));
+            return IntStream.range(0, (distinctIds.size() + pageSize - 1) / pageSize)
+                    .mapToObj(page -> distinctIds.subList(page * pageSize, Math.min(distinctIds.size(), (page + 1) * pageSize)))
+                    .flatMap(page -> imageRepository.findSummariesByPublicIds(page).stream())
+                    .iterator();
+        }
+        return Stream.iterate(imageRepository.findNextSummaryPage(0L, mimeType, PageRequest.of(0, pageSize)),
+                        page -> !page.isEmpty(),
+                        page -> imageRepository.findNextSummaryPage(page.get(page.size() - 1).getId(), mimeType, PageRequest.of(0, pageSize)))
+                .flatMap(List::stream)
+                .iterator();
+    }
+
+    /**
+     * Start fetching the content of an image into a temporary file.
+     * Throws {@link RejectedExecutionException} if the download lane is full.
+     *
+     * @param image the image to be fetched
+     * @return the started fetch
+     * @throws IOException if the temporary file could not be created
+     */
+    private Prefetch prefetch(ImageSummary image) throws IOException {
+        Path file = Files.createTempFile("export-", ".tmp");
+        try {
+            CompletableFuture<Void> fetched = CompletableFuture.runAsync(() -> {
+                try (OutputStream outputStream = Files.newOutputStream(file)) {
+                    storageHandler.writeToUncached(image.getStorageKey(), outputStream);
+                } catch (IOException ex) {
+                    String msg = String.format("Failed to fetch image with id: %s.", image.getPublicId());
+                    log.error(msg, ex);
+                    throw new StorageException(msg, ex);
+                }
+            }, executor);
+            return new Prefetch(image, file, fetched);
+        } catch (RejectedExecutionException ex) {
+            Files.deleteIfExists(file);
+            throw ex;
+        }
+    }
+
+    /**
+     * Write a fetched image into a ZIP archive as a new entry, then delete its temporary file.
+     *
+     * @param zip      the archive
+     * @param prefetch the fetch of the image
+     * @throws IOException if writing into {@code zip} fails
+     */
+    private void write(ZipOutputStream zip, Prefetch prefetch) throws IOException {
+        ImageSummary image = prefetch.getImage();
+        try {
+            prefetch.getFetched().join();
+            ZipEntry entry = new ZipEntry(image.getPublicId() + "-" + FilenameUtils.getName(image.getName()));
+            if (image.getCreatedAt() != null) {
+                entry.setTime(image.getCreatedAt().toEpochMilli());
+            }
+            zip.putNextEntry(entry);
+            Files.copy(prefetch.getFile(), zip);
+            zip.closeEntry();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof StorageException) {
+                throw (StorageException) ex.getCause();
+            }
+            throw new StorageException(ex.getCause());
+        } finally {
+            Files.deleteIfExists(prefetch.getFile());
+        }
+    }
+
+    /**
+     * A fetch of an image into a temporary file.
+     */
+    @Getter
+    @RequiredArgsConstructor
+    private static class Prefetch {
+
+        /**
+         * The image being fetched.
+         */
+        private final ImageSummary image;
+
+        /**
+         * The temporary file the content is written into.
+         */
+        private final Path file;
+
+        /**
+         * Completes when the content is written into {@link #file}.
+         */
+        private final CompletableFuture<Void> fetched;
+
+        /**
+         * Delete the temporary file once the fetch is over, as the export will not write it.
+         */
+        private void discard() {
+            fetched.whenComplete((result, ex) -> {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    log.warn("Temporary file {} could not be deleted.", file, e);
+                }
+            });
+        }
+
+    }
+
+}
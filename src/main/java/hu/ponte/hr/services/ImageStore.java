@@ -1,33 +1,61 @@
 package hu.ponte.hr.services;
 
+import hu.ponte.hr.config.AppConfig;
 import hu.ponte.hr.controller.ImageMeta;
 import hu.ponte.hr.domain.Image;
+import hu.ponte.hr.domain.ImageRendition;
+import hu.ponte.hr.domain.SignatureScheme;
+import hu.ponte.hr.domain.StorageState;
+import hu.ponte.hr.domain.StoredObject;
 import hu.ponte.hr.exception.exceptions.MultipartFileException;
 import hu.ponte.hr.exception.exceptions.StorageException;
 import hu.ponte.hr.mapper.ImageMapper;
 import hu.ponte.hr.repository.ImageRepository;
+import hu.ponte.hr.repository.StoredObjectRepository;
+import hu.ponte.hr.services.cache.ImageContentCache;
+import hu.ponte.hr.services.signing.SigningSession;
 import hu.ponte.hr.services.storagehandler.StorageHandler;
+import hu.ponte.hr.validation.ImageNameFilter;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.TeeOutputStream;
 import org.apache.commons.lang3.RandomUtils;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import javax.persistence.EntityNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 
 /**
  * Main service class for digital signing, uploading and metadata storing of images.
  */
 @Service
 @Slf4j
-@RequiredArgsConstructor
 public class ImageStore {
 
+    /**
+     * Size of the buffer streamed files are copied into their spool file through.
+     */
+    private static final int SPOOL_BUFFER_SIZE = 65536;
+
     /**
      * {@link StorageHandler} instance.
      */
@@ -49,45 +77,266 @@ public class ImageStore {
     private final SignService signService;
 
     /**
-     * Sign, upload and store metadata in this order of execution. By following this order,
+     * Executor of the signing stage of uploads, the upload lane.
+     */
+    private final Executor executor;
+
+    /**
+     * {@link ImageContentCache} instance.
+     */
+    private final ImageContentCache imageContentCache;
+
+    /**
+     * {@link StoredObjectRepository} instance.
+     */
+    private final StoredObjectRepository storedObjectRepository;
+
+    /**
+     * {@link RenditionService} instance.
+     */
+    private final RenditionService renditionService;
+
+    /**
+     * {@link ImageNameFilter} instance, told the names of the saved images.
+     */
+    private final ImageNameFilter imageNameFilter;
+
+    public ImageStore(StorageHandler storageHandler, ImageRepository imageRepository, ImageMapper imageMapper, SignService signService,
+                      @Qualifier(AppConfig.UPLOAD_EXECUTOR) Executor executor, ImageContentCache imageContentCache,
+                      StoredObjectRepository storedObjectRepository, RenditionService renditionService, ImageNameFilter imageNameFilter) {
+        this.storageHandler = storageHandler;
+        this.imageRepository = imageRepository;
+        this.imageMapper = imageMapper;
+        this.signService = signService;
+        this.executor = executor;
+        this.imageContentCache = imageContentCache;
+        this.storedObjectRepository = storedObjectRepository;
+        this.renditionService = renditionService;
+        this.imageNameFilter = imageNameFilter;
+    }
+
+    /**
+     * Sign, upload and store metadata in this order of execution. The content is signed while it is read. By following this order,
      * it is ensured that any inconsistent data will not be stored anywhere.
+     * The content is stored by its hash, so it is uploaded only if no other image has the same content.
+     * The stages are composed without blocking the calling thread: signing runs on {@link #executor}, the upload
+     * on the {@link StorageHandler}'s own thread and the metadata is saved when the upload has completed.
+     * The downscaled renditions are created afterwards by {@link RenditionService}, the returned future does not wait for them.
      * Throws {@link IllegalArgumentException} if any of the parameters is null.
-     * Throws {@link StorageException} if {@link StorageHandler} throws exception.
+     * The returned future completes exceptionally with {@link StorageException} if {@link StorageHandler} throws exception,
+     * with {@link hu.ponte.hr.exception.exceptions.CustomSignatureException} if the signing fails,
+     * or with {@link MultipartFileException} if the name has been used since the validation.
      *
-     * @param file the file to be processed
+     * @param file     the file to be processed
+     * @param mimeType the type of the file detected by {@link hu.ponte.hr.validation.ImageValidator}
+     * @return a CompletableFuture instance which completes when the metadata is saved
      */
-    public void upload(MultipartFile file) {
-        if (file == null) {
+    public CompletableFuture<Void> upload(MultipartFile file, String mimeType) {
+        if (file == null || mimeType == null) {
             String methodName = new Object() {
             }.getClass().getEnclosingMethod().getName();
             log.error("{} method was called with null parameter(s).", methodName);
             throw new IllegalArgumentException();
         }
-        byte[] bytes = readBytes(file);
+        return signAndStore(file)
+                .thenAccept(signedFile -> {
+                    save(createImage(file.getOriginalFilename(), mimeType, signedFile));
+                    log.info("Image (name: {}) is signed and uploaded; metadata saved in database.", file.getOriginalFilename());
+                    renditionService.createRenditions(signedFile.getContentHash(), signedFile.getContent());
+                });
+    }
+
+    /**
+     * Sign and upload a file of a batch, without saving its metadata. The returned Image instance is to be saved
+     * together with the other images of the batch by {@link #saveAll(List)}, so their inserts can be batched.
+     * The stages run as in {@link #upload(MultipartFile, String)}.
+     * Throws {@link IllegalArgumentException} if any of the parameters is null.
+     * The returned future completes exceptionally with {@link StorageException} if {@link StorageHandler} throws exception,
+     * or with {@link hu.ponte.hr.exception.exceptions.CustomSignatureException} if the signing fails.
+     *
+     * @param file     the file to be processed
+     * @param mimeType the type of the file detected by {@link hu.ponte.hr.validation.ImageValidator}
+     * @return a CompletableFuture instance with the unsaved Image instance of {@code file}, which completes when it is uploaded
+     */
+    public CompletableFuture<Image> prepare(MultipartFile file, String mimeType) {
+        if (file == null || mimeType == null) {
+            String methodName = new Object() {
+            }.getClass().getEnclosingMethod().getName();
+            log.error("{} method was called with null parameter(s).", methodName);
+            throw new IllegalArgumentException();
+        }
+        return signAndStore(file).thenApply(signedFile -> {
+            log.info("Image (name: {}) is signed and uploaded.", file.getOriginalFilename());
+            return createImage(file.getOriginalFilename(), mimeType, signedFile);
+        });
+    }
+
+    /**
+     * Save the metadata of prepared images in one transaction, so they are inserted in JDBC batches.
+     * A reference to the content of each image is added before, and released if the images could not be saved.
+     * The renditions of the images are created afterwards by {@link RenditionService} from the stored content.
+     * Throws {@link IllegalArgumentException} if any of the parameters is null.
+     * Throws {@link MultipartFileException} if the name of any of the images is already used, none of them is saved then.
+     *
+     * @param images the images returned by {@link #prepare(MultipartFile, String)}
+     * @return the saved Image instances
+     */
+    public List<Image> saveAll(List<Image> images) {
+        if (images == null) {
+            String methodName = new Object() {
+            }.getClass().getEnclosingMethod().getName();
+            log.error("{} method was called with null parameter(s).", methodName);
+            throw new IllegalArgumentException();
+        }
+        images.forEach(image -> storedObjectRepository.addReference(image.getContentHash()));
+        List<Image> saved;
         try {
-            String signature = signService.createSignature(bytes, file.getOriginalFilename());
-            storageHandler.uploadAFile(bytes, file.getOriginalFilename()).get();
-            imageRepository.save(createImage(file, signature));
-            log.info("Image (name: {}) is signed and uploaded; metadata saved in database.", file.getOriginalFilename());
-        } catch (InterruptedException | ExecutionException e) {
-            if (e.getCause() instanceof StorageException) {
-                throw new StorageException(e.getCause());
+            saved = imageRepository.saveAll(images);
+        } catch (DataIntegrityViolationException ex) {
+            images.forEach(image -> storedObjectRepository.releaseReference(image.getContentHash()));
+            String msg = "Image names of the batch are already used.";
+            log.error(msg, ex);
+            throw new MultipartFileException(msg, ex);
+        } catch (RuntimeException ex) {
+            images.forEach(image -> storedObjectRepository.releaseReference(image.getContentHash()));
+            throw ex;
+        }
+        saved.forEach(image -> imageNameFilter.put(image.getName()));
+        log.info("Metadata of {} images saved in database.", saved.size());
+        saved.forEach(image -> renditionService.createRenditions(image.getContentHash()));
+        return saved;
+    }
+
+    /**
+     * Sign, upload and store metadata of a streamed file, reading it only once.
+     * The content is fed into the signing session and the digest while it is copied into a spool file through a fixed buffer,
+     * so memory use does not grow with its size. The content is stored by its hash, which is known only after the last byte,
+     * so it is uploaded from the spool file, which is deleted once the upload has completed.
+     * The content is read on the calling thread, the returned future completes when the metadata is saved.
+     * The renditions are created from the stored content by {@link RenditionService}.
+     * Throws {@link IllegalArgumentException} if any of the parameters is null.
+     * Throws {@link MultipartFileException} if the content could not be read, for example because it is too large.
+     * The returned future completes exceptionally with {@link StorageException} if {@link StorageHandler} throws exception,
+     * or with {@link MultipartFileException} if the name has been used since the validation.
+     *
+     * @param name     the name of the file
+     * @param mimeType the detected type of the file
+     * @param content  the content of the file, it is read to its end but not closed
+     * @return a CompletableFuture instance which completes when the metadata is saved
+     */
+    public CompletableFuture<Void> upload(String name, String mimeType, InputStream content) {
+        if (name == null || mimeType == null || content == null) {
+            String methodName = new Object() {
+            }.getClass().getEnclosingMethod().getName();
+            log.error("{} method was called with null parameter(s).", methodName);
+            throw new IllegalArgumentException();
+        }
+        SignedFile signedFile = spool(name, content);
+        return CompletableFuture.completedFuture(signedFile)
+                .thenCompose(this::store)
+                .thenAccept(stored -> {
+                    save(createImage(name, mimeType, signedFile));
+                    log.info("Image (name: {}) is signed and uploaded; metadata saved in database.", name);
+                    renditionService.createRenditions(signedFile.getContentHash());
+                })
+                .whenComplete((saved, ex) -> deleteSpool(signedFile.getSpool()));
+    }
+
+    /**
+     * Save the metadata of an image. The unique constraint of the name rejects names which were used concurrently,
+     * after the validation of the image.
+     * A reference to the content of the image is added before, and released if the image could not be saved,
+     * so a failed save never leaves the content referenced. The reference is added first, so the content
+     * of a saved image is never seen unreferenced.
+     * Throws {@link MultipartFileException} if the name of the image is already used.
+     *
+     * @param image the image to be saved
+     */
+    private void save(Image image) {
+        storedObjectRepository.addReference(image.getContentHash());
+        try {
+            imageRepository.save(image);
+        } catch (DataIntegrityViolationException ex) {
+            storedObjectRepository.releaseReference(image.getContentHash());
+            String msg = String.format("Image name (%s) is already used.", image.getName());
+            log.error(msg, ex);
+            throw new MultipartFileException(msg, ex);
+        } catch (RuntimeException ex) {
+            storedObjectRepository.releaseReference(image.getContentHash());
+            throw ex;
+        }
+        imageNameFilter.put(image.getName());
+    }
+
+    /**
+     * Sign a file on {@link #executor}, then store its content.
+     *
+     * @param file the file to be processed
+     * @return a CompletableFuture instance with the signed file, which completes when it is stored
+     */
+    private CompletableFuture<SignedFile> signAndStore(MultipartFile file) {
+        return CompletableFuture.supplyAsync(() -> sign(file), executor)
+                .thenCompose(signedFile -> store(signedFile).thenApply(stored -> signedFile));
+    }
+
+    /**
+     * Store the content of a signed file by its hash, unless it is stored already. The content is recorded without references,
+     * the reference of an image is added when the image is saved.
+     * The content is recorded as {@link StorageState#PENDING} if the {@link StorageHandler} accepted it for storing later.
+     *
+     * @param signedFile the file to be stored
+     * @return a {@link Boolean} instance wrapped in {@link CompletableFuture} object.
+     */
+    private CompletableFuture<Boolean> store(SignedFile signedFile) {
+        String contentHash = signedFile.getContentHash();
+        if (storedObjectRepository.existsById(contentHash)) {
+            log.info("Content (hash: {}) is stored already, upload is skipped.", contentHash);
+            return CompletableFuture.completedFuture(true);
+        }
+        CompletableFuture<Boolean> upload = signedFile.getContent() != null
+                ? storageHandler.uploadAFile(signedFile.getContent(), contentHash)
+                : storageHandler.uploadAFile(signedFile.getSpool(), contentHash);
+        return upload.thenApply(uploaded -> {
+            try {
+                StorageState state = Boolean.TRUE.equals(uploaded) ? StorageState.STORED : StorageState.PENDING;
+                storedObjectRepository.saveAndFlush(new StoredObject(contentHash, signedFile.getSize(), state));
+            } catch (DataIntegrityViolationException ex) {
+                log.info("Content (hash: {}) is stored concurrently.", contentHash);
             }
-            Thread.currentThread().interrupt();
+            return uploaded;
+        });
+    }
+
+    /**
+     * Read, hash and sign the content of a MultipartFile instance.
+     *
+     * @param file the file to be signed
+     * @return the content of {@code file} with its signature and hash
+     */
+    private SignedFile sign(MultipartFile file) {
+        try (SigningSession session = signService.openSession(file.getOriginalFilename())) {
+            MessageDigest digest = DigestUtils.getSha256Digest();
+            byte[] bytes = readBytes(file, session, digest);
+            SignedFile signedFile = new SignedFile(bytes, null, bytes.length, session.sign(), session.getScheme(),
+                    Hex.encodeHexString(digest.digest()));
+            log.info("New signature is created for file (name: {}).", file.getOriginalFilename());
+            return signedFile;
         }
     }
 
     /**
-     * Read the content of a MultipartFile instance.
-     * Throws {@link MultipartFileException}, if any of the parameters is null.
+     * Read the content of a MultipartFile instance, feeding it into a signing session and a digest in the same pass.
+     * Throws {@link MultipartFileException}, if the content could not be read.
      *
-     * @param file file to be read
+     * @param file    file to be read
+     * @param session the signing session to be fed
+     * @param digest  the digest to be fed
      * @return byte array instance with the content of {@code file}
      */
-    private byte[] readBytes(MultipartFile file) {
+    private byte[] readBytes(MultipartFile file, SigningSession session, MessageDigest digest) {
         byte[] bytes;
-        try {
-            bytes = file.getBytes();
+        try (InputStream inputStream = new DigestInputStream(session.wrap(file.getInputStream()), digest)) {
+            bytes = IOUtils.toByteArray(inputStream, file.getSize());
         } catch (IOException ex) {
             String msg = "Failed to read binary content from multipart file.";
             log.error(msg, ex);
@@ -96,20 +345,72 @@ public class ImageStore {
         return bytes;
     }
 
+    /**
+     * Copy a streamed file into a spool file, feeding it into a signing session and a digest in the same pass.
+     * Throws {@link MultipartFileException}, if the content could not be read or written.
+     *
+     * @param name    the name of the file
+     * @param content the content of the file
+     * @return the spooled content with its signature and hash
+     */
+    private SignedFile spool(String name, InputStream content) {
+        Path spool = null;
+        try (SigningSession session = signService.openSession(name)) {
+            spool = Files.createTempFile("upload-", ".tmp");
+            MessageDigest digest = DigestUtils.getSha256Digest();
+            long size;
+            try (OutputStream outputStream = Files.newOutputStream(spool)) {
+                size = IOUtils.copyLarge(new DigestInputStream(session.wrap(content), digest), outputStream, new byte[SPOOL_BUFFER_SIZE]);
+            }
+            SignedFile signedFile = new SignedFile(null, spool, size, session.sign(), session.getScheme(),
+                    Hex.encodeHexString(digest.digest()));
+            log.info("New signature is created for streamed file (name: {}, size: {}).", name, size);
+            return signedFile;
+        } catch (IOException ex) {
+            deleteSpool(spool);
+            String msg = String.format("Failed to read streamed file (name: %s): %s", name, ex.getMessage());
+            log.error(msg, ex);
+            throw new MultipartFileException(msg);
+        } catch (RuntimeException ex) {
+            deleteSpool(spool);
+            throw ex;
+        }
+    }
+
+    /**
+     * Delete a spool file. Failing to delete it is logged only.
+     *
+     * @param spool the spool file, may be null
+     */
+    private void deleteSpool(Path spool) {
+        if (spool == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(spool);
+        } catch (IOException ex) {
+            log.warn("Spool file {} could not be deleted.", spool, ex);
+        }
+    }
+
     /**
      * Create an Image instance for saving metadata in database.
      *
-     * @param file      to be saved
-     * @param signature to be bound to image
+     * @param name       the name of the file
+     * @param mimeType   the type of the file
+     * @param signedFile the content, signature and hash of the file
      * @return the corresponding Image instance
      */
-    private Image createImage(MultipartFile file, String signature) {
+    private Image createImage(String name, String mimeType, SignedFile signedFile) {
         Image image = new Image();
         image.setPublicId(String.valueOf(RandomUtils.nextInt(1, Integer.MAX_VALUE)));
-        image.setName(file.getOriginalFilename());
-        image.setMimeType(file.getContentType());
-        image.setSize(file.getSize());
-        image.setDigitalSign(signature);
+        image.setName(name);
+        image.setMimeType(mimeType);
+        image.setSize(signedFile.getSize());
+        image.setDigitalSign(signedFile.getSignature());
+        image.setSignatureScheme(signedFile.getScheme());
+        image.setContentHash(signedFile.getContentHash());
+        image.setCreatedAt(Instant.now());
         return image;
     }
 
@@ -139,7 +440,7 @@ public class ImageStore {
         }
         InputStream imageStream = null;
         try {
-            imageStream = storageHandler.downloadAFile(optionalImage.get().getName()).get();
+            imageStream = storageHandler.downloadAFile(optionalImage.get().getStorageKey()).get();
             log.info("Image with id: {} is downloaded.", publicId);
         } catch (InterruptedException | ExecutionException e) {
             if (e.getCause() instanceof StorageException) {
@@ -150,4 +451,128 @@ public class ImageStore {
         return imageStream;
     }
 
+    /**
+     * Find the stored metadata of an image by public id.
+     * Throws {@link EntityNotFoundException} if image metadata is not found in database.
+     *
+     * @param publicId the public id of the image
+     * @return the StoredImage instance of the image
+     */
+    public StoredImage find(String publicId) {
+        Optional<Image> optionalImage = imageRepository.findByPublicId(publicId);
+        if (optionalImage.isEmpty()) {
+            String msg = String.format("Image not found with id: %s.", publicId);
+            log.error(msg);
+            throw new EntityNotFoundException(msg);
+        }
+        Image image = optionalImage.get();
+        return new StoredImage(image.getPublicId(), image.getStorageKey(), image.getMimeType(), image.getSize(),
+                image.getContentHash(), image.getCreatedAt());
+    }
+
+    /**
+     * Find the stored metadata of an image by public id, preferring its smallest rendition which is at least of a given size.
+     * The original image is returned if it has no such rendition.
+     * Throws {@link EntityNotFoundException} if image metadata is not found in database.
+     *
+     * @param publicId the public id of the image
+     * @param size     the requested max width and height in pixels
+     * @return the StoredImage instance of the image or its rendition
+     */
+    public StoredImage find(String publicId, int size) {
+        StoredImage image = find(publicId);
+        Optional<ImageRendition> rendition = renditionService.findRendition(image.getStorageKey(), size);
+        if (rendition.isEmpty()) {
+            return image;
+        }
+        ImageRendition found = rendition.get();
+        return new StoredImage(image.getPublicId(), found.getStorageKey(), found.getMimeType(), found.getSize(),
+                found.getStorageKey(), image.getCreatedAt());
+    }
+
+    /**
+     * Write an image into an OutputStream instance. Cached content is written from memory,
+     * otherwise the image is read from the underlying storage and cached while it is written, if it is small enough.
+     * Throws {@link StorageException} if {@link StorageHandler} throws exception.
+     *
+     * @param image        the image to be written
+     * @param outputStream the stream to write the image into, it is not closed
+     * @throws IOException if writing into {@code outputStream} fails
+     */
+    public void download(StoredImage image, OutputStream outputStream) throws IOException {
+        if (imageContentCache.writeTo(image.getStorageKey(), outputStream)) {
+            log.info("Image with id: {} is served from memory.", image.getPublicId());
+            return;
+        }
+        if (imageContentCache.isCacheable(image.getSize())) {
+            try (ImageContentCache.Fill fill = imageContentCache.fill(image.getStorageKey(), image.getSize())) {
+                storageHandler.writeTo(image.getStorageKey(), new TeeOutputStream(outputStream, fill));
+                fill.commit();
+            }
+        } else {
+            storageHandler.writeTo(image.getStorageKey(), outputStream);
+        }
+        log.info("Image with id: {} is downloaded.", image.getPublicId());
+    }
+
+    /**
+     * Write a range of an image into an OutputStream instance. Cached content is written from memory,
+     * otherwise only the range is read from the underlying storage.
+     * Throws {@link StorageException} if {@link StorageHandler} throws exception.
+     *
+     * @param image        the image to be written
+     * @param offset       the position of the first byte to be written
+     * @param length       the number of bytes to be written
+     * @param outputStream the stream to write the range into, it is not closed
+     * @throws IOException if writing into {@code outputStream} fails
+     */
+    public void download(StoredImage image, long offset, long length, OutputStream outputStream) throws IOException {
+        if (imageContentCache.writeTo(image.getStorageKey(), offset, length, outputStream)) {
+            log.info("Range (offset: {}, size: {}) of image with id: {} is served from memory.", offset, length, image.getPublicId());
+            return;
+        }
+        storageHandler.writeTo(image.getStorageKey(), offset, length, outputStream);
+        log.info("Range (offset: {}, size: {}) of image with id: {} is downloaded.", offset, length, image.getPublicId());
+    }
+
+    /**
+     * The content of an uploaded file with its signature.
+     * The content is either in memory or in a spool file.
+     */
+    @Getter
+    @RequiredArgsConstructor
+    private static class SignedFile {
+
+        /**
+         * The content of the file, null if it is in {@link #spool}.
+         */
+        private final byte[] content;
+
+        /**
+         * The spool file holding the content, null if it is in {@link #content}.
+         */
+        private final Path spool;
+
+        /**
+         * The size of the content.
+         */
+        private final long size;
+
+        /**
+         * The signature of {@link #content}.
+         */
+        private final String signature;
+
+        /**
+         * The scheme of {@link #signature}.
+         */
+        private final SignatureScheme scheme;
+
+        /**
+         * Hex encoded SHA-256 hash of {@link #content}.
+         */
+        private final String contentHash;
+
+    }
+
 }
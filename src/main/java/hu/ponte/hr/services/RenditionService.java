@@ -0,0 +1,229 @@
+package hu.ponte.hr.services;
+
+import hu.ponte.hr.config.AppConfig;
+import hu.ponte.hr.config.RenditionConfig;
+import hu.ponte.hr.domain.ImageRendition;
+import hu.ponte.hr.repository.ImageRenditionRepository;
+import hu.ponte.hr.services.storagehandler.StorageHandler;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Service class for creating and finding downscaled renditions of images.
+ * Renditions are created on the background lane, so a burst of uploads does not delay requests;
+ * images which do not fit into its queue get no renditions and are served in full size.
+ */
+@Service
+@Slf4j
+public class RenditionService {
+
+    /**
+     * {@link StorageHandler} instance.
+     */
+    private final StorageHandler storageHandler;
+
+    /**
+     * {@link ImageRenditionRepository} instance.
+     */
+    private final ImageRenditionRepository imageRenditionRepository;
+
+    /**
+     * {@link RenditionConfig} instance.
+     */
+    private final RenditionConfig renditionConfig;
+
+    /**
+     * Executor of rendition creation, the background lane.
+     */
+    private final Executor executor;
+
+    public RenditionService(StorageHandler storageHandler, ImageRenditionRepository imageRenditionRepository,
+                            RenditionConfig renditionConfig, @Qualifier(AppConfig.BACKGROUND_EXECUTOR) Executor executor) {
+        this.storageHandler = storageHandler;
+        this.imageRenditionRepository = imageRenditionRepository;
+        this.renditionConfig = renditionConfig;
+        this.executor = executor;
+    }
+
+    /**
+     * Create the configured renditions of a stored content in the background, unless they exist already.
+     * Only renditions smaller than the original are created. Failures are logged, the original stays available.
+     *
+     * @param sourceKey the storage key of the content
+     * @param content   the content
+     * @return a CompletableFuture instance which completes when the renditions are stored
+     */
+    public CompletableFuture<Void> createRenditions(String sourceKey, byte[] content) {
+        return submit(sourceKey, () -> render(sourceKey, () -> new ByteArrayInputStream(content)));
+    }
+
+    /**
+     * Create the configured renditions of a stored content in the background, unless they exist already.
+     * The content is downloaded from the storage by the background task, so the caller does not need to hold it in memory.
+     * Failures are logged, the original stays available.
+     *
+     * @param sourceKey the storage key of the content
+     * @return a CompletableFuture instance which completes when the renditions are stored
+     */
+    public CompletableFuture<Void> createRenditions(String sourceKey) {
+        return submit(sourceKey, () -> render(sourceKey, () -> storageHandler.downloadAFile(sourceKey).join()));
+    }
+
+    /**
+     * Submit the creation of the renditions of a content to the background lane.
+     *
+     * @param sourceKey the storage key of the content
+     * @param task      the creation of the renditions
+     * @return a CompletableFuture instance which completes when the renditions are stored
+     */
+    private CompletableFuture<Void> submit(String sourceKey, Runnable task) {
+        try {
+            return CompletableFuture.runAsync(task, executor)
+                    .exceptionally(ex -> {
+                        log.error("Renditions of content (key: {}) could not be created.", sourceKey, ex);
+                        return null;
+                    });
+        } catch (RejectedExecutionException ex) {
+            log.warn("Renditions of content (key: {}) are skipped, rendition queue is full.", sourceKey);
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    /**
+     * Find the smallest rendition of a stored content which is at least of a given size.
+     *
+     * @param sourceKey the storage key of the content
+     * @param size      the requested max width and height in pixels
+     * @return the found rendition, or empty if the original should be used
+     */
+    public Optional<ImageRendition> findRendition(String sourceKey, int size) {
+        return imageRenditionRepository.findBySourceKey(sourceKey).stream()
+                .filter(rendition -> rendition.getMaxSize() >= size)
+                .findFirst();
+    }
+
+    /**
+     * Create and store the renditions of a content.
+     *
+     * @param sourceKey the storage key of the content
+     * @param content   opens the content, it is opened only if the renditions do not exist yet
+     */
+    private void render(String sourceKey, Supplier<InputStream> content) {
+        if (!imageRenditionRepository.findBySourceKey(sourceKey).isEmpty()) {
+            log.debug("Renditions of content (key: {}) exist already.", sourceKey);
+            return;
+        }
+        BufferedImage source;
+        try (InputStream inputStream = content.get()) {
+            source = ImageIO.read(inputStream);
+        } catch (IOException ex) {
+            log.warn("Content (key: {}) could not be decoded, no renditions are created.", sourceKey, ex);
+            return;
+        }
+        if (source == null) {
+            log.info("Content (key: {}) has no supported image format, no renditions are created.", sourceKey);
+            return;
+        }
+        boolean alpha = source.getColorModel().hasAlpha();
+        String format = alpha ? "png" : "jpg";
+        String mimeType = alpha ? MediaType.IMAGE_PNG_VALUE : MediaType.IMAGE_JPEG_VALUE;
+        List<Integer> sizes = renditionConfig.getSizes();
+        for (int size : sizes) {
+            if (size >= Math.max(source.getWidth(), source.getHeight())) {
+                continue;
+            }
+            byte[] rendition = encode(scale(source, size, alpha), format);
+            String storageKey = sourceKey + "-" + size;
+            storageHandler.uploadAFile(rendition, storageKey).join();
+            save(sourceKey, size, storageKey, mimeType, rendition.length);
+        }
+        log.info("Renditions of content (key: {}) are created.", sourceKey);
+    }
+
+    /**
+     * Scale an image down to fit into a square, halving it in steps for a smoother result.
+     *
+     * @param source the image
+     * @param size   the max width and height in pixels
+     * @param alpha  whether the transparency of the image is kept
+     * @return the scaled image
+     */
+    private BufferedImage scale(BufferedImage source, int size, boolean alpha) {
+        double ratio = (double) size / Math.max(source.getWidth(), source.getHeight());
+        int targetWidth = Math.max(1, (int) Math.round(source.getWidth() * ratio));
+        int targetHeight = Math.max(1, (int) Math.round(source.getHeight() * ratio));
+        BufferedImage current = source;
+        int width = source.getWidth();
+        int height = source.getHeight();
+        do {
+            width = Math.max(width / 2, targetWidth);
+            height = Math.max(height / 2, targetHeight);
+            BufferedImage next = new BufferedImage(width, height, alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = next.createGraphics();
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.drawImage(current, 0, 0, width, height, null);
+            graphics.dispose();
+            current = next;
+        } while (width != targetWidth || height != targetHeight);
+        return current;
+    }
+
+    /**
+     * Encode an image.
+     *
+     * @param image  the image
+     * @param format the ImageIO format name
+     * @return the encoded image
+     */
+    private byte[] encode(BufferedImage image, String format) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try {
+            ImageIO.write(image, format, outputStream);
+        } catch (IOException ex) {
+            throw new IllegalStateException("Could not encode rendition.", ex);
+        }
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * Save the metadata of a rendition. A rendition saved concurrently for the same content is kept.
+     *
+     * @param sourceKey  the storage key of the original content
+     * @param size       the max width and height of the rendition
+     * @param storageKey the storage key of the rendition
+     * @param mimeType   the mimetype of the rendition
+     * @param length     the size of the rendition in bytes
+     */
+    private void save(String sourceKey, int size, String storageKey, String mimeType, long length) {
+        ImageRendition rendition = new ImageRendition();
+        rendition.setSourceKey(sourceKey);
+        rendition.setMaxSize(size);
+        rendition.setStorageKey(storageKey);
+        rendition.setMimeType(mimeType);
+        rendition.setSize(length);
+        try {
+            imageRenditionRepository.save(rendition);
+        } catch (DataIntegrityViolationException ex) {
+            log.debug("Rendition (key: {}) is saved concurrently.", storageKey);
+        }
+    }
+
+}
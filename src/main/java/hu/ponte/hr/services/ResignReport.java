@@ -0,0 +1,23 @@
+package hu.ponte.hr.services;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Summary of a re-signing run.
+ */
+@Getter
+@RequiredArgsConstructor
+public class ResignReport {
+
+    /**
+     * Number of re-signed images.
+     */
+    private final int resigned;
+
+    /**
+     * Number of images which could not be re-signed.
+     */
+    private final int failed;
+
+}
@@ -0,0 +1,116 @@
+package hu.ponte.hr.services;
+
+import hu.ponte.hr.config.SignConfig;
+import hu.ponte.hr.domain.Image;
+import hu.ponte.hr.repository.ImageRepository;
+import hu.ponte.hr.services.signing.SignRequest;
+import hu.ponte.hr.services.signing.SignResult;
+import hu.ponte.hr.services.storagehandler.StorageHandler;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Collectors;
+
+/**
+ * Service class for re-signing all stored images, e.g. after a key rotation.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class ResignService {
+
+    /**
+     * Statement for writing back a new signature.
+     */
+    private static final String UPDATE_SIGNATURE = "UPDATE image SET digital_sign = ?, signature_scheme = ? WHERE id = ?";
+
+    /**
+     * {@link ImageRepository} instance.
+     */
+    private final ImageRepository imageRepository;
+
+    /**
+     * {@link StorageHandler} instance.
+     */
+    private final StorageHandler storageHandler;
+
+    /**
+     * {@link SignService} instance.
+     */
+    private final SignService signService;
+
+    /**
+     * {@link SignConfig} instance.
+     */
+    private final SignConfig signConfig;
+
+    /**
+     * {@link JdbcTemplate} instance for batch updates.
+     */
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Re-sign all stored images with the current private key and scheme. Images are processed in pages of
+     * {@link SignConfig#getBatchSize()}, each page is signed in parallel and its signatures are written back in one JDBC batch.
+     * An image which could not be downloaded or signed keeps its previous signature.
+     *
+     * @return the number of re-signed and failed images
+     */
+    public ResignReport resignAll() {
+        int resigned = 0;
+        int failed = 0;
+        long lastId = 0;
+        List<Image> page = imageRepository.findNextPage(lastId, PageRequest.of(0, signConfig.getBatchSize()));
+        while (!page.isEmpty()) {
+            List<SignRequest> requests = page.stream()
+                    .map(image -> new SignRequest(image.getName(), () -> openContent(image)))
+                    .collect(Collectors.toList());
+            List<SignResult> results = signService.signAll(requests);
+            List<Object[]> updates = new ArrayList<>();
+            for (int i = 0; i < results.size(); i++) {
+                SignResult result = results.get(i);
+                Image image = page.get(i);
+                if (result.isSuccessful()) {
+                    updates.add(new Object[]{result.getSignature(), result.getScheme().name(), image.getId()});
+                } else {
+                    log.error("Image (name: {}) could not be re-signed.", image.getName(), result.getError());
+                    failed++;
+                }
+            }
+            jdbcTemplate.batchUpdate(UPDATE_SIGNATURE, updates);
+            resigned += updates.size();
+            lastId = page.get(page.size() - 1).getId();
+            page = imageRepository.findNextPage(lastId, PageRequest.of(0, signConfig.getBatchSize()));
+        }
+        log.info("Re-signing is finished, {} images are re-signed, {} failed.", resigned, failed);
+        return new ResignReport(resigned, failed);
+    }
+
+    /**
+     * Open the stored content of an image without filling the file cache, so a full scan does not evict the files read often.
+     *
+     * @param image the image to be read
+     * @return an InputStream with the content of the image
+     * @throws IOException if the content could not be downloaded
+     */
+    private InputStream openContent(Image image) throws IOException {
+        try {
+            return storageHandler.downloadAFileUncached(image.getStorageKey()).get();
+        } catch (ExecutionException ex) {
+            throw new IOException(ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
+}
@@ -0,0 +1,396 @@
+package hu.ponte.hr.services;
+
+import hu.ponte.hr.config.ResumableUploadConfig;
+import hu.ponte.hr.controller.upload.UploadSessionStatus;
+import hu.ponte.hr.exception.exceptions.MultipartFileException;
+import hu.ponte.hr.exception.exceptions.StorageException;
+import hu.ponte.hr.validation.ImageValidator;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityNotFoundException;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Service class for resumable uploads. A client opens a session for a file, sends its chunks in any order,
+ * in parallel and as many times as needed, then completes the session. The chunks are staged on the local disk,
+ * and the file is validated, signed and uploaded when the session is completed, reading the chunks in order as a single stream.
+ * Sessions are kept in memory, a session which receives no chunk for {@link ResumableUploadConfig#getTtl()} expires,
+ * and its chunks are deleted.
+ */
+@Service
+@Slf4j
+public class ResumableUploadService {
+
+    /**
+     * Size of the buffer chunks are copied into their staged file through.
+     */
+    private static final int COPY_BUFFER_SIZE = 65536;
+
+    /**
+     * {@link ResumableUploadConfig} instance.
+     */
+    private final ResumableUploadConfig resumableUploadConfig;
+
+    /**
+     * {@link ImageStore} instance.
+     */
+    private final ImageStore imageStore;
+
+    /**
+     * {@link ImageValidator} instance.
+     */
+    private final ImageValidator imageValidator;
+
+    /**
+     * Max allowed size of files to be uploaded.
+     */
+    private final long maxSize;
+
+    /**
+     * The open sessions by their id.
+     */
+    private final Map<String, UploadSession> sessions = new ConcurrentHashMap<>();
+
+    /**
+     * Executor of the removal of expired sessions.
+     */
+    private final ScheduledExecutorService cleaner;
+
+    /**
+     * Directory of the staged chunks.
+     */
+    private Path directory;
+
+    public ResumableUploadService(ResumableUploadConfig resumableUploadConfig, ImageStore imageStore, ImageValidator imageValidator,
+                                  @Value("${max-size}") long maxSize) {
+        this.resumableUploadConfig = resumableUploadConfig;
+        this.imageStore = imageStore;
+        this.imageValidator = imageValidator;
+        this.maxSize = maxSize;
+        this.cleaner = new ScheduledThreadPoolExecutor(1, new CustomizableThreadFactory("Upload-Sessions-"));
+    }
+
+    /**
+     * Create the staging directory and delete the chunks of the sessions of an earlier run, which can not be resumed,
+     * then schedule the removal of expired sessions.
+     * Throws {@link StorageException} if the directory could not be created.
+     */
+    @PostConstruct
+    public void init() {
+        try {
+            directory = Files.createDirectories(Paths.get(resumableUploadConfig.getDirectory()).toAbsolutePath());
+            try (Stream<Path> stale = Files.list(directory)) {
+                stale.filter(Files::isDirectory).forEach(this::deleteDirectory);
+            }
+        } catch (IOException ex) {
+            String msg = "Something went wrong during initialization of resumable uploads.";
+            log.error(msg, ex);
+            throw new StorageException(msg);
+        }
+        long interval = resumableUploadConfig.getCleanupInterval().toMillis();
+        cleaner.scheduleWithFixedDelay(this::removeExpired, interval, interval, TimeUnit.MILLISECONDS);
+        log.info("Resumable uploads are staged in directory: {}.", directory);
+    }
+
+    /**
+     * Open a session for uploading a file in chunks of {@link ResumableUploadConfig#getChunkSize()} bytes.
+     * Throws {@link IllegalArgumentException} if any of the parameters is null.
+     * Throws {@link MultipartFileException} if the size is not positive or the file is too large.
+     * Throws {@link StorageException} if the staging directory of the session could not be created.
+     *
+     * @param name the name of the file
+     * @param size the size of the file
+     * @return the state of the new session
+     */
+    public UploadSessionStatus create(String name, long size) {
+        if (name == null) {
+            String methodName = new Object() {
+            }.getClass().getEnclosingMethod().getName();
+            log.error("{} method was called with null parameter(s).", methodName);
+            throw new IllegalArgumentException();
+        }
+        if (size <= 0 || size > maxSize) {
+            String msg = String.format("Image (name: %s) size (%s) is not allowed.", name, size);
+            log.error(msg);
+            throw new MultipartFileException(msg);
+        }
+        String id = UUID.randomUUID().toString();
+        try {
+            UploadSession session = new UploadSession(id, name, size, resumableUploadConfig.getChunkSize(),
+                    Files.createDirectory(directory.resolve(id)));
+            sessions.put(id, session);
+            log.info("Upload session (id: {}) is opened for image (name: {}, size: {}).", id, name, size);
+            return toStatus(session);
+        } catch (IOException ex) {
+            String msg = String.format("Upload session could not be opened for image (name: %s).", name);
+            log.error(msg, ex);
+            throw new StorageException(msg);
+        }
+    }
+
+    /**
+     * Get the state of a session, which tells the chunks still to be sent.
+     * Throws {@link EntityNotFoundException} if the session is not found, because it has expired or completed.
+     *
+     * @param id the id of the session
+     * @return the state of the session
+     */
+    public UploadSessionStatus status(String id) {
+        return toStatus(find(id));
+    }
+
+    /**
+     * Stage a chunk of a session. A chunk sent again replaces the earlier one, so a failed chunk can be resent.
+     * The chunk is written into a temporary file and moved to its place when it is complete,
+     * so a chunk interrupted halfway is never taken as received.
+     * Throws {@link EntityNotFoundException} if the session is not found.
+     * Throws {@link MultipartFileException} if the index is out of range, the chunk is not of the expected size,
+     * the session is being completed, or the chunk could not be read or written.
+     *
+     * @param id      the id of the session
+     * @param index   the index of the chunk, starting from zero
+     * @param content the content of the chunk, it is not closed
+     * @return the state of the session
+     */
+    public UploadSessionStatus writeChunk(String id, int index, InputStream content) {
+        UploadSession session = find(id);
+        if (index < 0 || index >= session.getChunkCount()) {
+            String msg = String.format("Chunk %s is out of range of upload session (id: %s, chunks: %s).", index, id, session.getChunkCount());
+            log.error(msg);
+            throw new MultipartFileException(msg);
+        }
+        session.touch();
+        long expected = session.chunkLength(index);
+        Path part = null;
+        try {
+            part = Files.createTempFile(session.getDirectory(), "chunk-" + index + "-", ".part");
+            long length;
+            try (OutputStream outputStream = Files.newOutputStream(part)) {
+                length = IOUtils.copyLarge(content, outputStream, 0, expected + 1, new byte[COPY_BUFFER_SIZE]);
+            }
+            if (length != expected) {
+                String msg = String.format("Chunk %s of upload session (id: %s) has %s bytes instead of %s.", index, id, length, expected);
+                log.error(msg);
+                throw new MultipartFileException(msg);
+            }
+            Files.move(part, session.chunkPath(index), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            part = null;
+        } catch (IOException ex) {
+            String msg = String.format("Chunk %s of upload session (id: %s) could not be written: %s", index, id, ex.getMessage());
+            log.error(msg, ex);
+            throw new MultipartFileException(msg);
+        } finally {
+            deleteFile(part);
+        }
+        if (!session.receive(index)) {
+            String msg = String.format("Upload session (id: %s) is completed already.", id);
+            log.error(msg);
+            throw new MultipartFileException(msg);
+        }
+        log.debug("Chunk {} of upload session (id: {}) is received.", index, id);
+        return toStatus(session);
+    }
+
+    /**
+     * Complete a session whose chunks have all been received. The chunks are read in order as a single stream,
+     * the file is validated by its first bytes, then it is signed, hashed and uploaded as a streamed upload.
+     * The session is removed with its chunks once they are read, whether the upload succeeds or not.
+     * Throws {@link EntityNotFoundException} if the session is not found.
+     * Throws {@link MultipartFileException} if chunks are missing, the session is being completed already,
+     * the file is not valid or the chunks could not be read.
+     * The returned future completes exceptionally with {@link StorageException} if the upload fails.
+     *
+     * @param id the id of the session
+     * @return a CompletableFuture instance which completes when the metadata is saved
+     */
+    public CompletableFuture<Void> complete(String id) {
+        UploadSession session = find(id);
+        if (!session.closeIfComplete()) {
+            String msg = String.format("Upload session (id: %s) has missing chunks or is completed already.", id);
+            log.error(msg);
+            throw new MultipartFileException(msg);
+        }
+        try (InputStream content = new BufferedInputStream(new SequenceInputStream(chunks(session)), ImageValidator.HEADER_SIZE)) {
+            String mimeType = imageValidator.validate(session.getName(), content);
+            return imageStore.upload(session.getName(), mimeType, content);
+        } catch (IOException | UncheckedIOException ex) {
+            String msg = String.format("Chunks of upload session (id: %s) could not be read.", id);
+            log.error(msg, ex);
+            throw new MultipartFileException(msg);
+        } finally {
+            remove(session);
+        }
+    }
+
+    /**
+     * Discard a session with its chunks.
+     * Throws {@link EntityNotFoundException} if the session is not found.
+     *
+     * @param id the id of the session
+     */
+    public void abort(String id) {
+        UploadSession session = find(id);
+        if (session.close()) {
+            remove(session);
+            log.info("Upload session (id: {}) is aborted.", id);
+        }
+    }
+
+    /**
+     * Discard the sessions which have not received a chunk for {@link ResumableUploadConfig#getTtl()}.
+     * Sessions being completed are left to finish.
+     */
+    public void removeExpired() {
+        Instant now = Instant.now();
+        for (UploadSession session : sessions.values()) {
+            if (!expiresAt(session).isAfter(now) && session.close()) {
+                remove(session);
+                log.info("Upload session (id: {}) of image (name: {}) has expired.", session.getId(), session.getName());
+            }
+        }
+    }
+
+    /**
+     * Stop removing expired sessions.
+     */
+    @PreDestroy
+    public void shutDown() {
+        cleaner.shutdownNow();
+    }
+
+    /**
+     * Find an open session.
+     * Throws {@link EntityNotFoundException} if the session is not found.
+     *
+     * @param id the id of the session
+     * @return the session
+     */
+    private UploadSession find(String id) {
+        UploadSession session = id == null ? null : sessions.get(id);
+        if (session == null) {
+            String msg = String.format("Upload session not found with id: %s.", id);
+            log.error(msg);
+            throw new EntityNotFoundException(msg);
+        }
+        return session;
+    }
+
+    /**
+     * Open the staged chunks of a session one after the other, each of them when the previous one has been read.
+     *
+     * @param session the session
+     * @return the streams of the chunks in order
+     */
+    private Enumeration<InputStream> chunks(UploadSession session) {
+        return new Enumeration<>() {
+
+            private int next;
+
+            @Override
+            public boolean hasMoreElements() {
+                return next < session.getChunkCount();
+            }
+
+            @Override
+            public InputStream nextElement() {
+                try {
+                    return Files.newInputStream(session.chunkPath(next++));
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            }
+
+        };
+    }
+
+    /**
+     * Remove a closed session and delete its chunks.
+     *
+     * @param session the session
+     */
+    private void remove(UploadSession session) {
+        sessions.remove(session.getId());
+        deleteDirectory(session.getDirectory());
+    }
+
+    /**
+     * Get the time a session expires at.
+     *
+     * @param session the session
+     * @return the expiry of the session
+     */
+    private Instant expiresAt(UploadSession session) {
+        return session.getLastActivity().plus(resumableUploadConfig.getTtl());
+    }
+
+    /**
+     * Create the state of a session to be returned to the client.
+     *
+     * @param session the session
+     * @return the state of the session
+     */
+    private UploadSessionStatus toStatus(UploadSession session) {
+        List<Long> receivedOffsets = new ArrayList<>();
+        session.receivedChunks().stream().forEach(index -> receivedOffsets.add((long) index * session.getChunkSize()));
+        return new UploadSessionStatus(session.getId(), session.getName(), session.getSize(), session.getChunkSize(),
+                session.getChunkCount(), receivedOffsets, expiresAt(session));
+    }
+
+    /**
+     * Delete a staging directory. Failing to delete it is logged only.
+     *
+     * @param path the directory
+     */
+    private void deleteDirectory(Path path) {
+        try {
+            FileUtils.deleteDirectory(path.toFile());
+        } catch (IOException ex) {
+            log.warn("Staging directory {} could not be deleted.", path, ex);
+        }
+    }
+
+    /**
+     * Delete a staging file. Failing to delete it is logged only.
+     *
+     * @param path the file, may be null
+     */
+    private void deleteFile(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ex) {
+            log.warn("Staging file {} could not be deleted.", path, ex);
+        }
+    }
+
+}
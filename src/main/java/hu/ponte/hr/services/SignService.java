@@ -1,19 +1,30 @@
 package hu.ponte.hr.services;
 
 import hu.ponte.hr.config.SignConfig;
+import hu.ponte.hr.domain.SignatureScheme;
 import hu.ponte.hr.exception.exceptions.CustomSignatureException;
+import hu.ponte.hr.services.signing.BatchSignTask;
+import hu.ponte.hr.services.signing.KeyMaterialCache;
+import hu.ponte.hr.services.signing.SignRequest;
+import hu.ponte.hr.services.signing.SignResult;
+import hu.ponte.hr.services.signing.SigningSession;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.IOUtils;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.ClassPathResource;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PreDestroy;
 import java.io.IOException;
 import java.io.InputStream;
-import java.security.*;
-import java.security.spec.InvalidKeySpecException;
-import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Service class for digital signing binary contents.
@@ -22,13 +33,29 @@ import java.util.Base64;
 @Slf4j
 public class SignService {
 
+    /**
+     * Size of the buffer used for reading streamed contents.
+     */
+    private static final int BUFFER_SIZE = 8192;
+
     /**
      * {@link SignConfig} instance.
      */
     private SignConfig signConfig;
 
+    /**
+     * {@link KeyMaterialCache} instance bound to {@link SignConfig}.
+     */
+    private KeyMaterialCache keyMaterialCache;
+
+    /**
+     * Fork-join pool for batch signing.
+     */
+    private ForkJoinPool batchPool;
+
     /**
      * Create a Base64 encoded digital signature by a predefined private key file.
+     * The parsed private key and the initialized signature instances are reused between calls.
      * Throws {@link IllegalArgumentException} if any of the parameters is null.
      *
      * @param data     binary content of a file to be signed
@@ -42,28 +69,195 @@ public class SignService {
             log.error("{} method was called with null parameter(s).", methodName);
             throw new IllegalArgumentException();
         }
-        try (InputStream privateKeyStream = new ClassPathResource(signConfig.getPrivateKeyPathInResources()).getInputStream()) {
-
-            KeyFactory keyFactory = KeyFactory.getInstance(signConfig.getKeyAlgorithm());
-            PKCS8EncodedKeySpec keySpec = new PKCS8EncodedKeySpec(IOUtils.toByteArray(privateKeyStream));
-            PrivateKey privateKey = keyFactory.generatePrivate(keySpec);
-            log.info("Private key is loaded for signing file (name: {}).", fileName);
+        try (SigningSession session = openSession(fileName)) {
+            session.update(data, 0, data.length);
+            String signature = session.sign();
+            log.info("New signature is created for file (name: {}).", fileName);
+            return signature;
+        }
+    }
 
-            Signature signature = Signature.getInstance(signConfig.getSignatureAlgorithm());
-            signature.initSign(privateKey);
-            signature.update(data);
-            byte[] signatureData = signature.sign();
+    /**
+     * Create a Base64 encoded digital signature by a predefined private key file, consuming the content chunk by chunk.
+     * The stream is read till its end, but it is not closed.
+     * Throws {@link IllegalArgumentException} if any of the parameters is null.
+     *
+     * @param data     binary content of a file to be signed
+     * @param fileName the original file name
+     * @return the Base64 encoded signature
+     */
+    public String createSignature(InputStream data, String fileName) {
+        if (data == null || fileName == null) {
+            String methodName = new Object() {
+            }.getClass().getEnclosingMethod().getName();
+            log.error("{} method was called with null parameter(s).", methodName);
+            throw new IllegalArgumentException();
+        }
+        try (SigningSession session = openSession(fileName)) {
+            IOUtils.copyLarge(data, session.asOutputStream(), new byte[BUFFER_SIZE]);
+            String signature = session.sign();
             log.info("New signature is created for file (name: {}).", fileName);
+            return signature;
+        } catch (IOException ex) {
+            String msg = String.format("Failed to read content of file (name: %s) for signing.", fileName);
+            log.error(msg, ex);
+            throw new CustomSignatureException(msg, ex);
+        }
+    }
 
-            return Base64.getEncoder().encodeToString(signatureData);
-        } catch (IOException | NoSuchAlgorithmException | InvalidKeySpecException | SignatureException |
-                 InvalidKeyException ex) {
+    /**
+     * Open a session for signing a content incrementally, as it arrives.
+     * The returned session must be either signed or closed.
+     * Throws {@link IllegalArgumentException} if any of the parameters is null.
+     *
+     * @param fileName the original file name
+     * @return a new {@link SigningSession}
+     */
+    public SigningSession openSession(String fileName) {
+        if (fileName == null) {
+            String methodName = new Object() {
+            }.getClass().getEnclosingMethod().getName();
+            log.error("{} method was called with null parameter(s).", methodName);
+            throw new IllegalArgumentException();
+        }
+        try {
+            return keyMaterialCache.openSession();
+        } catch (IOException | GeneralSecurityException ex) {
             String msg = "Something went wrong during signing.";
             log.error(msg, ex);
             throw new CustomSignatureException(msg);
         }
     }
 
+    /**
+     * Verify a Base64 encoded digital signature against a content by the predefined public key file of its scheme.
+     * The content is consumed chunk by chunk, the stream is read till its end, but it is not closed.
+     * Throws {@link IllegalArgumentException} if any of the parameters is null, except {@code scheme}.
+     * Throws {@link CustomSignatureException} if the content could not be read or the verification could not be executed.
+     *
+     * @param data      binary content of a file to be verified
+     * @param signature the Base64 encoded signature
+     * @param scheme    the scheme of the signature, null means {@link SignatureScheme#RSA}
+     * @param fileName  the original file name
+     * @return true, if the signature belongs to the content
+     */
+    public boolean verify(InputStream data, String signature, SignatureScheme scheme, String fileName) {
+        if (data == null || signature == null || fileName == null) {
+            String methodName = new Object() {
+            }.getClass().getEnclosingMethod().getName();
+            log.error("{} method was called with null parameter(s).", methodName);
+            throw new IllegalArgumentException();
+        }
+        byte[] signatureData;
+        try {
+            signatureData = Base64.getDecoder().decode(signature);
+        } catch (IllegalArgumentException ex) {
+            log.warn("Signature of file (name: {}) is not a valid Base64 string.", fileName);
+            return false;
+        }
+        try {
+            SignatureScheme signatureScheme = SignatureScheme.orDefault(scheme);
+            Signature verifier = Signature.getInstance(keyMaterialCache.signatureAlgorithm(signatureScheme));
+            verifier.initVerify(keyMaterialCache.getPublicKey(signatureScheme));
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int lengthRead;
+            while ((lengthRead = data.read(buffer)) != -1) {
+                verifier.update(buffer, 0, lengthRead);
+            }
+            boolean valid = verifier.verify(signatureData);
+            log.info("Signature of file (name: {}) is verified, valid: {}.", fileName, valid);
+            return valid;
+        } catch (IOException ex) {
+            String msg = String.format("Failed to read content of file (name: %s) for verification.", fileName);
+            log.error(msg, ex);
+            throw new CustomSignatureException(msg, ex);
+        } catch (SignatureException ex) {
+            log.warn("Signature of file (name: {}) is malformed.", fileName);
+            return false;
+        } catch (GeneralSecurityException ex) {
+            String msg = "Something went wrong during verification.";
+            log.error(msg, ex);
+            throw new CustomSignatureException(msg, ex);
+        }
+    }
+
+    /**
+     * Sign many files in parallel on a bounded fork-join pool sized by {@link SignConfig#getBatchParallelism()}.
+     * A failing item does not stop the batch, its failure is reported in the corresponding result.
+     * Throws {@link IllegalArgumentException} if any of the parameters is null.
+     *
+     * @param requests the files to be signed
+     * @return the results in the iteration order of {@code requests}
+     */
+    public List<SignResult> signAll(Collection<SignRequest> requests) {
+        if (requests == null) {
+            String methodName = new Object() {
+            }.getClass().getEnclosingMethod().getName();
+            log.error("{} method was called with null parameter(s).", methodName);
+            throw new IllegalArgumentException();
+        }
+        List<SignRequest> items = new ArrayList<>(requests);
+        SignResult[] results = new SignResult[items.size()];
+        getBatchPool().invoke(new BatchSignTask(items, results, this::signItem));
+        long failed = Arrays.stream(results).filter(result -> !result.isSuccessful()).count();
+        log.info("Batch of {} files is signed, {} failed.", results.length, failed);
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Sign a single item of a batch.
+     *
+     * @param request the item to be signed
+     * @return the result of the signing
+     */
+    private SignResult signItem(SignRequest request) {
+        try (InputStream inputStream = request.getSource().getInputStream();
+             SigningSession session = openSession(request.getFileName())) {
+            IOUtils.copyLarge(inputStream, session.asOutputStream(), new byte[BUFFER_SIZE]);
+            return SignResult.success(request, session.sign(), session.getScheme());
+        } catch (IOException ex) {
+            String msg = String.format("Failed to read content of file (name: %s) for signing.", request.getFileName());
+            log.error(msg, ex);
+            return SignResult.failure(request, new CustomSignatureException(msg, ex));
+        } catch (RuntimeException ex) {
+            return SignResult.failure(request, ex);
+        }
+    }
+
+    /**
+     * Get the fork-join pool of batch signing, it is created on first use.
+     *
+     * @return the batch signing pool
+     */
+    private synchronized ForkJoinPool getBatchPool() {
+        if (batchPool == null) {
+            int parallelism = signConfig.getBatchParallelism() > 0
+                    ? signConfig.getBatchParallelism()
+                    : Runtime.getRuntime().availableProcessors();
+            batchPool = new ForkJoinPool(parallelism);
+        }
+        return batchPool;
+    }
+
+    /**
+     * Shut down the batch signing pool.
+     */
+    @PreDestroy
+    public synchronized void shutDown() {
+        if (batchPool != null) {
+            batchPool.shutdown();
+        }
+    }
+
+    /**
+     * Get the {@link KeyMaterialCache} instance for monitoring purposes.
+     *
+     * @return the key material cache
+     */
+    public KeyMaterialCache getKeyMaterialCache() {
+        return keyMaterialCache;
+    }
+
     /**
      * Binds a {@link SignConfig} instance externally. It provides testing functionality without loading a full application context.
      *
@@ -72,6 +266,7 @@ public class SignService {
     @Autowired
     protected void setSignConfig(SignConfig signConfig) {
         this.signConfig = signConfig;
+        this.keyMaterialCache = new KeyMaterialCache(signConfig);
     }
 
 }
@@ -0,0 +1,45 @@
+package hu.ponte.hr.services;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * The stored metadata of an image required for serving its content.
+ */
+@Getter
+@RequiredArgsConstructor
+public class StoredImage {
+
+    /**
+     * Public id of image.
+     */
+    private final String publicId;
+
+    /**
+     * The key by which the content of image is stored.
+     */
+    private final String storageKey;
+
+    /**
+     * Mimetype of image.
+     */
+    private final String mimeType;
+
+    /**
+     * Size of image in bytes.
+     */
+    private final long size;
+
+    /**
+     * Hex encoded SHA-256 hash of the content, may be null.
+     */
+    private final String contentHash;
+
+    /**
+     * Time of upload, may be null.
+     */
+    private final Instant createdAt;
+
+}
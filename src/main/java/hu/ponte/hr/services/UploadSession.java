@@ -0,0 +1,154 @@
+package hu.ponte.hr.services;
+
+import lombok.Getter;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.BitSet;
+
+/**
+ * A resumable upload in progress, whose chunks are staged in its own directory.
+ * The received chunks and the completion are guarded by this instance.
+ */
+class UploadSession {
+
+    /**
+     * Id of the session.
+     */
+    @Getter
+    private final String id;
+
+    /**
+     * The name of the file.
+     */
+    @Getter
+    private final String name;
+
+    /**
+     * The size of the file.
+     */
+    @Getter
+    private final long size;
+
+    /**
+     * Size of the chunks, only the last chunk may be smaller.
+     */
+    @Getter
+    private final int chunkSize;
+
+    /**
+     * Number of chunks of the file.
+     */
+    @Getter
+    private final int chunkCount;
+
+    /**
+     * Directory of the staged chunks.
+     */
+    @Getter
+    private final Path directory;
+
+    /**
+     * The received chunks by their index.
+     */
+    private final BitSet received;
+
+    /**
+     * Time of the last activity of the session.
+     */
+    @Getter
+    private volatile Instant lastActivity;
+
+    /**
+     * Whether the session is being completed or is discarded, so it accepts no more chunks.
+     */
+    private boolean closed;
+
+    UploadSession(String id, String name, long size, int chunkSize, Path directory) {
+        this.id = id;
+        this.name = name;
+        this.size = size;
+        this.chunkSize = chunkSize;
+        this.chunkCount = (int) ((size + chunkSize - 1) / chunkSize);
+        this.directory = directory;
+        this.received = new BitSet(chunkCount);
+        this.lastActivity = Instant.now();
+    }
+
+    /**
+     * Get the size of a chunk.
+     *
+     * @param index the index of the chunk
+     * @return the size of the chunk
+     */
+    long chunkLength(int index) {
+        return Math.min(chunkSize, size - (long) index * chunkSize);
+    }
+
+    /**
+     * Get the staged file of a chunk.
+     *
+     * @param index the index of the chunk
+     * @return the path of the chunk
+     */
+    Path chunkPath(int index) {
+        return directory.resolve("chunk-" + index);
+    }
+
+    /**
+     * Record the activity of a client, which postpones the expiry of the session.
+     */
+    void touch() {
+        lastActivity = Instant.now();
+    }
+
+    /**
+     * Record a received chunk.
+     *
+     * @param index the index of the chunk
+     * @return false if the session is closed already, so the chunk is not needed
+     */
+    synchronized boolean receive(int index) {
+        if (closed) {
+            return false;
+        }
+        received.set(index);
+        return true;
+    }
+
+    /**
+     * Get the indexes of the received chunks.
+     *
+     * @return a copy of the received chunks
+     */
+    synchronized BitSet receivedChunks() {
+        return (BitSet) received.clone();
+    }
+
+    /**
+     * Close the session if every chunk has been received, so it can be completed.
+     *
+     * @return true if the session is closed by this call
+     */
+    synchronized boolean closeIfComplete() {
+        if (closed || received.cardinality() < chunkCount) {
+            return false;
+        }
+        closed = true;
+        return true;
+    }
+
+    /**
+     * Close the session for discarding it.
+     *
+     * @return true if the session is closed by this call, false if it is closed already
+     */
+    synchronized boolean close() {
+        if (closed) {
+            return false;
+        }
+        closed = true;
+        return true;
+    }
+
+}
@@ -0,0 +1,131 @@
+package hu.ponte.hr.services;
+
+import hu.ponte.hr.config.SignConfig;
+import hu.ponte.hr.domain.Image;
+import hu.ponte.hr.exception.exceptions.StorageException;
+import hu.ponte.hr.repository.ImageRepository;
+import hu.ponte.hr.services.storagehandler.StorageHandler;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import javax.persistence.EntityNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Service class for verifying the digital signatures of stored images.
+ * Verification results are kept in a bounded LRU cache keyed by public id and signature,
+ * so repeated checks do not download the image again.
+ */
+@Service
+@Slf4j
+public class VerificationService {
+
+    /**
+     * {@link ImageRepository} instance.
+     */
+    private final ImageRepository imageRepository;
+
+    /**
+     * {@link StorageHandler} instance.
+     */
+    private final StorageHandler storageHandler;
+
+    /**
+     * {@link SignService} instance.
+     */
+    private final SignService signService;
+
+    /**
+     * Verified results keyed by public id and signature.
+     */
+    private final Map<List<String>, Boolean> verifiedResults;
+
+    /**
+     * Number of verifications served from the cache.
+     */
+    private final AtomicLong hits = new AtomicLong();
+
+    /**
+     * Number of verifications which required a download.
+     */
+    private final AtomicLong misses = new AtomicLong();
+
+    public VerificationService(ImageRepository imageRepository, StorageHandler storageHandler,
+                               SignService signService, SignConfig signConfig) {
+        this.imageRepository = imageRepository;
+        this.storageHandler = storageHandler;
+        this.signService = signService;
+        int maxSize = signConfig.getVerificationCacheSize();
+        this.verifiedResults = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<List<String>, Boolean> eldest) {
+                return size() > maxSize;
+            }
+        });
+    }
+
+    /**
+     * Verify the stored digital signature of an image against its stored content.
+     * Throws {@link EntityNotFoundException} if image metadata is not found in database.
+     * Throws {@link StorageException} if {@link StorageHandler} throws exception.
+     *
+     * @param publicId the public id of the image
+     * @return true, if the stored signature belongs to the stored content
+     */
+    public boolean verify(String publicId) {
+        Image image = imageRepository.findByPublicId(publicId).orElseThrow(() -> {
+            String msg = String.format("Image not found with id: %s.", publicId);
+            log.error(msg);
+            return new EntityNotFoundException(msg);
+        });
+        if (image.getDigitalSign() == null) {
+            return false;
+        }
+        List<String> key = List.of(publicId, image.getDigitalSign());
+        Boolean cached = verifiedResults.get(key);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return cached;
+        }
+        misses.incrementAndGet();
+        boolean valid;
+        try (InputStream imageStream = storageHandler.downloadAFileUncached(image.getStorageKey()).get()) {
+            valid = signService.verify(imageStream, image.getDigitalSign(), image.getSignatureScheme(), image.getName());
+        } catch (ExecutionException e) {
+            throw new StorageException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StorageException(e);
+        } catch (IOException e) {
+            throw new StorageException(e);
+        }
+        verifiedResults.put(key, valid);
+        return valid;
+    }
+
+    /**
+     * Get the number of verifications served from the cache.
+     *
+     * @return the number of hits
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Get the number of verifications which required a download.
+     *
+     * @return the number of misses
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+}
@@ -0,0 +1,278 @@
+package hu.ponte.hr.services.cache;
+
+import hu.ponte.hr.config.MemoryCacheConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory cache of image contents bounded by their total size, with least recently used eviction.
+ * Contents are held in heap or, if configured, direct buffers, so large images do not have to live on the Java heap.
+ * Contents are cached by their storage key, the hash of the content, so an entry never changes and is never invalidated,
+ * it only leaves the cache by eviction.
+ */
+@Component
+@Slf4j
+public class ImageContentCache {
+
+    /**
+     * {@link MemoryCacheConfig} instance.
+     */
+    private final MemoryCacheConfig memoryCacheConfig;
+
+    /**
+     * Cached contents by file name, in access order.
+     */
+    private final LinkedHashMap<String, ByteBuffer> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Total size of the cached contents.
+     */
+    private long size;
+
+    /**
+     * Number of lookups which found the content.
+     */
+    private final AtomicLong hits = new AtomicLong();
+
+    /**
+     * Number of lookups which did not find the content.
+     */
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Number of contents evicted to stay within the max size.
+     */
+    private final AtomicLong evictions = new AtomicLong();
+
+    public ImageContentCache(MemoryCacheConfig memoryCacheConfig) {
+        this.memoryCacheConfig = memoryCacheConfig;
+    }
+
+    /**
+     * Check whether content of a given size may be cached.
+     *
+     * @param length the size of the content
+     * @return true, if the content fits into the cache
+     */
+    public boolean isCacheable(long length) {
+        return length <= memoryCacheConfig.getMaxEntrySize() && length <= memoryCacheConfig.getMaxSize();
+    }
+
+    /**
+     * Write the cached content of a file into an OutputStream instance.
+     *
+     * @param fileName     the name of the file
+     * @param outputStream the stream to write the content into, it is not closed
+     * @return true, if the content was cached and written
+     * @throws IOException if writing into {@code outputStream} fails
+     */
+    public boolean writeTo(String fileName, OutputStream outputStream) throws IOException {
+        return writeTo(fileName, 0, Long.MAX_VALUE, outputStream);
+    }
+
+    /**
+     * Write a range of the cached content of a file into an OutputStream instance.
+     *
+     * @param fileName     the name of the file
+     * @param offset       the position of the first byte to be written
+     * @param length       the number of bytes to be written, it is cut at the end of the content
+     * @param outputStream the stream to write the content into, it is not closed
+     * @return true, if the content was cached and written
+     * @throws IOException if writing into {@code outputStream} fails
+     */
+    public boolean writeTo(String fileName, long offset, long length, OutputStream outputStream) throws IOException {
+        ByteBuffer content;
+        synchronized (this) {
+            content = entries.get(fileName);
+        }
+        if (content == null) {
+            misses.incrementAndGet();
+            return false;
+        }
+        hits.incrementAndGet();
+        ByteBuffer view = content.duplicate();
+        int position = (int) Math.min(offset, view.capacity());
+        view.position(position).limit((int) Math.min(view.capacity(), position + Math.min(length, view.capacity())));
+        if (view.hasArray()) {
+            outputStream.write(view.array(), view.arrayOffset() + view.position(), view.remaining());
+        } else {
+            WritableByteChannel target = Channels.newChannel(outputStream);
+            while (view.hasRemaining()) {
+                target.write(view);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Store the content of a file and evict the least recently used contents beyond the max size.
+     * Content which is not cacheable is ignored.
+     *
+     * @param fileName the name of the file
+     * @param data     the content of the file
+     */
+    public void put(String fileName, byte[] data) {
+        if (!isCacheable(data.length)) {
+            return;
+        }
+        ByteBuffer content;
+        if (memoryCacheConfig.isDirect()) {
+            content = ByteBuffer.allocateDirect(data.length).put(data).flip();
+        } else {
+            content = ByteBuffer.wrap(data.clone());
+        }
+        insert(fileName, content);
+    }
+
+    /**
+     * Start storing the content of a file while it is transferred. The content is written straight into the buffer of the entry,
+     * which is stored once it is committed.
+     *
+     * @param fileName the name of the file
+     * @param length   the size of the content, it has to be cacheable
+     * @return the fill to write the content of the file into
+     */
+    public Fill fill(String fileName, long length) {
+        return new Fill(fileName, memoryCacheConfig.isDirect() ? ByteBuffer.allocateDirect((int) length) : ByteBuffer.allocate((int) length));
+    }
+
+    /**
+     * Store a content and evict the least recently used contents beyond the max size.
+     *
+     * @param fileName the name of the file
+     * @param content  the content of the file, positioned at its start
+     */
+    private void insert(String fileName, ByteBuffer content) {
+        synchronized (this) {
+            ByteBuffer previous = entries.put(fileName, content);
+            size += content.capacity() - (previous == null ? 0 : previous.capacity());
+            Iterator<Map.Entry<String, ByteBuffer>> iterator = entries.entrySet().iterator();
+            while (size > memoryCacheConfig.getMaxSize() && iterator.hasNext()) {
+                Map.Entry<String, ByteBuffer> eldest = iterator.next();
+                iterator.remove();
+                size -= eldest.getValue().capacity();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Get the number of lookups which found the content.
+     *
+     * @return the number of hits
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Get the number of lookups which did not find the content.
+     *
+     * @return the number of misses
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Get the number of contents evicted to stay within the max size.
+     *
+     * @return the number of evicted contents
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Get the total size of the cached contents.
+     *
+     * @return the size in bytes
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * Get the number of cached contents.
+     *
+     * @return the number of entries
+     */
+    public synchronized int getCount() {
+        return entries.size();
+    }
+
+    /**
+     * A content being stored in the cache while it is transferred. Writing never fails, the fill is dropped instead
+     * if the content exceeds its declared size. Closing the fill drops it, unless it is committed.
+     */
+    public final class Fill extends OutputStream {
+
+        /**
+         * The name of the file.
+         */
+        private final String fileName;
+
+        /**
+         * The buffer of the content, null once the fill is committed or dropped.
+         */
+        private ByteBuffer content;
+
+        private Fill(String fileName, ByteBuffer content) {
+            this.fileName = fileName;
+            this.content = content;
+        }
+
+        @Override
+        public void write(int b) {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            if (content == null) {
+                return;
+            }
+            if (len > content.remaining()) {
+                log.debug("Content of file (name: {}) is not cached, it is larger than declared.", fileName);
+                content = null;
+                return;
+            }
+            content.put(b, off, len);
+        }
+
+        /**
+         * Store the written content in the cache, if it is of its declared size.
+         *
+         * @return true, if the content is stored
+         */
+        public boolean commit() {
+            if (content == null || content.hasRemaining()) {
+                content = null;
+                return false;
+            }
+            insert(fileName, content.flip());
+            content = null;
+            return true;
+        }
+
+        /**
+         * Drop the written content, unless it is committed.
+         */
+        @Override
+        public void close() {
+            content = null;
+        }
+
+    }
+
+}
@@ -0,0 +1,43 @@
+package hu.ponte.hr.services.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Publishes the statistics of {@link ImageContentCache} to the meter registry.
+ */
+@Component
+@RequiredArgsConstructor
+public class ImageContentCacheMetrics implements MeterBinder {
+
+    /**
+     * {@link ImageContentCache} instance.
+     */
+    private final ImageContentCache imageContentCache;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("image.content.cache.hits", imageContentCache, ImageContentCache::getHits)
+                .description("Image downloads served from memory")
+                .register(registry);
+        FunctionCounter.builder("image.content.cache.misses", imageContentCache, ImageContentCache::getMisses)
+                .description("Image downloads served from storage")
+                .register(registry);
+        FunctionCounter.builder("image.content.cache.evictions", imageContentCache, ImageContentCache::getEvictions)
+                .description("Image contents evicted to stay within the max size")
+                .register(registry);
+        Gauge.builder("image.content.cache.size", imageContentCache, ImageContentCache::getSize)
+                .description("Total size of the cached image contents")
+                .baseUnit(BaseUnits.BYTES)
+                .register(registry);
+        Gauge.builder("image.content.cache.entries", imageContentCache, ImageContentCache::getCount)
+                .description("Number of cached image contents")
+                .register(registry);
+    }
+
+}
@@ -0,0 +1,51 @@
+package hu.ponte.hr.services.signing;
+
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Function;
+
+/**
+ * Fork-join task for signing a range of a batch. The range is split in halves until a single item remains.
+ */
+public class BatchSignTask extends RecursiveAction {
+
+    private final transient List<SignRequest> requests;
+    private final transient SignResult[] results;
+    private final transient Function<SignRequest, SignResult> signer;
+    private final int from;
+    private final int to;
+
+    /**
+     * Create a task for the whole batch.
+     *
+     * @param requests the items to be signed
+     * @param results  array of the same size as {@code requests}, results are written at the index of their request
+     * @param signer   function which signs a single item
+     */
+    public BatchSignTask(List<SignRequest> requests, SignResult[] results, Function<SignRequest, SignResult> signer) {
+        this(requests, results, signer, 0, requests.size());
+    }
+
+    private BatchSignTask(List<SignRequest> requests, SignResult[] results, Function<SignRequest, SignResult> signer,
+                          int from, int to) {
+        this.requests = requests;
+        this.results = results;
+        this.signer = signer;
+        this.from = from;
+        this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+        if (to - from <= 1) {
+            for (int i = from; i < to; i++) {
+                results[i] = signer.apply(requests.get(i));
+            }
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        invokeAll(new BatchSignTask(requests, results, signer, from, middle),
+                new BatchSignTask(requests, results, signer, middle, to));
+    }
+
+}
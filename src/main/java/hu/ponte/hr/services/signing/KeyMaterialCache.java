@@ -0,0 +1,348 @@
+package hu.ponte.hr.services.signing;
+
+import hu.ponte.hr.config.SignConfig;
+import hu.ponte.hr.domain.SignatureScheme;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.IOUtils;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache for parsed signing key material.
+ * The private key is parsed once and kept until the key file or the {@link SignConfig} changes.
+ * Initialized {@link Signature} instances are pooled, so they can be reused across signing operations.
+ * Public keys are cached per {@link SignatureScheme}, so signatures of earlier schemes remain verifiable.
+ */
+@Slf4j
+public class KeyMaterialCache {
+
+    /**
+     * {@link SignConfig} instance.
+     */
+    private final SignConfig signConfig;
+
+    /**
+     * {@link ResourceLoader} for resolving the key file locations.
+     */
+    private final ResourceLoader resourceLoader = new DefaultResourceLoader();
+
+    /**
+     * Number of signing operations served by a pooled {@link Signature} instance.
+     */
+    private final AtomicLong hits = new AtomicLong();
+
+    /**
+     * Number of signing operations which required a new {@link Signature} instance.
+     */
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Number of times the private key was parsed.
+     */
+    private final AtomicLong reloads = new AtomicLong();
+
+    /**
+     * Currently loaded public keys by scheme, guarded by this.
+     */
+    private final Map<SignatureScheme, VerificationKey> verificationKeys = new EnumMap<>(SignatureScheme.class);
+
+    /**
+     * Currently loaded key material.
+     */
+    private volatile KeyMaterial keyMaterial;
+
+    /**
+     * Epoch millis after which the key file is checked for changes again.
+     */
+    private volatile long nextReloadCheck;
+
+    public KeyMaterialCache(SignConfig signConfig) {
+        this.signConfig = signConfig;
+    }
+
+    /**
+     * Open a signing session with the cached private key.
+     *
+     * @return a new {@link SigningSession} backed by a pooled {@link Signature} instance
+     * @throws IOException              if the key file could not be read
+     * @throws GeneralSecurityException if the key could not be parsed
+     */
+    public SigningSession openSession() throws IOException, GeneralSecurityException {
+        KeyMaterial current = currentKeyMaterial();
+        return new SigningSession(current.borrow(), current::giveBack, current.scheme);
+    }
+
+    /**
+     * Get the public key of a scheme. The key of the active scheme is defined by
+     * {@link SignConfig#getPublicKeyPathInResources()}, others by {@link SignConfig#getVerificationKeys()}.
+     * The key is parsed once and kept until the key file or the {@link SignConfig} changes.
+     *
+     * @param scheme the scheme of the signature to be verified
+     * @return the public key
+     * @throws IOException              if the key file could not be read or not configured
+     * @throws GeneralSecurityException if the key could not be parsed
+     */
+    public synchronized PublicKey getPublicKey(SignatureScheme scheme) throws IOException, GeneralSecurityException {
+        String publicKeyPath = scheme == signConfig.getScheme()
+                ? signConfig.getPublicKeyPathInResources()
+                : signConfig.getVerificationKeys().get(scheme);
+        if (publicKeyPath == null) {
+            throw new FileNotFoundException(String.format("Public key of scheme %s is not configured.", scheme));
+        }
+        String keyAlgorithm = keyAlgorithm(scheme);
+        long now = System.currentTimeMillis();
+        VerificationKey current = verificationKeys.get(scheme);
+        if (current != null && current.matches(publicKeyPath, keyAlgorithm)) {
+            if (now < current.nextReloadCheck) {
+                return current.publicKey;
+            }
+            current.nextReloadCheck = now + signConfig.getKeyReloadCheckInterval().toMillis();
+            if (lastModified(resourceLoader.getResource(publicKeyPath)) == current.lastModified) {
+                return current.publicKey;
+            }
+            log.info("Public key file ({}) is changed.", publicKeyPath);
+        }
+        current = loadPublicKey(publicKeyPath, keyAlgorithm);
+        current.nextReloadCheck = now + signConfig.getKeyReloadCheckInterval().toMillis();
+        verificationKeys.put(scheme, current);
+        return current.publicKey;
+    }
+
+    /**
+     * Get the key algorithm of a scheme. The algorithm of the active scheme can be overridden by
+     * {@link SignConfig#getKeyAlgorithm()}.
+     *
+     * @param scheme the scheme
+     * @return the key algorithm name
+     */
+    public String keyAlgorithm(SignatureScheme scheme) {
+        if (scheme == signConfig.getScheme() && signConfig.getKeyAlgorithm() != null) {
+            return signConfig.getKeyAlgorithm();
+        }
+        return scheme.getKeyAlgorithm();
+    }
+
+    /**
+     * Get the signature algorithm of a scheme. The algorithm of the active scheme can be overridden by
+     * {@link SignConfig#getSignatureAlgorithm()}.
+     *
+     * @param scheme the scheme
+     * @return the signature algorithm name
+     */
+    public String signatureAlgorithm(SignatureScheme scheme) {
+        if (scheme == signConfig.getScheme() && signConfig.getSignatureAlgorithm() != null) {
+            return signConfig.getSignatureAlgorithm();
+        }
+        return scheme.getSignatureAlgorithm();
+    }
+
+    /**
+     * Get the number of signing operations served by a pooled {@link Signature} instance.
+     *
+     * @return the number of hits
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Get the number of signing operations which required a new {@link Signature} instance.
+     *
+     * @return the number of misses
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Get the number of times the private key was parsed.
+     *
+     * @return the number of reloads
+     */
+    public long getReloads() {
+        return reloads.get();
+    }
+
+    /**
+     * Get the up-to-date key material. The key file is checked for modification at most once per
+     * {@link SignConfig#getKeyReloadCheckInterval()}, a changed config causes an immediate reload.
+     *
+     * @return the current key material
+     * @throws IOException              if the key file could not be read
+     * @throws GeneralSecurityException if the key could not be parsed
+     */
+    private KeyMaterial currentKeyMaterial() throws IOException, GeneralSecurityException {
+        KeyMaterial current = keyMaterial;
+        if (current != null && current.matches() && System.currentTimeMillis() < nextReloadCheck) {
+            return current;
+        }
+        synchronized (this) {
+            current = keyMaterial;
+            long now = System.currentTimeMillis();
+            if (current != null && current.matches()) {
+                if (now < nextReloadCheck) {
+                    return current;
+                }
+                nextReloadCheck = now + signConfig.getKeyReloadCheckInterval().toMillis();
+                Resource resource = resourceLoader.getResource(current.privateKeyPath);
+                if (lastModified(resource) == current.lastModified) {
+                    return current;
+                }
+                log.info("Private key file ({}) is changed.", current.privateKeyPath);
+            }
+            keyMaterial = load();
+            nextReloadCheck = now + signConfig.getKeyReloadCheckInterval().toMillis();
+            return keyMaterial;
+        }
+    }
+
+    /**
+     * Parse the private key defined by {@link SignConfig}.
+     *
+     * @return the freshly loaded key material
+     * @throws IOException              if the key file could not be read
+     * @throws GeneralSecurityException if the key could not be parsed
+     */
+    private KeyMaterial load() throws IOException, GeneralSecurityException {
+        SignatureScheme scheme = signConfig.getScheme();
+        String privateKeyPath = signConfig.getPrivateKeyPathInResources();
+        Resource resource = resourceLoader.getResource(privateKeyPath);
+        long lastModified = lastModified(resource);
+        try (InputStream privateKeyStream = resource.getInputStream()) {
+            KeyFactory keyFactory = KeyFactory.getInstance(keyAlgorithm(scheme));
+            PKCS8EncodedKeySpec keySpec = new PKCS8EncodedKeySpec(IOUtils.toByteArray(privateKeyStream));
+            PrivateKey privateKey = keyFactory.generatePrivate(keySpec);
+            reloads.incrementAndGet();
+            log.info("Private key ({}) is loaded for signing with scheme {}.", privateKeyPath, scheme);
+            return new KeyMaterial(scheme, privateKeyPath, keyAlgorithm(scheme), signatureAlgorithm(scheme),
+                    lastModified, privateKey, signConfig.getSignaturePoolSize());
+        }
+    }
+
+    /**
+     * Parse a public key.
+     *
+     * @param publicKeyPath location of the X.509 encoded key
+     * @param keyAlgorithm  the key algorithm
+     * @return the freshly loaded public key
+     * @throws IOException              if the key file could not be read
+     * @throws GeneralSecurityException if the key could not be parsed
+     */
+    private VerificationKey loadPublicKey(String publicKeyPath, String keyAlgorithm) throws IOException, GeneralSecurityException {
+        Resource resource = resourceLoader.getResource(publicKeyPath);
+        long lastModified = lastModified(resource);
+        try (InputStream publicKeyStream = resource.getInputStream()) {
+            KeyFactory keyFactory = KeyFactory.getInstance(keyAlgorithm);
+            X509EncodedKeySpec keySpec = new X509EncodedKeySpec(IOUtils.toByteArray(publicKeyStream));
+            PublicKey publicKey = keyFactory.generatePublic(keySpec);
+            log.info("Public key ({}) is loaded for verification.", publicKeyPath);
+            return new VerificationKey(publicKeyPath, keyAlgorithm, lastModified, publicKey);
+        }
+    }
+
+    /**
+     * Get the last modification time of a resource.
+     *
+     * @param resource the resource to be checked
+     * @return the last modification time or -1 if it can not be determined
+     */
+    private long lastModified(Resource resource) {
+        try {
+            return resource.lastModified();
+        } catch (IOException ex) {
+            return -1;
+        }
+    }
+
+    /**
+     * Immutable snapshot of a parsed private key with its pool of initialized {@link Signature} instances.
+     */
+    private final class KeyMaterial {
+
+        private final SignatureScheme scheme;
+        private final String privateKeyPath;
+        private final String keyAlgorithm;
+        private final String signatureAlgorithm;
+        private final long lastModified;
+        private final PrivateKey privateKey;
+        private final BlockingQueue<Signature> pool;
+
+        private KeyMaterial(SignatureScheme scheme, String privateKeyPath, String keyAlgorithm, String signatureAlgorithm,
+                            long lastModified, PrivateKey privateKey, int poolSize) {
+            this.scheme = scheme;
+            this.privateKeyPath = privateKeyPath;
+            this.keyAlgorithm = keyAlgorithm;
+            this.signatureAlgorithm = signatureAlgorithm;
+            this.lastModified = lastModified;
+            this.privateKey = privateKey;
+            this.pool = new ArrayBlockingQueue<>(Math.max(1, poolSize));
+        }
+
+        private boolean matches() {
+            return scheme == signConfig.getScheme()
+                    && Objects.equals(privateKeyPath, signConfig.getPrivateKeyPathInResources())
+                    && Objects.equals(keyAlgorithm, keyAlgorithm(scheme))
+                    && Objects.equals(signatureAlgorithm, signatureAlgorithm(scheme));
+        }
+
+        private Signature borrow() throws GeneralSecurityException {
+            Signature signature = pool.poll();
+            if (signature != null) {
+                hits.incrementAndGet();
+                return signature;
+            }
+            misses.incrementAndGet();
+            signature = Signature.getInstance(signatureAlgorithm);
+            signature.initSign(privateKey);
+            return signature;
+        }
+
+        private void giveBack(Signature signature) {
+            pool.offer(signature);
+        }
+
+    }
+
+    /**
+     * Snapshot of a parsed public key.
+     */
+    private static final class VerificationKey {
+
+        private final String publicKeyPath;
+        private final String keyAlgorithm;
+        private final long lastModified;
+        private final PublicKey publicKey;
+        private long nextReloadCheck;
+
+        private VerificationKey(String publicKeyPath, String keyAlgorithm, long lastModified, PublicKey publicKey) {
+            this.publicKeyPath = publicKeyPath;
+            this.keyAlgorithm = keyAlgorithm;
+            this.lastModified = lastModified;
+            this.publicKey = publicKey;
+        }
+
+        private boolean matches(String path, String algorithm) {
+            return Objects.equals(publicKeyPath, path) && Objects.equals(keyAlgorithm, algorithm);
+        }
+
+    }
+
+}
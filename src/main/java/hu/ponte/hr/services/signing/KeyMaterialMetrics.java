@@ -0,0 +1,36 @@
+package hu.ponte.hr.services.signing;
+
+import hu.ponte.hr.services.SignService;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Publishes the statistics of {@link KeyMaterialCache} to the meter registry.
+ */
+@Component
+@RequiredArgsConstructor
+public class KeyMaterialMetrics implements MeterBinder {
+
+    /**
+     * {@link SignService} instance.
+     */
+    private final SignService signService;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        KeyMaterialCache cache = signService.getKeyMaterialCache();
+        FunctionCounter.builder("sign.signature.pool.hits", cache, KeyMaterialCache::getHits)
+                .description("Signing operations served by a pooled signature instance")
+                .register(registry);
+        FunctionCounter.builder("sign.signature.pool.misses", cache, KeyMaterialCache::getMisses)
+                .description("Signing operations which required a new signature instance")
+                .register(registry);
+        FunctionCounter.builder("sign.key.reloads", cache, KeyMaterialCache::getReloads)
+                .description("Number of times the private key was parsed")
+                .register(registry);
+    }
+
+}
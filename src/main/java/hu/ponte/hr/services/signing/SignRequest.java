@@ -0,0 +1,24 @@
+package hu.ponte.hr.services.signing;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.InputStreamSource;
+
+/**
+ * A single item of a batch signing.
+ */
+@Getter
+@RequiredArgsConstructor
+public class SignRequest {
+
+    /**
+     * Name of the file to be signed.
+     */
+    private final String fileName;
+
+    /**
+     * Source of the content to be signed. The stream is opened, when the item is processed.
+     */
+    private final InputStreamSource source;
+
+}
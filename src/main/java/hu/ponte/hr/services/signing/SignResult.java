@@ -0,0 +1,47 @@
+package hu.ponte.hr.services.signing;
+
+import hu.ponte.hr.domain.SignatureScheme;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Outcome of a single item of a batch signing.
+ */
+@Getter
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public class SignResult {
+
+    /**
+     * The corresponding request.
+     */
+    private final SignRequest request;
+
+    /**
+     * The Base64 encoded signature, null if the signing failed.
+     */
+    private final String signature;
+
+    /**
+     * Scheme of the signature, null if the signing failed.
+     */
+    private final SignatureScheme scheme;
+
+    /**
+     * The cause of the failure, null if the signing succeeded.
+     */
+    private final RuntimeException error;
+
+    public static SignResult success(SignRequest request, String signature, SignatureScheme scheme) {
+        return new SignResult(request, signature, scheme, null);
+    }
+
+    public static SignResult failure(SignRequest request, RuntimeException error) {
+        return new SignResult(request, null, null, error);
+    }
+
+    public boolean isSuccessful() {
+        return error == null;
+    }
+
+}
@@ -0,0 +1,30 @@
+package hu.ponte.hr.services.signing;
+
+import java.io.OutputStream;
+
+/**
+ * {@link OutputStream} which feeds every written byte into a {@link SigningSession}.
+ * Closing the stream does not finish the session.
+ */
+public class SignatureOutputStream extends OutputStream {
+
+    /**
+     * {@link SigningSession} instance.
+     */
+    private final SigningSession session;
+
+    public SignatureOutputStream(SigningSession session) {
+        this.session = session;
+    }
+
+    @Override
+    public void write(int b) {
+        session.update(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        session.update(b, off, len);
+    }
+
+}
@@ -0,0 +1,144 @@
+package hu.ponte.hr.services.signing;
+
+import hu.ponte.hr.domain.SignatureScheme;
+import hu.ponte.hr.exception.exceptions.CustomSignatureException;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.input.TeeInputStream;
+
+import java.io.Closeable;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.util.Base64;
+import java.util.function.Consumer;
+
+/**
+ * Incremental digital signing of a content which is consumed chunk by chunk.
+ * A session holds a pooled {@link Signature} instance, which is given back to the pool after a successful signing.
+ * Therefore, a session must be either signed or closed. A session is not thread-safe.
+ */
+@Slf4j
+public class SigningSession implements Closeable {
+
+    /**
+     * Initialized {@link Signature} instance.
+     */
+    private final Signature signature;
+
+    /**
+     * Callback for giving back {@link #signature} to its pool.
+     */
+    private final Consumer<Signature> release;
+
+    /**
+     * Scheme of the signature.
+     */
+    @Getter
+    private final SignatureScheme scheme;
+
+    /**
+     * Flag for already signed or closed sessions.
+     */
+    private boolean finished;
+
+    SigningSession(Signature signature, Consumer<Signature> release, SignatureScheme scheme) {
+        this.signature = signature;
+        this.release = release;
+        this.scheme = scheme;
+    }
+
+    /**
+     * Feed a chunk of the content into the signature.
+     * Throws {@link CustomSignatureException} if the session is already finished or the signature could not be updated.
+     *
+     * @param data   buffer with the next chunk
+     * @param offset offset of the chunk in {@code data}
+     * @param length length of the chunk
+     */
+    public void update(byte[] data, int offset, int length) {
+        checkNotFinished();
+        try {
+            signature.update(data, offset, length);
+        } catch (SignatureException ex) {
+            throw fail(ex);
+        }
+    }
+
+    /**
+     * Feed a single byte of the content into the signature.
+     * Throws {@link CustomSignatureException} if the session is already finished or the signature could not be updated.
+     *
+     * @param b the next byte
+     */
+    public void update(int b) {
+        checkNotFinished();
+        try {
+            signature.update((byte) b);
+        } catch (SignatureException ex) {
+            throw fail(ex);
+        }
+    }
+
+    /**
+     * Complete the signing of the consumed content and finish the session.
+     * Throws {@link CustomSignatureException} if the session is already finished or the signing failed.
+     *
+     * @return the Base64 encoded signature
+     */
+    public String sign() {
+        checkNotFinished();
+        try {
+            byte[] signatureData = signature.sign();
+            finished = true;
+            release.accept(signature);
+            return Base64.getEncoder().encodeToString(signatureData);
+        } catch (SignatureException ex) {
+            throw fail(ex);
+        }
+    }
+
+    /**
+     * Get an {@link OutputStream} view of this session. Every byte written to it is fed into the signature.
+     *
+     * @return a {@link SignatureOutputStream} bound to this session
+     */
+    public OutputStream asOutputStream() {
+        return new SignatureOutputStream(this);
+    }
+
+    /**
+     * Wrap an {@link InputStream}, so every byte read from the returned stream is fed into the signature as well.
+     *
+     * @param inputStream the stream to be wrapped
+     * @return the wrapping stream
+     */
+    public InputStream wrap(InputStream inputStream) {
+        return new TeeInputStream(inputStream, asOutputStream());
+    }
+
+    /**
+     * Finish the session without signing. The {@link Signature} instance is dropped, because its state is undefined.
+     */
+    @Override
+    public void close() {
+        finished = true;
+    }
+
+    private void checkNotFinished() {
+        if (finished) {
+            String msg = "Signing session is already finished.";
+            log.error(msg);
+            throw new CustomSignatureException(msg);
+        }
+    }
+
+    private CustomSignatureException fail(SignatureException ex) {
+        finished = true;
+        String msg = "Something went wrong during signing.";
+        log.error(msg, ex);
+        return new CustomSignatureException(msg, ex);
+    }
+
+}
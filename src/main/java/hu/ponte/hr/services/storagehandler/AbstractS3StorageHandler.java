@@ -3,24 +3,41 @@ package hu.ponte.hr.services.storagehandler;
 import com.amazonaws.SdkClientException;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.model.*;
+import hu.ponte.hr.config.AppConfig;
 import hu.ponte.hr.config.AmazonS3Config;
 import hu.ponte.hr.exception.exceptions.StorageException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
 
 /**
  * Abstract class for handling remote AWS S3 storage.
+ * Objects are spread across the shards of {@link ShardRouter} if shards are configured, otherwise they are stored in {@link AmazonS3Config#getBucket()}
+ * without looking up their placement.
  */
 @Slf4j
 @Service
-public abstract class AbstractS3StorageHandler implements StorageHandler {
+public abstract class AbstractS3StorageHandler implements StorageHandler, ShardRouter.ObjectMover {
 
     /**
      * {@link AmazonS3Config} instance.
@@ -32,8 +49,20 @@ public abstract class AbstractS3StorageHandler implements StorageHandler {
      */
     protected AmazonS3 amazonS3;
 
+    /**
+     * {@link ShardRouter} instance, null if objects are not sharded.
+     */
+    protected ShardRouter shardRouter;
+
+    /**
+     * Executor of concurrent part uploads, the part upload lane.
+     */
+    private Executor partUploadExecutor;
+
     /**
      * Upload data to S3 storage. The uploading process will be executed on a separated thread.
+     * Data which reaches {@link AmazonS3Config#getMultipartThreshold()} is uploaded by multipart upload,
+     * its parts are uploaded concurrently.
      * If during this call an exception wasn't thrown, data was stored.
      * Throws {@link IllegalArgumentException} if any of the parameters is null.
      * Throws {@link StorageException} if {@link AmazonS3} client throws exception.
@@ -43,7 +72,7 @@ public abstract class AbstractS3StorageHandler implements StorageHandler {
      * @return a {@link Boolean} instance wrapped in {@link CompletableFuture} object.
      */
     @Override
-    @Async
+    @Async(AppConfig.UPLOAD_EXECUTOR)
     public CompletableFuture<Boolean> uploadAFile(byte[] data, String fileName) {
         if (data == null || fileName == null) {
             String methodName = new Object() {
@@ -51,16 +80,24 @@ public abstract class AbstractS3StorageHandler implements StorageHandler {
             log.error("{} method was called with null parameter(s).", methodName);
             throw new IllegalArgumentException();
         }
+        ShardLocation location = shardRouter != null ? shardRouter.locateForUpload(fileName) : defaultLocation();
+        if (data.length >= amazonS3Config.getMultipartThreshold()) {
+            uploadInParts(fileName, data.length, location, (uploadPartRequest, offset) -> uploadPartRequest
+                    .withInputStream(new ByteArrayInputStream(data, offset.intValue(), (int) uploadPartRequest.getPartSize())));
+            recordPlacement(fileName, location);
+            return CompletableFuture.completedFuture(true);
+        }
         try (ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(data)) {
             ObjectMetadata metadata = new ObjectMetadata();
             metadata.setContentLength(data.length);
             PutObjectRequest putObjectRequest = new PutObjectRequest(
-                    amazonS3Config.getBucket(),
-                    fileName,
+                    location.getBucket(),
+                    location.key(fileName),
                     byteArrayInputStream,
                     metadata);
             amazonS3.putObject(putObjectRequest);
-            log.info("File (name: {}, size: {}) is uploaded to S3.", fileName, data.length);
+            recordPlacement(fileName, location);
+            log.info("File (name: {}, size: {}) is uploaded to S3 shard {}.", fileName, data.length, location);
             return CompletableFuture.completedFuture(true);
         } catch (AmazonS3Exception | IOException ex) {
             String msg = String.format("Could not upload file (name: %s, size: %s) to S3.", fileName, data.length);
@@ -69,6 +106,152 @@ public abstract class AbstractS3StorageHandler implements StorageHandler {
         }
     }
 
+    /**
+     * Upload a local file to S3 storage, streaming it from the disk. The uploading process will be executed on a separated thread.
+     * Files of at least {@link AmazonS3Config#getMultipartThreshold()} bytes are uploaded in parts, read from their offsets.
+     * Throws {@link IllegalArgumentException} if any of the parameters is null.
+     * Throws {@link StorageException} if {@link AmazonS3} client throws exception or the file could not be read.
+     *
+     * @param source   the file to be uploaded
+     * @param fileName to be bind to the content of {@code source}
+     * @return a {@link Boolean} instance wrapped in {@link CompletableFuture} object.
+     */
+    @Override
+    @Async(AppConfig.UPLOAD_EXECUTOR)
+    public CompletableFuture<Boolean> uploadAFile(Path source, String fileName) {
+        if (source == null || fileName == null) {
+            String methodName = new Object() {
+            }.getClass().getEnclosingMethod().getName();
+            log.error("{} method was called with null parameter(s).", methodName);
+            throw new IllegalArgumentException();
+        }
+        long size;
+        try {
+            size = Files.size(source);
+        } catch (IOException ex) {
+            String msg = String.format("Could not read file: %s.", source);
+            log.error(msg, ex);
+            throw new StorageException(msg);
+        }
+        ShardLocation location = shardRouter != null ? shardRouter.locateForUpload(fileName) : defaultLocation();
+        if (size >= amazonS3Config.getMultipartThreshold()) {
+            uploadInParts(fileName, size, location, (uploadPartRequest, offset) -> uploadPartRequest
+                    .withFile(source.toFile())
+                    .withFileOffset(offset));
+        } else {
+            try {
+                amazonS3.putObject(new PutObjectRequest(location.getBucket(), location.key(fileName), source.toFile()));
+            } catch (SdkClientException ex) {
+                String msg = String.format("Could not upload file (name: %s, size: %s) to S3.", fileName, size);
+                log.error(msg, ex);
+                throw new StorageException(msg);
+            }
+            log.info("File (name: {}, size: {}) is uploaded to S3 shard {}.", fileName, size, location);
+        }
+        recordPlacement(fileName, location);
+        return CompletableFuture.completedFuture(true);
+    }
+
+    /**
+     * Upload data to S3 storage by multipart upload. Parts of {@link AmazonS3Config#getMultipartPartSize()}
+     * are uploaded concurrently on the part upload lane, at most {@link AmazonS3Config#getMultipartParallelism()} of an upload
+     * at a time, so concurrent uploads share the lane instead of queueing all their parts.
+     * If any part fails, the parts not yet started are skipped, and the multipart upload is aborted once the parts
+     * in flight have finished, so no part is stored after the abort and no incomplete upload is left behind.
+     * Throws {@link StorageException} if {@link AmazonS3} client throws exception.
+     * Throws {@link TaskRejectedException} if the part upload lane is full, the upload is aborted then too.
+     *
+     * @param fileName the name of the data to be uploaded
+     * @param size     the size of the data
+     * @param location the shard to upload into
+     * @param content  sets the content of a part request, given the offset of the part
+     */
+    private void uploadInParts(String fileName, long size, ShardLocation location,
+                               BiFunction<UploadPartRequest, Long, UploadPartRequest> content) {
+        String bucket = location.getBucket();
+        String key = location.key(fileName);
+        String uploadId;
+        try {
+            uploadId = amazonS3.initiateMultipartUpload(new InitiateMultipartUploadRequest(bucket, key)).getUploadId();
+        } catch (SdkClientException ex) {
+            String msg = String.format("Could not upload file (name: %s, size: %s) to S3.", fileName, size);
+            log.error(msg, ex);
+            throw new StorageException(msg);
+        }
+        long partSize = amazonS3Config.getMultipartPartSize();
+        List<CompletableFuture<PartETag>> parts = new ArrayList<>();
+        AtomicBoolean failed = new AtomicBoolean();
+        Semaphore inFlight = new Semaphore(amazonS3Config.getMultipartParallelism());
+        try {
+            int partNumber = 1;
+            for (long offset = 0; offset < size && !failed.get(); offset += partSize, partNumber++) {
+                UploadPartRequest uploadPartRequest = content.apply(new UploadPartRequest()
+                        .withBucketName(bucket)
+                        .withKey(key)
+                        .withUploadId(uploadId)
+                        .withPartNumber(partNumber)
+                        .withPartSize(Math.min(partSize, size - offset)), offset);
+                inFlight.acquireUninterruptibly();
+                try {
+                    parts.add(CompletableFuture.supplyAsync(() -> uploadPart(uploadPartRequest, failed), partUploadExecutor)
+                            .whenComplete((partETag, ex) -> inFlight.release()));
+                } catch (TaskRejectedException ex) {
+                    inFlight.release();
+                    throw ex;
+                }
+            }
+            List<PartETag> partETags = parts.stream().map(CompletableFuture::join).collect(Collectors.toList());
+            amazonS3.completeMultipartUpload(new CompleteMultipartUploadRequest(bucket, key, uploadId, partETags));
+            log.info("File (name: {}, size: {}) is uploaded to S3 in {} parts.", fileName, size, parts.size());
+        } catch (CompletionException | SdkClientException | TaskRejectedException ex) {
+            failed.set(true);
+            CompletableFuture.allOf(parts.toArray(new CompletableFuture<?>[0])).handle((finished, partEx) -> null).join();
+            abortUpload(bucket, key, uploadId);
+            if (ex instanceof TaskRejectedException) {
+                log.warn("Upload of file (name: {}, size: {}) is aborted, part upload lane is full.", fileName, size);
+                throw (TaskRejectedException) ex;
+            }
+            String msg = String.format("Could not upload file (name: %s, size: %s) to S3.", fileName, size);
+            log.error(msg, ex);
+            throw new StorageException(msg);
+        }
+    }
+
+    /**
+     * Upload a part of a multipart upload, unless another part of the upload has failed already.
+     *
+     * @param uploadPartRequest the request of the part
+     * @param failed            whether a part of the upload has failed, it is set if this part fails
+     * @return the ETag of the uploaded part
+     */
+    private PartETag uploadPart(UploadPartRequest uploadPartRequest, AtomicBoolean failed) {
+        if (failed.get()) {
+            throw new CancellationException();
+        }
+        try {
+            return amazonS3.uploadPart(uploadPartRequest).getPartETag();
+        } catch (RuntimeException ex) {
+            failed.set(true);
+            throw ex;
+        }
+    }
+
+    /**
+     * Abort a multipart upload, S3 discards its already uploaded parts.
+     *
+     * @param bucket   the bucket of the upload
+     * @param key      the key of the upload
+     * @param uploadId the id of the upload
+     */
+    private void abortUpload(String bucket, String key, String uploadId) {
+        try {
+            amazonS3.abortMultipartUpload(new AbortMultipartUploadRequest(bucket, key, uploadId));
+            log.info("Multipart upload of file (key: {}) is aborted.", key);
+        } catch (SdkClientException ex) {
+            log.error("Could not abort multipart upload (id: {}) of file (key: {}).", uploadId, key, ex);
+        }
+    }
+
     /**
      * Download data from S3 storage by name. The downloading process will be executed on a separated thread.
      * If during this call an exception wasn't thrown, data was retrieved.
@@ -79,7 +262,7 @@ public abstract class AbstractS3StorageHandler implements StorageHandler {
      * @return an InputStream instance which contains data wrapped in {@link CompletableFuture} object.
      */
     @Override
-    @Async
+    @Async(AppConfig.DOWNLOAD_EXECUTOR)
     public CompletableFuture<InputStream> downloadAFile(String fileName) {
         if (fileName == null) {
             String methodName = new Object() {
@@ -87,18 +270,201 @@ public abstract class AbstractS3StorageHandler implements StorageHandler {
             log.error("{} method was called with null parameter(s).", methodName);
             throw new IllegalArgumentException();
         }
+        ShardLocation location = locate(fileName);
         try {
-            GetObjectRequest getObjectRequest = new GetObjectRequest(amazonS3Config.getBucket(), fileName);
+            GetObjectRequest getObjectRequest = new GetObjectRequest(location.getBucket(), location.key(fileName));
             S3Object s3Object = amazonS3.getObject(getObjectRequest);
             log.info("File (name: {}) is downloaded from S3.", fileName);
             return CompletableFuture.completedFuture(s3Object.getObjectContent());
         } catch (SdkClientException ex) {
-            String msg = String.format("Could not found file: %s in bucket: %s.", fileName, amazonS3Config.getBucket());
+            String msg = String.format("Could not found file: %s in shard: %s.", fileName, location);
             log.error(msg, ex);
             throw new StorageException(msg);
         }
     }
 
+    /**
+     * Write data from S3 storage by name to an OutputStream instance on the calling thread,
+     * so no task of the download lane is waited for.
+     * Throws {@link IllegalArgumentException} if any of the parameters is null.
+     * Throws {@link StorageException} if {@link AmazonS3} client throws exception.
+     *
+     * @param fileName     the name of the file to be found
+     * @param outputStream the stream to write the data into, it is not closed
+     * @return the number of bytes written
+     * @throws IOException if writing into {@code outputStream} fails
+     */
+    @Override
+    public long writeTo(String fileName, OutputStream outputStream) throws IOException {
+        if (fileName == null || outputStream == null) {
+            String methodName = new Object() {
+            }.getClass().getEnclosingMethod().getName();
+            log.error("{} method was called with null parameter(s).", methodName);
+            throw new IllegalArgumentException();
+        }
+        ShardLocation location = locate(fileName);
+        GetObjectRequest getObjectRequest = new GetObjectRequest(location.getBucket(), location.key(fileName));
+        try (S3Object s3Object = getObject(fileName, location, getObjectRequest); InputStream inputStream = s3Object.getObjectContent()) {
+            long written = inputStream.transferTo(outputStream);
+            log.info("File (name: {}, size: {}) is downloaded from S3.", fileName, written);
+            return written;
+        }
+    }
+
+    /**
+     * Write a range of data from S3 storage by name to an OutputStream instance on the calling thread.
+     * Only the requested range is read from S3.
+     * Throws {@link IllegalArgumentException} if any of the parameters is null.
+     * Throws {@link StorageException} if {@link AmazonS3} client throws exception.
+     *
+     * @param fileName     the name of the file to be found
+     * @param offset       the position of the first byte to be written
+     * @param length       the number of bytes to be written
+     * @param outputStream the stream to write the data into, it is not closed
+     * @return the number of bytes written
+     * @throws IOException if writing into {@code outputStream} fails
+     */
+    @Override
+    public long writeTo(String fileName, long offset, long length, OutputStream outputStream) throws IOException {
+        if (fileName == null || outputStream == null) {
+            String methodName = new Object() {
+            }.getClass().getEnclosingMethod().getName();
+            log.error("{} method was called with null parameter(s).", methodName);
+            throw new IllegalArgumentException();
+        }
+        ShardLocation location = locate(fileName);
+        GetObjectRequest getObjectRequest = new GetObjectRequest(location.getBucket(), location.key(fileName))
+                .withRange(offset, offset + length - 1);
+        try (S3Object s3Object = getObject(fileName, location, getObjectRequest); InputStream inputStream = s3Object.getObjectContent()) {
+            long written = inputStream.transferTo(outputStream);
+            log.info("File (name: {}, offset: {}, size: {}) is downloaded from S3.", fileName, offset, written);
+            return written;
+        }
+    }
+
+    /**
+     * Get an object from S3 storage.
+     * Throws {@link StorageException} if {@link AmazonS3} client throws exception.
+     *
+     * @param fileName         the name of the file, for logging
+     * @param location         the shard of the file, for logging
+     * @param getObjectRequest the request of the object
+     * @return the object, its content is to be closed by the caller
+     */
+    private S3Object getObject(String fileName, ShardLocation location, GetObjectRequest getObjectRequest) {
+        try {
+            return amazonS3.getObject(getObjectRequest);
+        } catch (SdkClientException ex) {
+            String msg = String.format("Could not found file: %s in shard: %s.", fileName, location);
+            log.error(msg, ex);
+            throw new StorageException(msg);
+        }
+    }
+
+    /**
+     * Copy an object to another shard within S3.
+     * Throws {@link StorageException} if {@link AmazonS3} client throws exception.
+     *
+     * @param fileName the name of the object
+     * @param source   the shard of the object
+     * @param target   the shard to copy the object into
+     */
+    @Override
+    public void copy(String fileName, ShardLocation source, ShardLocation target) {
+        try {
+            amazonS3.copyObject(source.getBucket(), source.key(fileName), target.getBucket(), target.key(fileName));
+            log.info("File (name: {}) is copied from S3 shard {} to {}.", fileName, source, target);
+        } catch (SdkClientException ex) {
+            String msg = String.format("Could not copy file: %s from shard: %s to shard: %s.", fileName, source, target);
+            log.error(msg, ex);
+            throw new StorageException(msg);
+        }
+    }
+
+    /**
+     * Delete an object from a shard.
+     * Throws {@link StorageException} if {@link AmazonS3} client throws exception.
+     *
+     * @param fileName the name of the object
+     * @param location the shard of the object
+     */
+    @Override
+    public void delete(String fileName, ShardLocation location) {
+        try {
+            amazonS3.deleteObject(location.getBucket(), location.key(fileName));
+            log.info("File (name: {}) is deleted from S3 shard {}.", fileName, location);
+        } catch (SdkClientException ex) {
+            String msg = String.format("Could not delete file: %s from shard: %s.", fileName, location);
+            log.error(msg, ex);
+            throw new StorageException(msg);
+        }
+    }
+
+    /**
+     * Get the buckets of all shards, which have to exist before objects are stored.
+     *
+     * @return the names of the buckets
+     */
+    protected List<String> getBuckets() {
+        if (shardRouter == null) {
+            return List.of(amazonS3Config.getBucket());
+        }
+        return shardRouter.getShards().stream().map(ShardLocation::getBucket).distinct().collect(Collectors.toList());
+    }
+
+    /**
+     * Find the shard of an object.
+     *
+     * @param fileName the name of the object
+     * @return the shard of the object
+     */
+    private ShardLocation locate(String fileName) {
+        return shardRouter != null ? shardRouter.locate(fileName) : defaultLocation();
+    }
+
+    /**
+     * Record the shard of an uploaded object, if objects are sharded.
+     *
+     * @param fileName the name of the object
+     * @param location the shard of the object
+     */
+    private void recordPlacement(String fileName, ShardLocation location) {
+        if (shardRouter != null) {
+            shardRouter.recordPlacement(fileName, location);
+        }
+    }
+
+    /**
+     * Get the location of objects if they are not sharded.
+     *
+     * @return the default bucket without key prefix
+     */
+    private ShardLocation defaultLocation() {
+        return new ShardLocation(amazonS3Config.getBucket(), "");
+    }
+
+    /**
+     * Registers this handler for moving objects between the shards of a {@link ShardRouter} instance,
+     * and binds the router to locate objects if shards are configured.
+     *
+     * @param shardRouter router instance to be bound
+     */
+    @Autowired(required = false)
+    protected void setShardRouter(ShardRouter shardRouter) {
+        this.shardRouter = shardRouter.isSharded() ? shardRouter : null;
+        shardRouter.setObjectMover(this);
+    }
+
+    /**
+     * Binds the executor of part uploads externally. It provides testing functionality without loading a full application context.
+     *
+     * @param partUploadExecutor the executor of the part upload lane
+     */
+    @Autowired
+    protected void setPartUploadExecutor(@Qualifier(AppConfig.PART_UPLOAD_EXECUTOR) Executor partUploadExecutor) {
+        this.partUploadExecutor = partUploadExecutor;
+    }
+
     /**
      * Binds a {@link  AmazonS3Config} instance externally. It provides testing functionality without loading a full application context.
      *
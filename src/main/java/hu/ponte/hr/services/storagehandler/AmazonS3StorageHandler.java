@@ -20,7 +20,7 @@ import javax.annotation.PostConstruct;
  */
 @Service
 @Slf4j
-@Profile("prod")
+@Profile("prod & !fs")
 public class AmazonS3StorageHandler extends AbstractS3StorageHandler implements StorageHandler {
 
     /**
@@ -42,10 +42,12 @@ public class AmazonS3StorageHandler extends AbstractS3StorageHandler implements
                     .withCredentials(new AWSStaticCredentialsProvider(credentials))
                     .withClientConfiguration(cc)
                     .build();
-            if (!amazonS3.doesBucketExistV2(amazonS3Config.getBucket())) {
-                amazonS3.createBucket(amazonS3Config.getBucket());
+            for (String bucket : getBuckets()) {
+                if (!amazonS3.doesBucketExistV2(bucket)) {
+                    amazonS3.createBucket(bucket);
+                }
             }
-            log.info("AmazonS3Client is initialized with bucket: {}", amazonS3Config.getBucket());
+            log.info("AmazonS3Client is initialized with buckets: {}", getBuckets());
         } catch (SdkClientException ex) {
             String msg = "Something went wrong during initialization of S3 client.";
             log.error(msg, ex);
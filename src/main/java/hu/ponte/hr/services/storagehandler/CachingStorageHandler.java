@@ -0,0 +1,320 @@
+package hu.ponte.hr.services.storagehandler;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.output.TeeOutputStream;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Decorator of a remote {@link StorageHandler}, which keeps a copy of the transferred files in a {@link DiskCache}.
+ * Downloads are served from the local copy when it exists, otherwise the file is downloaded once and cached while it is served.
+ * Uploaded files are cached once the upload has succeeded.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class CachingStorageHandler implements StorageHandler {
+
+    /**
+     * The decorated {@link StorageHandler} instance.
+     */
+    private final StorageHandler delegate;
+
+    /**
+     * {@link DiskCache} instance.
+     */
+    private final DiskCache diskCache;
+
+    /**
+     * The decorated {@link StorageHandler} is initialized by its own lifecycle.
+     */
+    @Override
+    public void init() {
+    }
+
+    /**
+     * Upload data by the decorated {@link StorageHandler}, then store it in the cache.
+     * Failing to cache the data does not fail the upload.
+     *
+     * @param data     data to be uploaded
+     * @param fileName to be bind to {@code data}
+     * @return a {@link Boolean} instance wrapped in {@link CompletableFuture} object.
+     */
+    @Override
+    public CompletableFuture<Boolean> uploadAFile(byte[] data, String fileName) {
+        return delegate.uploadAFile(data, fileName).thenApply(uploaded -> {
+            try {
+                diskCache.put(fileName, data);
+            } catch (IOException ex) {
+                diskCache.invalidate(fileName);
+                log.warn("Could not cache uploaded file (name: {}).", fileName, ex);
+            }
+            return uploaded;
+        });
+    }
+
+    /**
+     * Upload a local file by the decorated {@link StorageHandler}, then store a copy of it in the cache.
+     * Failing to cache the file does not fail the upload.
+     *
+     * @param source   the file to be uploaded
+     * @param fileName to be bind to the content of {@code source}
+     * @return a {@link Boolean} instance wrapped in {@link CompletableFuture} object.
+     */
+    @Override
+    public CompletableFuture<Boolean> uploadAFile(Path source, String fileName) {
+        return delegate.uploadAFile(source, fileName).thenApply(uploaded -> {
+            try {
+                diskCache.put(fileName, source);
+            } catch (IOException ex) {
+                diskCache.invalidate(fileName);
+                log.warn("Could not cache uploaded file (name: {}).", fileName, ex);
+            }
+            return uploaded;
+        });
+    }
+
+    /**
+     * Download data from the cache, or by the decorated {@link StorageHandler} on a miss, filling the cache
+     * while the returned InputStream instance is read. The file is cached once it is read to its end.
+     *
+     * @param fileName the name of the file to be found
+     * @return an InputStream instance wrapped in {@link CompletableFuture} object.
+     */
+    @Override
+    public CompletableFuture<InputStream> downloadAFile(String fileName) {
+        return openCached(fileName).orElseGet(() -> fetch(fileName));
+    }
+
+    /**
+     * Download data from the cache, or by the decorated {@link StorageHandler} on a miss, without filling the cache.
+     *
+     * @param fileName the name of the file to be found
+     * @return an InputStream instance wrapped in {@link CompletableFuture} object.
+     */
+    @Override
+    public CompletableFuture<InputStream> downloadAFileUncached(String fileName) {
+        return openCached(fileName).orElseGet(() -> delegate.downloadAFileUncached(fileName));
+    }
+
+    /**
+     * Write data from the cache to an OutputStream instance by channel transfer,
+     * or by the decorated {@link StorageHandler} on the calling thread on a miss, filling the cache while the data is written.
+     *
+     * @param fileName     the name of the file to be found
+     * @param outputStream the stream to write the data into, it is not closed
+     * @return the number of bytes written
+     * @throws IOException if writing into {@code outputStream} fails
+     */
+    @Override
+    public long writeTo(String fileName, OutputStream outputStream) throws IOException {
+        Optional<Long> written = writeCached(fileName, 0, Long.MAX_VALUE, outputStream);
+        if (written.isPresent()) {
+            return written.get();
+        }
+        DiskCache.Fill fill;
+        try {
+            fill = diskCache.fill(fileName);
+        } catch (IOException ex) {
+            log.warn("Could not cache downloaded file (name: {}).", fileName, ex);
+            return delegate.writeTo(fileName, outputStream);
+        }
+        try (fill) {
+            long length = delegate.writeTo(fileName, new TeeOutputStream(outputStream, fill));
+            commit(fill, fileName);
+            return length;
+        }
+    }
+
+    /**
+     * Write data from the cache to an OutputStream instance by channel transfer,
+     * or by the decorated {@link StorageHandler} on a miss, without filling the cache.
+     *
+     * @param fileName     the name of the file to be found
+     * @param outputStream the stream to write the data into, it is not closed
+     * @return the number of bytes written
+     * @throws IOException if writing into {@code outputStream} fails
+     */
+    @Override
+    public long writeToUncached(String fileName, OutputStream outputStream) throws IOException {
+        Optional<Long> written = writeCached(fileName, 0, Long.MAX_VALUE, outputStream);
+        if (written.isPresent()) {
+            return written.get();
+        }
+        return delegate.writeToUncached(fileName, outputStream);
+    }
+
+    /**
+     * Write a range of data from the cache to an OutputStream instance by channel transfer,
+     * or by the decorated {@link StorageHandler} on a miss. Ranges are not cached on a miss, so a partial
+     * request does not cause a download of the whole file.
+     *
+     * @param fileName     the name of the file to be found
+     * @param offset       the position of the first byte to be written
+     * @param length       the number of bytes to be written
+     * @param outputStream the stream to write the data into, it is not closed
+     * @return the number of bytes written
+     * @throws IOException if writing into {@code outputStream} fails
+     */
+    @Override
+    public long writeTo(String fileName, long offset, long length, OutputStream outputStream) throws IOException {
+        Optional<Long> written = writeCached(fileName, offset, length, outputStream);
+        if (written.isPresent()) {
+            return written.get();
+        }
+        return delegate.writeTo(fileName, offset, length, outputStream);
+    }
+
+    /**
+     * Write a range of a cached file to an OutputStream instance by channel transfer.
+     *
+     * @param fileName     the name of the file to be found
+     * @param offset       the position of the first byte to be written
+     * @param length       the number of bytes to be written
+     * @param outputStream the stream to write the data into, it is not closed
+     * @return the number of bytes written, or empty if the file is not cached
+     * @throws IOException if writing into {@code outputStream} fails
+     */
+    private Optional<Long> writeCached(String fileName, long offset, long length, OutputStream outputStream) throws IOException {
+        Optional<Path> cached = diskCache.get(fileName);
+        if (cached.isPresent()) {
+            try (FileChannel channel = FileChannel.open(cached.get(), StandardOpenOption.READ)) {
+                long written = FileSystemStorageHandler.transfer(channel, offset, length, outputStream, 0);
+                diskCache.recordServed(written);
+                return Optional.of(written);
+            } catch (NoSuchFileException ex) {
+                log.debug("Cached file (name: {}) is evicted meanwhile.", fileName);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Open a file of the cache for reading, if it is cached.
+     *
+     * @param fileName the name of the file to be found
+     * @return an InputStream instance wrapped in {@link CompletableFuture} object, or empty on a miss
+     */
+    private Optional<CompletableFuture<InputStream>> openCached(String fileName) {
+        Optional<Path> cached = diskCache.get(fileName);
+        if (cached.isPresent()) {
+            try {
+                InputStream inputStream = Files.newInputStream(cached.get());
+                diskCache.recordServed(Files.size(cached.get()));
+                return Optional.of(CompletableFuture.completedFuture(inputStream));
+            } catch (IOException ex) {
+                log.debug("Cached file (name: {}) is evicted meanwhile.", fileName);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Commit a filled file to the cache. Failing to cache the data does not fail its transfer.
+     *
+     * @param fill     the fill of the file
+     * @param fileName the name of the file, for logging
+     */
+    private static void commit(DiskCache.Fill fill, String fileName) {
+        try {
+            fill.commit();
+        } catch (IOException ex) {
+            log.warn("Could not cache downloaded file (name: {}).", fileName, ex);
+        }
+    }
+
+    /**
+     * Download data by the decorated {@link StorageHandler}, storing it in the cache while it is read.
+     * If the cache could not be filled, the downloaded data is returned as it is.
+     *
+     * @param fileName the name of the file to be found
+     * @return an InputStream instance which fills the cache wrapped in {@link CompletableFuture} object.
+     */
+    private CompletableFuture<InputStream> fetch(String fileName) {
+        return delegate.downloadAFile(fileName).thenApply(inputStream -> {
+            try {
+                return new CachingInputStream(inputStream, diskCache.fill(fileName), fileName);
+            } catch (IOException ex) {
+                log.warn("Could not cache downloaded file (name: {}).", fileName, ex);
+                return inputStream;
+            }
+        });
+    }
+
+    /**
+     * InputStream which copies the data read into a {@link DiskCache.Fill} and commits it at the end of the data.
+     * If it is closed or skipped before the end, the fill is dropped.
+     */
+    private static class CachingInputStream extends FilterInputStream {
+
+        /**
+         * The fill of the data read.
+         */
+        private final DiskCache.Fill fill;
+
+        /**
+         * The name of the file, for logging.
+         */
+        private final String fileName;
+
+        private CachingInputStream(InputStream inputStream, DiskCache.Fill fill, String fileName) {
+            super(inputStream);
+            this.fill = fill;
+            this.fileName = fileName;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b == -1) {
+                commit(fill, fileName);
+            } else {
+                fill.write(b);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read == -1) {
+                commit(fill, fileName);
+            } else {
+                fill.write(b, off, read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            fill.close();
+            return super.skip(n);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                fill.close();
+            }
+        }
+
+    }
+
+}
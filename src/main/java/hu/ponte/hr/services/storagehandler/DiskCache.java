@@ -0,0 +1,417 @@
+package hu.ponte.hr.services.storagehandler;
+
+import hu.ponte.hr.config.DiskCacheConfig;
+import hu.ponte.hr.exception.exceptions.StorageException;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Size bounded cache of files on the local disk with least recently used eviction.
+ * Cached files are named by the SHA-256 hash of their name, so the index is rebuilt from the directory on startup.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(prefix = "disk-cache", name = "enabled", havingValue = "true")
+public class DiskCache {
+
+    /**
+     * {@link DiskCacheConfig} instance.
+     */
+    private final DiskCacheConfig diskCacheConfig;
+
+    /**
+     * Sizes of the cached files by their hashed name, in access order.
+     */
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Total size of the cached files.
+     */
+    private long size;
+
+    /**
+     * Directory of the cached files.
+     */
+    private Path directory;
+
+    /**
+     * Number of lookups which found the file.
+     */
+    private final AtomicLong hits = new AtomicLong();
+
+    /**
+     * Number of lookups which did not find the file.
+     */
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Number of files evicted to stay within the max size.
+     */
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Number of bytes served from the cache.
+     */
+    private final AtomicLong bytesServed = new AtomicLong();
+
+    public DiskCache(DiskCacheConfig diskCacheConfig) {
+        this.diskCacheConfig = diskCacheConfig;
+    }
+
+    /**
+     * Create the cache directory and load the already cached files, least recently modified first.
+     * Throws {@link StorageException} if the directory could not be read.
+     */
+    @PostConstruct
+    public void init() {
+        try {
+            directory = Files.createDirectories(Paths.get(diskCacheConfig.getDirectory()).toAbsolutePath());
+            try (Stream<Path> files = Files.list(directory)) {
+                files.filter(Files::isRegularFile)
+                        .filter(path -> !path.getFileName().toString().startsWith("."))
+                        .sorted(Comparator.comparing(this::lastModified))
+                        .forEach(path -> register(path.getFileName().toString(), path.toFile().length()));
+            }
+            log.info("Disk cache is initialized in directory: {} with {} files of {} bytes.", directory, entries.size(), size);
+        } catch (IOException ex) {
+            String msg = "Something went wrong during initialization of disk cache.";
+            log.error(msg, ex);
+            throw new StorageException(msg);
+        }
+    }
+
+    /**
+     * Look up a cached file.
+     *
+     * @param fileName the name of the file
+     * @return the path of the cached file, or empty if it is not cached
+     */
+    public Optional<Path> get(String fileName) {
+        String key = DigestUtils.sha256Hex(fileName);
+        synchronized (this) {
+            if (entries.get(key) == null) {
+                misses.incrementAndGet();
+                return Optional.empty();
+            }
+        }
+        hits.incrementAndGet();
+        return Optional.of(directory.resolve(key));
+    }
+
+    /**
+     * Store data in the cache, replacing the earlier version of the file.
+     *
+     * @param fileName the name of the file
+     * @param data     the content of the file
+     * @return the path of the cached file, or empty if the data is larger than the cache itself
+     * @throws IOException if the data could not be written
+     */
+    public Optional<Path> put(String fileName, byte[] data) throws IOException {
+        if (data.length > diskCacheConfig.getMaxSize()) {
+            return Optional.empty();
+        }
+        Path temp = Files.createTempFile(directory, ".fill-", ".tmp");
+        try {
+            Files.write(temp, data);
+            return Optional.of(commit(fileName, temp));
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Store a copy of a local file in the cache, replacing the earlier version of the file.
+     *
+     * @param fileName the name of the file
+     * @param source   the file to be copied
+     * @return the path of the cached file, or empty if the file is larger than the cache itself
+     * @throws IOException if the file could not be read or written
+     */
+    public Optional<Path> put(String fileName, Path source) throws IOException {
+        if (Files.size(source) > diskCacheConfig.getMaxSize()) {
+            return Optional.empty();
+        }
+        Path temp = Files.createTempFile(directory, ".fill-", ".tmp");
+        try {
+            Files.copy(source, temp, StandardCopyOption.REPLACE_EXISTING);
+            return Optional.of(commit(fileName, temp));
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Start storing a file in the cache while it is transferred, replacing the earlier version of the file once it is committed.
+     * The content is written into a temporary file, which is dropped as soon as the content exceeds the max size of the cache,
+     * so a large file is never copied to the disk in full.
+     *
+     * @param fileName the name of the file
+     * @return the fill to write the content of the file into
+     * @throws IOException if the temporary file could not be created
+     */
+    public Fill fill(String fileName) throws IOException {
+        return new Fill(fileName, Files.createTempFile(directory, ".fill-", ".tmp"));
+    }
+
+    /**
+     * Remove a file from the cache.
+     *
+     * @param fileName the name of the file
+     */
+    public void invalidate(String fileName) {
+        String key = DigestUtils.sha256Hex(fileName);
+        synchronized (this) {
+            Long length = entries.remove(key);
+            if (length != null) {
+                size -= length;
+                delete(key);
+            }
+        }
+    }
+
+    /**
+     * Count bytes served from the cache.
+     *
+     * @param length the number of bytes served
+     */
+    public void recordServed(long length) {
+        bytesServed.addAndGet(length);
+    }
+
+    /**
+     * Move a filled temporary file to its place and evict the least recently used files beyond the max size.
+     *
+     * @param fileName the name of the file
+     * @param temp     the filled temporary file
+     * @return the path of the cached file
+     * @throws IOException if the file could not be moved
+     */
+    private Path commit(String fileName, Path temp) throws IOException {
+        String key = DigestUtils.sha256Hex(fileName);
+        Path target = directory.resolve(key);
+        long length = Files.size(temp);
+        synchronized (this) {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            register(key, length);
+        }
+        return target;
+    }
+
+    /**
+     * Add a file to the index and evict the least recently used files beyond the max size.
+     *
+     * @param key    the hashed name of the file
+     * @param length the size of the file
+     */
+    private synchronized void register(String key, long length) {
+        Long previous = entries.put(key, length);
+        size += length - (previous == null ? 0 : previous);
+        Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+        while (size > diskCacheConfig.getMaxSize() && iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            if (eldest.getKey().equals(key)) {
+                continue;
+            }
+            iterator.remove();
+            size -= eldest.getValue();
+            evictions.incrementAndGet();
+            delete(eldest.getKey());
+        }
+    }
+
+    /**
+     * Delete a cached file, logging failures.
+     *
+     * @param key the hashed name of the file
+     */
+    private void delete(String key) {
+        try {
+            Files.deleteIfExists(directory.resolve(key));
+        } catch (IOException ex) {
+            log.warn("Could not delete cached file: {}.", key, ex);
+        }
+    }
+
+    /**
+     * Get the last modification time of a file, for ordering the files found on startup.
+     *
+     * @param path the file
+     * @return the last modification time in milliseconds, or 0 if it could not be read
+     */
+    private long lastModified(Path path) {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class).lastModifiedTime().toMillis();
+        } catch (IOException ex) {
+            return 0;
+        }
+    }
+
+    /**
+     * Get the number of lookups which found the file.
+     *
+     * @return the number of hits
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Get the number of lookups which did not find the file.
+     *
+     * @return the number of misses
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Get the number of files evicted to stay within the max size.
+     *
+     * @return the number of evicted files
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Get the number of bytes served from the cache.
+     *
+     * @return the number of bytes served from the cache
+     */
+    public long getBytesServed() {
+        return bytesServed.get();
+    }
+
+    /**
+     * Get the total size of the cached files.
+     *
+     * @return the size in bytes
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * A file being stored in the cache while it is transferred. Writing never fails, the fill is dropped instead
+     * if the content could not be written or it exceeds the max size of the cache.
+     * Closing the fill drops it, unless it is committed.
+     */
+    public final class Fill extends OutputStream {
+
+        /**
+         * The name of the file.
+         */
+        private final String fileName;
+
+        /**
+         * The temporary file of the content, null once the fill is committed or dropped.
+         */
+        private Path temp;
+
+        /**
+         * Stream of the temporary file, null once the fill is committed or dropped.
+         */
+        private OutputStream outputStream;
+
+        /**
+         * Number of bytes written.
+         */
+        private long length;
+
+        private Fill(String fileName, Path temp) throws IOException {
+            this.fileName = fileName;
+            this.temp = temp;
+            this.outputStream = Files.newOutputStream(temp);
+        }
+
+        @Override
+        public void write(int b) {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            if (outputStream == null) {
+                return;
+            }
+            if (length + len > diskCacheConfig.getMaxSize()) {
+                log.debug("File (name: {}) is not cached, it is larger than the cache.", fileName);
+                drop();
+                return;
+            }
+            try {
+                outputStream.write(b, off, len);
+                length += len;
+            } catch (IOException ex) {
+                log.warn("Could not cache file (name: {}).", fileName, ex);
+                drop();
+            }
+        }
+
+        /**
+         * Move the written content to its place in the cache.
+         *
+         * @return the path of the cached file, or empty if the fill is dropped
+         * @throws IOException if the file could not be moved
+         */
+        public Optional<Path> commit() throws IOException {
+            if (outputStream == null) {
+                return Optional.empty();
+            }
+            try {
+                outputStream.close();
+                outputStream = null;
+                return Optional.of(DiskCache.this.commit(fileName, temp));
+            } finally {
+                drop();
+            }
+        }
+
+        /**
+         * Drop the written content, unless it is committed.
+         */
+        @Override
+        public void close() {
+            drop();
+        }
+
+        /**
+         * Close and delete the temporary file, ignoring failures.
+         */
+        private void drop() {
+            try {
+                if (outputStream != null) {
+                    outputStream.close();
+                }
+                if (temp != null) {
+                    Files.deleteIfExists(temp);
+                }
+            } catch (IOException ex) {
+                log.warn("Could not delete temporary cache file: {}.", temp, ex);
+            } finally {
+                outputStream = null;
+                temp = null;
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,61 @@
+package hu.ponte.hr.services.storagehandler;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Publishes the statistics of {@link DiskCache} to the meter registry.
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "disk-cache", name = "enabled", havingValue = "true")
+public class DiskCacheMetrics implements MeterBinder {
+
+    /**
+     * {@link DiskCache} instance.
+     */
+    private final DiskCache diskCache;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("storage.disk.cache.hits", diskCache, DiskCache::getHits)
+                .description("Downloads served from the disk cache")
+                .register(registry);
+        FunctionCounter.builder("storage.disk.cache.misses", diskCache, DiskCache::getMisses)
+                .description("Downloads which had to fetch the file from remote storage")
+                .register(registry);
+        FunctionCounter.builder("storage.disk.cache.evictions", diskCache, DiskCache::getEvictions)
+                .description("Files evicted from the disk cache to stay within its max size")
+                .register(registry);
+        FunctionCounter.builder("storage.disk.cache.served", diskCache, DiskCache::getBytesServed)
+                .description("Bytes served from the disk cache")
+                .baseUnit(BaseUnits.BYTES)
+                .register(registry);
+        Gauge.builder("storage.disk.cache.size", diskCache, DiskCache::getSize)
+                .description("Total size of the cached files")
+                .baseUnit(BaseUnits.BYTES)
+                .register(registry);
+        Gauge.builder("storage.disk.cache.hit.ratio", diskCache, DiskCacheMetrics::hitRatio)
+                .description("Ratio of downloads served from the disk cache")
+                .register(registry);
+    }
+
+    /**
+     * Calculate the hit ratio of a cache.
+     *
+     * @param diskCache the cache
+     * @return the ratio of hits among all lookups, 0 without lookups
+     */
+    private static double hitRatio(DiskCache diskCache) {
+        long hits = diskCache.getHits();
+        long lookups = hits + diskCache.getMisses();
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+}
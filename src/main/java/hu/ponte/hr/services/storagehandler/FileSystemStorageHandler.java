@@ -0,0 +1,295 @@
+package hu.ponte.hr.services.storagehandler;
+
+import hu.ponte.hr.config.AppConfig;
+import hu.ponte.hr.config.FileSystemStorageConfig;
+import hu.ponte.hr.exception.exceptions.StorageException;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Concrete class for handling storage on the local file system.
+ * Files are stored in a directory tree sharded by the SHA-256 hash of their name and are written atomically.
+ */
+@Service
+@Slf4j
+@Profile("fs")
+public class FileSystemStorageHandler implements StorageHandler {
+
+    /**
+     * {@link FileSystemStorageConfig} instance.
+     */
+    private FileSystemStorageConfig fileSystemStorageConfig;
+
+    /**
+     * Root directory of the stored files.
+     */
+    private Path rootDirectory;
+
+    /**
+     * Initialize the root directory based on the {@link FileSystemStorageConfig} member.
+     */
+    @Override
+    @PostConstruct
+    public void init() {
+        try {
+            rootDirectory = Files.createDirectories(Paths.get(fileSystemStorageConfig.getRootDirectory()).toAbsolutePath());
+            log.info("File system storage is initialized with root directory: {}", rootDirectory);
+        } catch (IOException ex) {
+            String msg = "Something went wrong during initialization of file system storage.";
+            log.error(msg, ex);
+            throw new StorageException(msg);
+        }
+    }
+
+    /**
+     * Upload data to the file system. The uploading process will be executed on a separated thread.
+     * Data is written into a temporary file in the target directory, which is then moved to its place atomically,
+     * so readers never see a partially written file.
+     * Throws {@link IllegalArgumentException} if any of the parameters is null.
+     * Throws {@link StorageException} if the file could not be written.
+     *
+     * @param data     data to be uploaded
+     * @param fileName to be bind to {@code data}
+     * @return a {@link Boolean} instance wrapped in {@link CompletableFuture} object.
+     */
+    @Override
+    @Async(AppConfig.UPLOAD_EXECUTOR)
+    public CompletableFuture<Boolean> uploadAFile(byte[] data, String fileName) {
+        if (data == null || fileName == null) {
+            String methodName = new Object() {
+            }.getClass().getEnclosingMethod().getName();
+            log.error("{} method was called with null parameter(s).", methodName);
+            throw new IllegalArgumentException();
+        }
+        Path target = resolve(fileName);
+        Path temp = null;
+        try {
+            Files.createDirectories(target.getParent());
+            temp = Files.createTempFile(target.getParent(), ".upload-", ".tmp");
+            Files.write(temp, data);
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            log.info("File (name: {}, size: {}) is stored in {}.", fileName, data.length, target);
+            return CompletableFuture.completedFuture(true);
+        } catch (IOException ex) {
+            deleteQuietly(temp);
+            String msg = String.format("Could not store file (name: %s, size: %s).", fileName, data.length);
+            log.error(msg, ex);
+            throw new StorageException(msg);
+        }
+    }
+
+    /**
+     * Copy a local file to the file system. The uploading process will be executed on a separated thread.
+     * The file is copied into a temporary file in the target directory, which is then moved to its place atomically.
+     * Throws {@link IllegalArgumentException} if any of the parameters is null.
+     * Throws {@link StorageException} if the file could not be copied.
+     *
+     * @param source   the file to be uploaded
+     * @param fileName to be bind to the content of {@code source}
+     * @return a {@link Boolean} instance wrapped in {@link CompletableFuture} object.
+     */
+    @Override
+    @Async(AppConfig.UPLOAD_EXECUTOR)
+    public CompletableFuture<Boolean> uploadAFile(Path source, String fileName) {
+        if (source == null || fileName == null) {
+            String methodName = new Object() {
+            }.getClass().getEnclosingMethod().getName();
+            log.error("{} method was called with null parameter(s).", methodName);
+            throw new IllegalArgumentException();
+        }
+        Path target = resolve(fileName);
+        Path temp = null;
+        try {
+            Files.createDirectories(target.getParent());
+            temp = Files.createTempFile(target.getParent(), ".upload-", ".tmp");
+            Files.copy(source, temp, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            log.info("File (name: {}) is stored in {}.", fileName, target);
+            return CompletableFuture.completedFuture(true);
+        } catch (IOException ex) {
+            deleteQuietly(temp);
+            String msg = String.format("Could not store file (name: %s).", fileName);
+            log.error(msg, ex);
+            throw new StorageException(msg);
+        }
+    }
+
+    /**
+     * Download data from the file system by name. The downloading process will be executed on a separated thread.
+     * Throws {@link IllegalArgumentException} if any of the parameters is null.
+     * Throws {@link StorageException} if the file could not be found.
+     *
+     * @param fileName the name of the file to be found
+     * @return an InputStream instance which contains data wrapped in {@link CompletableFuture} object.
+     */
+    @Override
+    @Async(AppConfig.DOWNLOAD_EXECUTOR)
+    public CompletableFuture<InputStream> downloadAFile(String fileName) {
+        if (fileName == null) {
+            String methodName = new Object() {
+            }.getClass().getEnclosingMethod().getName();
+            log.error("{} method was called with null parameter(s).", methodName);
+            throw new IllegalArgumentException();
+        }
+        try {
+            InputStream inputStream = Files.newInputStream(resolve(fileName));
+            log.info("File (name: {}) is read from file system.", fileName);
+            return CompletableFuture.completedFuture(inputStream);
+        } catch (IOException ex) {
+            String msg = String.format("Could not found file: %s in directory: %s.", fileName, rootDirectory);
+            log.error(msg, ex);
+            throw new StorageException(msg);
+        }
+    }
+
+    /**
+     * Write data from the file system by name to an OutputStream instance on the calling thread.
+     * Throws {@link IllegalArgumentException} if any of the parameters is null.
+     * Throws {@link StorageException} if the file could not be found.
+     *
+     * @param fileName     the name of the file to be found
+     * @param outputStream the stream to write the data into, it is not closed
+     * @return the number of bytes written
+     * @throws IOException if writing into {@code outputStream} fails
+     * @see #transfer(FileChannel, long, long, OutputStream, long)
+     */
+    @Override
+    public long writeTo(String fileName, OutputStream outputStream) throws IOException {
+        return writeTo(fileName, 0, Long.MAX_VALUE, outputStream);
+    }
+
+    /**
+     * Write a range of data from the file system by name to an OutputStream instance on the calling thread.
+     * Throws {@link IllegalArgumentException} if any of the parameters is null.
+     * Throws {@link StorageException} if the file could not be found.
+     *
+     * @param fileName     the name of the file to be found
+     * @param offset       the position of the first byte to be written
+     * @param length       the number of bytes to be written, it is cut at the end of the file
+     * @param outputStream the stream to write the data into, it is not closed
+     * @return the number of bytes written
+     * @throws IOException if writing into {@code outputStream} fails
+     * @see #transfer(FileChannel, long, long, OutputStream, long)
+     */
+    @Override
+    public long writeTo(String fileName, long offset, long length, OutputStream outputStream) throws IOException {
+        if (fileName == null || outputStream == null) {
+            String methodName = new Object() {
+            }.getClass().getEnclosingMethod().getName();
+            log.error("{} method was called with null parameter(s).", methodName);
+            throw new IllegalArgumentException();
+        }
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(resolve(fileName), StandardOpenOption.READ);
+        } catch (NoSuchFileException ex) {
+            String msg = String.format("Could not found file: %s in directory: %s.", fileName, rootDirectory);
+            log.error(msg, ex);
+            throw new StorageException(msg);
+        }
+        try (channel) {
+            long written = transfer(channel, offset, length, outputStream, fileSystemStorageConfig.getMmapThreshold());
+            log.info("File (name: {}, offset: {}, size: {}) is written from file system.", fileName, offset, written);
+            return written;
+        }
+    }
+
+    /**
+     * Write a range of a file into an OutputStream instance. Ranges up to {@code mmapThreshold} are written from
+     * a memory-mapped buffer, larger ones by {@link FileChannel#transferTo(long, long, WritableByteChannel)},
+     * so no intermediate stream buffering is involved.
+     * If the file is truncated while it is written, so no more bytes can be transferred, {@link EOFException} is thrown.
+     *
+     * @param channel       the channel of the file
+     * @param offset        the position of the first byte to be written
+     * @param length        the number of bytes to be written, it is cut at the end of the file
+     * @param outputStream  the stream to write the data into, it is not closed
+     * @param mmapThreshold the max size of ranges written from a memory-mapped buffer
+     * @return the number of bytes written
+     * @throws IOException if reading the file or writing into {@code outputStream} fails, or the file ends early
+     */
+    static long transfer(FileChannel channel, long offset, long length, OutputStream outputStream, long mmapThreshold) throws IOException {
+        WritableByteChannel target = Channels.newChannel(outputStream);
+        long size = Math.max(0, Math.min(length, channel.size() - offset));
+        if (size <= mmapThreshold) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset, size);
+            while (buffer.hasRemaining()) {
+                target.write(buffer);
+            }
+        } else {
+            long position = offset;
+            while (position < offset + size) {
+                long transferred = channel.transferTo(position, offset + size - position, target);
+                if (transferred <= 0) {
+                    throw new EOFException(String.format("File ended at %s of %s bytes to be written.", position, offset + size));
+                }
+                position += transferred;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Resolve the path of a file. The name is hashed, the leading byte pairs of the hash name the
+     * shard directories and the whole hash names the file, so any name maps to a safe path.
+     *
+     * @param fileName the name of the file
+     * @return the path of the file
+     */
+    private Path resolve(String fileName) {
+        String hash = DigestUtils.sha256Hex(fileName);
+        Path directory = rootDirectory;
+        for (int level = 0; level < fileSystemStorageConfig.getShardDepth(); level++) {
+            directory = directory.resolve(hash.substring(level * 2, level * 2 + 2));
+        }
+        return directory.resolve(hash);
+    }
+
+    /**
+     * Delete a file, if it exists, ignoring failures.
+     *
+     * @param path the file to be deleted, may be null
+     */
+    private void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ex) {
+            log.warn("Could not delete temporary file: {}.", path, ex);
+        }
+    }
+
+    /**
+     * Binds a {@link FileSystemStorageConfig} instance externally. It provides testing functionality without loading a full application context.
+     *
+     * @param fileSystemStorageConfig config instance to be bound
+     */
+    @Autowired
+    protected void setFileSystemStorageConfig(FileSystemStorageConfig fileSystemStorageConfig) {
+        this.fileSystemStorageConfig = fileSystemStorageConfig;
+    }
+
+}
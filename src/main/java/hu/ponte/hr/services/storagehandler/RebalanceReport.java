@@ -0,0 +1,23 @@
+package hu.ponte.hr.services.storagehandler;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Summary of a rebalancing run.
+ */
+@Getter
+@RequiredArgsConstructor
+public class RebalanceReport {
+
+    /**
+     * Number of objects moved to another shard.
+     */
+    private final int moved;
+
+    /**
+     * Number of objects which could not be moved.
+     */
+    private final int failed;
+
+}
@@ -0,0 +1,60 @@
+package hu.ponte.hr.services.storagehandler;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * A shard of the S3 storage: a bucket and an optional key prefix within it.
+ */
+@Getter
+@EqualsAndHashCode
+@RequiredArgsConstructor
+public class ShardLocation {
+
+    /**
+     * Name of the bucket.
+     */
+    private final String bucket;
+
+    /**
+     * Prefix of the keys, empty if objects are stored by their name.
+     */
+    private final String prefix;
+
+    /**
+     * Parse a shard from its id, a bucket name optionally followed by a slash and a key prefix.
+     *
+     * @param id the id of the shard
+     * @return the shard
+     */
+    public static ShardLocation parse(String id) {
+        int separator = id.indexOf('/');
+        return separator < 0 ? new ShardLocation(id, "") : new ShardLocation(id.substring(0, separator), id.substring(separator + 1));
+    }
+
+    /**
+     * Get the id of the shard, which is stored as the placement of its objects.
+     *
+     * @return the id
+     */
+    public String getId() {
+        return prefix.isEmpty() ? bucket : bucket + "/" + prefix;
+    }
+
+    /**
+     * Get the key of an object in the shard.
+     *
+     * @param fileName the name of the object
+     * @return the key within {@link #bucket}
+     */
+    public String key(String fileName) {
+        return prefix.isEmpty() ? fileName : prefix + "/" + fileName;
+    }
+
+    @Override
+    public String toString() {
+        return getId();
+    }
+
+}
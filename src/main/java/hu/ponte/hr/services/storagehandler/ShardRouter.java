@@ -0,0 +1,210 @@
+package hu.ponte.hr.services.storagehandler;
+
+import hu.ponte.hr.config.AmazonS3Config;
+import hu.ponte.hr.domain.ObjectPlacement;
+import hu.ponte.hr.repository.ObjectPlacementRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.codec.digest.MurmurHash3;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Routes the objects of the S3 storage to the configured shards, so requests are spread across buckets and key prefixes.
+ * New objects are placed by rendezvous hashing of their name over the shards, and the placement is stored,
+ * so an object is found where it was placed even after the shards change. Changing the shards moves
+ * only the objects whose rendezvous shard changed, when {@link #rebalance()} is run.
+ * Objects stored before placements were recorded are found in {@link AmazonS3Config#getBucket()} by their name.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class ShardRouter {
+
+    /**
+     * {@link AmazonS3Config} instance.
+     */
+    private final AmazonS3Config amazonS3Config;
+
+    /**
+     * {@link ObjectPlacementRepository} instance.
+     */
+    private final ObjectPlacementRepository objectPlacementRepository;
+
+    /**
+     * The {@link ObjectMover} instance moving objects between shards, set by the S3 storage handler.
+     */
+    private volatile ObjectMover objectMover;
+
+    /**
+     * Get the configured shards.
+     *
+     * @return the shards, or the default bucket if no shards are configured
+     */
+    public List<ShardLocation> getShards() {
+        if (!isSharded()) {
+            return List.of(defaultLocation());
+        }
+        return amazonS3Config.getShards().stream().map(ShardLocation::parse).collect(Collectors.toList());
+    }
+
+    /**
+     * Whether shards are configured. Without shards every object is stored in the default bucket,
+     * so placements are neither looked up nor recorded. Objects of removed shards are found again once {@link #rebalance()}
+     * has moved them to the default bucket.
+     *
+     * @return true if at least one shard is configured
+     */
+    public boolean isSharded() {
+        return amazonS3Config.getShards() != null && !amazonS3Config.getShards().isEmpty();
+    }
+
+    /**
+     * Get the shard an object belongs to by rendezvous hashing: the shard with the highest hash of its id and the name of the object.
+     *
+     * @param fileName the name of the object
+     * @return the shard of the object
+     */
+    public ShardLocation place(String fileName) {
+        return getShards().stream()
+                .max(Comparator.comparingLong(shard -> score(shard, fileName)))
+                .orElseThrow();
+    }
+
+    /**
+     * Find the shard an object is stored in.
+     *
+     * @param fileName the name of the object
+     * @return the recorded shard of the object, or the default bucket if it has no recorded shard
+     */
+    public ShardLocation locate(String fileName) {
+        return objectPlacementRepository.findById(fileName)
+                .map(placement -> ShardLocation.parse(placement.getShard()))
+                .orElseGet(this::defaultLocation);
+    }
+
+    /**
+     * Get the shard an object is uploaded to. An object uploaded again stays in its recorded shard.
+     *
+     * @param fileName the name of the object
+     * @return the shard of the object
+     */
+    public ShardLocation locateForUpload(String fileName) {
+        return objectPlacementRepository.findById(fileName)
+                .map(placement -> ShardLocation.parse(placement.getShard()))
+                .orElseGet(() -> place(fileName));
+    }
+
+    /**
+     * Record the shard of an uploaded object.
+     *
+     * @param fileName the name of the object
+     * @param shard    the shard of the object
+     */
+    public void recordPlacement(String fileName, ShardLocation shard) {
+        try {
+            objectPlacementRepository.save(new ObjectPlacement(fileName, shard.getId()));
+        } catch (DataIntegrityViolationException ex) {
+            log.debug("Placement of object (name: {}) is recorded concurrently.", fileName);
+        }
+    }
+
+    /**
+     * Set the {@link ObjectMover} instance moving objects between shards.
+     *
+     * @param objectMover the mover
+     */
+    public void setObjectMover(ObjectMover objectMover) {
+        this.objectMover = objectMover;
+    }
+
+    /**
+     * Move every object whose recorded shard differs from its rendezvous shard, after the shards are changed.
+     * An object is copied, its placement is updated, then the original is deleted,
+     * so it can be read during the move. An object which could not be moved stays where it is.
+     *
+     * @return the number of moved and failed objects
+     */
+    public RebalanceReport rebalance() {
+        if (objectMover == null) {
+            log.warn("No S3 storage handler is registered, objects are not rebalanced.");
+            return new RebalanceReport(0, 0);
+        }
+        int moved = 0;
+        int failed = 0;
+        PageRequest pageRequest = PageRequest.of(0, amazonS3Config.getRebalanceBatchSize());
+        List<ObjectPlacement> page = objectPlacementRepository.findNextPage("", pageRequest);
+        while (!page.isEmpty()) {
+            for (ObjectPlacement placement : page) {
+                ShardLocation source = ShardLocation.parse(placement.getShard());
+                ShardLocation target = place(placement.getStorageKey());
+                if (source.equals(target)) {
+                    continue;
+                }
+                try {
+                    objectMover.copy(placement.getStorageKey(), source, target);
+                    objectPlacementRepository.save(new ObjectPlacement(placement.getStorageKey(), target.getId()));
+                    objectMover.delete(placement.getStorageKey(), source);
+                    moved++;
+                } catch (RuntimeException ex) {
+                    log.error("Object (name: {}) could not be moved from shard {} to {}.", placement.getStorageKey(), source, target, ex);
+                    failed++;
+                }
+            }
+            page = objectPlacementRepository.findNextPage(page.get(page.size() - 1).getStorageKey(), pageRequest);
+        }
+        log.info("Rebalancing finished: {} objects moved, {} failed.", moved, failed);
+        return new RebalanceReport(moved, failed);
+    }
+
+    /**
+     * Get the location of objects without a recorded shard.
+     *
+     * @return the default bucket without key prefix
+     */
+    private ShardLocation defaultLocation() {
+        return new ShardLocation(amazonS3Config.getBucket(), "");
+    }
+
+    /**
+     * Get the rendezvous hash of a shard and an object.
+     *
+     * @param shard    the shard
+     * @param fileName the name of the object
+     * @return the hash
+     */
+    private static long score(ShardLocation shard, String fileName) {
+        return MurmurHash3.hash128x64((shard.getId() + "|" + fileName).getBytes(StandardCharsets.UTF_8))[0];
+    }
+
+    /**
+     * Moves objects between shards of the S3 storage.
+     */
+    public interface ObjectMover {
+
+        /**
+         * Copy an object to another shard.
+         *
+         * @param fileName the name of the object
+         * @param source   the shard of the object
+         * @param target   the shard to copy the object into
+         */
+        void copy(String fileName, ShardLocation source, ShardLocation target);
+
+        /**
+         * Delete an object from a shard.
+         *
+         * @param fileName the name of the object
+         * @param location the shard of the object
+         */
+        void delete(String fileName, ShardLocation location);
+
+    }
+
+}
@@ -1,7 +1,15 @@
 package hu.ponte.hr.services.storagehandler;
 
+import hu.ponte.hr.exception.exceptions.StorageException;
+import org.apache.commons.io.IOUtils;
+
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * Interface for handling data storage.
@@ -15,6 +23,7 @@ public interface StorageHandler {
 
     /**
      * Upload data to storage. The uploading process will be executed on a separated thread.
+     * The returned future completes with true once the data is stored, or with false if it is accepted for storing later.
      *
      * @param data     data to be uploaded
      * @param fileName to be bind to {@code data}
@@ -22,6 +31,24 @@ public interface StorageHandler {
      */
     CompletableFuture<Boolean> uploadAFile(byte[] data, String fileName);
 
+    /**
+     * Upload a local file to storage. The uploading process will be executed on a separated thread.
+     * The source file is not deleted, but it must not change until the returned future completes.
+     * Implementations should override it to stream the file instead of reading it into memory.
+     * The returned future completes exceptionally with {@link StorageException} if the source file could not be read.
+     *
+     * @param source   the file to be uploaded
+     * @param fileName to be bind to the content of {@code source}
+     * @return a {@link Boolean} instance wrapped in {@link CompletableFuture} object.
+     */
+    default CompletableFuture<Boolean> uploadAFile(Path source, String fileName) {
+        try {
+            return uploadAFile(Files.readAllBytes(source), fileName);
+        } catch (IOException ex) {
+            return CompletableFuture.failedFuture(new StorageException(String.format("Could not read file: %s.", source), ex));
+        }
+    }
+
     /**
      * Download data from a storage by name.The downloading process will be executed on a separated thread.
      *
@@ -30,4 +57,82 @@ public interface StorageHandler {
      */
     CompletableFuture<InputStream> downloadAFile(String fileName);
 
+    /**
+     * Download data from a storage by name without storing it in any cache on the way,
+     * so bulk reads, like re-signing or audits, do not evict the files which are read often.
+     * Caching implementations should override it, others download the data as {@link #downloadAFile(String)} does.
+     *
+     * @param fileName the name of the file to be found
+     * @return an InputStream instance wrapped in {@link CompletableFuture} object.
+     */
+    default CompletableFuture<InputStream> downloadAFileUncached(String fileName) {
+        return downloadAFile(fileName);
+    }
+
+    /**
+     * Write data from a storage by name to an OutputStream instance. The writing process is executed on the calling thread.
+     * Implementations may override it to skip the intermediate InputStream.
+     * Throws {@link StorageException} if the file could not be retrieved.
+     *
+     * @param fileName     the name of the file to be found
+     * @param outputStream the stream to write the data into, it is not closed
+     * @return the number of bytes written
+     * @throws IOException if writing into {@code outputStream} fails
+     */
+    default long writeTo(String fileName, OutputStream outputStream) throws IOException {
+        try (InputStream inputStream = join(downloadAFile(fileName))) {
+            return inputStream.transferTo(outputStream);
+        }
+    }
+
+    /**
+     * Write data from a storage by name to an OutputStream instance without storing it in any cache on the way,
+     * so bulk reads, like exports, do not evict the files which are read often. The writing process is executed on the calling thread.
+     * Caching implementations should override it, others write the data as {@link #writeTo(String, OutputStream)} does.
+     * Throws {@link StorageException} if the file could not be retrieved.
+     *
+     * @param fileName     the name of the file to be found
+     * @param outputStream the stream to write the data into, it is not closed
+     * @return the number of bytes written
+     * @throws IOException if writing into {@code outputStream} fails
+     */
+    default long writeToUncached(String fileName, OutputStream outputStream) throws IOException {
+        return writeTo(fileName, outputStream);
+    }
+
+    /**
+     * Write a range of data from a storage by name to an OutputStream instance. The writing process is executed on the calling thread.
+     * Implementations should override it to read only the requested range.
+     * Throws {@link StorageException} if the file could not be retrieved.
+     *
+     * @param fileName     the name of the file to be found
+     * @param offset       the position of the first byte to be written
+     * @param length       the number of bytes to be written
+     * @param outputStream the stream to write the data into, it is not closed
+     * @return the number of bytes written
+     * @throws IOException if writing into {@code outputStream} fails
+     */
+    default long writeTo(String fileName, long offset, long length, OutputStream outputStream) throws IOException {
+        try (InputStream inputStream = join(downloadAFile(fileName))) {
+            return IOUtils.copyLarge(inputStream, outputStream, offset, length);
+        }
+    }
+
+    /**
+     * Wait for a download, unwrapping the {@link StorageException} it failed with.
+     *
+     * @param download the future of the download
+     * @return the downloaded InputStream instance
+     */
+    private static InputStream join(CompletableFuture<InputStream> download) {
+        try {
+            return download.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof StorageException) {
+                throw (StorageException) ex.getCause();
+            }
+            throw new StorageException(ex.getCause());
+        }
+    }
+
 }
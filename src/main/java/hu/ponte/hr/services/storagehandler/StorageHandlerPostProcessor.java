@@ -0,0 +1,53 @@
+package hu.ponte.hr.services.storagehandler;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Decorates the {@link StorageHandler} bean with the enabled local layers, in one place so their order is fixed:
+ * the S3 backed handler with a {@link CachingStorageHandler} when a {@link DiskCache} is enabled,
+ * then any handler with a {@link WriteBehindStorageHandler} when an {@link UploadJournal} is enabled.
+ * It is not ordered, so it runs after the async proxy of the handler is created and wraps the proxy.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class StorageHandlerPostProcessor implements BeanPostProcessor {
+
+    /**
+     * Provider of the {@link DiskCache} instance, it is resolved only when a handler is decorated.
+     */
+    private final ObjectProvider<DiskCache> diskCache;
+
+    /**
+     * Provider of the {@link UploadJournal} instance, it is resolved only when a handler is decorated.
+     */
+    private final ObjectProvider<UploadJournal> uploadJournal;
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof StorageHandler)) {
+            return bean;
+        }
+        StorageHandler handler = (StorageHandler) bean;
+        if (AbstractS3StorageHandler.class.isAssignableFrom(AopUtils.getTargetClass(bean))) {
+            DiskCache cache = diskCache.getIfAvailable();
+            if (cache != null) {
+                log.info("StorageHandler bean: {} is decorated with disk cache.", beanName);
+                handler = new CachingStorageHandler(handler, cache);
+            }
+        }
+        UploadJournal journal = uploadJournal.getIfAvailable();
+        if (journal != null) {
+            log.info("StorageHandler bean: {} is decorated with write-behind upload journal.", beanName);
+            journal.setTarget(handler);
+            handler = new WriteBehindStorageHandler(handler, journal);
+        }
+        return handler;
+    }
+
+}
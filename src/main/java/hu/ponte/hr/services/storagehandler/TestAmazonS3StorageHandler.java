@@ -22,7 +22,7 @@ import javax.annotation.PreDestroy;
  */
 @Service
 @Slf4j
-@Profile("test")
+@Profile("test & !fs")
 public class TestAmazonS3StorageHandler extends AbstractS3StorageHandler implements StorageHandler {
 
     /**
@@ -50,8 +50,8 @@ public class TestAmazonS3StorageHandler extends AbstractS3StorageHandler impleme
                     .withEndpointConfiguration(endpoint)
                     .withCredentials(new AWSStaticCredentialsProvider(new AnonymousAWSCredentials()))
                     .build();
-            amazonS3.createBucket(amazonS3Config.getBucket());
-            log.info("AmazonS3Client is initialized with bucket: {}", amazonS3Config.getBucket());
+            getBuckets().forEach(amazonS3::createBucket);
+            log.info("AmazonS3Client is initialized with buckets: {}", getBuckets());
         } catch (SdkClientException ex) {
             String msg = "Something went wrong during initialization of S3 client.";
             log.error(msg, ex);
@@ -0,0 +1,789 @@
+package hu.ponte.hr.services.storagehandler;
+
+import hu.ponte.hr.config.WriteBehindConfig;
+import hu.ponte.hr.exception.exceptions.StorageException;
+import hu.ponte.hr.repository.StoredObjectRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of uploaded files on the local disk, drained into a {@link StorageHandler} in the background.
+ * Files are appended to the active segment and forced to the disk before the upload is acknowledged.
+ * A drained file is removed from the index, and a segment is deleted once none of its files waits for being drained.
+ * A file which could not be uploaded in {@link WriteBehindConfig#getUploadAttempts()} attempts is set aside into a file of its own.
+ * Contents left pending, as they could not be marked as stored after being drained, are reconciled with the journal and the storage.
+ * On startup the segments are replayed, so files acknowledged before a crash are drained after it.
+ * <p>
+ * A record consists of a magic number, the length and UTF-8 bytes of the file name, the length and bytes of the data,
+ * and the CRC32 checksum of the name and data. A torn record at the end of a segment is truncated on replay.
+ * A corrupt record anywhere else is skipped up to the next valid record, and a copy of the segment is kept for inspection.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(prefix = "write-behind", name = "enabled", havingValue = "true")
+public class UploadJournal {
+
+    /**
+     * Magic number starting each record.
+     */
+    private static final int MAGIC = 0x504A524E;
+
+    /**
+     * Size of the fixed part of a record before the name: magic number and name length.
+     */
+    private static final int NAME_HEADER = 8;
+
+    /**
+     * Size of the checksum closing a record.
+     */
+    private static final int TRAILER = 8;
+
+    /**
+     * Size of the buffer streamed files are copied into the journal through.
+     */
+    private static final int COPY_BUFFER_SIZE = 65536;
+
+    /**
+     * Result of reading a record which runs past the end of the segment.
+     */
+    private static final long TORN = -1;
+
+    /**
+     * Result of reading a record which is invalid within the segment.
+     */
+    private static final long CORRUPT = -2;
+
+    /**
+     * Names of the files whose content is tracked in database, the SHA-256 hashes of the contents.
+     */
+    private static final Pattern CONTENT_HASH = Pattern.compile("[0-9a-f]{64}");
+
+    /**
+     * {@link WriteBehindConfig} instance.
+     */
+    private final WriteBehindConfig writeBehindConfig;
+
+    /**
+     * {@link StoredObjectRepository} instance for marking drained contents as stored.
+     */
+    private final StoredObjectRepository storedObjectRepository;
+
+    /**
+     * The location of the files waiting for being drained by their name.
+     */
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Number of files waiting for being drained by segment id, guarded by this instance.
+     */
+    private final Map<Long, Integer> liveEntries = new HashMap<>();
+
+    /**
+     * Executor of the drain attempts.
+     */
+    private final ScheduledExecutorService drainer;
+
+    /**
+     * Directory of the segments.
+     */
+    private Path directory;
+
+    /**
+     * Id of the segment being appended to, guarded by this instance.
+     */
+    private long activeSegment;
+
+    /**
+     * Channel of the segment being appended to, guarded by this instance.
+     */
+    private FileChannel activeChannel;
+
+    /**
+     * The {@link StorageHandler} instance the files are drained into, set when a handler is decorated.
+     */
+    private volatile StorageHandler target;
+
+    /**
+     * Whether draining is started.
+     */
+    private volatile boolean started;
+
+    public UploadJournal(WriteBehindConfig writeBehindConfig, StoredObjectRepository storedObjectRepository) {
+        this.writeBehindConfig = writeBehindConfig;
+        this.storedObjectRepository = storedObjectRepository;
+        this.drainer = new ScheduledThreadPoolExecutor(writeBehindConfig.getDrainThreads(), new CustomizableThreadFactory("Journal-"));
+    }
+
+    /**
+     * Create the journal directory, replay the existing segments and start a new one.
+     * Throws {@link StorageException} if the directory could not be read.
+     */
+    @PostConstruct
+    public void init() {
+        try {
+            directory = Files.createDirectories(Paths.get(writeBehindConfig.getDirectory()).toAbsolutePath());
+            List<Long> segments;
+            try (Stream<Path> files = Files.list(directory)) {
+                segments = files.map(path -> path.getFileName().toString())
+                        .filter(name -> name.startsWith("segment-") && name.endsWith(".log"))
+                        .map(name -> Long.parseLong(name.substring("segment-".length(), name.length() - ".log".length())))
+                        .sorted()
+                        .collect(Collectors.toList());
+            }
+            for (long segment : segments) {
+                replay(segment);
+            }
+            synchronized (this) {
+                activeSegment = segments.isEmpty() ? 1 : segments.get(segments.size() - 1) + 1;
+                for (long segment : segments) {
+                    deleteIfDrained(segment);
+                }
+                activeChannel = FileChannel.open(segmentPath(activeSegment), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            }
+            log.info("Upload journal is initialized in directory: {} with {} files waiting for upload.", directory, entries.size());
+        } catch (IOException ex) {
+            String msg = "Something went wrong during initialization of upload journal.";
+            log.error(msg, ex);
+            throw new StorageException(msg);
+        }
+    }
+
+    /**
+     * Set the {@link StorageHandler} instance the files are drained into.
+     *
+     * @param target the handler storing the files
+     */
+    public void setTarget(StorageHandler target) {
+        this.target = target;
+    }
+
+    /**
+     * Start draining the replayed files once the application is ready, so the target handler is fully initialized,
+     * and reconciling the pending contents, first on startup then periodically.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (target == null) {
+            log.warn("Upload journal has no StorageHandler to drain into, {} files stay in the journal.", entries.size());
+            return;
+        }
+        started = true;
+        entries.forEach((name, entry) -> drainer.execute(() -> drain(name, entry, 0)));
+        long interval = writeBehindConfig.getReconcileInterval().toMillis();
+        drainer.scheduleWithFixedDelay(this::reconcile, 0, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Mark the pending contents which are not in the journal but are found in the storage as stored. Such contents were drained,
+     * but could not be marked, as the process stopped or their metadata was saved after the last attempt.
+     * Pending contents found in neither of them are lost, they are logged.
+     *
+     * @return the number of contents marked as stored
+     */
+    public int reconcile() {
+        int marked = 0;
+        try {
+            PageRequest pageRequest = PageRequest.of(0, writeBehindConfig.getReconcileBatchSize());
+            List<String> page = storedObjectRepository.findNextPendingPage("", pageRequest);
+            while (!page.isEmpty()) {
+                for (String contentHash : page) {
+                    if (entries.containsKey(contentHash)) {
+                        continue;
+                    }
+                    if (isStored(contentHash)) {
+                        marked += storedObjectRepository.markStored(contentHash);
+                    } else {
+                        log.error("Pending content (hash: {}) is neither in the upload journal nor in the storage.", contentHash);
+                    }
+                }
+                page = storedObjectRepository.findNextPendingPage(page.get(page.size() - 1), pageRequest);
+            }
+        } catch (RuntimeException ex) {
+            log.warn("Pending contents could not be reconciled.", ex);
+        }
+        if (marked > 0) {
+            log.info("{} pending contents are reconciled as stored.", marked);
+        }
+        return marked;
+    }
+
+    /**
+     * Whether a content is found in the target handler, by reading its first byte.
+     *
+     * @param contentHash the hash of the content
+     * @return true if the content is found
+     */
+    private boolean isStored(String contentHash) {
+        try {
+            return target.writeTo(contentHash, 0, 1, OutputStream.nullOutputStream()) > 0;
+        } catch (IOException | RuntimeException ex) {
+            log.debug("Pending content (hash: {}) is not found in the storage.", contentHash, ex);
+            return false;
+        }
+    }
+
+    /**
+     * Append a file to the journal and force it to the disk, then schedule it for draining.
+     * A file appended with the same name again replaces the earlier version.
+     *
+     * @param fileName the name of the file
+     * @param data     the content of the file
+     * @throws IOException if the file could not be written
+     */
+    public void append(String fileName, byte[] data) throws IOException {
+        byte[] name = fileName.getBytes(StandardCharsets.UTF_8);
+        CRC32 checksum = new CRC32();
+        checksum.update(name);
+        checksum.update(data);
+        ByteBuffer header = ByteBuffer.allocate(NAME_HEADER + name.length + 4)
+                .putInt(MAGIC).putInt(name.length).put(name).putInt(data.length).flip();
+        ByteBuffer trailer = ByteBuffer.allocate(TRAILER).putLong(checksum.getValue()).flip();
+        Entry entry;
+        synchronized (this) {
+            if (activeChannel.position() >= writeBehindConfig.getSegmentSize()) {
+                roll();
+            }
+            long position = activeChannel.position();
+            try {
+                ByteBuffer[] record = {header, ByteBuffer.wrap(data), trailer};
+                while (trailer.hasRemaining()) {
+                    activeChannel.write(record);
+                }
+                if (writeBehindConfig.isFsync()) {
+                    activeChannel.force(false);
+                }
+            } catch (IOException ex) {
+                activeChannel.truncate(position);
+                activeChannel.position(position);
+                throw ex;
+            }
+            entry = new Entry(activeSegment, position + header.capacity(), data.length);
+            register(fileName, entry);
+        }
+        log.debug("File (name: {}) is written into upload journal.", fileName);
+        if (started) {
+            drainer.execute(() -> drain(fileName, entry, 0));
+        }
+    }
+
+    /**
+     * Append a file read from a stream to the journal and force it to the disk, then schedule it for draining.
+     * The content is copied through a fixed buffer, so it is never held in memory as a whole.
+     * A file appended with the same name again replaces the earlier version.
+     *
+     * @param fileName    the name of the file
+     * @param inputStream the content of the file, it is not closed
+     * @param length      the number of bytes of the content
+     * @throws IOException if the content could not be read or written, or it is not of {@code length} bytes
+     */
+    public void append(String fileName, InputStream inputStream, long length) throws IOException {
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException(String.format("File (name: %s) is too large for the upload journal.", fileName));
+        }
+        byte[] name = fileName.getBytes(StandardCharsets.UTF_8);
+        CRC32 checksum = new CRC32();
+        checksum.update(name);
+        ByteBuffer header = ByteBuffer.allocate(NAME_HEADER + name.length + 4)
+                .putInt(MAGIC).putInt(name.length).put(name).putInt((int) length).flip();
+        byte[] buffer = new byte[COPY_BUFFER_SIZE];
+        Entry entry;
+        synchronized (this) {
+            if (activeChannel.position() >= writeBehindConfig.getSegmentSize()) {
+                roll();
+            }
+            long position = activeChannel.position();
+            try {
+                while (header.hasRemaining()) {
+                    activeChannel.write(header);
+                }
+                long copied = 0;
+                int read;
+                while ((read = inputStream.read(buffer)) != -1) {
+                    copied += read;
+                    if (copied > length) {
+                        break;
+                    }
+                    checksum.update(buffer, 0, read);
+                    ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, read);
+                    while (chunk.hasRemaining()) {
+                        activeChannel.write(chunk);
+                    }
+                }
+                if (copied != length) {
+                    throw new IOException(String.format("File (name: %s) is not of the declared length (%s).", fileName, length));
+                }
+                ByteBuffer trailer = ByteBuffer.allocate(TRAILER).putLong(checksum.getValue()).flip();
+                while (trailer.hasRemaining()) {
+                    activeChannel.write(trailer);
+                }
+                if (writeBehindConfig.isFsync()) {
+                    activeChannel.force(false);
+                }
+            } catch (IOException ex) {
+                activeChannel.truncate(position);
+                activeChannel.position(position);
+                throw ex;
+            }
+            entry = new Entry(activeSegment, position + header.capacity(), (int) length);
+            register(fileName, entry);
+        }
+        log.debug("File (name: {}) is written into upload journal.", fileName);
+        if (started) {
+            drainer.execute(() -> drain(fileName, entry, 0));
+        }
+    }
+
+    /**
+     * Write a range of a file waiting for being drained to an OutputStream instance.
+     *
+     * @param fileName     the name of the file
+     * @param offset       the position of the first byte to be written
+     * @param length       the number of bytes to be written
+     * @param outputStream the stream to write the data into, it is not closed
+     * @return the number of bytes written, or empty if the file is not in the journal
+     * @throws IOException if writing into {@code outputStream} fails
+     */
+    public Optional<Long> writeTo(String fileName, long offset, long length, OutputStream outputStream) throws IOException {
+        Entry entry = entries.get(fileName);
+        if (entry == null) {
+            return Optional.empty();
+        }
+        try (FileChannel channel = FileChannel.open(segmentPath(entry.segment), StandardOpenOption.READ)) {
+            long start = Math.min(offset, entry.length);
+            long count = Math.min(length, entry.length - start);
+            return Optional.of(FileSystemStorageHandler.transfer(channel, entry.position + start, count, outputStream, 0));
+        } catch (NoSuchFileException ex) {
+            log.debug("Journaled file (name: {}) is drained meanwhile.", fileName);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Read a file waiting for being drained.
+     *
+     * @param fileName the name of the file
+     * @return the content of the file, or empty if the file is not in the journal
+     * @throws IOException if the file could not be read
+     */
+    public Optional<byte[]> read(String fileName) throws IOException {
+        Entry entry = entries.get(fileName);
+        if (entry == null) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(read(entry));
+        } catch (NoSuchFileException ex) {
+            log.debug("Journaled file (name: {}) is drained meanwhile.", fileName);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Get the number of files waiting for being drained.
+     *
+     * @return the number of files
+     */
+    public int getPendingCount() {
+        return entries.size();
+    }
+
+    /**
+     * Upload a journaled file into the target handler, retrying with exponential backoff until it succeeds,
+     * then remove it from the journal and mark its content as stored.
+     * After {@link WriteBehindConfig#getUploadAttempts()} failed attempts the file is set aside, so its segment can be deleted.
+     *
+     * @param fileName the name of the file
+     * @param entry    the location of the file
+     * @param attempt  the number of failed attempts so far
+     */
+    private void drain(String fileName, Entry entry, int attempt) {
+        if (entries.get(fileName) != entry) {
+            return;
+        }
+        try {
+            target.uploadAFile(read(entry), fileName).join();
+        } catch (IOException | RuntimeException ex) {
+            if (attempt + 1 >= writeBehindConfig.getUploadAttempts()) {
+                reject(fileName, entry, ex);
+                return;
+            }
+            Duration delay = backoff(attempt);
+            log.warn("Upload of journaled file (name: {}) failed, retrying in {}.", fileName, delay, ex);
+            drainer.schedule(() -> drain(fileName, entry, attempt + 1), delay.toMillis(), TimeUnit.MILLISECONDS);
+            return;
+        }
+        remove(fileName, entry);
+        log.info("Journaled file (name: {}) is uploaded.", fileName);
+        if (CONTENT_HASH.matcher(fileName).matches()) {
+            markStored(fileName, 0);
+        }
+    }
+
+    /**
+     * Mark the content of a drained file as stored. Its metadata may be saved after the file was drained,
+     * so it is retried a few times before the content is considered to have no metadata.
+     *
+     * @param fileName the name of the file
+     * @param attempt  the number of failed attempts so far
+     */
+    private void markStored(String fileName, int attempt) {
+        try {
+            if (storedObjectRepository.markStored(fileName) > 0) {
+                return;
+            }
+        } catch (RuntimeException ex) {
+            log.warn("Content (hash: {}) could not be marked as stored.", fileName, ex);
+        }
+        if (attempt + 1 < writeBehindConfig.getMarkAttempts()) {
+            drainer.schedule(() -> markStored(fileName, attempt + 1), backoff(attempt).toMillis(), TimeUnit.MILLISECONDS);
+        } else {
+            log.info("Drained content (hash: {}) could not be marked as stored, it is left for reconciliation.", fileName);
+        }
+    }
+
+    /**
+     * Set a file aside which could not be uploaded, copying its data into a file of its own, then remove it from the journal.
+     * If the data could not be copied, the file stays in the journal and is retried on the next startup.
+     *
+     * @param fileName the name of the file
+     * @param entry    the location of the file
+     * @param cause    the failure of the last attempt
+     */
+    private void reject(String fileName, Entry entry, Exception cause) {
+        Path copy = directory.resolve(String.format("rejected-%020d-%d.data", entry.segment, entry.position));
+        try {
+            Files.write(copy, read(entry));
+        } catch (IOException ex) {
+            log.error("Journaled file (name: {}) could not be uploaded in {} attempts, nor set aside.",
+                    fileName, writeBehindConfig.getUploadAttempts(), ex);
+            return;
+        }
+        remove(fileName, entry);
+        log.error("Journaled file (name: {}) could not be uploaded in {} attempts, it is set aside to {}.",
+                fileName, writeBehindConfig.getUploadAttempts(), copy, cause);
+    }
+
+    /**
+     * Get the delay of the next retry.
+     *
+     * @param attempt the number of failed attempts so far
+     * @return the delay
+     */
+    private Duration backoff(int attempt) {
+        Duration delay = writeBehindConfig.getRetryDelay().multipliedBy(1L << Math.min(attempt, 20));
+        return delay.compareTo(writeBehindConfig.getMaxRetryDelay()) > 0 ? writeBehindConfig.getMaxRetryDelay() : delay;
+    }
+
+    /**
+     * Read the records of a segment into the index. A torn record at the end of the segment, left by a crash while it was appended,
+     * is truncated. A corrupt record is skipped up to the next valid record, after the segment is quarantined.
+     *
+     * @param segment the id of the segment
+     * @throws IOException if the segment could not be read
+     */
+    private void replay(long segment) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentPath(segment), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long position = 0;
+            long size = channel.size();
+            boolean quarantined = false;
+            while (position < size) {
+                long next = replayRecord(channel, segment, position, size, true);
+                if (next >= 0) {
+                    position = next;
+                    continue;
+                }
+                long resumed = resync(channel, segment, position + 1, size);
+                if (next == TORN && resumed < 0) {
+                    log.warn("Upload journal segment {} is truncated at torn record (position: {}).", segment, position);
+                    channel.truncate(position);
+                    channel.force(true);
+                    break;
+                }
+                if (!quarantined) {
+                    quarantine(segment);
+                    quarantined = true;
+                }
+                if (resumed < 0) {
+                    log.error("Upload journal segment {} has a corrupt record (position: {}), the rest of the segment is skipped.",
+                            segment, position);
+                    break;
+                }
+                log.error("Upload journal segment {} has a corrupt record (position: {}), {} bytes are skipped up to the next record.",
+                        segment, position, resumed - position);
+                position = resumed;
+            }
+        }
+        synchronized (this) {
+            liveEntries.putIfAbsent(segment, 0);
+        }
+    }
+
+    /**
+     * Find the next valid record of a segment after a corrupt one, by looking for the magic number.
+     *
+     * @param channel the channel of the segment
+     * @param segment the id of the segment
+     * @param from    the position to look from
+     * @param size    the size of the segment
+     * @return the position of the next valid record, or -1 if there is none
+     * @throws IOException if the segment could not be read
+     */
+    private long resync(FileChannel channel, long segment, long from, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(COPY_BUFFER_SIZE);
+        long position = from;
+        while (size - position >= NAME_HEADER) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read < Integer.BYTES) {
+                break;
+            }
+            for (int i = 0; i + Integer.BYTES <= read; i++) {
+                if (buffer.getInt(i) == MAGIC && replayRecord(channel, segment, position + i, size, false) >= 0) {
+                    return position + i;
+                }
+            }
+            position += read - (Integer.BYTES - 1);
+        }
+        return -1;
+    }
+
+    /**
+     * Keep a copy of a segment with a corrupt record for inspection, as the segment itself is deleted once it is drained.
+     * The copy is not replayed.
+     *
+     * @param segment the id of the segment
+     */
+    private void quarantine(long segment) {
+        Path copy = directory.resolve(String.format("segment-%020d.corrupt", segment));
+        try {
+            Files.copy(segmentPath(segment), copy, StandardCopyOption.REPLACE_EXISTING);
+            log.error("Upload journal segment {} is corrupt, it is copied to {}.", segment, copy);
+        } catch (IOException ex) {
+            log.error("Upload journal segment {} is corrupt, it could not be copied to {}.", segment, copy, ex);
+        }
+    }
+
+    /**
+     * Read a record of a segment, and add it to the index if requested.
+     *
+     * @param channel  the channel of the segment
+     * @param segment  the id of the segment
+     * @param position the position of the record
+     * @param size     the size of the segment
+     * @param register whether the record is added to the index
+     * @return the position of the next record, or {@link #TORN} if the record runs past the end of the segment,
+     * or {@link #CORRUPT} if it is invalid otherwise
+     * @throws IOException if the segment could not be read
+     */
+    private long replayRecord(FileChannel channel, long segment, long position, long size, boolean register) throws IOException {
+        if (size - position < NAME_HEADER) {
+            return TORN;
+        }
+        ByteBuffer header = readFully(channel, position, NAME_HEADER);
+        int nameLength = header.getInt(4);
+        if (header.getInt(0) != MAGIC || nameLength < 0) {
+            return CORRUPT;
+        }
+        if (size - position - NAME_HEADER < nameLength + 4L) {
+            return TORN;
+        }
+        ByteBuffer name = readFully(channel, position + NAME_HEADER, nameLength + 4);
+        int dataLength = name.getInt(nameLength);
+        long dataPosition = position + NAME_HEADER + nameLength + 4;
+        if (dataLength < 0) {
+            return CORRUPT;
+        }
+        if (size - dataPosition < dataLength + (long) TRAILER) {
+            return TORN;
+        }
+        ByteBuffer data = readFully(channel, dataPosition, dataLength + TRAILER);
+        CRC32 checksum = new CRC32();
+        checksum.update(name.array(), 0, nameLength);
+        checksum.update(data.array(), 0, dataLength);
+        if (checksum.getValue() != data.getLong(dataLength)) {
+            return CORRUPT;
+        }
+        if (register) {
+            String fileName = new String(name.array(), 0, nameLength, StandardCharsets.UTF_8);
+            synchronized (this) {
+                register(fileName, new Entry(segment, dataPosition, dataLength));
+            }
+        }
+        return dataPosition + dataLength + TRAILER;
+    }
+
+    /**
+     * Read the content of a journaled file.
+     *
+     * @param entry the location of the file
+     * @return the content
+     * @throws IOException if the file could not be read
+     */
+    private byte[] read(Entry entry) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentPath(entry.segment), StandardOpenOption.READ)) {
+            return readFully(channel, entry.position, entry.length).array();
+        }
+    }
+
+    /**
+     * Read bytes of a channel from a position.
+     *
+     * @param channel  the channel
+     * @param position the position of the first byte
+     * @param length   the number of bytes
+     * @return a buffer with the bytes
+     * @throws IOException if the bytes could not be read
+     */
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of upload journal segment.");
+            }
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * Index a journaled file, releasing its earlier version. The caller holds the lock of this instance.
+     *
+     * @param fileName the name of the file
+     * @param entry    the location of the file
+     */
+    private void register(String fileName, Entry entry) {
+        Entry replaced = entries.put(fileName, entry);
+        liveEntries.merge(entry.segment, 1, Integer::sum);
+        if (replaced != null) {
+            liveEntries.merge(replaced.segment, -1, Integer::sum);
+            deleteIfDrained(replaced.segment);
+        }
+    }
+
+    /**
+     * Remove a drained file from the index, unless it was replaced meanwhile.
+     *
+     * @param fileName the name of the file
+     * @param entry    the location of the drained file
+     */
+    private synchronized void remove(String fileName, Entry entry) {
+        if (entries.remove(fileName, entry)) {
+            liveEntries.merge(entry.segment, -1, Integer::sum);
+            deleteIfDrained(entry.segment);
+        }
+    }
+
+    /**
+     * Delete a segment if it is not appended to and none of its files waits for being drained.
+     * The caller holds the lock of this instance.
+     *
+     * @param segment the id of the segment
+     */
+    private void deleteIfDrained(long segment) {
+        if (segment == activeSegment || liveEntries.getOrDefault(segment, 0) > 0) {
+            return;
+        }
+        liveEntries.remove(segment);
+        try {
+            Files.deleteIfExists(segmentPath(segment));
+            log.debug("Drained upload journal segment {} is deleted.", segment);
+        } catch (IOException ex) {
+            log.warn("Drained upload journal segment {} could not be deleted.", segment, ex);
+        }
+    }
+
+    /**
+     * Close the active segment and start a new one. The caller holds the lock of this instance.
+     *
+     * @throws IOException if the new segment could not be created
+     */
+    private void roll() throws IOException {
+        activeChannel.close();
+        long closed = activeSegment;
+        activeSegment++;
+        activeChannel = FileChannel.open(segmentPath(activeSegment), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        deleteIfDrained(closed);
+    }
+
+    /**
+     * Get the path of a segment.
+     *
+     * @param segment the id of the segment
+     * @return the path of the segment
+     */
+    private Path segmentPath(long segment) {
+        return directory.resolve(String.format("segment-%020d.log", segment));
+    }
+
+    /**
+     * Stop draining and close the active segment. Files not drained yet are replayed on the next startup.
+     */
+    @PreDestroy
+    public void shutDown() {
+        drainer.shutdownNow();
+        synchronized (this) {
+            try {
+                activeChannel.close();
+            } catch (IOException ex) {
+                log.warn("Upload journal segment {} could not be closed.", activeSegment, ex);
+            }
+        }
+    }
+
+    /**
+     * Location of a journaled file.
+     */
+    @RequiredArgsConstructor
+    private static class Entry {
+
+        /**
+         * The id of the segment.
+         */
+        private final long segment;
+
+        /**
+         * The position of the data in the segment.
+         */
+        private final long position;
+
+        /**
+         * The size of the data in bytes.
+         */
+        private final int length;
+
+    }
+
+}
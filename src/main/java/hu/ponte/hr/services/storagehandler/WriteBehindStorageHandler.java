@@ -0,0 +1,179 @@
+package hu.ponte.hr.services.storagehandler;
+
+import hu.ponte.hr.exception.exceptions.StorageException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Decorator of a {@link StorageHandler}, which acknowledges uploads once they are written into an {@link UploadJournal}.
+ * The journal uploads them by the decorated {@link StorageHandler} in the background, until then they are served from the journal.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class WriteBehindStorageHandler implements StorageHandler {
+
+    /**
+     * The decorated {@link StorageHandler} instance.
+     */
+    private final StorageHandler delegate;
+
+    /**
+     * {@link UploadJournal} instance.
+     */
+    private final UploadJournal uploadJournal;
+
+    /**
+     * The decorated {@link StorageHandler} is initialized by its own lifecycle.
+     */
+    @Override
+    public void init() {
+    }
+
+    /**
+     * Write data into the journal, it is uploaded by the decorated {@link StorageHandler} later.
+     * The returned future completes with false, as the data is not stored yet,
+     * or exceptionally with {@link StorageException} if the data could not be written into the journal.
+     *
+     * @param data     data to be uploaded
+     * @param fileName to be bind to {@code data}
+     * @return a {@link Boolean} instance wrapped in {@link CompletableFuture} object.
+     */
+    @Override
+    public CompletableFuture<Boolean> uploadAFile(byte[] data, String fileName) {
+        try {
+            uploadJournal.append(fileName, data);
+            return CompletableFuture.completedFuture(false);
+        } catch (IOException ex) {
+            String msg = String.format("Failed to write file (name: %s) into upload journal.", fileName);
+            log.error(msg, ex);
+            return CompletableFuture.failedFuture(new StorageException(msg, ex));
+        }
+    }
+
+    /**
+     * Copy a local file into the journal, it is uploaded by the decorated {@link StorageHandler} later.
+     * The returned future completes with false, as the file is not stored yet,
+     * or exceptionally with {@link StorageException} if the file could not be copied into the journal.
+     *
+     * @param source   the file to be uploaded
+     * @param fileName to be bind to the content of {@code source}
+     * @return a {@link Boolean} instance wrapped in {@link CompletableFuture} object.
+     */
+    @Override
+    public CompletableFuture<Boolean> uploadAFile(Path source, String fileName) {
+        try (InputStream inputStream = Files.newInputStream(source)) {
+            uploadJournal.append(fileName, inputStream, Files.size(source));
+            return CompletableFuture.completedFuture(false);
+        } catch (IOException ex) {
+            String msg = String.format("Failed to write file (name: %s) into upload journal.", fileName);
+            log.error(msg, ex);
+            return CompletableFuture.failedFuture(new StorageException(msg, ex));
+        }
+    }
+
+    /**
+     * Download data from the journal if it is not uploaded yet, otherwise by the decorated {@link StorageHandler}.
+     *
+     * @param fileName the name of the file to be found
+     * @return an InputStream instance wrapped in {@link CompletableFuture} object.
+     */
+    @Override
+    public CompletableFuture<InputStream> downloadAFile(String fileName) {
+        return readJournaled(fileName).orElseGet(() -> delegate.downloadAFile(fileName));
+    }
+
+    /**
+     * Download data from the journal if it is not uploaded yet,
+     * otherwise by the decorated {@link StorageHandler} without storing it in a cache.
+     *
+     * @param fileName the name of the file to be found
+     * @return an InputStream instance wrapped in {@link CompletableFuture} object.
+     */
+    @Override
+    public CompletableFuture<InputStream> downloadAFileUncached(String fileName) {
+        return readJournaled(fileName).orElseGet(() -> delegate.downloadAFileUncached(fileName));
+    }
+
+    /**
+     * Read a file from the journal, if it is not uploaded yet.
+     *
+     * @param fileName the name of the file to be found
+     * @return an InputStream instance wrapped in {@link CompletableFuture} object, or empty if it is not journaled
+     */
+    private Optional<CompletableFuture<InputStream>> readJournaled(String fileName) {
+        try {
+            Optional<byte[]> journaled = uploadJournal.read(fileName);
+            if (journaled.isPresent()) {
+                return Optional.of(CompletableFuture.completedFuture(new ByteArrayInputStream(journaled.get())));
+            }
+        } catch (IOException ex) {
+            log.warn("Could not read journaled file (name: {}).", fileName, ex);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Write data from the journal to an OutputStream instance if it is not uploaded yet, otherwise by the decorated {@link StorageHandler}.
+     *
+     * @param fileName     the name of the file to be found
+     * @param outputStream the stream to write the data into, it is not closed
+     * @return the number of bytes written
+     * @throws IOException if writing into {@code outputStream} fails
+     */
+    @Override
+    public long writeTo(String fileName, OutputStream outputStream) throws IOException {
+        Optional<Long> written = uploadJournal.writeTo(fileName, 0, Long.MAX_VALUE, outputStream);
+        if (written.isPresent()) {
+            return written.get();
+        }
+        return delegate.writeTo(fileName, outputStream);
+    }
+
+    /**
+     * Write data from the journal to an OutputStream instance if it is not uploaded yet,
+     * otherwise by the decorated {@link StorageHandler} without storing it in a cache.
+     *
+     * @param fileName     the name of the file to be found
+     * @param outputStream the stream to write the data into, it is not closed
+     * @return the number of bytes written
+     * @throws IOException if writing into {@code outputStream} fails
+     */
+    @Override
+    public long writeToUncached(String fileName, OutputStream outputStream) throws IOException {
+        Optional<Long> written = uploadJournal.writeTo(fileName, 0, Long.MAX_VALUE, outputStream);
+        if (written.isPresent()) {
+            return written.get();
+        }
+        return delegate.writeToUncached(fileName, outputStream);
+    }
+
+    /**
+     * Write a range of data from the journal to an OutputStream instance if it is not uploaded yet,
+     * otherwise by the decorated {@link StorageHandler}.
+     *
+     * @param fileName     the name of the file to be found
+     * @param offset       the position of the first byte to be written
+     * @param length       the number of bytes to be written
+     * @param outputStream the stream to write the data into, it is not closed
+     * @return the number of bytes written
+     * @throws IOException if writing into {@code outputStream} fails
+     */
+    @Override
+    public long writeTo(String fileName, long offset, long length, OutputStream outputStream) throws IOException {
+        Optional<Long> written = uploadJournal.writeTo(fileName, offset, length, outputStream);
+        if (written.isPresent()) {
+            return written.get();
+        }
+        return delegate.writeTo(fileName, offset, length, outputStream);
+    }
+
+}
@@ -0,0 +1,32 @@
+package hu.ponte.hr.validation;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Width and height of an image, as declared by its header.
+ */
+@Getter
+@RequiredArgsConstructor
+public class ImageDimensions {
+
+    /**
+     * Width in pixels.
+     */
+    private final int width;
+
+    /**
+     * Height in pixels.
+     */
+    private final int height;
+
+    /**
+     * Get the number of pixels of the image.
+     *
+     * @return width times height
+     */
+    public long getPixels() {
+        return (long) width * height;
+    }
+
+}
@@ -0,0 +1,199 @@
+package hu.ponte.hr.validation;
+
+import org.apache.commons.io.IOUtils;
+import org.springframework.http.MediaType;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Parser of the dimensions of PNG, JPEG and GIF images from their first bytes, without decoding any pixels.
+ * The dimensions are read from the IHDR chunk of PNG, the first SOF segment of JPEG and the logical screen descriptor of GIF.
+ * The segments of JPEG preceding the SOF segment are skipped by their length, so only their markers are read.
+ */
+public final class ImageHeaderParser {
+
+    /**
+     * Types whose dimensions can be parsed.
+     */
+    private static final Set<String> SUPPORTED_TYPES = Set.of(MediaType.IMAGE_PNG_VALUE, MediaType.IMAGE_JPEG_VALUE,
+            MediaType.IMAGE_GIF_VALUE);
+
+    /**
+     * Signature starting PNG files.
+     */
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+    /**
+     * Type of the chunk holding the dimensions of PNG files, which has to be the first one.
+     */
+    private static final byte[] PNG_IHDR = "IHDR".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * Number of leading bytes of PNG and GIF files holding their dimensions.
+     */
+    private static final int FIXED_HEADER_SIZE = 24;
+
+    /**
+     * Max number of JPEG segments walked before the SOF segment, so a file of empty segments is not walked to its end.
+     */
+    private static final int MAX_JPEG_SEGMENTS = 256;
+
+    /**
+     * Max number of JPEG bytes walked before the SOF segment. It covers the max number of the largest metadata segments.
+     */
+    public static final int MAX_JPEG_HEADER_SIZE = 4 * 1024 * 1024;
+
+    private ImageHeaderParser() {
+    }
+
+    /**
+     * Whether the dimensions of a type can be parsed.
+     *
+     * @param mimeType the detected type of the image
+     * @return true for PNG, JPEG and GIF
+     */
+    public static boolean isSupported(String mimeType) {
+        return SUPPORTED_TYPES.contains(mimeType);
+    }
+
+    /**
+     * Parse the dimensions of an image from its first bytes.
+     *
+     * @param mimeType the detected type of the image
+     * @param header   the first bytes of the image
+     * @return the dimensions, empty if the type is not supported, or the header is malformed or too short to hold them
+     */
+    public static Optional<ImageDimensions> parse(String mimeType, byte[] header) {
+        try {
+            return parse(mimeType, new ByteArrayInputStream(header));
+        } catch (IOException ex) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Parse the dimensions of an image from the start of its content. Only the bytes up to the dimensions are read,
+     * at most {@link #MAX_JPEG_HEADER_SIZE} bytes.
+     *
+     * @param mimeType the detected type of the image
+     * @param content  the content of the image, it is not closed
+     * @return the dimensions, empty if the type is not supported, or the header is malformed, too short or too long to hold them
+     * @throws IOException if the content could not be read
+     */
+    public static Optional<ImageDimensions> parse(String mimeType, InputStream content) throws IOException {
+        ImageDimensions dimensions;
+        switch (mimeType) {
+            case MediaType.IMAGE_PNG_VALUE:
+                dimensions = parsePng(content.readNBytes(FIXED_HEADER_SIZE));
+                break;
+            case MediaType.IMAGE_JPEG_VALUE:
+                dimensions = parseJpeg(content);
+                break;
+            case MediaType.IMAGE_GIF_VALUE:
+                dimensions = parseGif(content.readNBytes(FIXED_HEADER_SIZE));
+                break;
+            default:
+                dimensions = null;
+        }
+        return Optional.ofNullable(dimensions).filter(parsed -> parsed.getWidth() > 0 && parsed.getHeight() > 0);
+    }
+
+    /**
+     * Parse the IHDR chunk following the signature of a PNG image.
+     *
+     * @param header the first bytes of the image
+     * @return the dimensions, null if they are not found
+     */
+    private static ImageDimensions parsePng(byte[] header) {
+        if (header.length < 24 || !Arrays.equals(header, 0, 8, PNG_SIGNATURE, 0, 8)
+                || !Arrays.equals(header, 12, 16, PNG_IHDR, 0, 4)) {
+            return null;
+        }
+        return new ImageDimensions(readInt(header, 16), readInt(header, 20));
+    }
+
+    /**
+     * Walk the segments of a JPEG image until the first start of frame segment, skipping the others by their length.
+     *
+     * @param content the content of the image
+     * @return the dimensions, null if they are not found within {@link #MAX_JPEG_SEGMENTS} segments and {@link #MAX_JPEG_HEADER_SIZE} bytes
+     * @throws IOException if the content could not be read
+     */
+    private static ImageDimensions parseJpeg(InputStream content) throws IOException {
+        if (content.read() != 0xFF || content.read() != 0xD8) {
+            return null;
+        }
+        long position = 2;
+        for (int segment = 0; segment < MAX_JPEG_SEGMENTS && position <= MAX_JPEG_HEADER_SIZE; segment++) {
+            if (content.read() != 0xFF) {
+                return null;
+            }
+            int marker = content.read();
+            position += 2;
+            while (marker == 0xFF) {
+                marker = content.read();
+                position++;
+            }
+            if (marker == 0x01 || (marker >= 0xD0 && marker <= 0xD8)) {
+                continue;
+            }
+            if (marker < 0 || marker == 0xD9 || marker == 0xDA) {
+                return null;
+            }
+            byte[] header = content.readNBytes(isStartOfFrame(marker) ? 7 : 2);
+            if (header.length < 2 || readShort(header, 0) < 2) {
+                return null;
+            }
+            if (isStartOfFrame(marker)) {
+                return header.length < 7 ? null : new ImageDimensions(readShort(header, 5), readShort(header, 3));
+            }
+            int length = readShort(header, 0);
+            try {
+                IOUtils.skipFully(content, length - 2);
+            } catch (EOFException ex) {
+                return null;
+            }
+            position += length;
+        }
+        return null;
+    }
+
+    /**
+     * Parse the logical screen descriptor following the signature of a GIF image.
+     *
+     * @param header the first bytes of the image
+     * @return the dimensions, null if they are not found
+     */
+    private static ImageDimensions parseGif(byte[] header) {
+        if (header.length < 10 || header[0] != 'G' || header[1] != 'I' || header[2] != 'F') {
+            return null;
+        }
+        return new ImageDimensions((header[6] & 0xFF) | (header[7] & 0xFF) << 8, (header[8] & 0xFF) | (header[9] & 0xFF) << 8);
+    }
+
+    /**
+     * Whether a JPEG marker starts a frame. DHT, JPG and DAC share the range of the start of frame markers.
+     *
+     * @param marker the marker
+     * @return true for SOF0 to SOF15
+     */
+    private static boolean isStartOfFrame(int marker) {
+        return marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC;
+    }
+
+    private static int readShort(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) << 8 | (bytes[offset + 1] & 0xFF);
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) << 24 | (bytes[offset + 1] & 0xFF) << 16 | (bytes[offset + 2] & 0xFF) << 8 | (bytes[offset + 3] & 0xFF);
+    }
+
+}
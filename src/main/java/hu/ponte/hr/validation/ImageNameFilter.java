@@ -0,0 +1,162 @@
+package hu.ponte.hr.validation;
+
+import hu.ponte.hr.config.NameFilterConfig;
+import hu.ponte.hr.domain.ImageSummary;
+import hu.ponte.hr.repository.ImageRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.codec.digest.MurmurHash3;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter of the names of the stored images, which tells that a name is definitely new without a query.
+ * A name reported as maybe used has to be looked up in database. Names are never removed, as images are never deleted.
+ * Until the names of the stored images are loaded, every name is reported as maybe used.
+ * <p>
+ * The filter knows only the names saved through this instance, so names saved by other instances of the application
+ * since its startup are reported as new. The unique constraint of the name column rejects them when they are saved.
+ */
+@Slf4j
+@Component
+public class ImageNameFilter {
+
+    /**
+     * {@link ImageRepository} instance.
+     */
+    private final ImageRepository imageRepository;
+
+    /**
+     * {@link NameFilterConfig} instance.
+     */
+    private final NameFilterConfig nameFilterConfig;
+
+    /**
+     * The bits of the filter.
+     */
+    private final AtomicLongArray bits;
+
+    /**
+     * Number of bits of the filter.
+     */
+    private final long bitCount;
+
+    /**
+     * Number of bits set for each name.
+     */
+    private final int hashCount;
+
+    /**
+     * Whether the names of the stored images are loaded.
+     */
+    private volatile boolean loaded;
+
+    public ImageNameFilter(ImageRepository imageRepository, NameFilterConfig nameFilterConfig) {
+        this.imageRepository = imageRepository;
+        this.nameFilterConfig = nameFilterConfig;
+        int expectedNames = Math.max(1, nameFilterConfig.getExpectedNames());
+        double ln2 = Math.log(2);
+        long words = Math.max(1, (long) Math.ceil(-expectedNames * Math.log(nameFilterConfig.getFalsePositiveRate()) / (ln2 * ln2) / Long.SIZE));
+        this.bits = new AtomicLongArray(Math.toIntExact(words));
+        this.bitCount = words * Long.SIZE;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedNames * ln2));
+    }
+
+    /**
+     * Load the names of the stored images page by page in the background, once the application is ready.
+     * If loading fails, every name stays reported as maybe used.
+     */
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        try {
+            long count = 0;
+            long lastId = 0;
+            List<ImageSummary> page;
+            do {
+                page = imageRepository.findNextSummaryPage(lastId, null, PageRequest.of(0, nameFilterConfig.getLoadPageSize()));
+                for (ImageSummary image : page) {
+                    put(image.getName());
+                    lastId = image.getId();
+                }
+                count += page.size();
+            } while (page.size() == nameFilterConfig.getLoadPageSize());
+            loaded = true;
+            log.info("Image name filter is loaded with {} names ({} bits, {} hashes).", count, bitCount, hashCount);
+        } catch (RuntimeException ex) {
+            log.error("Image name filter could not be loaded, names are looked up in database.", ex);
+        }
+    }
+
+    /**
+     * Add the name of a saved image.
+     *
+     * @param name the name, ignored if null
+     */
+    public void put(String name) {
+        if (name == null) {
+            return;
+        }
+        long[] hash = hash(name);
+        for (int i = 0; i < hashCount; i++) {
+            long index = index(hash, i);
+            int word = (int) (index >>> 6);
+            long mask = 1L << index;
+            long current;
+            do {
+                current = bits.get(word);
+            } while ((current & mask) == 0 && !bits.compareAndSet(word, current, current | mask));
+        }
+    }
+
+    /**
+     * Whether a name may be used by a stored image.
+     *
+     * @param name the name
+     * @return false if the name is definitely new, true if it has to be looked up
+     */
+    public boolean mightContain(String name) {
+        if (!loaded || name == null) {
+            return true;
+        }
+        long[] hash = hash(name);
+        for (int i = 0; i < hashCount; i++) {
+            long index = index(hash, i);
+            if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Whether the names of the stored images are loaded.
+     *
+     * @return true if the filter can tell new names
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    private static long[] hash(String name) {
+        return MurmurHash3.hash128x64(name.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Get the bit of a name for a hash function, derived from two hashes by double hashing.
+     *
+     * @param hash the two hashes of the name
+     * @param i    the index of the hash function
+     * @return the index of the bit
+     */
+    private long index(long[] hash, int i) {
+        return Math.floorMod(hash[0] + i * hash[1], bitCount);
+    }
+
+}
@@ -4,12 +4,14 @@ import hu.ponte.hr.exception.exceptions.MultipartFileException;
 import hu.ponte.hr.repository.ImageRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.input.BoundedInputStream;
 import org.apache.tika.Tika;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
 
 /**
  * Custom validator class for validating Multipart files.
@@ -19,6 +21,23 @@ import java.io.IOException;
 @RequiredArgsConstructor
 public class ImageValidator {
 
+    /**
+     * Number of leading bytes of a file its type is detected from. Dimensions are read from the content itself,
+     * as the metadata segments of a JPEG file preceding its frame header may be longer.
+     */
+    public static final int HEADER_SIZE = 65536;
+
+    /**
+     * Max number of leading bytes of a streamed file its dimensions are read from. They are buffered to be read again,
+     * so it is kept to a few metadata segments of JPEG files, and bounds the memory of validating a streamed upload.
+     */
+    public static final int STREAM_HEADER_SIZE = 4 * HEADER_SIZE;
+
+    /**
+     * Detector of the type of files, shared by all validations as it is thread-safe.
+     */
+    private static final Tika TIKA = new Tika();
+
     /**
      * Max allowed size of files to be uploaded.
      */
@@ -31,19 +50,39 @@ public class ImageValidator {
     @Value("${allowed-types}")
     private String[] allowedTypes;
 
+    /**
+     * Max allowed number of pixels of images.
+     */
+    @Value("${max-pixels}")
+    private Long maxPixels;
+
+    /**
+     * Max allowed width and height of images.
+     */
+    @Value("${max-dimension}")
+    private Integer maxDimension;
+
     /**
      * {@link ImageRepository} instance.
      */
     private final ImageRepository imageRepository;
 
     /**
-     * Validates a Multipart file based on predefined ruleset.
+     * {@link ImageNameFilter} instance.
+     */
+    private final ImageNameFilter imageNameFilter;
+
+    /**
+     * Validates a Multipart file based on predefined ruleset. Only its first bytes up to its type and dimensions are read.
      * Throws {@link MultipartFileException} if any of these prevail:
-     * file is null or too large, the filename is already used or the type is not allowed.
+     * file is null or too large, the filename is already used, the type is not allowed,
+     * the image has too many pixels or the content could not be read.
+     * The type declared by the client is ignored, the detected type is to be stored instead.
      *
      * @param file the Multipart file to be uploaded
+     * @return the detected type of the file
      */
-    public void validate(MultipartFile file) {
+    public String validate(MultipartFile file) {
         if (file == null) {
             String methodName = new Object() {
             }.getClass().getEnclosingMethod().getName();
@@ -55,29 +94,122 @@ public class ImageValidator {
             log.error(msg);
             throw new MultipartFileException(msg);
         }
-        String originalFilename = file.getOriginalFilename();
-        if (imageRepository.findByName(originalFilename).isPresent()) {
-            String msg = String.format("Image name (%s) is already used.", file.getOriginalFilename());
-            log.error(msg);
+        validateName(file.getOriginalFilename());
+        try {
+            String mimeType;
+            try (InputStream content = file.getInputStream()) {
+                mimeType = validateType(file.getOriginalFilename(), content.readNBytes(HEADER_SIZE));
+            }
+            if (ImageHeaderParser.isSupported(mimeType)) {
+                try (InputStream content = file.getInputStream()) {
+                    validateDimensions(file.getOriginalFilename(), mimeType, content);
+                }
+            }
+            return mimeType;
+        } catch (IOException ex) {
+            String msg = String.format("Image (name: %s) could not be read.", file.getOriginalFilename());
+            log.error(msg, ex);
             throw new MultipartFileException(msg);
         }
-        Tika tika = new Tika();
+    }
+
+    /**
+     * Validates a streamed file by its name and its first bytes up to its type and dimensions, before the rest of it is read.
+     * At most {@link #STREAM_HEADER_SIZE} bytes are buffered to read the dimensions, an image whose dimensions follow
+     * them is rejected.
+     * Its size is not known yet, so it has to be limited while it is read.
+     * Throws {@link MultipartFileException} if any of these prevail:
+     * the filename is already used, the type is not allowed, the image has too many pixels or the content could not be read.
+     *
+     * @param name    the name of the file
+     * @param content the content of the file, it has to support mark, it is reset to its start
+     * @return the detected type of the file
+     */
+    public String validate(String name, InputStream content) {
+        if (name == null || content == null) {
+            String methodName = new Object() {
+            }.getClass().getEnclosingMethod().getName();
+            log.error("{} method was called with null parameter(s).", methodName);
+            throw new IllegalArgumentException();
+        }
+        validateName(name);
         try {
-            String mimeType = tika.detect(file.getInputStream());
-            boolean isValid = false;
-            for (String allowedType : allowedTypes) {
-                if (mimeType.equals(allowedType)) {
-                    isValid = true;
-                    break;
-                }
+            content.mark(HEADER_SIZE);
+            String mimeType = validateType(name, content.readNBytes(HEADER_SIZE));
+            content.reset();
+            if (ImageHeaderParser.isSupported(mimeType)) {
+                content.mark(STREAM_HEADER_SIZE);
+                validateDimensions(name, mimeType, new BoundedInputStream(content, STREAM_HEADER_SIZE));
+                content.reset();
             }
-            if (!isValid) {
-                String msg = String.format("Image (name: %s) type (%s) is not allowed.", file.getOriginalFilename(), mimeType);
-                log.error(msg);
-                throw new MultipartFileException(msg);
+            return mimeType;
+        } catch (IOException ex) {
+            String msg = String.format("Image (name: %s) could not be read.", name);
+            log.error(msg, ex);
+            throw new MultipartFileException(msg);
+        }
+    }
+
+    /**
+     * Validates that a filename is not used yet. Names reported as new by {@link ImageNameFilter} are not looked up in database.
+     * Names used concurrently are rejected by the unique constraint of the name when the metadata is saved.
+     * Throws {@link MultipartFileException} if the filename is already used.
+     *
+     * @param name the name of the file
+     */
+    private void validateName(String name) {
+        if (imageNameFilter.mightContain(name) && imageRepository.existsByName(name)) {
+            String msg = String.format("Image name (%s) is already used.", name);
+            log.error(msg);
+            throw new MultipartFileException(msg);
+        }
+    }
+
+    /**
+     * Validates that the type detected from the first bytes of a file is allowed.
+     * Throws {@link MultipartFileException} if the type is not allowed.
+     *
+     * @param name   the name of the file
+     * @param header the first bytes of the file
+     * @return the detected type of the file
+     */
+    private String validateType(String name, byte[] header) {
+        String mimeType = TIKA.detect(header);
+        boolean isValid = false;
+        for (String allowedType : allowedTypes) {
+            if (mimeType.equals(allowedType)) {
+                isValid = true;
+                break;
             }
-        } catch (IOException e) {
-            log.error(e.getMessage());
+        }
+        if (!isValid) {
+            String msg = String.format("Image (name: %s) type (%s) is not allowed.", name, mimeType);
+            log.error(msg);
+            throw new MultipartFileException(msg);
+        }
+        return mimeType;
+    }
+
+    /**
+     * Validates that the dimensions of an image read from the start of its content are within the limits.
+     * Throws {@link MultipartFileException} if the dimensions could not be read, or the image is too wide or too high,
+     * or has too many pixels.
+     *
+     * @param name     the name of the file
+     * @param mimeType the detected type of the file, supported by {@link ImageHeaderParser}
+     * @param content  the content of the file
+     * @throws IOException if the content could not be read
+     */
+    private void validateDimensions(String name, String mimeType, InputStream content) throws IOException {
+        ImageDimensions dimensions = ImageHeaderParser.parse(mimeType, content).orElseThrow(() -> {
+            String msg = String.format("Image (name: %s) dimensions could not be read.", name);
+            log.error(msg);
+            return new MultipartFileException(msg);
+        });
+        if (dimensions.getWidth() > maxDimension || dimensions.getHeight() > maxDimension || dimensions.getPixels() > maxPixels) {
+            String msg = String.format("Image (name: %s) is too large (%sx%s pixels).", name, dimensions.getWidth(), dimensions.getHeight());
+            log.error(msg);
+            throw new MultipartFileException(msg);
         }
     }
 
@@ -98,4 +230,22 @@ public class ImageValidator {
     public void setMaxSize(Long maxSize) {
         this.maxSize = maxSize;
     }
+
+    /**
+     * Sets maxPixels externally. It provides testing functionality.
+     *
+     * @param maxPixels max allowed number of pixels
+     */
+    public void setMaxPixels(Long maxPixels) {
+        this.maxPixels = maxPixels;
+    }
+
+    /**
+     * Sets maxDimension externally. It provides testing functionality.
+     *
+     * @param maxDimension max allowed width and height
+     */
+    public void setMaxDimension(Integer maxDimension) {
+        this.maxDimension = maxDimension;
+    }
 }
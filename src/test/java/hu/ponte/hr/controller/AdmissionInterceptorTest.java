@@ -0,0 +1,73 @@
+package hu.ponte.hr.controller;
+
+import hu.ponte.hr.config.ExecutorConfig;
+import hu.ponte.hr.exception.exceptions.LaneSaturatedException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdmissionInterceptorTest {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private ThreadPoolTaskExecutor executor;
+    private AdmissionInterceptor admissionInterceptor;
+
+    @BeforeEach
+    void init() {
+        ExecutorConfig.Lane lane = new ExecutorConfig.Lane(1, 4);
+        lane.setAdmissionThreshold(0.5);
+        lane.setRetryAfter(Duration.ofSeconds(5));
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(lane.getPoolSize());
+        executor.setMaxPoolSize(lane.getPoolSize());
+        executor.setQueueCapacity(lane.getQueueCapacity());
+        executor.initialize();
+        admissionInterceptor = new AdmissionInterceptor("test", executor, lane);
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        executor.shutdown();
+    }
+
+    @Test
+    void testAdmittingUntilThreshold() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        executor.execute(() -> {
+            started.countDown();
+            awaitRelease();
+        });
+        started.await();
+        executor.execute(this::awaitRelease);
+        assertTrue(admissionInterceptor.preHandle(new MockHttpServletRequest(), new MockHttpServletResponse(), new Object()));
+
+        executor.execute(this::awaitRelease);
+        LaneSaturatedException ex = assertThrows(LaneSaturatedException.class,
+                () -> admissionInterceptor.preHandle(new MockHttpServletRequest(), new MockHttpServletResponse(), new Object()));
+        assertEquals(Duration.ofSeconds(5), ex.getRetryAfter());
+    }
+
+    @Test
+    void testAdmittingIdleLane() {
+        assertFalse(admissionInterceptor.isSaturated());
+    }
+
+    private void awaitRelease() {
+        try {
+            release.await();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
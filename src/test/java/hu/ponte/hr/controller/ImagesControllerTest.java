@@ -1,22 +1,33 @@
 package hu.ponte.hr.controller;
 
 import hu.ponte.hr.services.ImageStore;
+import hu.ponte.hr.services.StoredImage;
+import hu.ponte.hr.services.VerificationService;
+import hu.ponte.hr.services.storagehandler.StorageHandler;
 import hu.ponte.hr.util.TestImageReader;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
 
-import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.time.Instant;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
@@ -29,6 +40,12 @@ class ImagesControllerTest {
     @MockBean
     private ImageStore imageStore;
 
+    @MockBean
+    private StorageHandler storageHandler;
+
+    @MockBean
+    private VerificationService verificationService;
+
     @Test
     void testListImages() throws Exception {
         ImageMeta randomMetaImage = createAnImage();
@@ -48,15 +65,119 @@ class ImagesControllerTest {
     @Test
     void testGetImage() throws Exception {
         byte[] image = TestImageReader.readTestImagesFromResources("images").values().stream().findAny().get();
-        when(imageStore.download(anyString())).thenReturn(new ByteArrayInputStream(image));
-        MvcResult mvcResult = mockMvc.perform(get("/api/images/preview/{id}", "1234"))
+        mockImage(image);
+        MvcResult mvcResult = performAsync(get("/api/images/preview/{id}", "1234"))
                 .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_TYPE, MediaType.IMAGE_JPEG_VALUE))
+                .andExpect(header().string(HttpHeaders.ACCEPT_RANGES, "bytes"))
+                .andExpect(header().string("X-Content-Type-Options", "nosniff"))
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, image.length))
+                .andExpect(header().string(HttpHeaders.ETAG, "\"0123abcd\""))
+                .andExpect(header().string(HttpHeaders.LAST_MODIFIED, "Mon, 01 May 2023 10:15:30 GMT"))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "max-age=3600, public"))
                 .andReturn();
         assertArrayEquals(image, mvcResult.getResponse().getContentAsByteArray());
-        verify(imageStore, times(1)).download(anyString());
+        verify(imageStore, times(1)).find("1234");
+        verify(imageStore, times(1)).download(any(StoredImage.class), any(OutputStream.class));
         verifyNoMoreInteractions(imageStore);
     }
 
+    @Test
+    void testGetImageRange() throws Exception {
+        byte[] image = "0123456789".getBytes();
+        mockImage(image);
+        MvcResult mvcResult = performAsync(get("/api/images/preview/{id}", "1234").header(HttpHeaders.RANGE, "bytes=2-5"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 2-5/10"))
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, 4))
+                .andReturn();
+        assertArrayEquals("2345".getBytes(), mvcResult.getResponse().getContentAsByteArray());
+        verify(imageStore, times(1)).download(any(StoredImage.class), eq(2L), eq(4L), any(OutputStream.class));
+    }
+
+    @Test
+    void testGetImageRangeNotSatisfiable() throws Exception {
+        mockImage("0123456789".getBytes());
+        mockMvc.perform(get("/api/images/preview/{id}", "1234").header(HttpHeaders.RANGE, "bytes=10-"))
+                .andExpect(status().isRequestedRangeNotSatisfiable())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes */10"));
+        verify(imageStore, never()).download(any(StoredImage.class), anyLong(), anyLong(), any(OutputStream.class));
+    }
+
+    @Test
+    void testGetImageNotModified() throws Exception {
+        mockImage("0123456789".getBytes());
+        mockMvc.perform(get("/api/images/preview/{id}", "1234").header(HttpHeaders.IF_NONE_MATCH, "\"0123abcd\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"0123abcd\""));
+        mockMvc.perform(get("/api/images/preview/{id}", "1234").header(HttpHeaders.IF_MODIFIED_SINCE, "Mon, 01 May 2023 10:15:30 GMT"))
+                .andExpect(status().isNotModified());
+        performAsync(get("/api/images/preview/{id}", "1234").header(HttpHeaders.IF_NONE_MATCH, "\"other\""))
+                .andExpect(status().isOk());
+        verify(imageStore, times(1)).download(any(StoredImage.class), any(OutputStream.class));
+    }
+
+    @Test
+    void testGetImageWithUnsafeStoredType() throws Exception {
+        byte[] image = "<script></script>".getBytes();
+        mockImage(image);
+        when(imageStore.find("1234")).thenReturn(new StoredImage("1234", "test.jpg", MediaType.TEXT_HTML_VALUE, image.length,
+                "0123abcd", Instant.parse("2023-05-01T10:15:30Z")));
+        when(imageStore.find("5678")).thenReturn(new StoredImage("5678", "test.jpg", "image/", image.length,
+                "0123abcd", Instant.parse("2023-05-01T10:15:30Z")));
+        performAsync(get("/api/images/preview/{id}", "1234"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_OCTET_STREAM_VALUE))
+                .andExpect(header().string("X-Content-Type-Options", "nosniff"));
+        performAsync(get("/api/images/preview/{id}", "5678"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_OCTET_STREAM_VALUE));
+    }
+
+    @Test
+    void testGetImageRendition() throws Exception {
+        byte[] image = "0123456789".getBytes();
+        mockImage(image);
+        when(imageStore.find("1234", 128)).thenReturn(new StoredImage("1234", "0123abcd-128", MediaType.IMAGE_JPEG_VALUE,
+                image.length, "0123abcd-128", Instant.parse("2023-05-01T10:15:30Z")));
+        performAsync(get("/api/images/preview/{id}", "1234").param("size", "128"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"0123abcd-128\""));
+        verify(imageStore, times(1)).find("1234", 128);
+        verify(imageStore, never()).find("1234");
+    }
+
+    private ResultActions performAsync(RequestBuilder requestBuilder) throws Exception {
+        MvcResult mvcResult = mockMvc.perform(requestBuilder)
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(mvcResult));
+    }
+
+    private void mockImage(byte[] image) throws Exception {
+        when(imageStore.find(anyString())).thenReturn(new StoredImage("1234", "test.jpg", MediaType.IMAGE_JPEG_VALUE, image.length,
+                "0123abcd", Instant.parse("2023-05-01T10:15:30Z")));
+        doAnswer(invocation -> {
+            invocation.<OutputStream>getArgument(1).write(image);
+            return null;
+        }).when(imageStore).download(any(StoredImage.class), any(OutputStream.class));
+        doAnswer(invocation -> {
+            invocation.<OutputStream>getArgument(3).write(image, invocation.<Long>getArgument(1).intValue(), invocation.<Long>getArgument(2).intValue());
+            return null;
+        }).when(imageStore).download(any(StoredImage.class), anyLong(), anyLong(), any(OutputStream.class));
+    }
+
+    @Test
+    void testVerifyImage() throws Exception {
+        when(verificationService.verify("1234")).thenReturn(true);
+        mockMvc.perform(get("/api/images/verify/{id}", "1234"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value("1234"))
+                .andExpect(jsonPath("$.valid").value(true));
+        verify(verificationService, times(1)).verify("1234");
+        verifyNoMoreInteractions(verificationService);
+    }
+
     private ImageMeta createAnImage() {
         ImageMeta imageMeta = new ImageMeta();
         imageMeta.setPublicId("1234");
@@ -0,0 +1,93 @@
+package hu.ponte.hr.controller.upload;
+
+import com.jayway.jsonpath.JsonPath;
+import hu.ponte.hr.services.ImageStore;
+import hu.ponte.hr.services.storagehandler.StorageHandler;
+import hu.ponte.hr.util.TestImageReader;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "resumable-upload.chunkSize=1024")
+@AutoConfigureMockMvc
+class ResumableUploadControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private ImageStore imageStore;
+
+    @MockBean
+    private StorageHandler storageHandler;
+
+    @Test
+    void testResumableUpload() throws Exception {
+        byte[] image = TestImageReader.readTestImagesFromResources("images").values().stream().findAny().get();
+        byte[] uploaded = new byte[image.length];
+        when(imageStore.upload(eq("test-image.jpeg"), eq(MediaType.IMAGE_JPEG_VALUE), any(InputStream.class))).thenAnswer(invocation -> {
+            IOUtils.readFully(invocation.<InputStream>getArgument(2), uploaded);
+            return CompletableFuture.completedFuture(null);
+        });
+        String response = mockMvc.perform(post("/api/file/sessions").param("name", "test-image.jpeg").param("size", String.valueOf(image.length)))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.chunkSize").value(1024))
+                .andReturn().getResponse().getContentAsString();
+        String id = JsonPath.read(response, "$.id");
+        int chunkCount = JsonPath.read(response, "$.chunkCount");
+        for (int index = chunkCount - 1; index >= 0; index--) {
+            byte[] chunk = Arrays.copyOfRange(image, index * 1024, Math.min(image.length, (index + 1) * 1024));
+            mockMvc.perform(put("/api/file/sessions/{id}/chunks/{index}", id, index)
+                            .contentType(MediaType.APPLICATION_OCTET_STREAM).content(chunk))
+                    .andExpect(status().isOk());
+        }
+        mockMvc.perform(get("/api/file/sessions/{id}", id))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.receivedOffsets.length()").value(chunkCount))
+                .andExpect(jsonPath("$.receivedOffsets[0]").value(0));
+        MvcResult mvcResult = mockMvc.perform(post("/api/file/sessions/{id}/complete", id))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk());
+        assertArrayEquals(image, uploaded);
+        mockMvc.perform(get("/api/file/sessions/{id}", id))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void testAbortingResumableUpload() throws Exception {
+        String response = mockMvc.perform(post("/api/file/sessions").param("name", "test-image.jpeg").param("size", "10"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        String id = JsonPath.read(response, "$.id");
+        mockMvc.perform(delete("/api/file/sessions/{id}", id))
+                .andExpect(status().isNoContent());
+        mockMvc.perform(put("/api/file/sessions/{id}/chunks/{index}", id, 0).content("0123456789"))
+                .andExpect(status().isNotFound());
+        verifyNoInteractions(imageStore);
+    }
+
+}
@@ -1,34 +1,57 @@
 package hu.ponte.hr.controller.upload;
 
+import hu.ponte.hr.domain.Image;
+import hu.ponte.hr.exception.exceptions.StorageException;
 import hu.ponte.hr.services.ImageStore;
+import hu.ponte.hr.services.storagehandler.StorageHandler;
 import hu.ponte.hr.util.TestImageReader;
+import org.apache.commons.io.IOUtils;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
 @AutoConfigureMockMvc
 class UploadControllerTest {
 
+    private static final String BOUNDARY = "upload-boundary";
+
     @Autowired
     private MockMvc mockMvc;
 
     @MockBean
     private ImageStore imageStore;
 
+    @MockBean
+    private StorageHandler storageHandler;
+
     @Test
     void testUpload() throws Exception {
         Map<String, byte[]> images = TestImageReader.readTestImagesFromResources("images");
@@ -38,10 +61,109 @@ class UploadControllerTest {
                 MediaType.IMAGE_JPEG_VALUE,
                 images.values().stream().findAny().get()
         );
-        doNothing().when(imageStore).upload(any(MultipartFile.class));
-        mockMvc.perform(multipart("/api/file/post").file(mockFile))
+        when(imageStore.upload(any(MultipartFile.class), anyString())).thenReturn(CompletableFuture.completedFuture(null));
+        MvcResult mvcResult = mockMvc.perform(multipart("/api/file/post").file(mockFile))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(mvcResult))
                 .andExpect(status().isOk());
-        verify(imageStore).upload(mockFile);
+        verify(imageStore).upload(mockFile, MediaType.IMAGE_JPEG_VALUE);
+    }
+
+    @Test
+    void testUploadingWhenStorageFails() throws Exception {
+        Map<String, byte[]> images = TestImageReader.readTestImagesFromResources("images");
+        MockMultipartFile mockFile = new MockMultipartFile(
+                "file",
+                "test-image.jpeg",
+                MediaType.IMAGE_JPEG_VALUE,
+                images.values().stream().findAny().get()
+        );
+        when(imageStore.upload(any(MultipartFile.class), anyString()))
+                .thenReturn(CompletableFuture.failedFuture(new StorageException("Could not upload file.")));
+        MvcResult mvcResult = mockMvc.perform(multipart("/api/file/post").file(mockFile))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testBatchUpload() throws Exception {
+        byte[] image = TestImageReader.readTestImagesFromResources("images").values().stream().findAny().get();
+        MockMultipartFile first = new MockMultipartFile("files", "first.jpeg", MediaType.IMAGE_JPEG_VALUE, image);
+        MockMultipartFile second = new MockMultipartFile("files", "second.txt", MediaType.TEXT_PLAIN_VALUE, "not an image".getBytes());
+        when(imageStore.prepare(any(MultipartFile.class), anyString())).thenAnswer(invocation -> {
+            Image prepared = new Image();
+            prepared.setPublicId("1234");
+            return CompletableFuture.completedFuture(prepared);
+        });
+        when(imageStore.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        MvcResult mvcResult = mockMvc.perform(multipart("/api/file/batch").file(first).file(second))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name").value("first.jpeg"))
+                .andExpect(jsonPath("$[0].id").value("1234"))
+                .andExpect(jsonPath("$[0].successful").value(true))
+                .andExpect(jsonPath("$[1].name").value("second.txt"))
+                .andExpect(jsonPath("$[1].successful").value(false))
+                .andExpect(jsonPath("$[1].error").value("Image (name: second.txt) type (text/plain) is not allowed."));
+        verify(imageStore, times(1)).prepare(first, MediaType.IMAGE_JPEG_VALUE);
+        verify(imageStore, times(1)).saveAll(anyList());
+    }
+
+    @Test
+    void testStreamingUpload() throws Exception {
+        byte[] image = TestImageReader.readTestImagesFromResources("images").values().stream().findAny().get();
+        byte[] content = new byte[image.length];
+        when(imageStore.upload(eq("test-image.jpeg"), eq(MediaType.IMAGE_JPEG_VALUE), any(InputStream.class))).thenAnswer(invocation -> {
+            IOUtils.readFully(invocation.<InputStream>getArgument(2), content);
+            return CompletableFuture.completedFuture(null);
+        });
+        MvcResult mvcResult = mockMvc.perform(post("/api/file/stream")
+                        .contentType("multipart/form-data; boundary=" + BOUNDARY)
+                        .content(multipartBody("test-image.jpeg", image)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk());
+        assertArrayEquals(image, content);
+    }
+
+    @Test
+    void testStreamingUploadNotAllowedType() throws Exception {
+        mockMvc.perform(post("/api/file/stream")
+                        .contentType("multipart/form-data; boundary=" + BOUNDARY)
+                        .content(multipartBody("test.txt", "not an image".getBytes())))
+                .andExpect(status().isBadRequest());
+        verify(imageStore, never()).upload(anyString(), anyString(), any(InputStream.class));
+    }
+
+    private static byte[] multipartBody(String fileName, byte[] content) {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        body.writeBytes(("--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"" + fileName + "\"\r\n"
+                + "Content-Type: application/octet-stream\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+        body.writeBytes(content);
+        body.writeBytes(("\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.UTF_8));
+        return body.toByteArray();
+    }
+
+    @Test
+    void testUploadingWhenUploadLaneIsFull() throws Exception {
+        MockMultipartFile mockFile = new MockMultipartFile(
+                "file",
+                "test-image.jpeg",
+                MediaType.IMAGE_JPEG_VALUE,
+                TestImageReader.readTestImagesFromResources("images").values().stream().findAny().get()
+        );
+        when(imageStore.upload(any(MultipartFile.class), anyString())).thenThrow(new TaskRejectedException("Executor is full."));
+        mockMvc.perform(multipart("/api/file/post").file(mockFile))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"))
+                .andExpect(jsonPath("$.error").value("TOO_MANY_REQUESTS"));
     }
 
     @Test
@@ -1,21 +1,33 @@
 package hu.ponte.hr.integration;
 
+import hu.ponte.hr.controller.ExportRequest;
 import hu.ponte.hr.controller.ImageMeta;
+import hu.ponte.hr.controller.SignatureVerification;
+import hu.ponte.hr.domain.StoredObject;
+import hu.ponte.hr.repository.StoredObjectRepository;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.http.*;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @ActiveProfiles("test")
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
@@ -24,8 +36,11 @@ class IntegrationTest {
     @Autowired
     private TestRestTemplate restTemplate;
 
+    @Autowired
+    private StoredObjectRepository storedObjectRepository;
+
     @Test
-    void testUploadAndRetrieving() {
+    void testUploadAndRetrieving() throws IOException {
         String fileName = "cat.jpg";
         ClassPathResource resource = new ClassPathResource("images/" + fileName);
         MultiValueMap<String, Object> map = new LinkedMultiValueMap<>();
@@ -47,6 +62,64 @@ class IntegrationTest {
 
         ResponseEntity<Void> downloadPreviewResponse = this.restTemplate.getForEntity("/api/images/preview/" + body.get(0).getPublicId(), Void.class);
         assertEquals(HttpStatus.OK, downloadPreviewResponse.getStatusCode());
+        assertNotNull(downloadPreviewResponse.getHeaders().getETag());
+
+        HttpHeaders conditionalHeaders = new HttpHeaders();
+        conditionalHeaders.setIfNoneMatch(downloadPreviewResponse.getHeaders().getETag());
+        ResponseEntity<Void> notModifiedResponse = this.restTemplate.exchange("/api/images/preview/" + body.get(0).getPublicId(),
+                HttpMethod.GET, new HttpEntity<>(null, conditionalHeaders), Void.class);
+        assertEquals(HttpStatus.NOT_MODIFIED, notModifiedResponse.getStatusCode());
+
+        HttpHeaders rangeHeaders = new HttpHeaders();
+        rangeHeaders.setRange(List.of(HttpRange.createByteRange(0, 9)));
+        ResponseEntity<byte[]> rangeResponse = this.restTemplate.exchange("/api/images/preview/" + body.get(0).getPublicId(),
+                HttpMethod.GET, new HttpEntity<>(null, rangeHeaders), byte[].class);
+        assertEquals(HttpStatus.PARTIAL_CONTENT, rangeResponse.getStatusCode());
+        assertNotNull(rangeResponse.getBody());
+        assertEquals(10, rangeResponse.getBody().length);
+
+        ResponseEntity<SignatureVerification> verifyResponse = this.restTemplate.getForEntity("/api/images/verify/" + body.get(0).getPublicId(), SignatureVerification.class);
+        assertEquals(HttpStatus.OK, verifyResponse.getStatusCode());
+        assertNotNull(verifyResponse.getBody());
+        assertTrue(verifyResponse.getBody().isValid());
+
+        MultiValueMap<String, Object> copyMap = new LinkedMultiValueMap<>();
+        copyMap.add("file", new FileSystemResource(resource.getFile()) {
+            @Override
+            public String getFilename() {
+                return "copy of " + fileName;
+            }
+        });
+        ResponseEntity<String> copyResponse = this.restTemplate.postForEntity("/api/file/post", copyMap, String.class);
+        assertEquals(HttpStatus.OK, copyResponse.getStatusCode());
+        List<StoredObject> storedObjects = storedObjectRepository.findAll();
+        assertEquals(1, storedObjects.size());
+        assertEquals(2L, storedObjects.get(0).getReferenceCount());
+
+        ResponseEntity<byte[]> exportResponse = this.restTemplate.postForEntity("/api/images/export", null, byte[].class);
+        assertEquals(HttpStatus.OK, exportResponse.getStatusCode());
+        assertEquals("application/zip", String.valueOf(exportResponse.getHeaders().getContentType()));
+        assertNotNull(exportResponse.getBody());
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(exportResponse.getBody()))) {
+            ZipEntry first = zip.getNextEntry();
+            assertNotNull(first);
+            assertEquals(body.get(0).getPublicId() + "-" + fileName, first.getName());
+            assertArrayEquals(resource.getInputStream().readAllBytes(), zip.readAllBytes());
+            ZipEntry second = zip.getNextEntry();
+            assertNotNull(second);
+            assertTrue(second.getName().endsWith("-copy of " + fileName));
+            assertNull(zip.getNextEntry());
+        }
+
+        ExportRequest exportRequest = new ExportRequest();
+        exportRequest.setPublicIds(List.of(body.get(0).getPublicId(), "123"));
+        ResponseEntity<byte[]> selectedExportResponse = this.restTemplate.postForEntity("/api/images/export", exportRequest, byte[].class);
+        assertEquals(HttpStatus.OK, selectedExportResponse.getStatusCode());
+        assertNotNull(selectedExportResponse.getBody());
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(selectedExportResponse.getBody()))) {
+            assertNotNull(zip.getNextEntry());
+            assertNull(zip.getNextEntry());
+        }
     }
 
     @Test
@@ -0,0 +1,122 @@
+package hu.ponte.hr.integration;
+
+import hu.ponte.hr.config.AppConfig;
+import hu.ponte.hr.controller.ImageMeta;
+import hu.ponte.hr.repository.ImageRepository;
+import hu.ponte.hr.services.storagehandler.DiskCache;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Previews served with every thread of the stream lane busy and every thread of the download lane blocked,
+ * each of them missing both caches, so writing a response body must not wait for a task of either lane.
+ */
+@ActiveProfiles({"test", "fs"})
+@DirtiesContext
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:streamlanedb;DB_CLOSE_DELAY=-1",
+        "fs.rootDirectory=${java.io.tmpdir}/ponte-app-test/storage",
+        "executors.stream.poolSize=2",
+        "executors.download.poolSize=2",
+        "memory-cache.maxEntrySize=0"
+})
+class StreamLaneTest {
+
+    private static final int REQUESTS = 8;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private ImageRepository imageRepository;
+
+    @Autowired
+    private DiskCache diskCache;
+
+    @Autowired
+    @Qualifier(AppConfig.DOWNLOAD_EXECUTOR)
+    private ThreadPoolTaskExecutor downloadExecutor;
+
+    @Test
+    void testPreviewingWithSaturatedLanes() throws Exception {
+        ClassPathResource resource = new ClassPathResource("images/rnd.jpg");
+        MultiValueMap<String, Object> map = new LinkedMultiValueMap<>();
+        map.add("file", resource);
+        assertEquals(HttpStatus.OK, restTemplate.postForEntity("/api/file/post", map, String.class).getStatusCode());
+        String publicId = findPublicId();
+        diskCache.invalidate(imageRepository.findByPublicId(publicId).orElseThrow().getStorageKey());
+
+        CountDownLatch release = new CountDownLatch(1);
+        for (int i = 0; i < downloadExecutor.getMaxPoolSize(); i++) {
+            downloadExecutor.execute(() -> {
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        ExecutorService clients = Executors.newFixedThreadPool(REQUESTS);
+        try {
+            List<Future<ResponseEntity<byte[]>>> responses = new ArrayList<>();
+            for (int i = 0; i < REQUESTS; i++) {
+                responses.add(clients.submit(() -> restTemplate.getForEntity("/api/images/preview/" + publicId, byte[].class)));
+            }
+            byte[] expected = readResource(resource);
+            for (Future<ResponseEntity<byte[]>> response : responses) {
+                ResponseEntity<byte[]> previewResponse = response.get(30, TimeUnit.SECONDS);
+                assertEquals(HttpStatus.OK, previewResponse.getStatusCode());
+                assertArrayEquals(expected, previewResponse.getBody());
+            }
+        } finally {
+            release.countDown();
+            clients.shutdownNow();
+        }
+    }
+
+    private String findPublicId() {
+        ResponseEntity<List<ImageMeta>> metaResponse = restTemplate.exchange(
+                "/api/images/meta",
+                HttpMethod.GET,
+                new HttpEntity<>(null, new HttpHeaders()),
+                new ParameterizedTypeReference<>() {
+                });
+        List<ImageMeta> body = metaResponse.getBody();
+        assertNotNull(body);
+        assertEquals(1, body.size());
+        return body.get(0).getPublicId();
+    }
+
+    private static byte[] readResource(ClassPathResource resource) throws IOException {
+        return resource.getInputStream().readAllBytes();
+    }
+
+}
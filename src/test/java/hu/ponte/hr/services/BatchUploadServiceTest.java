@@ -0,0 +1,146 @@
+package hu.ponte.hr.services;
+
+import hu.ponte.hr.config.BatchUploadConfig;
+import hu.ponte.hr.controller.upload.UploadResult;
+import hu.ponte.hr.domain.Image;
+import hu.ponte.hr.exception.exceptions.MultipartFileException;
+import hu.ponte.hr.exception.exceptions.StorageException;
+import hu.ponte.hr.validation.ImageValidator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BatchUploadServiceTest {
+
+    @Mock
+    private ImageStore imageStore;
+
+    @Mock
+    private ImageValidator imageValidator;
+
+    private BatchUploadConfig batchUploadConfig;
+
+    private BatchUploadService batchUploadService;
+
+    @BeforeEach
+    void init() {
+        batchUploadConfig = new BatchUploadConfig();
+        batchUploadConfig.setMaxFiles(4);
+        batchUploadConfig.setParallelism(2);
+        batchUploadService = new BatchUploadService(imageStore, imageValidator, batchUploadConfig, new SyncTaskExecutor());
+    }
+
+    @Test
+    void testNullCheck() {
+        assertThrows(IllegalArgumentException.class, () -> batchUploadService.upload(null));
+    }
+
+    @Test
+    void testUploadingBatch() {
+        MultipartFile first = createFile("first.jpeg");
+        MultipartFile invalid = createFile("invalid.jpeg");
+        MultipartFile failing = createFile("failing.jpeg");
+        MultipartFile duplicate = createFile("first.jpeg");
+        doAnswer(invocation -> {
+            if (invocation.getArgument(0) == invalid) {
+                throw new MultipartFileException("Image name (invalid.jpeg) is already used.");
+            }
+            return MediaType.IMAGE_JPEG_VALUE;
+        }).when(imageValidator).validate(any(MultipartFile.class));
+        AtomicInteger publicIds = new AtomicInteger();
+        when(imageStore.prepare(any(MultipartFile.class), any())).thenAnswer(invocation -> {
+            if (invocation.getArgument(0) == failing) {
+                return CompletableFuture.failedFuture(new StorageException("Could not upload file."));
+            }
+            Image image = new Image();
+            image.setPublicId(String.valueOf(publicIds.incrementAndGet()));
+            return CompletableFuture.completedFuture(image);
+        });
+        when(imageStore.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        List<UploadResult> results = batchUploadService.upload(List.of(first, invalid, failing, duplicate)).join();
+
+        assertEquals(4, results.size());
+        assertTrue(results.get(0).isSuccessful());
+        assertEquals("first.jpeg", results.get(0).getName());
+        assertEquals("1", results.get(0).getId());
+        assertEquals("Image name (invalid.jpeg) is already used.", results.get(1).getError());
+        assertEquals("Could not upload file.", results.get(2).getError());
+        assertFalse(results.get(3).isSuccessful());
+        assertNull(results.get(3).getId());
+        verify(imageStore, times(2)).prepare(any(MultipartFile.class), eq(MediaType.IMAGE_JPEG_VALUE));
+        verify(imageStore, never()).prepare(eq(duplicate), any());
+        verify(imageStore, times(1)).saveAll(anyList());
+    }
+
+    @Test
+    void testUploadingBatchWhenSavingFails() {
+        when(imageStore.prepare(any(MultipartFile.class), any())).thenAnswer(invocation -> CompletableFuture.completedFuture(new Image()));
+        when(imageStore.saveAll(anyList())).thenThrow(new DataIntegrityViolationException("Duplicate entry."));
+
+        List<UploadResult> results = batchUploadService.upload(List.of(createFile("first.jpeg"), createFile("second.jpeg"))).join();
+
+        assertEquals(2, results.size());
+        assertEquals("Image metadata could not be saved.", results.get(0).getError());
+        assertEquals("Image metadata could not be saved.", results.get(1).getError());
+    }
+
+    @Test
+    void testUploadingBatchWhenNameIsUsedConcurrently() {
+        when(imageStore.prepare(any(MultipartFile.class), any())).thenAnswer(invocation -> {
+            Image image = new Image();
+            image.setId(1L);
+            image.setName(invocation.<MultipartFile>getArgument(0).getOriginalFilename());
+            image.setPublicId(image.getName());
+            return CompletableFuture.completedFuture(image);
+        });
+        when(imageStore.saveAll(anyList())).thenAnswer(invocation -> {
+            List<Image> images = invocation.getArgument(0);
+            if (images.size() > 1 || images.get(0).getName().equals("used.jpeg")) {
+                throw new MultipartFileException("Image names of the batch are already used.");
+            }
+            assertNull(images.get(0).getId());
+            return images;
+        });
+
+        List<UploadResult> results = batchUploadService.upload(List.of(createFile("first.jpeg"), createFile("used.jpeg"))).join();
+
+        assertEquals("first.jpeg", results.get(0).getId());
+        assertEquals("Image name (used.jpeg) is already used.", results.get(1).getError());
+        verify(imageStore, times(3)).saveAll(anyList());
+    }
+
+    @Test
+    void testUploadingTooManyFiles() {
+        List<MultipartFile> files = List.of(createFile("1.jpeg"), createFile("2.jpeg"), createFile("3.jpeg"),
+                createFile("4.jpeg"), createFile("5.jpeg"));
+        assertThrows(MultipartFileException.class, () -> batchUploadService.upload(files));
+        verifyNoInteractions(imageStore, imageValidator);
+    }
+
+    private MultipartFile createFile(String name) {
+        return new MockMultipartFile("files", name, MediaType.IMAGE_JPEG_VALUE, name.getBytes());
+    }
+
+}
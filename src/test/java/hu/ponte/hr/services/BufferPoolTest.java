@@ -0,0 +1,45 @@
+package hu.ponte.hr.services;
+
+import hu.ponte.hr.config.StreamingConfig;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BufferPoolTest {
+
+    @Test
+    void testBufferingAndReleasing() throws IOException {
+        StreamingConfig streamingConfig = new StreamingConfig();
+        streamingConfig.setBufferSize(4);
+        streamingConfig.setMaxPooledBuffers(1);
+        BufferPool bufferPool = new BufferPool(streamingConfig);
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+
+        try (OutputStream outputStream = bufferPool.buffer(target)) {
+            outputStream.write('0');
+            outputStream.write("12".getBytes());
+            assertEquals(0, target.size());
+            outputStream.write("34".getBytes());
+            assertEquals(3, target.size());
+            outputStream.write("56789".getBytes());
+            assertEquals(10, target.size());
+            outputStream.write('a');
+        }
+
+        assertArrayEquals("0123456789a".getBytes(), target.toByteArray());
+        assertEquals(1, bufferPool.getIdleBuffers());
+        OutputStream first = bufferPool.buffer(new ByteArrayOutputStream());
+        OutputStream second = bufferPool.buffer(new ByteArrayOutputStream());
+        assertEquals(0, bufferPool.getIdleBuffers());
+        first.close();
+        second.close();
+        first.close();
+        assertEquals(1, bufferPool.getIdleBuffers());
+    }
+
+}
@@ -0,0 +1,161 @@
+package hu.ponte.hr.services;
+
+import hu.ponte.hr.config.ExportConfig;
+import hu.ponte.hr.domain.ImageSummary;
+import hu.ponte.hr.exception.exceptions.StorageException;
+import hu.ponte.hr.repository.ImageRepository;
+import hu.ponte.hr.services.storagehandler.StorageHandler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ExportServiceTest {
+
+    @Mock
+    private ImageRepository imageRepository;
+
+    @Mock
+    private StorageHandler storageHandler;
+
+    private ExportConfig exportConfig;
+    private ThreadPoolTaskExecutor executor;
+    private ExportService exportService;
+
+    @BeforeEach
+    void init() throws IOException {
+        exportConfig = new ExportConfig();
+        exportConfig.setPageSize(2);
+        exportConfig.setPrefetch(2);
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(2);
+        executor.setMaxPoolSize(2);
+        executor.setQueueCapacity(2);
+        executor.initialize();
+        exportService = new ExportService(imageRepository, storageHandler, exportConfig, executor);
+        lenient().when(storageHandler.writeToUncached(anyString(), any(OutputStream.class))).thenAnswer(invocation -> {
+            byte[] content = ("content of " + invocation.getArgument(0)).getBytes();
+            invocation.<OutputStream>getArgument(1).write(content);
+            return (long) content.length;
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    void testExportingAllImages() throws IOException {
+        ImageSummary first = createImage(1L, "first.jpg");
+        ImageSummary second = createImage(2L, "../second.jpg");
+        ImageSummary third = createImage(3L, "third.jpg");
+        when(imageRepository.findNextSummaryPage(eq(0L), isNull(), any(Pageable.class))).thenReturn(List.of(first, second));
+        when(imageRepository.findNextSummaryPage(eq(2L), isNull(), any(Pageable.class))).thenReturn(List.of(third));
+        when(imageRepository.findNextSummaryPage(eq(3L), isNull(), any(Pageable.class))).thenReturn(List.of());
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        assertEquals(3, exportService.export(null, null, outputStream));
+
+        List<String> names = new ArrayList<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(outputStream.toByteArray()))) {
+            for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                names.add(entry.getName());
+                assertArrayEquals(("content of hash" + entry.getName().charAt(0)).getBytes(), zip.readAllBytes());
+            }
+        }
+        assertEquals(List.of("1-first.jpg", "2-second.jpg", "3-third.jpg"), names);
+    }
+
+    @Test
+    void testExportingSelectedImages() throws IOException {
+        ImageSummary first = createImage(1L, "first.jpg");
+        ImageSummary third = createImage(3L, "third.jpg");
+        when(imageRepository.findSummariesByPublicIds(List.of("1", "2"))).thenReturn(List.of(first));
+        when(imageRepository.findSummariesByPublicIds(List.of("3"))).thenReturn(List.of(third));
+
+        assertEquals(2, exportService.export(List.of("1", "2", "3"), null, new ByteArrayOutputStream()));
+
+        verify(storageHandler, times(1)).writeToUncached(eq("hash1"), any(OutputStream.class));
+        verify(storageHandler, times(1)).writeToUncached(eq("hash3"), any(OutputStream.class));
+        verify(storageHandler, never()).writeTo(anyString(), any(OutputStream.class));
+        verify(imageRepository, never()).findNextSummaryPage(any(), any(), any(Pageable.class));
+    }
+
+    @Test
+    void testExportingRepeatedIds() throws IOException {
+        ImageSummary first = createImage(1L, "first.jpg");
+        ImageSummary second = createImage(2L, "second.jpg");
+        when(imageRepository.findSummariesByPublicIds(List.of("1", "2"))).thenReturn(List.of(first, second));
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        assertEquals(2, exportService.export(List.of("1", "2", "1", "2", "1"), null, outputStream));
+
+        List<String> names = new ArrayList<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(outputStream.toByteArray()))) {
+            for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                names.add(entry.getName());
+            }
+        }
+        assertEquals(List.of("1-first.jpg", "2-second.jpg"), names);
+        verify(imageRepository, times(1)).findSummariesByPublicIds(anyList());
+    }
+
+    @Test
+    void testExportingWhenStorageFails() throws IOException {
+        List<ImageSummary> images = List.of(createImage(1L, "first.jpg"), createImage(2L, "second.jpg"));
+        when(imageRepository.findSummariesByPublicIds(List.of("1", "2"))).thenReturn(images);
+        when(storageHandler.writeToUncached(eq("hash1"), any(OutputStream.class))).thenThrow(new StorageException("test"));
+
+        assertThrows(StorageException.class, () -> exportService.export(List.of("1", "2"), null, new ByteArrayOutputStream()));
+    }
+
+    @Test
+    void testExportingWhenLaneIsFull() {
+        List<ImageSummary> images = List.of(createImage(1L, "first.jpg"));
+        when(imageRepository.findSummariesByPublicIds(List.of("1"))).thenReturn(images);
+        ExportService rejectingExportService = new ExportService(imageRepository, storageHandler, exportConfig, task -> {
+            throw new TaskRejectedException("test");
+        });
+
+        assertThrows(TaskRejectedException.class, () -> rejectingExportService.export(List.of("1"), null, new ByteArrayOutputStream()));
+        verifyNoInteractions(storageHandler);
+    }
+
+    private ImageSummary createImage(Long id, String name) {
+        ImageSummary image = mock(ImageSummary.class);
+        lenient().when(image.getId()).thenReturn(id);
+        lenient().when(image.getPublicId()).thenReturn(String.valueOf(id));
+        lenient().when(image.getName()).thenReturn(name);
+        lenient().when(image.getStorageKey()).thenReturn("hash" + id);
+        lenient().when(image.getCreatedAt()).thenReturn(Instant.parse("2023-05-01T10:15:30Z"));
+        return image;
+    }
+
+}
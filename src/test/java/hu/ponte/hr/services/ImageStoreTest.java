@@ -1,31 +1,60 @@
 package hu.ponte.hr.services;
 
+import hu.ponte.hr.config.MemoryCacheConfig;
 import hu.ponte.hr.domain.Image;
+import hu.ponte.hr.domain.ImageRendition;
+import hu.ponte.hr.domain.StorageState;
+import hu.ponte.hr.domain.StoredObject;
 import hu.ponte.hr.exception.exceptions.CustomSignatureException;
+import hu.ponte.hr.exception.exceptions.MultipartFileException;
 import hu.ponte.hr.exception.exceptions.StorageException;
 import hu.ponte.hr.mapper.ImageMapper;
 import hu.ponte.hr.repository.ImageRepository;
+import hu.ponte.hr.repository.StoredObjectRepository;
 import hu.ponte.hr.services.ImageStore;
 import hu.ponte.hr.services.SignService;
+import hu.ponte.hr.services.cache.ImageContentCache;
+import hu.ponte.hr.services.signing.SigningSession;
 import hu.ponte.hr.services.storagehandler.StorageHandler;
+import hu.ponte.hr.validation.ImageNameFilter;
 import org.apache.commons.lang3.RandomUtils;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockMultipartFile;
 
 import javax.persistence.EntityNotFoundException;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 
@@ -44,45 +73,207 @@ class ImageStoreTest {
     @Mock
     private SignService signService;
 
+    @Mock
+    private SigningSession signingSession;
+
+    @Mock
+    private StoredObjectRepository storedObjectRepository;
+
+    @Mock
+    private RenditionService renditionService;
+
+    @Mock
+    private ImageNameFilter imageNameFilter;
+
+    @Spy
+    private Executor executor = new SyncTaskExecutor();
+
+    @Spy
+    private ImageContentCache imageContentCache = new ImageContentCache(new MemoryCacheConfig());
+
     @InjectMocks
     private ImageStore imageStore;
 
     @Test
     void testNullCheck() {
-        assertThrows(IllegalArgumentException.class, () -> imageStore.upload(null));
+        assertThrows(IllegalArgumentException.class, () -> imageStore.upload(null, null));
         assertThrows(EntityNotFoundException.class, () -> imageStore.download(null));
     }
 
+    @Test
+    void testPreparingAndSavingAll() {
+        when(signService.openSession(anyString())).thenReturn(signingSession);
+        when(signingSession.wrap(any(InputStream.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(signingSession.sign()).thenReturn("testSignature");
+        when(storageHandler.uploadAFile(any(byte[].class), anyString())).thenReturn(CompletableFuture.completedFuture(true));
+        when(imageRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        MockMultipartFile mockFile = new MockMultipartFile("files", "test.jpeg", MediaType.IMAGE_JPEG_VALUE,
+                "beautiful test image".getBytes());
+
+        Image image = imageStore.prepare(mockFile, MediaType.IMAGE_PNG_VALUE).join();
+
+        assertEquals("test.jpeg", image.getName());
+        assertEquals(MediaType.IMAGE_PNG_VALUE, image.getMimeType());
+        assertEquals("testSignature", image.getDigitalSign());
+        verify(imageRepository, never()).save(any(Image.class));
+        assertEquals(1, imageStore.saveAll(List.of(image)).size());
+        verify(imageRepository).saveAll(List.of(image));
+        verify(imageNameFilter).put("test.jpeg");
+        verify(renditionService).createRenditions(DigestUtils.sha256Hex("beautiful test image"));
+    }
+
+    @Test
+    void testUploadingWhenNameIsUsedConcurrently() {
+        when(signService.openSession(anyString())).thenReturn(signingSession);
+        when(signingSession.wrap(any(InputStream.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(signingSession.sign()).thenReturn("testSignature");
+        when(storageHandler.uploadAFile(any(byte[].class), anyString())).thenReturn(CompletableFuture.completedFuture(true));
+        when(imageRepository.save(any(Image.class))).thenThrow(new DataIntegrityViolationException("Duplicate entry."));
+
+        MockMultipartFile mockFile = new MockMultipartFile("test", "test.jpeg", MediaType.IMAGE_JPEG_VALUE,
+                "beautiful test image".getBytes());
+
+        CompletionException ex = assertThrows(CompletionException.class, () -> imageStore.upload(mockFile, MediaType.IMAGE_JPEG_VALUE).join());
+        assertTrue(ex.getCause() instanceof MultipartFileException);
+        assertEquals("Image name (test.jpeg) is already used.", ex.getCause().getMessage());
+        verifyNoInteractions(imageNameFilter, renditionService);
+    }
+
+    @Test
+    void testUploadingNewContentWithUsedNameReleasesReference() {
+        String contentHash = DigestUtils.sha256Hex("beautiful test image");
+
+        when(signService.openSession(anyString())).thenReturn(signingSession);
+        when(signingSession.wrap(any(InputStream.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(signingSession.sign()).thenReturn("testSignature");
+        when(storageHandler.uploadAFile(any(byte[].class), anyString())).thenReturn(CompletableFuture.completedFuture(true));
+        when(imageRepository.save(any(Image.class))).thenThrow(new DataIntegrityViolationException("Duplicate entry."));
+
+        MockMultipartFile mockFile = new MockMultipartFile("test", "test.jpeg", MediaType.IMAGE_JPEG_VALUE,
+                "beautiful test image".getBytes());
+
+        assertThrows(CompletionException.class, () -> imageStore.upload(mockFile, MediaType.IMAGE_JPEG_VALUE).join());
+
+        ArgumentCaptor<StoredObject> savedObject = ArgumentCaptor.forClass(StoredObject.class);
+        verify(storedObjectRepository).saveAndFlush(savedObject.capture());
+        assertEquals(0L, savedObject.getValue().getReferenceCount());
+        InOrder inOrder = inOrder(storedObjectRepository, imageRepository);
+        inOrder.verify(storedObjectRepository).addReference(contentHash);
+        inOrder.verify(imageRepository).save(any(Image.class));
+        inOrder.verify(storedObjectRepository).releaseReference(contentHash);
+    }
+
+    @Test
+    void testSavingAllWithUsedNameReleasesReferences() {
+        when(imageRepository.saveAll(anyList())).thenThrow(new DataIntegrityViolationException("Duplicate entry."));
+        Image first = new Image();
+        first.setName("first.jpeg");
+        first.setContentHash("0123abcd");
+        Image second = new Image();
+        second.setName("second.jpeg");
+        second.setContentHash("4567cdef");
+
+        assertThrows(MultipartFileException.class, () -> imageStore.saveAll(List.of(first, second)));
+
+        verify(storedObjectRepository).addReference("0123abcd");
+        verify(storedObjectRepository).addReference("4567cdef");
+        verify(storedObjectRepository).releaseReference("0123abcd");
+        verify(storedObjectRepository).releaseReference("4567cdef");
+        verifyNoInteractions(imageNameFilter, renditionService);
+    }
+
     @Test
     void testUploading() {
         CompletableFuture<Boolean> uploaded = new CompletableFuture<>();
         uploaded.complete(true);
 
-        when(signService.createSignature(any(byte[].class), anyString())).thenReturn("testSignature");
+        when(signService.openSession(anyString())).thenReturn(signingSession);
+        when(signingSession.wrap(any(InputStream.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(signingSession.sign()).thenReturn("testSignature");
         when(storageHandler.uploadAFile(any(byte[].class), anyString())).thenReturn(uploaded);
         when(imageRepository.save(any(Image.class))).thenReturn(new Image());
 
         MockMultipartFile mockFile = new MockMultipartFile("test", "test.jpeg", MediaType.IMAGE_JPEG_VALUE,
                 "beautiful test image".getBytes());
 
-        assertDoesNotThrow(() -> imageStore.upload(mockFile));
+        assertDoesNotThrow(() -> imageStore.upload(mockFile, MediaType.IMAGE_JPEG_VALUE).join());
+
+        ArgumentCaptor<Image> savedImage = ArgumentCaptor.forClass(Image.class);
+        verify(imageRepository).save(savedImage.capture());
+        assertEquals(DigestUtils.sha256Hex("beautiful test image"), savedImage.getValue().getContentHash());
+        assertNotNull(savedImage.getValue().getCreatedAt());
+        verify(storageHandler).uploadAFile(any(byte[].class), eq(DigestUtils.sha256Hex("beautiful test image")));
+        ArgumentCaptor<StoredObject> savedObject = ArgumentCaptor.forClass(StoredObject.class);
+        verify(storedObjectRepository).saveAndFlush(savedObject.capture());
+        assertEquals(StorageState.STORED, savedObject.getValue().getState());
+        verify(renditionService).createRenditions(DigestUtils.sha256Hex("beautiful test image"), "beautiful test image".getBytes());
 
-        verify(signService, times(1)).createSignature(any(byte[].class), anyString());
+        verify(signService, times(1)).openSession(anyString());
         verify(storageHandler, times(1)).uploadAFile(any(byte[].class), anyString());
         verify(imageRepository, times(1)).save(any(Image.class));
         verifyNoMoreInteractions(signService, storageHandler, imageRepository);
     }
 
+    @Test
+    void testStreamingUpload() {
+        byte[] content = "beautiful streamed image".getBytes();
+        String contentHash = DigestUtils.sha256Hex(content);
+        Path[] spool = new Path[1];
+
+        when(signService.openSession(anyString())).thenReturn(signingSession);
+        when(signingSession.wrap(any(InputStream.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(signingSession.sign()).thenReturn("testSignature");
+        when(storageHandler.uploadAFile(any(Path.class), anyString())).thenAnswer(invocation -> {
+            spool[0] = invocation.getArgument(0);
+            assertArrayEquals(content, Files.readAllBytes(spool[0]));
+            return CompletableFuture.completedFuture(true);
+        });
+        when(imageRepository.save(any(Image.class))).thenReturn(new Image());
+
+        imageStore.upload("test.jpeg", MediaType.IMAGE_JPEG_VALUE, new ByteArrayInputStream(content)).join();
+
+        ArgumentCaptor<Image> savedImage = ArgumentCaptor.forClass(Image.class);
+        verify(imageRepository).save(savedImage.capture());
+        assertEquals(contentHash, savedImage.getValue().getContentHash());
+        assertEquals(content.length, savedImage.getValue().getSize());
+        assertEquals(MediaType.IMAGE_JPEG_VALUE, savedImage.getValue().getMimeType());
+        verify(storageHandler).uploadAFile(any(Path.class), eq(contentHash));
+        verify(storageHandler, never()).uploadAFile(any(byte[].class), anyString());
+        verify(renditionService).createRenditions(contentHash);
+        assertFalse(Files.exists(spool[0]));
+    }
+
+    @Test
+    void testStreamingUploadWhenReadingFails() {
+        when(signService.openSession(anyString())).thenReturn(signingSession);
+        when(signingSession.wrap(any(InputStream.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        InputStream failing = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("Connection reset");
+            }
+        };
+
+        assertThrows(MultipartFileException.class, () -> imageStore.upload("test.jpeg", MediaType.IMAGE_JPEG_VALUE, failing));
+
+        verify(storageHandler, never()).uploadAFile(any(Path.class), anyString());
+        verify(imageRepository, never()).save(any(Image.class));
+    }
+
     @Test
     void testUploadingWhenSigningFail() {
-        when(signService.createSignature(any(byte[].class), anyString())).thenThrow(CustomSignatureException.class);
+        when(signService.openSession(anyString())).thenReturn(signingSession);
+        when(signingSession.wrap(any(InputStream.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(signingSession.sign()).thenThrow(CustomSignatureException.class);
 
         MockMultipartFile mockFile = new MockMultipartFile("test", "test.jpeg", MediaType.IMAGE_JPEG_VALUE,
                 "beautiful test image".getBytes());
 
-        assertThrows(CustomSignatureException.class, () -> imageStore.upload(mockFile));
+        CompletionException ex = assertThrows(CompletionException.class, () -> imageStore.upload(mockFile, MediaType.IMAGE_JPEG_VALUE).join());
+        assertTrue(ex.getCause() instanceof CustomSignatureException);
 
-        verify(signService, times(1)).createSignature(any(byte[].class), anyString());
+        verify(signService, times(1)).openSession(anyString());
         verify(storageHandler, times(0)).uploadAFile(any(byte[].class), anyString());
         verify(imageRepository, times(0)).save(any(Image.class));
         verifyNoMoreInteractions(signService, storageHandler, imageRepository);
@@ -90,15 +281,18 @@ class ImageStoreTest {
 
     @Test
     void testUploadingWhenUploadingFail() {
-        when(signService.createSignature(any(byte[].class), anyString())).thenReturn("testSignature");
+        when(signService.openSession(anyString())).thenReturn(signingSession);
+        when(signingSession.wrap(any(InputStream.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(signingSession.sign()).thenReturn("testSignature");
         when(storageHandler.uploadAFile(any(byte[].class), anyString())).thenThrow(StorageException.class);
 
         MockMultipartFile mockFile = new MockMultipartFile("test", "test.jpeg", MediaType.IMAGE_JPEG_VALUE,
                 "beautiful test image".getBytes());
 
-        assertThrows(StorageException.class, () -> imageStore.upload(mockFile));
+        CompletionException ex = assertThrows(CompletionException.class, () -> imageStore.upload(mockFile, MediaType.IMAGE_JPEG_VALUE).join());
+        assertTrue(ex.getCause() instanceof StorageException);
 
-        verify(signService, times(1)).createSignature(any(byte[].class), anyString());
+        verify(signService, times(1)).openSession(anyString());
         verify(storageHandler, times(1)).uploadAFile(any(byte[].class), anyString());
         verify(imageRepository, times(0)).save(any(Image.class));
         verifyNoMoreInteractions(signService, storageHandler, imageRepository);
@@ -128,6 +322,113 @@ class ImageStoreTest {
         verifyNoMoreInteractions(imageRepository, storageHandler);
     }
 
+    @Test
+    void testDownloadingIntoStreamFromMemory() throws Exception {
+        byte[] content = "beautiful test image".getBytes();
+        StoredImage image = new StoredImage("1234", "test.jpg", MediaType.IMAGE_JPEG_VALUE, content.length, null, null);
+
+        when(storageHandler.writeTo(anyString(), any(OutputStream.class))).thenAnswer(invocation -> {
+            invocation.<OutputStream>getArgument(1).write(content);
+            return (long) content.length;
+        });
+
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        imageStore.download(image, first);
+        ByteArrayOutputStream second = new ByteArrayOutputStream();
+        imageStore.download(image, second);
+        ByteArrayOutputStream range = new ByteArrayOutputStream();
+        imageStore.download(image, 10, 4, range);
+
+        assertArrayEquals(content, first.toByteArray());
+        assertArrayEquals(content, second.toByteArray());
+        assertArrayEquals("test".getBytes(), range.toByteArray());
+        verify(storageHandler, times(1)).writeTo(anyString(), any(OutputStream.class));
+        verifyNoMoreInteractions(storageHandler);
+        assertEquals(2, imageContentCache.getHits());
+    }
+
+    @Test
+    void testFindingStoredImage() {
+        Image image = new Image();
+        image.setPublicId("1234");
+        image.setName("test.jpg");
+        image.setMimeType(MediaType.IMAGE_JPEG_VALUE);
+        image.setSize(1024L);
+        when(imageRepository.findByPublicId("1234")).thenReturn(Optional.of(image));
+        when(imageRepository.findByPublicId("4321")).thenReturn(Optional.empty());
+
+        StoredImage storedImage = imageStore.find("1234");
+
+        assertEquals("test.jpg", storedImage.getStorageKey());
+        assertEquals(1024L, storedImage.getSize());
+        assertThrows(EntityNotFoundException.class, () -> imageStore.find("4321"));
+    }
+
+    @Test
+    void testFindingRendition() {
+        Image image = new Image();
+        image.setPublicId("1234");
+        image.setMimeType(MediaType.IMAGE_JPEG_VALUE);
+        image.setSize(1024L);
+        image.setContentHash("0123abcd");
+        ImageRendition rendition = new ImageRendition();
+        rendition.setStorageKey("0123abcd-128");
+        rendition.setMimeType(MediaType.IMAGE_PNG_VALUE);
+        rendition.setSize(256L);
+        when(imageRepository.findByPublicId("1234")).thenReturn(Optional.of(image));
+        when(renditionService.findRendition("0123abcd", 100)).thenReturn(Optional.of(rendition));
+        when(renditionService.findRendition("0123abcd", 2000)).thenReturn(Optional.empty());
+
+        StoredImage storedRendition = imageStore.find("1234", 100);
+        StoredImage storedImage = imageStore.find("1234", 2000);
+
+        assertEquals("0123abcd-128", storedRendition.getStorageKey());
+        assertEquals("0123abcd-128", storedRendition.getContentHash());
+        assertEquals(MediaType.IMAGE_PNG_VALUE, storedRendition.getMimeType());
+        assertEquals(256L, storedRendition.getSize());
+        assertEquals("0123abcd", storedImage.getStorageKey());
+        assertEquals(1024L, storedImage.getSize());
+    }
+
+    @Test
+    void testUploadingAcceptedForLaterStoring() {
+        when(signService.openSession(anyString())).thenReturn(signingSession);
+        when(signingSession.wrap(any(InputStream.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(signingSession.sign()).thenReturn("testSignature");
+        when(storageHandler.uploadAFile(any(byte[].class), anyString())).thenReturn(CompletableFuture.completedFuture(false));
+
+        MockMultipartFile mockFile = new MockMultipartFile("test", "test.jpeg", MediaType.IMAGE_JPEG_VALUE,
+                "beautiful test image".getBytes());
+
+        assertDoesNotThrow(() -> imageStore.upload(mockFile, MediaType.IMAGE_JPEG_VALUE).join());
+
+        ArgumentCaptor<StoredObject> savedObject = ArgumentCaptor.forClass(StoredObject.class);
+        verify(storedObjectRepository).saveAndFlush(savedObject.capture());
+        assertEquals(StorageState.PENDING, savedObject.getValue().getState());
+        verify(imageRepository, times(1)).save(any(Image.class));
+    }
+
+    @Test
+    void testUploadingStoredContent() {
+        String contentHash = DigestUtils.sha256Hex("beautiful test image");
+
+        when(signService.openSession(anyString())).thenReturn(signingSession);
+        when(signingSession.wrap(any(InputStream.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(signingSession.sign()).thenReturn("testSignature");
+        when(storedObjectRepository.existsById(contentHash)).thenReturn(true);
+
+        MockMultipartFile mockFile = new MockMultipartFile("test", "copy of test.jpeg", MediaType.IMAGE_JPEG_VALUE,
+                "beautiful test image".getBytes());
+        imageStore.upload(mockFile, MediaType.IMAGE_JPEG_VALUE).join();
+
+        ArgumentCaptor<Image> savedImage = ArgumentCaptor.forClass(Image.class);
+        verify(imageRepository).save(savedImage.capture());
+        assertEquals(contentHash, savedImage.getValue().getStorageKey());
+        verify(storedObjectRepository, never()).saveAndFlush(any(StoredObject.class));
+        verify(storedObjectRepository).addReference(contentHash);
+        verifyNoInteractions(storageHandler);
+    }
+
     @Test
     void testDownloadingWhenResourceMotFound() {
         when(imageRepository.findByPublicId(anyString())).thenReturn(Optional.empty());
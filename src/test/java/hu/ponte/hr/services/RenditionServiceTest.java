@@ -0,0 +1,118 @@
+package hu.ponte.hr.services;
+
+import hu.ponte.hr.config.RenditionConfig;
+import hu.ponte.hr.domain.ImageRendition;
+import hu.ponte.hr.repository.ImageRenditionRepository;
+import hu.ponte.hr.services.storagehandler.StorageHandler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RenditionServiceTest {
+
+    @Mock
+    private StorageHandler storageHandler;
+
+    @Mock
+    private ImageRenditionRepository imageRenditionRepository;
+
+    private ThreadPoolTaskExecutor executor;
+    private RenditionService renditionService;
+
+    @BeforeEach
+    void init() {
+        executor = new ThreadPoolTaskExecutor();
+        executor.initialize();
+        renditionService = new RenditionService(storageHandler, imageRenditionRepository, new RenditionConfig(), executor);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    void testCreatingRenditions() throws Exception {
+        when(imageRenditionRepository.findBySourceKey("0123abcd")).thenReturn(List.of());
+        when(storageHandler.uploadAFile(any(byte[].class), anyString())).thenReturn(CompletableFuture.completedFuture(true));
+
+        renditionService.createRenditions("0123abcd", createImage(300, 200)).join();
+
+        ArgumentCaptor<byte[]> content = ArgumentCaptor.forClass(byte[].class);
+        verify(storageHandler, times(1)).uploadAFile(content.capture(), eq("0123abcd-128"));
+        BufferedImage rendition = ImageIO.read(new ByteArrayInputStream(content.getValue()));
+        assertEquals(128, rendition.getWidth());
+        assertEquals(85, rendition.getHeight());
+        ArgumentCaptor<ImageRendition> saved = ArgumentCaptor.forClass(ImageRendition.class);
+        verify(imageRenditionRepository, times(1)).save(saved.capture());
+        assertEquals("0123abcd", saved.getValue().getSourceKey());
+        assertEquals(128, saved.getValue().getMaxSize());
+        assertEquals(MediaType.IMAGE_JPEG_VALUE, saved.getValue().getMimeType());
+        assertEquals(content.getValue().length, saved.getValue().getSize());
+    }
+
+    @Test
+    void testSkippingExistingRenditions() {
+        when(imageRenditionRepository.findBySourceKey("0123abcd")).thenReturn(List.of(new ImageRendition()));
+
+        renditionService.createRenditions("0123abcd", new byte[0]).join();
+
+        verifyNoInteractions(storageHandler);
+        verify(imageRenditionRepository, never()).save(any(ImageRendition.class));
+    }
+
+    @Test
+    void testSkippingUnsupportedContent() {
+        when(imageRenditionRepository.findBySourceKey("0123abcd")).thenReturn(List.of());
+
+        renditionService.createRenditions("0123abcd", "not an image".getBytes()).join();
+
+        verifyNoInteractions(storageHandler);
+    }
+
+    @Test
+    void testFindingRendition() {
+        ImageRendition small = createRendition(128);
+        ImageRendition large = createRendition(512);
+        when(imageRenditionRepository.findBySourceKey("0123abcd")).thenReturn(List.of(small, large));
+
+        assertEquals(Optional.of(small), renditionService.findRendition("0123abcd", 100));
+        assertEquals(Optional.of(large), renditionService.findRendition("0123abcd", 129));
+        assertTrue(renditionService.findRendition("0123abcd", 1000).isEmpty());
+    }
+
+    private ImageRendition createRendition(int maxSize) {
+        ImageRendition rendition = new ImageRendition();
+        rendition.setMaxSize(maxSize);
+        rendition.setStorageKey("0123abcd-" + maxSize);
+        return rendition;
+    }
+
+    private byte[] createImage(int width, int height) throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "jpg", outputStream);
+        return outputStream.toByteArray();
+    }
+
+}
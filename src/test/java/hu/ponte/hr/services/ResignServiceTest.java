@@ -0,0 +1,87 @@
+package hu.ponte.hr.services;
+
+import hu.ponte.hr.config.SignConfig;
+import hu.ponte.hr.domain.Image;
+import hu.ponte.hr.exception.exceptions.StorageException;
+import hu.ponte.hr.repository.ImageRepository;
+import hu.ponte.hr.services.storagehandler.StorageHandler;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ResignServiceTest {
+
+    @Mock
+    private ImageRepository imageRepository;
+
+    @Mock
+    private StorageHandler storageHandler;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private ResignService resignService;
+
+    @BeforeEach
+    void init() {
+        SignConfig signConfig = new SignConfig();
+        signConfig.setBatchSize(2);
+        signConfig.setPrivateKeyPathInResources("config/keys/key.private");
+        signConfig.setKeyAlgorithm("RSA");
+        signConfig.setSignatureAlgorithm("SHA256withRSA");
+        SignService signService = new SignService();
+        signService.setSignConfig(signConfig);
+        resignService = new ResignService(imageRepository, storageHandler, signService, signConfig, jdbcTemplate);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testResignAll() {
+        Image first = createImage(1L, "first.jpg");
+        Image second = createImage(2L, "second.jpg");
+        Image third = createImage(3L, "third.jpg");
+        when(imageRepository.findNextPage(eq(0L), any(Pageable.class))).thenReturn(List.of(first, second));
+        when(imageRepository.findNextPage(eq(2L), any(Pageable.class))).thenReturn(List.of(third));
+        when(imageRepository.findNextPage(eq(3L), any(Pageable.class))).thenReturn(List.of());
+        when(storageHandler.downloadAFileUncached("first.jpg"))
+                .thenReturn(CompletableFuture.completedFuture(new ByteArrayInputStream("first".getBytes())));
+        when(storageHandler.downloadAFileUncached("second.jpg")).thenThrow(StorageException.class);
+        when(storageHandler.downloadAFileUncached("third.jpg"))
+                .thenReturn(CompletableFuture.completedFuture(new ByteArrayInputStream("third".getBytes())));
+
+        ResignReport report = resignService.resignAll();
+
+        assertEquals(2, report.getResigned());
+        assertEquals(1, report.getFailed());
+        ArgumentCaptor<List<Object[]>> updates = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, times(2)).batchUpdate(anyString(), updates.capture());
+        assertEquals(1, updates.getAllValues().get(0).size());
+        assertEquals(1L, updates.getAllValues().get(0).get(0)[2]);
+        assertEquals(3L, updates.getAllValues().get(1).get(0)[2]);
+        assertEquals("RSA", updates.getAllValues().get(1).get(0)[1]);
+        assertNotNull(updates.getAllValues().get(1).get(0)[0]);
+    }
+
+    private Image createImage(Long id, String name) {
+        Image image = new Image();
+        image.setId(id);
+        image.setName(name);
+        return image;
+    }
+
+}
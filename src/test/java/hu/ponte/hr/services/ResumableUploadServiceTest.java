@@ -0,0 +1,130 @@
+package hu.ponte.hr.services;
+
+import hu.ponte.hr.config.ResumableUploadConfig;
+import hu.ponte.hr.controller.upload.UploadSessionStatus;
+import hu.ponte.hr.exception.exceptions.MultipartFileException;
+import hu.ponte.hr.validation.ImageValidator;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import javax.persistence.EntityNotFoundException;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ResumableUploadServiceTest {
+
+    @TempDir
+    Path directory;
+
+    @Mock
+    private ImageStore imageStore;
+
+    @Mock
+    private ImageValidator imageValidator;
+
+    private ResumableUploadConfig resumableUploadConfig;
+
+    private ResumableUploadService resumableUploadService;
+
+    @BeforeEach
+    void init() {
+        resumableUploadConfig = new ResumableUploadConfig();
+        resumableUploadConfig.setDirectory(directory.toString());
+        resumableUploadConfig.setChunkSize(4);
+        resumableUploadService = new ResumableUploadService(resumableUploadConfig, imageStore, imageValidator, 100);
+        resumableUploadService.init();
+    }
+
+    @AfterEach
+    void shutDown() {
+        resumableUploadService.shutDown();
+    }
+
+    @Test
+    void testUploadingInChunks() {
+        byte[] content = "0123456789".getBytes();
+        byte[] uploaded = new byte[content.length];
+        when(imageValidator.validate(eq("test.jpeg"), any(InputStream.class))).thenReturn("image/jpeg");
+        when(imageStore.upload(eq("test.jpeg"), eq("image/jpeg"), any(InputStream.class))).thenAnswer(invocation -> {
+            IOUtils.readFully(invocation.<InputStream>getArgument(2), uploaded);
+            return CompletableFuture.completedFuture(null);
+        });
+
+        UploadSessionStatus session = resumableUploadService.create("test.jpeg", content.length);
+        assertEquals(3, session.getChunkCount());
+        resumableUploadService.writeChunk(session.getId(), 2, new ByteArrayInputStream("89".getBytes()));
+        resumableUploadService.writeChunk(session.getId(), 0, new ByteArrayInputStream("0123".getBytes()));
+        assertEquals(List.of(0L, 8L), resumableUploadService.status(session.getId()).getReceivedOffsets());
+        assertThrows(MultipartFileException.class, () -> resumableUploadService.complete(session.getId()));
+        resumableUploadService.writeChunk(session.getId(), 1, new ByteArrayInputStream("4567".getBytes()));
+        resumableUploadService.complete(session.getId()).join();
+
+        assertArrayEquals(content, uploaded);
+        assertThrows(EntityNotFoundException.class, () -> resumableUploadService.status(session.getId()));
+        assertFalse(Files.exists(directory.resolve(session.getId())));
+    }
+
+    @Test
+    void testWritingInvalidChunk() {
+        UploadSessionStatus session = resumableUploadService.create("test.jpeg", 10);
+        assertThrows(MultipartFileException.class,
+                () -> resumableUploadService.writeChunk(session.getId(), 0, new ByteArrayInputStream("012".getBytes())));
+        assertThrows(MultipartFileException.class,
+                () -> resumableUploadService.writeChunk(session.getId(), 0, new ByteArrayInputStream("01234".getBytes())));
+        assertThrows(MultipartFileException.class,
+                () -> resumableUploadService.writeChunk(session.getId(), 3, new ByteArrayInputStream("0".getBytes())));
+        assertEquals(List.of(), resumableUploadService.status(session.getId()).getReceivedOffsets());
+        assertThrows(MultipartFileException.class, () -> resumableUploadService.create("test.jpeg", 101));
+        assertThrows(EntityNotFoundException.class,
+                () -> resumableUploadService.writeChunk("unknown", 0, new ByteArrayInputStream("0123".getBytes())));
+    }
+
+    @Test
+    void testRemovingExpiredSessions() {
+        UploadSessionStatus session = resumableUploadService.create("test.jpeg", 10);
+        resumableUploadService.writeChunk(session.getId(), 0, new ByteArrayInputStream("0123".getBytes()));
+        resumableUploadService.removeExpired();
+        assertEquals(1, resumableUploadService.status(session.getId()).getReceivedOffsets().size());
+
+        resumableUploadConfig.setTtl(Duration.ZERO);
+        resumableUploadService.removeExpired();
+
+        assertThrows(EntityNotFoundException.class, () -> resumableUploadService.status(session.getId()));
+        assertFalse(Files.exists(directory.resolve(session.getId())));
+        verifyNoInteractions(imageStore);
+    }
+
+    @Test
+    void testCompletingInvalidImage() {
+        when(imageValidator.validate(anyString(), any(InputStream.class)))
+                .thenThrow(new MultipartFileException("Image (name: test.txt) type (text/plain) is not allowed."));
+        UploadSessionStatus session = resumableUploadService.create("test.txt", 4);
+        resumableUploadService.writeChunk(session.getId(), 0, new ByteArrayInputStream("text".getBytes()));
+
+        assertThrows(MultipartFileException.class, () -> resumableUploadService.complete(session.getId()));
+
+        assertThrows(EntityNotFoundException.class, () -> resumableUploadService.status(session.getId()));
+        verifyNoInteractions(imageStore);
+    }
+
+}
@@ -1,17 +1,38 @@
 package hu.ponte.hr.services;
 
 import hu.ponte.hr.config.SignConfig;
+import hu.ponte.hr.domain.SignatureScheme;
 import hu.ponte.hr.exception.exceptions.CustomSignatureException;
 import hu.ponte.hr.services.SignService;
+import hu.ponte.hr.services.signing.KeyMaterialCache;
+import hu.ponte.hr.services.signing.SignRequest;
+import hu.ponte.hr.services.signing.SignResult;
+import hu.ponte.hr.services.signing.SigningSession;
 import hu.ponte.hr.util.TestImageReader;
+import lombok.SneakyThrows;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.ClassPathResource;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.spec.ECGenParameterSpec;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.*;
 
 class SignServiceTest {
 
@@ -32,6 +53,7 @@ class SignServiceTest {
     void init() {
         signConfig = new SignConfig();
         signConfig.setPrivateKeyPathInResources("config/keys/key.private");
+        signConfig.setPublicKeyPathInResources("config/keys/key.pub");
         signConfig.setKeyAlgorithm("RSA");
         signConfig.setSignatureAlgorithm("SHA256withRSA");
         bytesMap = TestImageReader.readTestImagesFromResources("images");
@@ -41,7 +63,9 @@ class SignServiceTest {
 
     @Test
     void testNullCheck() {
-        assertThrows(IllegalArgumentException.class, () -> signService.createSignature(null, null));
+        assertThrows(IllegalArgumentException.class, () -> signService.createSignature((byte[]) null, null));
+        assertThrows(IllegalArgumentException.class, () -> signService.createSignature((InputStream) null, null));
+        assertThrows(IllegalArgumentException.class, () -> signService.openSession(null));
     }
 
     @Test
@@ -67,5 +91,135 @@ class SignServiceTest {
         bytesMap.forEach((key, value) -> assertEquals(files.get(key), signService.createSignature(value, key)));
     }
 
+    @Test
+    void testSigningTestResourcesAsStream() {
+        bytesMap.forEach((key, value) -> assertEquals(files.get(key), signService.createSignature(new ByteArrayInputStream(value), key)));
+    }
+
+    @Test
+    void testSigningTestResourcesInChunks() {
+        bytesMap.forEach((key, value) -> {
+            try (SigningSession session = signService.openSession(key)) {
+                for (int offset = 0; offset < value.length; offset += 1000) {
+                    session.update(value, offset, Math.min(1000, value.length - offset));
+                }
+                assertEquals(files.get(key), session.sign());
+            }
+        });
+    }
+
+    @Test
+    void testFinishedSession() {
+        SigningSession session = signService.openSession("cat.jpg");
+        session.sign();
+        assertThrows(CustomSignatureException.class, session::sign);
+        assertThrows(CustomSignatureException.class, () -> session.update(1));
+    }
+
+    @Test
+    void testVerifyingTestResources() {
+        bytesMap.forEach((key, value) -> assertTrue(signService.verify(new ByteArrayInputStream(value), files.get(key), null, key)));
+        bytesMap.forEach((key, value) -> assertTrue(signService.verify(new ByteArrayInputStream(value), files.get(key), SignatureScheme.RSA, key)));
+    }
+
+    @Test
+    void testVerifyingWrongSignature() {
+        byte[] cat = bytesMap.get("cat.jpg");
+        assertFalse(signService.verify(new ByteArrayInputStream(cat), files.get("rnd.jpg"), null, "cat.jpg"));
+        assertFalse(signService.verify(new ByteArrayInputStream(cat), "not a signature", null, "cat.jpg"));
+        assertThrows(IllegalArgumentException.class, () -> signService.verify(null, null, null, null));
+    }
+
+    @Test
+    void testSigningWithEcdsa(@TempDir Path tempDir) {
+        testSigningWithScheme(SignatureScheme.ECDSA_P256, tempDir);
+    }
+
+    @Test
+    @EnabledForJreRange(min = JRE.JAVA_15)
+    void testSigningWithEd25519(@TempDir Path tempDir) {
+        testSigningWithScheme(SignatureScheme.ED25519, tempDir);
+    }
+
+    @SneakyThrows
+    private void testSigningWithScheme(SignatureScheme scheme, Path tempDir) {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance(scheme.getKeyAlgorithm());
+        if (scheme == SignatureScheme.ECDSA_P256) {
+            generator.initialize(new ECGenParameterSpec("secp256r1"));
+        }
+        KeyPair keyPair = generator.generateKeyPair();
+        Path privateKey = Files.write(tempDir.resolve("key.private"), keyPair.getPrivate().getEncoded());
+        Path publicKey = Files.write(tempDir.resolve("key.pub"), keyPair.getPublic().getEncoded());
+        String rsaPublicKey = signConfig.getPublicKeyPathInResources();
+        signConfig.setScheme(scheme);
+        signConfig.setKeyAlgorithm(null);
+        signConfig.setSignatureAlgorithm(null);
+        signConfig.setPrivateKeyPathInResources(privateKey.toUri().toString());
+        signConfig.setPublicKeyPathInResources(publicKey.toUri().toString());
+        signConfig.setVerificationKeys(Map.of(SignatureScheme.RSA, rsaPublicKey));
+
+        bytesMap.forEach((key, value) -> {
+            try (SigningSession session = signService.openSession(key)) {
+                session.update(value, 0, value.length);
+                String signature = session.sign();
+                assertEquals(scheme, session.getScheme());
+                assertTrue(signService.verify(new ByteArrayInputStream(value), signature, scheme, key));
+                assertFalse(signService.verify(new ByteArrayInputStream(value), signature, SignatureScheme.RSA, key));
+            }
+            assertTrue(signService.verify(new ByteArrayInputStream(value), files.get(key), null, key));
+        });
+    }
+
+    @Test
+    void testSigningInBatch() {
+        List<SignRequest> requests = new ArrayList<>();
+        bytesMap.forEach((key, value) -> requests.add(new SignRequest(key, () -> new ByteArrayInputStream(value))));
+        requests.add(new SignRequest("missing.jpg", () -> {
+            throw new IOException("missing");
+        }));
+
+        List<SignResult> results = signService.signAll(requests);
+
+        assertEquals(requests.size(), results.size());
+        for (int i = 0; i < bytesMap.size(); i++) {
+            SignResult result = results.get(i);
+            assertTrue(result.isSuccessful());
+            assertEquals(files.get(result.getRequest().getFileName()), result.getSignature());
+        }
+        SignResult failed = results.get(requests.size() - 1);
+        assertFalse(failed.isSuccessful());
+        assertEquals(CustomSignatureException.class, failed.getError().getClass());
+        signService.shutDown();
+    }
+
+    @Test
+    void testKeyMaterialIsReused() {
+        bytesMap.forEach((key, value) -> signService.createSignature(value, key));
+        KeyMaterialCache cache = signService.getKeyMaterialCache();
+        assertEquals(1, cache.getReloads());
+        assertEquals(1, cache.getMisses());
+        assertEquals(bytesMap.size() - 1, cache.getHits());
+    }
+
+    @Test
+    @SneakyThrows
+    void testKeyMaterialIsReloadedWhenKeyFileChanges(@TempDir Path tempDir) {
+        Path keyFile = tempDir.resolve("key.private");
+        try (InputStream privateKeyStream = new ClassPathResource("config/keys/key.private").getInputStream()) {
+            Files.copy(privateKeyStream, keyFile);
+        }
+        signConfig.setPrivateKeyPathInResources(keyFile.toUri().toString());
+        signConfig.setKeyReloadCheckInterval(Duration.ZERO);
+        byte[] data = bytesMap.get("cat.jpg");
+
+        assertEquals(files.get("cat.jpg"), signService.createSignature(data, "cat.jpg"));
+        assertEquals(files.get("cat.jpg"), signService.createSignature(data, "cat.jpg"));
+        assertEquals(1, signService.getKeyMaterialCache().getReloads());
+
+        Files.setLastModifiedTime(keyFile, FileTime.fromMillis(Files.getLastModifiedTime(keyFile).toMillis() + 1000));
+        assertEquals(files.get("cat.jpg"), signService.createSignature(data, "cat.jpg"));
+        assertEquals(2, signService.getKeyMaterialCache().getReloads());
+    }
+
 
 }
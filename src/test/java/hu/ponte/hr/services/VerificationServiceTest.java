@@ -0,0 +1,93 @@
+package hu.ponte.hr.services;
+
+import hu.ponte.hr.config.SignConfig;
+import hu.ponte.hr.domain.Image;
+import hu.ponte.hr.repository.ImageRepository;
+import hu.ponte.hr.services.storagehandler.StorageHandler;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import javax.persistence.EntityNotFoundException;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class VerificationServiceTest {
+
+    @Mock
+    private ImageRepository imageRepository;
+
+    @Mock
+    private StorageHandler storageHandler;
+
+    @Mock
+    private SignService signService;
+
+    private VerificationService verificationService;
+
+    @BeforeEach
+    void init() {
+        SignConfig signConfig = new SignConfig();
+        signConfig.setVerificationCacheSize(1);
+        verificationService = new VerificationService(imageRepository, storageHandler, signService, signConfig);
+    }
+
+    @Test
+    void testVerifyingIsCached() {
+        Image image = createImage("1", "cat.jpg");
+        when(imageRepository.findByPublicId("1")).thenReturn(Optional.of(image));
+        when(storageHandler.downloadAFileUncached("cat.jpg"))
+                .thenAnswer(invocation -> CompletableFuture.completedFuture(new ByteArrayInputStream("cat".getBytes())));
+        when(signService.verify(any(InputStream.class), anyString(), any(), anyString())).thenReturn(true);
+
+        assertTrue(verificationService.verify("1"));
+        assertTrue(verificationService.verify("1"));
+
+        assertEquals(1, verificationService.getHits());
+        assertEquals(1, verificationService.getMisses());
+        verify(storageHandler, times(1)).downloadAFileUncached("cat.jpg");
+        verify(signService, times(1)).verify(any(InputStream.class), anyString(), any(), anyString());
+    }
+
+    @Test
+    void testCacheIsBounded() {
+        when(imageRepository.findByPublicId("1")).thenReturn(Optional.of(createImage("1", "cat.jpg")));
+        when(imageRepository.findByPublicId("2")).thenReturn(Optional.of(createImage("2", "rnd.jpg")));
+        when(storageHandler.downloadAFileUncached(anyString()))
+                .thenAnswer(invocation -> CompletableFuture.completedFuture(new ByteArrayInputStream("image".getBytes())));
+        when(signService.verify(any(InputStream.class), anyString(), any(), anyString())).thenReturn(true);
+
+        verificationService.verify("1");
+        verificationService.verify("2");
+        verificationService.verify("1");
+
+        assertEquals(3, verificationService.getMisses());
+        verify(storageHandler, times(2)).downloadAFileUncached("cat.jpg");
+    }
+
+    @Test
+    void testVerifyingNotExisting() {
+        when(imageRepository.findByPublicId(anyString())).thenReturn(Optional.empty());
+        assertThrows(EntityNotFoundException.class, () -> verificationService.verify("1"));
+        verifyNoInteractions(storageHandler, signService);
+    }
+
+    private Image createImage(String publicId, String name) {
+        Image image = new Image();
+        image.setPublicId(publicId);
+        image.setName(name);
+        image.setDigitalSign("signature-" + name);
+        return image;
+    }
+
+}
@@ -0,0 +1,83 @@
+package hu.ponte.hr.services.cache;
+
+import hu.ponte.hr.config.MemoryCacheConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageContentCacheTest {
+
+    private MemoryCacheConfig memoryCacheConfig;
+
+    @BeforeEach
+    void init() {
+        memoryCacheConfig = new MemoryCacheConfig();
+        memoryCacheConfig.setMaxSize(1000);
+        memoryCacheConfig.setMaxEntrySize(500);
+    }
+
+    @Test
+    void testEvictingByTotalSize() throws IOException {
+        ImageContentCache imageContentCache = new ImageContentCache(memoryCacheConfig);
+        imageContentCache.put("first", new byte[400]);
+        imageContentCache.put("second", new byte[400]);
+        imageContentCache.writeTo("first", new ByteArrayOutputStream());
+        imageContentCache.put("third", new byte[400]);
+        imageContentCache.put("too large", new byte[600]);
+
+        assertTrue(imageContentCache.writeTo("first", new ByteArrayOutputStream()));
+        assertFalse(imageContentCache.writeTo("second", new ByteArrayOutputStream()));
+        assertFalse(imageContentCache.writeTo("too large", new ByteArrayOutputStream()));
+        assertEquals(800, imageContentCache.getSize());
+        assertEquals(1, imageContentCache.getEvictions());
+    }
+
+    @Test
+    void testWritingFromDirectBuffer() throws IOException {
+        memoryCacheConfig.setDirect(true);
+        ImageContentCache imageContentCache = new ImageContentCache(memoryCacheConfig);
+        byte[] data = "beautiful test image".getBytes();
+        imageContentCache.put("test.jpg", data);
+
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        ByteArrayOutputStream second = new ByteArrayOutputStream();
+        assertTrue(imageContentCache.writeTo("test.jpg", first));
+        assertTrue(imageContentCache.writeTo("test.jpg", second));
+
+        assertArrayEquals(data, first.toByteArray());
+        assertArrayEquals(data, second.toByteArray());
+    }
+
+    @Test
+    void testFillingWhileWriting() throws IOException {
+        memoryCacheConfig.setDirect(true);
+        ImageContentCache imageContentCache = new ImageContentCache(memoryCacheConfig);
+        byte[] data = "beautiful test image".getBytes();
+
+        try (ImageContentCache.Fill fill = imageContentCache.fill("test.jpg", data.length)) {
+            fill.write(data, 0, 10);
+            fill.write(data, 10, data.length - 10);
+            assertTrue(fill.commit());
+        }
+        try (ImageContentCache.Fill fill = imageContentCache.fill("short.jpg", data.length)) {
+            fill.write(data, 0, 10);
+            assertFalse(fill.commit());
+        }
+        try (ImageContentCache.Fill fill = imageContentCache.fill("long.jpg", 10)) {
+            fill.write(data);
+            assertFalse(fill.commit());
+        }
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        assertTrue(imageContentCache.writeTo("test.jpg", outputStream));
+        assertArrayEquals(data, outputStream.toByteArray());
+        assertFalse(imageContentCache.writeTo("short.jpg", new ByteArrayOutputStream()));
+        assertFalse(imageContentCache.writeTo("long.jpg", new ByteArrayOutputStream()));
+        assertEquals(data.length, imageContentCache.getSize());
+    }
+
+}
@@ -5,20 +5,37 @@ import com.amazonaws.auth.AnonymousAWSCredentials;
 import com.amazonaws.client.builder.AwsClientBuilder;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.AmazonS3ClientBuilder;
+import com.amazonaws.services.s3.model.*;
 import hu.ponte.hr.config.AmazonS3Config;
 import hu.ponte.hr.exception.exceptions.StorageException;
+import hu.ponte.hr.repository.ObjectPlacementRepository;
 import hu.ponte.hr.services.storagehandler.AmazonS3StorageHandler;
 import io.findify.s3mock.S3Mock;
 import lombok.SneakyThrows;
 import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.util.SocketUtils;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
 
 class AmazonS3StorageHandlerTest {
 
@@ -26,6 +43,7 @@ class AmazonS3StorageHandlerTest {
     private static AmazonS3Config amazonS3Config;
     private static AmazonS3 amazonS3;
     private static AmazonS3StorageHandler amazonS3StorageHandler;
+    private static ThreadPoolTaskExecutor partUploadExecutor;
 
     @BeforeAll
     static void init() {
@@ -46,14 +64,30 @@ class AmazonS3StorageHandlerTest {
                 .build();
         amazonS3.createBucket(amazonS3Config.getBucket());
 
+        partUploadExecutor = new ThreadPoolTaskExecutor();
+        partUploadExecutor.setCorePoolSize(4);
+        partUploadExecutor.setMaxPoolSize(4);
+        partUploadExecutor.setQueueCapacity(16);
+        partUploadExecutor.initialize();
+
         amazonS3StorageHandler = new AmazonS3StorageHandler();
         amazonS3StorageHandler.setAmazonS3Config(amazonS3Config);
         amazonS3StorageHandler.setAmazonS3(amazonS3);
+        amazonS3StorageHandler.setPartUploadExecutor(partUploadExecutor);
+    }
+
+    @AfterEach
+    void restoreConfig() {
+        AmazonS3Config defaults = new AmazonS3Config();
+        amazonS3Config.setMultipartThreshold(defaults.getMultipartThreshold());
+        amazonS3Config.setMultipartPartSize(defaults.getMultipartPartSize());
+        amazonS3Config.setMultipartParallelism(defaults.getMultipartParallelism());
     }
 
     @Test
     void testNullCheck() {
-        assertThrows(IllegalArgumentException.class, () -> amazonS3StorageHandler.uploadAFile(null, null));
+        assertThrows(IllegalArgumentException.class, () -> amazonS3StorageHandler.uploadAFile((byte[]) null, null));
+        assertThrows(IllegalArgumentException.class, () -> amazonS3StorageHandler.uploadAFile((Path) null, null));
         assertThrows(IllegalArgumentException.class, () -> amazonS3StorageHandler.downloadAFile(null));
     }
 
@@ -78,8 +112,179 @@ class AmazonS3StorageHandlerTest {
         assertEquals(testFile.getBytes().length, downloadAFile.get().readAllBytes().length);
     }
 
+    @Test
+    @SneakyThrows
+    void testWritingARange() {
+        String testFile = "testRangeFile";
+        amazonS3StorageHandler.uploadAFile("0123456789".getBytes(), testFile);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        assertEquals(4, amazonS3StorageHandler.writeTo(testFile, 3, 4, outputStream));
+        assertArrayEquals("3456".getBytes(), outputStream.toByteArray());
+    }
+
+    @Test
+    @SneakyThrows
+    void testWritingOnCallingThread() {
+        AmazonS3 client = mock(AmazonS3.class);
+        Thread caller = Thread.currentThread();
+        when(client.getObject(any(GetObjectRequest.class))).thenAnswer(invocation -> {
+            assertSame(caller, Thread.currentThread());
+            S3Object s3Object = new S3Object();
+            s3Object.setObjectContent(new ByteArrayInputStream("0123456789".getBytes()));
+            return s3Object;
+        });
+        AmazonS3StorageHandler handler = spy(partUploadingHandler(client, 1));
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        assertEquals(10, handler.writeTo("testWrittenFile", outputStream));
+        assertArrayEquals("0123456789".getBytes(), outputStream.toByteArray());
+        verify(handler, never()).downloadAFile(any());
+    }
+
+    @Test
+    @SneakyThrows
+    void testNotLocatingWithoutShards() {
+        ObjectPlacementRepository objectPlacementRepository = mock(ObjectPlacementRepository.class);
+        AmazonS3StorageHandler handler = new AmazonS3StorageHandler();
+        handler.setAmazonS3Config(amazonS3Config);
+        handler.setAmazonS3(amazonS3);
+        handler.setShardRouter(new ShardRouter(amazonS3Config, objectPlacementRepository));
+
+        handler.uploadAFile("0123456789".getBytes(), "testUnshardedFile");
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        handler.writeTo("testUnshardedFile", outputStream);
+        handler.writeTo("testUnshardedFile", 2, 4, outputStream);
+
+        assertEquals("01234567892345", outputStream.toString());
+        assertArrayEquals("0123456789".getBytes(), handler.downloadAFile("testUnshardedFile").join().readAllBytes());
+        verifyNoInteractions(objectPlacementRepository);
+    }
+
+    @Test
+    @SneakyThrows
+    void testUploadingInParts() {
+        String testFile = "testMultipartFile";
+        byte[] data = "large enough test file to be uploaded in parts".getBytes();
+        amazonS3Config.setMultipartThreshold(16);
+        amazonS3Config.setMultipartPartSize(10);
+        // S3Mock does not store concurrently uploaded parts of the same upload safely, concurrency is tested on a mock client
+        amazonS3Config.setMultipartParallelism(1);
+        amazonS3StorageHandler.uploadAFile(data, testFile);
+        assertArrayEquals(data, amazonS3.getObject(amazonS3Config.getBucket(), testFile).getObjectContent().readAllBytes());
+        assertTrue(amazonS3.listMultipartUploads(new ListMultipartUploadsRequest(amazonS3Config.getBucket())).getMultipartUploads().isEmpty());
+    }
+
+    @Test
+    @SneakyThrows
+    void testUploadingLocalFile(@TempDir Path directory) {
+        byte[] data = "large enough test file to be uploaded in parts".getBytes();
+        Path source = Files.write(directory.resolve("source.tmp"), data);
+        amazonS3StorageHandler.uploadAFile(source, "testLocalFile");
+        amazonS3Config.setMultipartThreshold(16);
+        amazonS3Config.setMultipartPartSize(10);
+        amazonS3Config.setMultipartParallelism(1);
+        amazonS3StorageHandler.uploadAFile(source, "testLocalMultipartFile");
+        assertArrayEquals(data, amazonS3.getObject(amazonS3Config.getBucket(), "testLocalFile").getObjectContent().readAllBytes());
+        assertArrayEquals(data, amazonS3.getObject(amazonS3Config.getBucket(), "testLocalMultipartFile").getObjectContent().readAllBytes());
+    }
+
+    @Test
+    @SneakyThrows
+    void testUploadingPartsConcurrently() {
+        AmazonS3 client = mock(AmazonS3.class);
+        AmazonS3StorageHandler handler = partUploadingHandler(client, 3);
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        CountDownLatch allStarted = new CountDownLatch(3);
+        doAnswer(invocation -> {
+            UploadPartRequest request = invocation.getArgument(0);
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            allStarted.countDown();
+            allStarted.await(5, TimeUnit.SECONDS);
+            inFlight.decrementAndGet();
+            return partResult(request);
+        }).when(client).uploadPart(any(UploadPartRequest.class));
+        handler.uploadAFile(new byte[46], "testConcurrentParts");
+        assertEquals(3, maxInFlight.get());
+        verify(client, times(5)).uploadPart(any(UploadPartRequest.class));
+        verify(client).completeMultipartUpload(argThat(request -> request.getPartETags().stream()
+                .map(PartETag::getPartNumber).collect(Collectors.toList()).equals(List.of(1, 2, 3, 4, 5))));
+        verify(client, never()).abortMultipartUpload(any());
+    }
+
+    @Test
+    @SneakyThrows
+    void testAbortingAfterPartsInFlight() {
+        AmazonS3 client = mock(AmazonS3.class);
+        AmazonS3StorageHandler handler = partUploadingHandler(client, 2);
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger inFlightAtAbort = new AtomicInteger(-1);
+        CountDownLatch secondStarted = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            UploadPartRequest request = invocation.getArgument(0);
+            inFlight.incrementAndGet();
+            try {
+                if (request.getPartNumber() == 1) {
+                    secondStarted.await(5, TimeUnit.SECONDS);
+                    throw new AmazonS3Exception("part failed");
+                }
+                secondStarted.countDown();
+                Thread.sleep(200);
+                return partResult(request);
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }).when(client).uploadPart(any(UploadPartRequest.class));
+        doAnswer(invocation -> {
+            inFlightAtAbort.set(inFlight.get());
+            return null;
+        }).when(client).abortMultipartUpload(any());
+        assertThrows(StorageException.class, () -> handler.uploadAFile(new byte[46], "testFailingParts"));
+        assertEquals(0, inFlightAtAbort.get());
+        verify(client, times(2)).uploadPart(any(UploadPartRequest.class));
+        verify(client, never()).completeMultipartUpload(any());
+    }
+
+    @Test
+    void testAbortingWhenPartLaneIsFull() {
+        AmazonS3 client = mock(AmazonS3.class);
+        AmazonS3StorageHandler handler = partUploadingHandler(client, 2);
+        handler.setPartUploadExecutor(command -> {
+            throw new TaskRejectedException("test");
+        });
+
+        assertThrows(TaskRejectedException.class, () -> handler.uploadAFile(new byte[46], "testRejectedParts"));
+
+        verify(client, never()).uploadPart(any(UploadPartRequest.class));
+        verify(client).abortMultipartUpload(any());
+        verify(client, never()).completeMultipartUpload(any());
+    }
+
+    private static AmazonS3StorageHandler partUploadingHandler(AmazonS3 client, int parallelism) {
+        AmazonS3Config config = new AmazonS3Config();
+        config.setBucket("test-bucket");
+        config.setMultipartThreshold(16);
+        config.setMultipartPartSize(10);
+        config.setMultipartParallelism(parallelism);
+        InitiateMultipartUploadResult initiated = new InitiateMultipartUploadResult();
+        initiated.setUploadId("testUploadId");
+        when(client.initiateMultipartUpload(any())).thenReturn(initiated);
+        AmazonS3StorageHandler handler = new AmazonS3StorageHandler();
+        handler.setAmazonS3Config(config);
+        handler.setAmazonS3(client);
+        handler.setPartUploadExecutor(partUploadExecutor);
+        return handler;
+    }
+
+    private static UploadPartResult partResult(UploadPartRequest request) {
+        UploadPartResult result = new UploadPartResult();
+        result.setPartNumber(request.getPartNumber());
+        result.setETag("etag-" + request.getPartNumber());
+        return result;
+    }
+
     @AfterAll
     static void tearDown() {
+        partUploadExecutor.shutdown();
         mockS3API.shutdown();
     }
 
@@ -0,0 +1,203 @@
+package hu.ponte.hr.services.storagehandler;
+
+import hu.ponte.hr.config.DiskCacheConfig;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CachingStorageHandlerTest {
+
+    @TempDir
+    Path cacheDirectory;
+
+    @Mock
+    private StorageHandler delegate;
+
+    private DiskCacheConfig diskCacheConfig;
+    private DiskCache diskCache;
+    private CachingStorageHandler cachingStorageHandler;
+
+    @BeforeEach
+    void init() {
+        diskCacheConfig = new DiskCacheConfig();
+        diskCacheConfig.setDirectory(cacheDirectory.toString());
+        diskCacheConfig.setMaxSize(1024);
+        diskCache = new DiskCache(diskCacheConfig);
+        diskCache.init();
+        cachingStorageHandler = new CachingStorageHandler(delegate, diskCache);
+    }
+
+    @Test
+    @SneakyThrows
+    void testDownloadingFillsCache() {
+        byte[] data = "testFile".getBytes();
+        when(delegate.downloadAFile("testFile"))
+                .thenReturn(CompletableFuture.completedFuture(new ByteArrayInputStream(data)));
+
+        assertArrayEquals(data, cachingStorageHandler.downloadAFile("testFile").get().readAllBytes());
+        assertArrayEquals(data, cachingStorageHandler.downloadAFile("testFile").get().readAllBytes());
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        assertEquals(data.length, cachingStorageHandler.writeTo("testFile", outputStream));
+        assertArrayEquals(data, outputStream.toByteArray());
+
+        verify(delegate, times(1)).downloadAFile(anyString());
+        assertEquals(2, diskCache.getHits());
+        assertEquals(1, diskCache.getMisses());
+        assertEquals(2L * data.length, diskCache.getBytesServed());
+    }
+
+    @Test
+    @SneakyThrows
+    void testDownloadingTooLargeFileOnce() {
+        byte[] data = new byte[2048];
+        when(delegate.downloadAFile("testFile"))
+                .thenReturn(CompletableFuture.completedFuture(new ByteArrayInputStream(data)));
+
+        assertArrayEquals(data, cachingStorageHandler.downloadAFile("testFile").get().readAllBytes());
+
+        verify(delegate, times(1)).downloadAFile(anyString());
+        assertFalse(diskCache.get("testFile").isPresent());
+        assertEquals(0, diskCache.getSize());
+        try (Stream<Path> files = Files.list(cacheDirectory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    @SneakyThrows
+    void testWritingFillsCacheOnCallingThread() {
+        byte[] data = "testFile".getBytes();
+        when(delegate.writeTo(eq("testFile"), any(OutputStream.class))).thenAnswer(invocation -> {
+            invocation.<OutputStream>getArgument(1).write(data);
+            return (long) data.length;
+        });
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        assertEquals(data.length, cachingStorageHandler.writeTo("testFile", outputStream));
+        ByteArrayOutputStream cachedOutputStream = new ByteArrayOutputStream();
+        assertEquals(data.length, cachingStorageHandler.writeTo("testFile", cachedOutputStream));
+
+        assertArrayEquals(data, outputStream.toByteArray());
+        assertArrayEquals(data, cachedOutputStream.toByteArray());
+        verify(delegate, times(1)).writeTo(anyString(), any(OutputStream.class));
+        verify(delegate, never()).downloadAFile(anyString());
+    }
+
+    @Test
+    @SneakyThrows
+    void testWritingTooLargeFileWithoutCaching() {
+        byte[] data = new byte[2048];
+        when(delegate.writeTo(eq("testFile"), any(OutputStream.class))).thenAnswer(invocation -> {
+            invocation.<OutputStream>getArgument(1).write(data);
+            return (long) data.length;
+        });
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        assertEquals(data.length, cachingStorageHandler.writeTo("testFile", outputStream));
+
+        assertArrayEquals(data, outputStream.toByteArray());
+        assertFalse(diskCache.get("testFile").isPresent());
+        try (Stream<Path> files = Files.list(cacheDirectory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    @SneakyThrows
+    void testWritingUncachedServesHitsWithoutFillingCache() {
+        byte[] data = "testFile".getBytes();
+        diskCache.put("cachedFile", data);
+        when(delegate.writeToUncached(eq("testFile"), any(OutputStream.class))).thenAnswer(invocation -> {
+            invocation.<OutputStream>getArgument(1).write(data);
+            return (long) data.length;
+        });
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        assertEquals(data.length, cachingStorageHandler.writeToUncached("testFile", outputStream));
+        ByteArrayOutputStream cachedOutputStream = new ByteArrayOutputStream();
+        assertEquals(data.length, cachingStorageHandler.writeToUncached("cachedFile", cachedOutputStream));
+
+        assertArrayEquals(data, outputStream.toByteArray());
+        assertArrayEquals(data, cachedOutputStream.toByteArray());
+        assertFalse(diskCache.get("testFile").isPresent());
+        assertEquals(data.length, diskCache.getSize());
+        verify(delegate, never()).writeTo(anyString(), any(OutputStream.class));
+    }
+
+    @Test
+    @SneakyThrows
+    void testDownloadingUncachedServesHitsWithoutFillingCache() {
+        byte[] data = "testFile".getBytes();
+        diskCache.put("cachedFile", data);
+        when(delegate.downloadAFileUncached("testFile"))
+                .thenReturn(CompletableFuture.completedFuture(new ByteArrayInputStream(data)));
+
+        assertArrayEquals(data, cachingStorageHandler.downloadAFileUncached("testFile").get().readAllBytes());
+        assertArrayEquals(data, cachingStorageHandler.downloadAFileUncached("cachedFile").get().readAllBytes());
+
+        assertFalse(diskCache.get("testFile").isPresent());
+        assertEquals(data.length, diskCache.getSize());
+        verify(delegate, never()).downloadAFile(anyString());
+    }
+
+    @Test
+    @SneakyThrows
+    void testUploadingFillsCache() {
+        byte[] data = "testFile".getBytes();
+        when(delegate.uploadAFile(data, "testFile")).thenReturn(CompletableFuture.completedFuture(true));
+
+        assertTrue(cachingStorageHandler.uploadAFile(data, "testFile").get());
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        cachingStorageHandler.writeTo("testFile", outputStream);
+
+        assertArrayEquals(data, outputStream.toByteArray());
+        verify(delegate, never()).downloadAFile(anyString());
+    }
+
+    @Test
+    @SneakyThrows
+    void testEvictingLeastRecentlyUsed() {
+        diskCache.put("first", new byte[400]);
+        diskCache.put("second", new byte[400]);
+        diskCache.get("first");
+        diskCache.put("third", new byte[400]);
+
+        assertTrue(diskCache.get("first").isPresent());
+        assertFalse(diskCache.get("second").isPresent());
+        assertTrue(diskCache.get("third").isPresent());
+        assertEquals(1, diskCache.getEvictions());
+        assertEquals(800, diskCache.getSize());
+    }
+
+    @Test
+    @SneakyThrows
+    void testLoadingCachedFilesOnStartup() {
+        diskCache.put("testFile", "testFile".getBytes());
+
+        DiskCache reloaded = new DiskCache(diskCacheConfig);
+        reloaded.init();
+
+        assertTrue(reloaded.get("testFile").isPresent());
+        assertEquals("testFile".getBytes().length, reloaded.getSize());
+    }
+
+}
@@ -0,0 +1,127 @@
+package hu.ponte.hr.services.storagehandler;
+
+import hu.ponte.hr.config.FileSystemStorageConfig;
+import hu.ponte.hr.exception.exceptions.StorageException;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class FileSystemStorageHandlerTest {
+
+    @TempDir
+    Path rootDirectory;
+
+    private FileSystemStorageConfig fileSystemStorageConfig;
+    private FileSystemStorageHandler fileSystemStorageHandler;
+
+    @BeforeEach
+    void init() {
+        fileSystemStorageConfig = new FileSystemStorageConfig();
+        fileSystemStorageConfig.setRootDirectory(rootDirectory.toString());
+        fileSystemStorageHandler = new FileSystemStorageHandler();
+        fileSystemStorageHandler.setFileSystemStorageConfig(fileSystemStorageConfig);
+        fileSystemStorageHandler.init();
+    }
+
+    @Test
+    void testNullCheck() {
+        assertThrows(IllegalArgumentException.class, () -> fileSystemStorageHandler.uploadAFile((byte[]) null, null));
+        assertThrows(IllegalArgumentException.class, () -> fileSystemStorageHandler.uploadAFile((Path) null, null));
+        assertThrows(IllegalArgumentException.class, () -> fileSystemStorageHandler.downloadAFile(null));
+        assertThrows(IllegalArgumentException.class, () -> fileSystemStorageHandler.writeTo(null, null));
+    }
+
+    @Test
+    void testDownLoadNotExisting() {
+        assertThrows(StorageException.class, () -> fileSystemStorageHandler.downloadAFile("testFile"));
+        assertThrows(StorageException.class, () -> fileSystemStorageHandler.writeTo("testFile", new ByteArrayOutputStream()));
+    }
+
+    @Test
+    @SneakyThrows
+    void testUploadingIntoShardedDirectory() {
+        fileSystemStorageHandler.uploadAFile("testFile".getBytes(), "../testFile");
+        try (Stream<Path> paths = Files.walk(rootDirectory)) {
+            List<Path> files = paths.filter(Files::isRegularFile).collect(Collectors.toList());
+            assertEquals(1, files.size());
+            assertEquals(3, rootDirectory.relativize(files.get(0)).getNameCount());
+        }
+    }
+
+    @Test
+    @SneakyThrows
+    void testDownloadExisting() {
+        String testFile = "testFile";
+        fileSystemStorageHandler.uploadAFile(testFile.getBytes(), testFile);
+        assertArrayEquals(testFile.getBytes(), fileSystemStorageHandler.downloadAFile(testFile).get().readAllBytes());
+    }
+
+    @Test
+    @SneakyThrows
+    void testOverwriting() {
+        String testFile = "testFile";
+        fileSystemStorageHandler.uploadAFile("old content".getBytes(), testFile);
+        fileSystemStorageHandler.uploadAFile("new content".getBytes(), testFile);
+        assertArrayEquals("new content".getBytes(), fileSystemStorageHandler.downloadAFile(testFile).get().readAllBytes());
+    }
+
+    @Test
+    @SneakyThrows
+    void testWritingMappedAndTransferred() {
+        byte[] data = new byte[64 * 1024];
+        new Random(42).nextBytes(data);
+        fileSystemStorageHandler.uploadAFile(data, "testFile");
+
+        ByteArrayOutputStream mapped = new ByteArrayOutputStream();
+        assertEquals(data.length, fileSystemStorageHandler.writeTo("testFile", mapped));
+        assertArrayEquals(data, mapped.toByteArray());
+
+        fileSystemStorageConfig.setMmapThreshold(0);
+        ByteArrayOutputStream transferred = new ByteArrayOutputStream();
+        assertEquals(data.length, fileSystemStorageHandler.writeTo("testFile", transferred));
+        assertArrayEquals(data, transferred.toByteArray());
+    }
+
+    @Test
+    @SneakyThrows
+    void testWritingARange() {
+        fileSystemStorageHandler.uploadAFile("0123456789".getBytes(), "testFile");
+
+        ByteArrayOutputStream mapped = new ByteArrayOutputStream();
+        assertEquals(4, fileSystemStorageHandler.writeTo("testFile", 3, 4, mapped));
+        assertArrayEquals("3456".getBytes(), mapped.toByteArray());
+
+        fileSystemStorageConfig.setMmapThreshold(0);
+        ByteArrayOutputStream transferred = new ByteArrayOutputStream();
+        assertEquals(2, fileSystemStorageHandler.writeTo("testFile", 8, 4, transferred));
+        assertArrayEquals("89".getBytes(), transferred.toByteArray());
+    }
+
+    @Test
+    @SneakyThrows
+    void testTransferringTruncatedFile() {
+        FileChannel channel = mock(FileChannel.class);
+        when(channel.size()).thenReturn(100L);
+        when(channel.transferTo(anyLong(), anyLong(), any(WritableByteChannel.class))).thenReturn(40L, 0L);
+        assertThrows(EOFException.class, () -> FileSystemStorageHandler.transfer(channel, 0, 100, new ByteArrayOutputStream(), 0));
+    }
+
+}
@@ -0,0 +1,116 @@
+package hu.ponte.hr.services.storagehandler;
+
+import hu.ponte.hr.config.AmazonS3Config;
+import hu.ponte.hr.domain.ObjectPlacement;
+import hu.ponte.hr.repository.ObjectPlacementRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ShardRouterTest {
+
+    @Mock
+    private ObjectPlacementRepository objectPlacementRepository;
+
+    @Mock
+    private ShardRouter.ObjectMover objectMover;
+
+    private AmazonS3Config amazonS3Config;
+    private ShardRouter shardRouter;
+
+    @BeforeEach
+    void init() {
+        amazonS3Config = new AmazonS3Config();
+        amazonS3Config.setBucket("default");
+        amazonS3Config.setShards(new ArrayList<>(List.of("bucket-a", "bucket-b/x", "bucket-b/y")));
+        amazonS3Config.setRebalanceBatchSize(2);
+        shardRouter = new ShardRouter(amazonS3Config, objectPlacementRepository);
+        shardRouter.setObjectMover(objectMover);
+    }
+
+    @Test
+    void testPlacingIsStableAndSpread() {
+        List<String> names = IntStream.range(0, 300).mapToObj(i -> "object-" + i).collect(Collectors.toList());
+        List<ShardLocation> placements = names.stream().map(shardRouter::place).collect(Collectors.toList());
+
+        assertEquals(placements, names.stream().map(shardRouter::place).collect(Collectors.toList()));
+        for (ShardLocation shard : shardRouter.getShards()) {
+            assertTrue(placements.stream().filter(shard::equals).count() > 50);
+        }
+
+        amazonS3Config.getShards().add("bucket-c");
+        long changed = IntStream.range(0, names.size())
+                .filter(i -> !shardRouter.place(names.get(i)).equals(placements.get(i)))
+                .peek(i -> assertEquals("bucket-c", shardRouter.place(names.get(i)).getId()))
+                .count();
+        assertTrue(changed > 0 && changed < names.size() / 2);
+    }
+
+    @Test
+    void testLocating() {
+        when(objectPlacementRepository.findById("placed")).thenReturn(Optional.of(new ObjectPlacement("placed", "bucket-b/x")));
+        when(objectPlacementRepository.findById("legacy")).thenReturn(Optional.empty());
+
+        ShardLocation placed = shardRouter.locate("placed");
+        assertEquals("bucket-b", placed.getBucket());
+        assertEquals("x/placed", placed.key("placed"));
+        ShardLocation legacy = shardRouter.locate("legacy");
+        assertEquals("default", legacy.getBucket());
+        assertEquals("legacy", legacy.key("legacy"));
+        assertEquals(shardRouter.place("legacy"), shardRouter.locateForUpload("legacy"));
+    }
+
+    @Test
+    void testDefaultBucketWithoutShards() {
+        amazonS3Config.getShards().clear();
+
+        assertEquals(List.of(new ShardLocation("default", "")), shardRouter.getShards());
+        assertEquals(new ShardLocation("default", ""), shardRouter.place("object"));
+    }
+
+    @Test
+    void testRebalancing() {
+        ShardLocation target = shardRouter.place("object-1");
+        ShardLocation other = shardRouter.getShards().stream().filter(shard -> !shard.equals(target)).findFirst().orElseThrow();
+        ObjectPlacement stays = new ObjectPlacement("object-0", shardRouter.place("object-0").getId());
+        ObjectPlacement moves = new ObjectPlacement("object-1", other.getId());
+        ObjectPlacement fails = new ObjectPlacement("object-2", "retired");
+        when(objectPlacementRepository.findNextPage(eq(""), any(Pageable.class))).thenReturn(List.of(stays, moves));
+        when(objectPlacementRepository.findNextPage(eq("object-1"), any(Pageable.class))).thenReturn(List.of(fails));
+        when(objectPlacementRepository.findNextPage(eq("object-2"), any(Pageable.class))).thenReturn(List.of());
+        doAnswer(invocation -> {
+            if (invocation.<ShardLocation>getArgument(1).getBucket().equals("retired")) {
+                throw new IllegalStateException("unreachable");
+            }
+            return null;
+        }).when(objectMover).copy(anyString(), any(ShardLocation.class), any(ShardLocation.class));
+
+        RebalanceReport report = shardRouter.rebalance();
+
+        assertEquals(1, report.getMoved());
+        assertEquals(1, report.getFailed());
+        verify(objectMover).copy("object-1", other, target);
+        verify(objectPlacementRepository).save(argThat(placement ->
+                placement.getStorageKey().equals("object-1") && placement.getShard().equals(target.getId())));
+        verify(objectMover).delete("object-1", other);
+        verify(objectMover, never()).delete(eq("object-2"), any(ShardLocation.class));
+        verify(objectMover, never()).copy(eq("object-0"), any(ShardLocation.class), any(ShardLocation.class));
+    }
+
+}
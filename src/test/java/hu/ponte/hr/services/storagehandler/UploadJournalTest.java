@@ -0,0 +1,251 @@
+package hu.ponte.hr.services.storagehandler;
+
+import hu.ponte.hr.config.WriteBehindConfig;
+import hu.ponte.hr.exception.exceptions.StorageException;
+import hu.ponte.hr.repository.StoredObjectRepository;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UploadJournalTest {
+
+    private static final String CONTENT_HASH = "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08";
+
+    @TempDir
+    Path journalDirectory;
+
+    @Mock
+    private StorageHandler target;
+
+    @Mock
+    private StoredObjectRepository storedObjectRepository;
+
+    private WriteBehindConfig writeBehindConfig;
+    private UploadJournal uploadJournal;
+
+    @BeforeEach
+    void init() {
+        writeBehindConfig = new WriteBehindConfig();
+        writeBehindConfig.setDirectory(journalDirectory.toString());
+        writeBehindConfig.setRetryDelay(Duration.ofMillis(10));
+        uploadJournal = createJournal();
+    }
+
+    @AfterEach
+    void tearDown() {
+        uploadJournal.shutDown();
+    }
+
+    @Test
+    @SneakyThrows
+    void testServingPendingFiles() {
+        WriteBehindStorageHandler handler = new WriteBehindStorageHandler(target, uploadJournal);
+
+        assertFalse(handler.uploadAFile("0123456789".getBytes(), "testFile").join());
+
+        assertEquals(1, uploadJournal.getPendingCount());
+        assertArrayEquals("0123456789".getBytes(), handler.downloadAFile("testFile").join().readAllBytes());
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        assertEquals(4, handler.writeTo("testFile", 2, 4, outputStream));
+        assertEquals("2345", outputStream.toString());
+        verifyNoInteractions(target);
+    }
+
+    @Test
+    @SneakyThrows
+    void testDraining() {
+        when(target.uploadAFile(any(byte[].class), eq(CONTENT_HASH)))
+                .thenReturn(CompletableFuture.failedFuture(new StorageException("test")))
+                .thenReturn(CompletableFuture.completedFuture(true));
+        when(target.uploadAFile(any(byte[].class), eq(CONTENT_HASH + "-128")))
+                .thenReturn(CompletableFuture.completedFuture(true));
+        when(storedObjectRepository.markStored(CONTENT_HASH)).thenReturn(1);
+        uploadJournal.setTarget(target);
+        uploadJournal.start();
+
+        uploadJournal.append(CONTENT_HASH, "testData".getBytes());
+        uploadJournal.append(CONTENT_HASH + "-128", "testRendition".getBytes());
+
+        awaitDrained();
+        verify(target, times(2)).uploadAFile("testData".getBytes(), CONTENT_HASH);
+        verify(target, times(1)).uploadAFile("testRendition".getBytes(), CONTENT_HASH + "-128");
+        verify(storedObjectRepository, timeout(1000)).markStored(CONTENT_HASH);
+        verify(storedObjectRepository, never()).markStored(CONTENT_HASH + "-128");
+        assertTrue(uploadJournal.read(CONTENT_HASH).isEmpty());
+    }
+
+    @Test
+    @SneakyThrows
+    void testRejectingAfterUploadAttempts() {
+        writeBehindConfig.setUploadAttempts(2);
+        when(target.uploadAFile(any(byte[].class), anyString()))
+                .thenReturn(CompletableFuture.failedFuture(new StorageException("test")));
+        uploadJournal.setTarget(target);
+        uploadJournal.start();
+
+        uploadJournal.append("testFile", "testData".getBytes());
+
+        awaitDrained();
+        verify(target, times(2)).uploadAFile("testData".getBytes(), "testFile");
+        try (Stream<Path> files = Files.list(journalDirectory)) {
+            List<Path> rejected = files.filter(path -> path.getFileName().toString().startsWith("rejected-"))
+                    .collect(Collectors.toList());
+            assertEquals(1, rejected.size());
+            assertArrayEquals("testData".getBytes(), Files.readAllBytes(rejected.get(0)));
+        }
+    }
+
+    @Test
+    @SneakyThrows
+    void testReconcilingPendingContents() {
+        String lost = CONTENT_HASH.replace('9', 'a');
+        String journaled = CONTENT_HASH.replace('9', 'b');
+        when(storedObjectRepository.findNextPendingPage(eq(""), any())).thenReturn(List.of(CONTENT_HASH, lost, journaled));
+        when(storedObjectRepository.findNextPendingPage(eq(journaled), any())).thenReturn(List.of());
+        when(target.writeTo(eq(CONTENT_HASH), eq(0L), eq(1L), any())).thenReturn(1L);
+        when(target.writeTo(eq(lost), eq(0L), eq(1L), any())).thenThrow(new StorageException("test"));
+        when(storedObjectRepository.markStored(CONTENT_HASH)).thenReturn(1);
+        uploadJournal.setTarget(target);
+        uploadJournal.append(journaled, "testData".getBytes());
+
+        assertEquals(1, uploadJournal.reconcile());
+
+        verify(storedObjectRepository, never()).markStored(lost);
+        verify(storedObjectRepository, never()).markStored(journaled);
+        verify(target, never()).writeTo(eq(journaled), anyLong(), anyLong(), any());
+    }
+
+    @Test
+    @SneakyThrows
+    void testReplayingAfterCrash() {
+        uploadJournal.append("first", "firstData".getBytes());
+        uploadJournal.append("second", "secondData".getBytes());
+        uploadJournal.append("first", "firstData2".getBytes());
+        uploadJournal.shutDown();
+        Path segment = segments().get(0);
+        long validSize = Files.size(segment);
+        Files.write(segment, new byte[]{0x50, 0x4A, 0x52, 0x4E, 0, 0}, StandardOpenOption.APPEND);
+
+        uploadJournal = createJournal();
+
+        assertEquals(2, uploadJournal.getPendingCount());
+        assertArrayEquals("firstData2".getBytes(), uploadJournal.read("first").orElseThrow());
+        assertArrayEquals("secondData".getBytes(), uploadJournal.read("second").orElseThrow());
+        assertEquals(validSize, Files.size(segment));
+
+        when(target.uploadAFile(any(byte[].class), anyString())).thenReturn(CompletableFuture.completedFuture(true));
+        uploadJournal.setTarget(target);
+        uploadJournal.start();
+
+        awaitDrained();
+        verify(target, times(1)).uploadAFile("firstData2".getBytes(), "first");
+        verify(target, times(1)).uploadAFile("secondData".getBytes(), "second");
+        verify(target, never()).uploadAFile("firstData".getBytes(), "first");
+        verify(storedObjectRepository, never()).markStored(anyString());
+        assertFalse(Files.exists(segment));
+    }
+
+    @Test
+    @SneakyThrows
+    void testReplayingCorruptRecord() {
+        uploadJournal.append("first", "firstData".getBytes());
+        uploadJournal.append("second", "secondData".getBytes());
+        uploadJournal.append("third", "thirdData".getBytes());
+        uploadJournal.shutDown();
+        Path segment = segments().get(0);
+        byte[] content = Files.readAllBytes(segment);
+        int position = new String(content, StandardCharsets.ISO_8859_1).indexOf("secondData");
+        content[position] ^= 1;
+        Files.write(segment, content);
+
+        uploadJournal = createJournal();
+
+        assertEquals(2, uploadJournal.getPendingCount());
+        assertArrayEquals("firstData".getBytes(), uploadJournal.read("first").orElseThrow());
+        assertTrue(uploadJournal.read("second").isEmpty());
+        assertArrayEquals("thirdData".getBytes(), uploadJournal.read("third").orElseThrow());
+        assertEquals(content.length, Files.size(segment));
+        Path quarantined = segment.resolveSibling(segment.getFileName().toString().replace(".log", ".corrupt"));
+        assertArrayEquals(content, Files.readAllBytes(quarantined));
+    }
+
+    @Test
+    @SneakyThrows
+    void testRollingSegments() {
+        writeBehindConfig.setSegmentSize(16);
+        uploadJournal.append("first", "firstData".getBytes());
+        uploadJournal.append("second", "secondData".getBytes());
+
+        assertEquals(2, segments().size());
+        assertArrayEquals("firstData".getBytes(), uploadJournal.read("first").orElseThrow());
+        assertArrayEquals("secondData".getBytes(), uploadJournal.read("second").orElseThrow());
+    }
+
+    @Test
+    @SneakyThrows
+    void testJournalingLocalFiles() {
+        WriteBehindStorageHandler handler = new WriteBehindStorageHandler(target, uploadJournal);
+        Path source = Files.write(journalDirectory.resolve("source.tmp"), "0123456789".getBytes());
+
+        assertFalse(handler.uploadAFile(source, "testFile").join());
+        assertThrows(IOException.class,
+                () -> uploadJournal.append("shortFile", new ByteArrayInputStream("0123".getBytes()), 10));
+
+        assertEquals(1, uploadJournal.getPendingCount());
+        uploadJournal.shutDown();
+        uploadJournal = createJournal();
+        assertArrayEquals("0123456789".getBytes(), uploadJournal.read("testFile").orElseThrow());
+        assertTrue(uploadJournal.read("shortFile").isEmpty());
+    }
+
+    private UploadJournal createJournal() {
+        UploadJournal journal = new UploadJournal(writeBehindConfig, storedObjectRepository);
+        journal.init();
+        return journal;
+    }
+
+    @SneakyThrows
+    private void awaitDrained() {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (uploadJournal.getPendingCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, uploadJournal.getPendingCount());
+    }
+
+    @SneakyThrows
+    private List<Path> segments() {
+        try (Stream<Path> files = Files.list(journalDirectory)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(".log"))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+}
@@ -2,6 +2,7 @@ package hu.ponte.hr.util;
 
 import org.springframework.core.io.ClassPathResource;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -31,4 +32,18 @@ public class TestImageReader {
         return bytesMap;
     }
 
+    public static byte[] withMetadataSegments(byte[] jpeg, int count) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        outputStream.write(jpeg, 0, 2);
+        for (int i = 0; i < count; i++) {
+            outputStream.write(0xFF);
+            outputStream.write(0xE2);
+            outputStream.write(0xFF);
+            outputStream.write(0xFF);
+            outputStream.write(new byte[0xFFFD], 0, 0xFFFD);
+        }
+        outputStream.write(jpeg, 2, jpeg.length - 2);
+        return outputStream.toByteArray();
+    }
+
 }
@@ -0,0 +1,69 @@
+package hu.ponte.hr.validation;
+
+import hu.ponte.hr.util.TestImageReader;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ImageHeaderParserTest {
+
+    @Test
+    void testParsingJpeg() {
+        Map<String, byte[]> images = TestImageReader.readTestImagesFromResources("images");
+        assertDimensions(500, 359, ImageHeaderParser.parse(MediaType.IMAGE_JPEG_VALUE, images.get("cat.jpg")));
+        assertDimensions(625, 416, ImageHeaderParser.parse(MediaType.IMAGE_JPEG_VALUE, images.get("enhanced-buzz.jpg")));
+        assertDimensions(900, 580, ImageHeaderParser.parse(MediaType.IMAGE_JPEG_VALUE,
+                Arrays.copyOf(images.get("rnd.jpg"), ImageValidator.HEADER_SIZE)));
+    }
+
+    @Test
+    void testParsingJpegWithLargeMetadata() throws IOException {
+        byte[] image = TestImageReader.withMetadataSegments(TestImageReader.readTestImagesFromResources("images").get("cat.jpg"), 3);
+        assertTrue(image.length > 3 * ImageValidator.HEADER_SIZE);
+        assertDimensions(500, 359, ImageHeaderParser.parse(MediaType.IMAGE_JPEG_VALUE, image));
+        assertDimensions(500, 359, ImageHeaderParser.parse(MediaType.IMAGE_JPEG_VALUE, new ByteArrayInputStream(image)));
+        byte[] tooLong = TestImageReader.withMetadataSegments(TestImageReader.readTestImagesFromResources("images").get("cat.jpg"), 70);
+        assertFalse(ImageHeaderParser.parse(MediaType.IMAGE_JPEG_VALUE, tooLong).isPresent());
+    }
+
+    @Test
+    void testParsingPngAndGif() throws IOException {
+        assertDimensions(320, 200, ImageHeaderParser.parse(MediaType.IMAGE_PNG_VALUE, write("png", 320, 200)));
+        assertDimensions(17, 3, ImageHeaderParser.parse(MediaType.IMAGE_GIF_VALUE, write("gif", 17, 3)));
+    }
+
+    @Test
+    void testParsingMalformedHeader() {
+        byte[] image = TestImageReader.readTestImagesFromResources("images").get("rnd.jpg");
+        assertFalse(ImageHeaderParser.parse(MediaType.IMAGE_JPEG_VALUE, Arrays.copyOf(image, 4096)).isPresent());
+        assertFalse(ImageHeaderParser.parse(MediaType.IMAGE_PNG_VALUE, image).isPresent());
+        assertFalse(ImageHeaderParser.parse(MediaType.IMAGE_GIF_VALUE, new byte[3]).isPresent());
+        assertFalse(ImageHeaderParser.parse("image/bmp", image).isPresent());
+        assertFalse(ImageHeaderParser.isSupported("image/bmp"));
+    }
+
+    private static void assertDimensions(int width, int height, Optional<ImageDimensions> dimensions) {
+        assertTrue(dimensions.isPresent());
+        assertEquals(width, dimensions.get().getWidth());
+        assertEquals(height, dimensions.get().getHeight());
+    }
+
+    private static byte[] write(String format, int width, int height) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_BYTE_INDEXED), format, outputStream);
+        return outputStream.toByteArray();
+    }
+
+}
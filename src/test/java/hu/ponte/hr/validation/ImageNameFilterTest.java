@@ -0,0 +1,111 @@
+package hu.ponte.hr.validation;
+
+import hu.ponte.hr.config.NameFilterConfig;
+import hu.ponte.hr.domain.ImageSummary;
+import hu.ponte.hr.repository.ImageRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ImageNameFilterTest {
+
+    @Mock
+    private ImageRepository imageRepository;
+
+    private ImageNameFilter imageNameFilter;
+
+    @BeforeEach
+    void init() {
+        NameFilterConfig nameFilterConfig = new NameFilterConfig();
+        nameFilterConfig.setExpectedNames(1000);
+        nameFilterConfig.setLoadPageSize(2);
+        imageNameFilter = new ImageNameFilter(imageRepository, nameFilterConfig);
+    }
+
+    @Test
+    void testLoadingNames() {
+        when(imageRepository.findNextSummaryPage(eq(0L), isNull(), any(Pageable.class)))
+                .thenReturn(List.of(createSummary(1L, "first.jpg"), createSummary(2L, "second.jpg")));
+        when(imageRepository.findNextSummaryPage(eq(2L), isNull(), any(Pageable.class)))
+                .thenReturn(List.of(createSummary(5L, "third.jpg")));
+
+        assertTrue(imageNameFilter.mightContain("new.jpg"));
+        imageNameFilter.load();
+
+        assertTrue(imageNameFilter.isLoaded());
+        assertTrue(imageNameFilter.mightContain("first.jpg"));
+        assertTrue(imageNameFilter.mightContain("third.jpg"));
+        assertFalse(imageNameFilter.mightContain("new.jpg"));
+        imageNameFilter.put("new.jpg");
+        assertTrue(imageNameFilter.mightContain("new.jpg"));
+        verify(imageRepository, times(2)).findNextSummaryPage(anyLong(), isNull(), any(Pageable.class));
+    }
+
+    @Test
+    void testFalsePositiveRate() {
+        when(imageRepository.findNextSummaryPage(anyLong(), isNull(), any(Pageable.class))).thenReturn(List.of());
+        imageNameFilter.load();
+        IntStream.range(0, 1000).forEach(i -> imageNameFilter.put("image-" + i + ".jpg"));
+
+        List<String> falsePositives = IntStream.range(1000, 11000).mapToObj(i -> "image-" + i + ".jpg")
+                .filter(imageNameFilter::mightContain)
+                .collect(Collectors.toList());
+
+        assertTrue(IntStream.range(0, 1000).allMatch(i -> imageNameFilter.mightContain("image-" + i + ".jpg")));
+        assertTrue(falsePositives.size() < 300, "False positives: " + falsePositives.size());
+    }
+
+    @Test
+    void testLoadingFails() {
+        when(imageRepository.findNextSummaryPage(anyLong(), isNull(), any(Pageable.class))).thenThrow(new IllegalStateException());
+        imageNameFilter.load();
+        assertFalse(imageNameFilter.isLoaded());
+        assertTrue(imageNameFilter.mightContain("new.jpg"));
+    }
+
+    private static ImageSummary createSummary(Long id, String name) {
+        return new ImageSummary() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public String getPublicId() {
+                return String.valueOf(id);
+            }
+
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public String getContentHash() {
+                return null;
+            }
+
+            @Override
+            public Instant getCreatedAt() {
+                return null;
+            }
+        };
+    }
+
+}
@@ -1,8 +1,8 @@
 package hu.ponte.hr.validation;
 
-import hu.ponte.hr.domain.Image;
 import hu.ponte.hr.exception.exceptions.MultipartFileException;
 import hu.ponte.hr.repository.ImageRepository;
+import hu.ponte.hr.util.TestImageReader;
 import hu.ponte.hr.validation.ImageValidator;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
@@ -14,7 +14,9 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockMultipartFile;
 
-import java.util.Optional;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
 
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
@@ -25,12 +27,17 @@ class ImageValidatorTest {
     @Mock
     private ImageRepository imageRepository;
 
+    @Mock
+    private ImageNameFilter imageNameFilter;
+
     @InjectMocks
     private ImageValidator imageValidator;
 
     @BeforeEach
     void init() {
         imageValidator.setMaxSize(2 * 1024 * 1024L);
+        imageValidator.setMaxPixels(250000L);
+        imageValidator.setMaxDimension(1000);
         imageValidator.setAllowedTypes(new String[]{"image/png", "image/jpg", "image/jpeg", "image/gif"});
     }
 
@@ -48,14 +55,24 @@ class ImageValidatorTest {
 
     @Test
     void testAlreadyUsedName() {
-        when(imageRepository.findByName(anyString())).thenReturn(Optional.of(new Image()));
+        when(imageNameFilter.mightContain("test.jpeg")).thenReturn(true);
+        when(imageRepository.existsByName(anyString())).thenReturn(true);
         MockMultipartFile mockFile = new MockMultipartFile("test", "test.jpeg", MediaType.IMAGE_JPEG_VALUE,
                 "beautiful test image".getBytes());
         Assertions.assertThrows(MultipartFileException.class, () -> imageValidator.validate(mockFile));
-        verify(imageRepository, times(1)).findByName(anyString());
+        verify(imageRepository, times(1)).existsByName(anyString());
         verifyNoMoreInteractions(imageRepository);
     }
 
+    @Test
+    void testNewNameIsNotLookedUp() {
+        byte[] image = TestImageReader.readTestImagesFromResources("images").get("cat.jpg");
+        MockMultipartFile mockFile = new MockMultipartFile("test", "cat.jpg", MediaType.IMAGE_JPEG_VALUE, image);
+        Assertions.assertDoesNotThrow(() -> imageValidator.validate(mockFile));
+        verify(imageNameFilter, times(1)).mightContain("cat.jpg");
+        verifyNoInteractions(imageRepository);
+    }
+
     @Test
     void testNotAllowedMimeType() {
         MockMultipartFile mockFile = new MockMultipartFile("test", "test.jpeg", MediaType.TEXT_PLAIN_VALUE,
@@ -63,5 +80,55 @@ class ImageValidatorTest {
         Assertions.assertThrows(MultipartFileException.class, () -> imageValidator.validate(mockFile));
     }
 
+    @Test
+    void testValidImage() {
+        byte[] image = TestImageReader.readTestImagesFromResources("images").get("cat.jpg");
+        MockMultipartFile mockFile = new MockMultipartFile("test", "cat.jpg", MediaType.IMAGE_JPEG_VALUE, image);
+        Assertions.assertDoesNotThrow(() -> imageValidator.validate(mockFile));
+        Assertions.assertEquals(MediaType.IMAGE_JPEG_VALUE,
+                imageValidator.validate("cat.jpg", new BufferedInputStream(new ByteArrayInputStream(image))));
+    }
+
+    @Test
+    void testValidImageWithLargeMetadata() {
+        byte[] image = TestImageReader.withMetadataSegments(TestImageReader.readTestImagesFromResources("images").get("cat.jpg"), 3);
+        MockMultipartFile mockFile = new MockMultipartFile("test", "cat.jpg", MediaType.IMAGE_JPEG_VALUE, image);
+        Assertions.assertEquals(MediaType.IMAGE_JPEG_VALUE, imageValidator.validate(mockFile));
+        BufferedInputStream content = new BufferedInputStream(new ByteArrayInputStream(image), ImageValidator.HEADER_SIZE);
+        Assertions.assertEquals(MediaType.IMAGE_JPEG_VALUE, imageValidator.validate("cat.jpg", content));
+        Assertions.assertArrayEquals(image, Assertions.assertDoesNotThrow(content::readAllBytes));
+
+        byte[] tooLong = TestImageReader.withMetadataSegments(TestImageReader.readTestImagesFromResources("images").get("cat.jpg"), 5);
+        Assertions.assertEquals(MediaType.IMAGE_JPEG_VALUE,
+                imageValidator.validate(new MockMultipartFile("test", "cat.jpg", MediaType.IMAGE_JPEG_VALUE, tooLong)));
+        MultipartFileException ex = Assertions.assertThrows(MultipartFileException.class, () -> imageValidator.validate("cat.jpg",
+                new BufferedInputStream(new ByteArrayInputStream(tooLong), ImageValidator.HEADER_SIZE)));
+        Assertions.assertEquals("Image (name: cat.jpg) dimensions could not be read.", ex.getMessage());
+    }
+
+    @Test
+    void testDetectingTypeIgnoringDeclaredType() {
+        byte[] image = TestImageReader.readTestImagesFromResources("images").get("cat.jpg");
+        MockMultipartFile mockFile = new MockMultipartFile("test", "cat.jpg", MediaType.TEXT_HTML_VALUE, image);
+        Assertions.assertEquals(MediaType.IMAGE_JPEG_VALUE, imageValidator.validate(mockFile));
+    }
+
+    @Test
+    void testTooManyPixels() {
+        byte[] image = TestImageReader.readTestImagesFromResources("images").get("rnd.jpg");
+        MockMultipartFile mockFile = new MockMultipartFile("test", "rnd.jpg", MediaType.IMAGE_JPEG_VALUE, image);
+        MultipartFileException ex = Assertions.assertThrows(MultipartFileException.class, () -> imageValidator.validate(mockFile));
+        Assertions.assertEquals("Image (name: rnd.jpg) is too large (900x580 pixels).", ex.getMessage());
+        imageValidator.setMaxPixels(Long.MAX_VALUE);
+        imageValidator.setMaxDimension(800);
+        Assertions.assertThrows(MultipartFileException.class, () -> imageValidator.validate(mockFile));
+    }
+
+    @Test
+    void testTruncatedHeader() {
+        byte[] image = Arrays.copyOf(TestImageReader.readTestImagesFromResources("images").get("rnd.jpg"), 4096);
+        MockMultipartFile mockFile = new MockMultipartFile("test", "rnd.jpg", MediaType.IMAGE_JPEG_VALUE, image);
+        Assertions.assertThrows(MultipartFileException.class, () -> imageValidator.validate(mockFile));
+    }
 
 }